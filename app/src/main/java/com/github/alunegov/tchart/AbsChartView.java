@@ -6,13 +6,11 @@ import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewConfiguration;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class AbsChartView extends View {
-    protected static final int NO_CURSOR = -1;
+    protected static final int NO_CURSOR = ChartGeometry.NO_CURSOR;
 
     // Grid Lines
     // Lighten Mask - FFFFFF, 50%  Darken Mask - 242F3E, 50%
@@ -23,6 +21,8 @@ public abstract class AbsChartView extends View {
 
     protected ChartInputData inputData;
     protected ChartInputDataStats inputDataStats;
+    // значения inputData (массивы или хранилище вне кучи)
+    protected ChartColumns columns;
 
     protected ChartDrawData drawData;
 
@@ -40,6 +40,9 @@ public abstract class AbsChartView extends View {
 
     private int[] tmpLinesVisibilityState;
 
+    // замеры фаз построения и отрисовки (null - не ведутся)
+    protected @Nullable ChartProfiler profiler;
+
     public AbsChartView(Context context, AttributeSet attrs) {
         super(context, attrs);
 
@@ -49,11 +52,22 @@ public abstract class AbsChartView extends View {
     public void setInputData(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
         this.inputData = inputData;
         this.inputDataStats = inputDataStats;
+        columns = inputData.getColumns();
 
         drawData = new ChartDrawData(inputData, inputDataStats);
-        drawData.setXRange(inputData.XValues[0], inputData.XValues[inputData.XValues.length - 1], true);
+        drawData.setProfiler(profiler);
+        drawData.setXRange(columns.getX(0), columns.getX(columns.getPointsCount() - 1), true);
 
         linesPaints = ChartUtils.makeLinesPaints(inputData.LinesColors, lineWidth, inputData.linesType == ChartInputData.LineType.LINE);
+        if (inputData.linesType == ChartInputData.LineType.LINE) {
+            // данные могут быть заменены при уже изменённой видимости линий (детальные данные)
+            final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
+            for (int i = 0; i < linesPaints.length; i++) {
+                if (linesVisibilityState[i] != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                    linesPaints[i].setAlpha(linesVisibilityState[i]);
+                }
+            }
+        }
 /*        if (inputData.linesType == ChartInputData.LineType.AREA) {
             for (int i = 0; i < linesPaints.length; i++) {
                 linesPaints[i].setAntiAlias(true);
@@ -79,10 +93,18 @@ public abstract class AbsChartView extends View {
             linesFadedPaints = ChartUtils.makeLinesPaints(linesFadedColors, lineWidth, false);
         }
 
-        tmpLinesVisibilityState = new int[inputData.LinesValues.length];
+        tmpLinesVisibilityState = new int[columns.getLinesCount()];
+    }
+
+    public void setProfiler(@Nullable ChartProfiler profiler) {
+        this.profiler = profiler;
+
+        if (drawData != null) {
+            drawData.setProfiler(profiler);
+        }
     }
 
-    public void getXRange(@NotNull float[] range) {
+    public void getXRange(@NotNull double[] range) {
         drawData.getXRange(range);
     }
 
@@ -90,90 +112,76 @@ public abstract class AbsChartView extends View {
         drawData.getXRange(range);
     }
 
+    public void getXRangeInner(@NotNull int[] range) {
+        drawData.getXRangeInner(range);
+    }
+
     public void updateLineVisibility(int lineIndex, boolean exceptLine, int state, boolean doUpdate, boolean doInvalidate) {
-//        synchronized (lock) {
-            if (drawData == null) {
-                return;
-            }
+        if (drawData == null) {
+            return;
+        }
 
-            drawData.updateLineVisibility(doUpdate);
+        drawData.updateLineVisibility(doUpdate);
 
-            if (inputData.linesType == ChartInputData.LineType.LINE) {
-                if (exceptLine) {
-                    final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
-                    final int otherLinesState = ChartInputDataStats.VISIBILITY_STATE_ON - state;
+        if (inputData.linesType == ChartInputData.LineType.LINE) {
+            if (exceptLine) {
+                final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
+                final int otherLinesState = ChartInputDataStats.VISIBILITY_STATE_ON - state;
 
-                    for (int i = 0; i < linesPaints.length; i++) {
-                        if (linesVisibilityState[i] != ChartInputDataStats.VISIBILITY_STATE_OFF) {
-                            linesPaints[i].setAlpha(otherLinesState);
-                        }
+                for (int i = 0; i < linesPaints.length; i++) {
+                    if (linesVisibilityState[i] != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                        linesPaints[i].setAlpha(otherLinesState);
                     }
                 }
-                linesPaints[lineIndex].setAlpha(state);
             }
+            linesPaints[lineIndex].setAlpha(state);
+        }
 
-            if (doInvalidate) {
-                invalidate();
-                //postInvalidateDelayed(12);
-            }
-//        }
+        if (doInvalidate) {
+            onDrawDataChanged();
+            //postInvalidateDelayed(12);
+        }
+    }
+
+    // Данные дополнены точками (см. ChartInputData.appendPoint). Перерисовка - только если изменилась видимая часть.
+    public void onInputDataAppended() {
+        if (drawData == null) {
+            return;
+        }
+
+        if (drawData.onPointsAppended()) {
+            onDrawDataChanged();
+        }
+    }
+
+    // Состояние drawData изменено - нужна перерисовка. Виды, строящие геометрию в фоне (см. ChartGeometryEngine),
+    // запрашивают здесь построение кадра.
+    protected void onDrawDataChanged() {
+        invalidate();
     }
 
     public void getYRange(int[] range) {
         drawData.getYRange(range);
     }
 
-//    private Executor executor = Executors.newSingleThreadExecutor();
-//    protected final @NotNull Object lock = new Object();
-
     public void setYRange(int yLeftMin, int yLeftMax, int yRightMin, int yRightMax, boolean doUpdateAndInvalidate) {
         if (drawData == null) {
             return;
         }
 
-//        executor.execute(new QQ(yLeftMin, yLeftMax, doUpdateAndInvalidate));
-
         drawData.setYRange(yLeftMin, yLeftMax, yRightMin, yRightMax);
 
         if (doUpdateAndInvalidate) {
-            invalidate();
+            onDrawDataChanged();
             //postInvalidateDelayed(16);
         }
     }
 
-/*    private class QQ implements Runnable {
-        int yMin;
-        int yMax;
-        boolean doUpdateAndInvalidate;
-
-        public QQ(int yMin, int yMax, boolean doUpdateAndInvalidate) {
-            this.yMin = yMin;
-            this.yMax = yMax;
-            this.doUpdateAndInvalidate = doUpdateAndInvalidate;
-        }
-
-        @Override
-        public void run() {
-            synchronized (lock) {
-                drawData.setYRange(yMin, yMax, 0, 0);
-            }
-
-            if (doUpdateAndInvalidate) {
-                postInvalidateDelayed(0);
-                try {
-                    Thread.sleep(16);
-                } catch (InterruptedException e) {
-
-                }
-            }
-        }
-    }*/
-
-    private void calcYRangeAt(float xLeftValue, float xRightValue, @NotNull int[] range) {
+    private void calcYRangeAt(double xLeftValue, double xRightValue, @NotNull int[] range) {
         drawData.calcYRangeAt(xLeftValue, xRightValue, inputDataStats.getLinesVisibilityState(), range);
     }
 
-    private void calcYRangeAt(float xLeftValue, float xRightValue, int lineIndex, boolean exceptLine, int state, @NotNull int[] range) {
+    private void calcYRangeAt(double xLeftValue, double xRightValue, int lineIndex, boolean exceptLine, int state, @NotNull int[] range) {
         final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
 
         if (exceptLine) {
@@ -195,13 +203,13 @@ public abstract class AbsChartView extends View {
     }
 
     // при изменении отображаемой зоны на графике
-    public void calcAnimationRanges(float zoneLeftValue, float zoneRightValue, @NotNull int[] yStartRange, @NotNull int[] yStopRange) {
+    public void calcAnimationRanges(double zoneLeftValue, double zoneRightValue, @NotNull int[] yStartRange, @NotNull int[] yStopRange) {
         drawData.getYRange(yStartRange);
 
         calcYRangeAt(zoneLeftValue, zoneRightValue, yStopRange);
     }
 
-    private final @NotNull float[] tmpXRange = new float[2];
+    private final @NotNull double[] tmpXRange = new double[2];
 
     // при включении/выключении графика
     public void calcAnimationRanges(int lineIndex, boolean exceptLine, int state, @NotNull int[] yStartRange, @NotNull int[] yStopRange) {
@@ -211,26 +219,29 @@ public abstract class AbsChartView extends View {
         calcYRangeAt(tmpXRange[0], tmpXRange[1], lineIndex, exceptLine, state, yStopRange);
     }
 
-    private final @NotNull int[] xIndexRange = new int[2];
-
     protected void drawLines(@NotNull Canvas canvas) {
-        if (BuildConfig.DEBUG && (drawData == null)) throw new AssertionError();
+        drawLines(canvas, drawData);
+    }
+
+    // отрисовка линий кадра frameData (drawData или буфер ChartGeometryEngine) - по его состоянию видимости и курсору
+    protected void drawLines(@NotNull Canvas canvas, @NotNull ChartDrawData frameData) {
         if (BuildConfig.DEBUG && (linesPaints == null)) throw new AssertionError();
 
-        final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_DRAW_LINES) : 0;
 
-        drawData.getXRange(xIndexRange);
+        final int[] linesVisibilityState = frameData.getLinesVisibilityState();
+        final int cursorIndex = frameData == drawData ? this.cursorIndex : frameData.getCursorIndex();
 
         final Path[] paths, cursorPaths;
-        int pointsCount;
         boolean doCursor;
 
-        switch (drawData.getDrawLinesMode()) {
+        switch (frameData.getDrawLinesMode()) {
             case PATH:
             case PATH_REVERSE:
-                paths = drawData.getLinesPaths();
+                paths = frameData.getLinesPaths();
                 if (BuildConfig.DEBUG && (paths.length != linesPaints.length)) throw new AssertionError();
-                cursorPaths = drawData.getCursorPaths();
+                cursorPaths = frameData.getCursorPaths();
 
                 doCursor = inputData.linesType == ChartInputData.LineType.BAR && cursorIndex != NO_CURSOR;
 
@@ -241,7 +252,7 @@ public abstract class AbsChartView extends View {
                     paints = linesPaints;
                 }
 
-                if (drawData.getDrawLinesMode() == ChartDrawData.DrawLinesMode.PATH) {
+                if (frameData.getDrawLinesMode() == ChartGeometry.DrawLinesMode.PATH) {
                     for (int i = 0; i < paths.length; i++) {
                         if (linesVisibilityState[i] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
                             continue;
@@ -282,11 +293,9 @@ public abstract class AbsChartView extends View {
                 break;
 
             case LINES:
-                pointsCount = xIndexRange[1] - xIndexRange[0] + 1;
-
-                pointsCount = (pointsCount - 1) << 2;
-
-                final float[][] lines = drawData.getLinesLines();
+                // кол-во точек у линий может отличаться от диапазона индексов (прореживание, см. LodPyramid)
+                final float[][] lines = frameData.getLinesLines();
+                final int[] linesCount = frameData.getLinesLinesCount();
                 if (BuildConfig.DEBUG && (lines.length != linesPaints.length)) throw new AssertionError();
 
                 for (int i = 0; i < lines.length; i++) {
@@ -294,32 +303,14 @@ public abstract class AbsChartView extends View {
                         continue;
                     }
 
-                    canvas.drawLines(lines[i], 0, pointsCount, linesPaints[i]);
+                    canvas.drawLines(lines[i], 0, linesCount[i], linesPaints[i]);
                 }
 
                 break;
+        }
 
-            case RECT:
-                final RectF[][] rects = drawData.getLinesRects();
-                if (BuildConfig.DEBUG && (rects.length != linesPaints.length)) throw new AssertionError();
-
-                for (int j = 0; j < rects.length; j++) {
-                    if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
-                        continue;
-                    }
-
-                    for (int i = xIndexRange[0]; i <= xIndexRange[1]; i++) {
-                        doCursor = cursorIndex == NO_CURSOR || (inputData.linesType == ChartInputData.LineType.BAR && cursorIndex == i);
-
-                        if (doCursor) {
-                            canvas.drawRect(rects[j][i], linesPaints[j]);
-                        } else {
-                            canvas.drawRect(rects[j][i], linesFadedPaints[j]);
-                        }
-                    }
-                }
-
-                break;
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_DRAW_LINES, startTime);
         }
     }
 
@@ -0,0 +1,18 @@
+package com.github.alunegov.tchart;
+
+// Доступ к значениям графика по столбцам: X и значения линий по индексу точки. Хранилище может быть как в куче Java
+// (HeapChartColumns - массивы ChartInputData.XValues/LinesValues), так и вне её (DirectChartColumns). Равномерный X может
+// не храниться вовсе (UniformXChartColumns).
+public interface ChartColumns {
+    // кол-во точек
+    int getPointsCount();
+
+    // кол-во линий
+    int getLinesCount();
+
+    // значение X точки index
+    long getX(int index);
+
+    // значение линии lineIndex в точке index
+    int getY(int lineIndex, int index);
+}
@@ -0,0 +1,278 @@
+package com.github.alunegov.tchart;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import org.json.JSONException;
+
+// Источник детальных данных графика - файлы дней contest/N/YYYY-MM/DD.json (почасовые значения и т.п.).
+// При узкой зоне (не больше MAX_DETAIL_DAYS дней) файлы дней зоны загружаются в фоновом потоке, значения за эти дни
+// "вклеиваются" в обзорные данные (overview.json) вместо дневных, и результат передаётся в callback в UI-потоке.
+// Разобранные файлы дней хранятся в общем для всех графиков LRU-кэше.
+public class ChartDetailDataSource {
+    public static final long MSEC_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    // максимальная ширина зоны в днях, при которой используются детальные данные
+    public static final int MAX_DETAIL_DAYS = 7;
+
+    private final @NotNull ChartInputDataMapper.ResourceLoader resourceLoader;
+    private final @NotNull ChartInputDataMapper.ColorParser colorParser;
+    private final @NotNull String chartName;
+    private final @NotNull Cache cache;
+    // исполнитель загрузки (фоновый поток)
+    private final @NotNull Executor backgroundExecutor;
+    // исполнитель передачи результата (UI-поток)
+    private final @NotNull Executor resultExecutor;
+
+    // номер последнего запроса - результаты предыдущих запросов отбрасываются
+    private final @NotNull AtomicInteger lastRequestId = new AtomicInteger();
+
+    // имена интервалов загрузки и статистики для ChartTraceRecorder
+    private final @NotNull String loadSpanName, statsSpanName;
+
+    public ChartDetailDataSource(@NotNull ChartInputDataMapper.ResourceLoader resourceLoader,
+                                 @NotNull ChartInputDataMapper.ColorParser colorParser, @NotNull String chartName,
+                                 @NotNull Cache cache, @NotNull Executor backgroundExecutor,
+                                 @NotNull Executor resultExecutor) {
+        this.resourceLoader = resourceLoader;
+        this.colorParser = colorParser;
+        this.chartName = chartName;
+        loadSpanName = "detail load " + chartName;
+        statsSpanName = "detail stats " + chartName;
+        this.cache = cache;
+        this.backgroundExecutor = backgroundExecutor;
+        this.resultExecutor = resultExecutor;
+    }
+
+    // нужны ли детальные данные для зоны [xLeft, xRight]
+    public static boolean isDetailZone(double xLeft, double xRight) {
+        return (xRight - xLeft) <= MAX_DETAIL_DAYS * MSEC_PER_DAY;
+    }
+
+    // Асинхронный запрос данных для зоны [xLeft, xRight]. callback вызывается через resultExecutor, только если за
+    // время загрузки не было нового запроса или отмены. overviewData читается в фоновом потоке, поэтому данные с
+    // дописыванием (ChartInputData.isLive) не поддерживаются - детальные данные с ними не используются.
+    public void request(@NotNull final ChartInputData overviewData, final long xLeft, final long xRight, @NotNull final Callback callback) {
+        if (BuildConfig.DEBUG && overviewData.isLive()) throw new AssertionError();
+
+        final int requestId = lastRequestId.incrementAndGet();
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (requestId != lastRequestId.get()) {
+                    return;
+                }
+
+                final ChartTraceRecorder recorder = ChartTraceRecorder.getGlobal();
+
+                long startTime = System.nanoTime();
+                final ChartInputData detailData = load(overviewData, xLeft, xRight);
+                if (recorder != null) {
+                    recorder.recordSince(loadSpanName, ChartTraceRecorder.CATEGORY_LOAD, startTime);
+                }
+                if (detailData == null || requestId != lastRequestId.get()) {
+                    return;
+                }
+
+                startTime = System.nanoTime();
+                final ChartInputDataStats detailDataStats = new ChartInputDataStats(detailData);
+                if (recorder != null) {
+                    recorder.recordSince(statsSpanName, ChartTraceRecorder.CATEGORY_LOAD, startTime);
+                }
+
+                resultExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestId == lastRequestId.get()) {
+                            callback.onDetailDataLoaded(detailData, detailDataStats);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // отмена запросов, результаты которых ещё не переданы
+    public void cancel() {
+        lastRequestId.incrementAndGet();
+    }
+
+    // Синхронная загрузка файлов дней, пересекающихся с зоной [xLeft, xRight] (плюс день по краям, чтобы соседние с зоной
+    // точки тоже были детальными), и "вклейка" их в overviewData. null - если нет ни одного файла дня.
+    @Nullable ChartInputData load(@NotNull ChartInputData overviewData, long xLeft, long xRight) {
+        final ChartColumns overviewColumns = overviewData.getColumns();
+        final long overviewFirstDay = floorDay(overviewColumns.getX(0));
+        final long overviewLastDay = floorDay(overviewColumns.getX(overviewColumns.getPointsCount() - 1));
+
+        final long firstDay = Math.max(floorDay(xLeft) - MSEC_PER_DAY, overviewFirstDay);
+        final long lastDay = Math.min(floorDay(xRight) + MSEC_PER_DAY, overviewLastDay);
+
+        final List<Long> daysStarts = new ArrayList<>();
+        final List<ChartInputData> daysData = new ArrayList<>();
+
+        for (long day = firstDay; day <= lastDay; day += MSEC_PER_DAY) {
+            final ChartInputData dayData = getDay(day);
+            if (dayData == null) {
+                continue;
+            }
+            if (dayData.getColumns().getLinesCount() != overviewColumns.getLinesCount() || dayData.linesType != overviewData.linesType) {
+                continue;
+            }
+
+            daysStarts.add(day);
+            daysData.add(dayData);
+        }
+
+        if (daysData.isEmpty()) {
+            return null;
+        }
+
+        return merge(overviewData, daysStarts, daysData);
+    }
+
+    // данные дня из кэша или из файла. null - файла нет или он не разбирается
+    private @Nullable ChartInputData getDay(long dayStart) {
+        final String dayFileName = getDayFileName(dayStart);
+        final String key = chartName + File.separator + dayFileName;
+
+        final Object cached = cache.get(key);
+        if (cached != null) {
+            return (cached instanceof ChartInputData) ? (ChartInputData) cached : null;
+        }
+
+        ChartInputData dayData;
+        try {
+            final String fileName = "contest" + File.separator + chartName + File.separator + dayFileName;
+            dayData = ChartInputDataMapper.loadChart(resourceLoader.openResource(fileName), colorParser);
+        } catch (IOException | JSONException e) {
+            dayData = null;
+        }
+
+        cache.put(key, dayData);
+
+        return dayData;
+    }
+
+    // YYYY-MM/DD.json (дни в UTC, как и в исходных данных)
+    private static @NotNull String getDayFileName(long dayStart) {
+        final Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        c.setTimeInMillis(dayStart);
+
+        return String.format(Locale.US, "%04d-%02d%s%02d.json", c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1,
+                File.separator, c.get(Calendar.DAY_OF_MONTH));
+    }
+
+    private static long floorDay(long x) {
+        final long rem = x % MSEC_PER_DAY;
+        return rem >= 0 ? x - rem : x - rem - MSEC_PER_DAY;
+    }
+
+    // Замена точек overviewData, попадающих в дни daysStarts (по возрастанию), на точки соответствующих daysData за
+    // эти же дни (файл дня может содержать и соседние дни).
+    // Результат (детальные данные могут быть большими) хранится вне кучи Java - см. DirectChartColumns.
+    static @NotNull ChartInputData merge(@NotNull ChartInputData overviewData, @NotNull List<Long> daysStarts,
+                                         @NotNull List<ChartInputData> daysData) {
+        if (BuildConfig.DEBUG && (daysStarts.size() != daysData.size())) throw new AssertionError();
+
+        final int pointsCount = mergeInto(overviewData, daysStarts, daysData, null);
+
+        final DirectChartColumns resColumns = new DirectChartColumns(overviewData.getColumns().getLinesCount(), pointsCount);
+        mergeInto(overviewData, daysStarts, daysData, resColumns);
+
+        final ChartInputData res = new ChartInputData(resColumns, overviewData.linesType, overviewData.flags);
+        System.arraycopy(overviewData.LinesNames, 0, res.LinesNames, 0, res.LinesNames.length);
+        System.arraycopy(overviewData.LinesColors, 0, res.LinesColors, 0, res.LinesColors.length);
+
+        return res;
+    }
+
+    // проход слияния: при res == null только подсчёт точек
+    private static int mergeInto(@NotNull ChartInputData overviewData, @NotNull List<Long> daysStarts,
+                                 @NotNull List<ChartInputData> daysData, @Nullable DirectChartColumns res) {
+        final ChartColumns overviewColumns = overviewData.getColumns();
+        final int overviewPointsCount = overviewColumns.getPointsCount();
+
+        int count = 0;
+        int i = 0;
+
+        for (int k = 0; k < daysStarts.size(); k++) {
+            final long dayStart = daysStarts.get(k);
+            final long dayEnd = dayStart + MSEC_PER_DAY;
+
+            // обзорные точки до дня
+            while (i < overviewPointsCount && overviewColumns.getX(i) < dayStart) {
+                count = copyPoint(overviewColumns, i, res, count);
+                i++;
+            }
+            // обзорные точки дня пропускаем
+            while (i < overviewPointsCount && overviewColumns.getX(i) < dayEnd) {
+                i++;
+            }
+            // детальные точки дня
+            final ChartColumns dayColumns = daysData.get(k).getColumns();
+            for (int d = 0; d < dayColumns.getPointsCount(); d++) {
+                if (dayStart <= dayColumns.getX(d) && dayColumns.getX(d) < dayEnd) {
+                    count = copyPoint(dayColumns, d, res, count);
+                }
+            }
+        }
+        // обзорные точки после последнего дня
+        while (i < overviewPointsCount) {
+            count = copyPoint(overviewColumns, i, res, count);
+            i++;
+        }
+
+        return count;
+    }
+
+    private static int copyPoint(@NotNull ChartColumns src, int srcIndex, @Nullable DirectChartColumns dst, int dstIndex) {
+        if (dst != null) {
+            dst.setX(dstIndex, src.getX(srcIndex));
+            for (int j = 0; j < dst.getLinesCount(); j++) {
+                dst.setY(j, dstIndex, src.getY(j, srcIndex));
+            }
+        }
+        return dstIndex + 1;
+    }
+
+    public interface Callback {
+        void onDetailDataLoaded(@NotNull ChartInputData detailData, @NotNull ChartInputDataStats detailDataStats);
+    }
+
+    // LRU-кэш разобранных файлов дней, общий для всех графиков (ключ - имя графика и день). Отсутствующие файлы тоже
+    // запоминаются, чтобы не пытаться открыть их повторно.
+    public static class Cache {
+        private static final Object MISSING = new Object();
+
+        private final @NotNull LinkedHashMap<String, Object> map;
+
+        public Cache(final int maxDays) {
+            map = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > maxDays;
+                }
+            };
+        }
+
+        // ChartInputData, MISSING (файла нет) или null (нет в кэше)
+        synchronized @Nullable Object get(@NotNull String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(@NotNull String key, @Nullable ChartInputData dayData) {
+            map.put(key, dayData != null ? dayData : MISSING);
+        }
+
+        public synchronized int size() {
+            return map.size();
+        }
+    }
+}
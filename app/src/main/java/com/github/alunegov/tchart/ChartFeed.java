@@ -0,0 +1,519 @@
+package com.github.alunegov.tchart;
+
+import android.annotation.TargetApi;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.view.Choreographer;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+// Лента живых данных графика из локального потока (см. ChartInputDataMapper.FeedSource): Unix domain socket
+// (localSocket), именованный канал (pipe) или дописываемый файл (tailFile). Точки в потоке - NDJSON, массив
+// [x, y0, y1, ...] на строку (см. ChartInputDataReader.readPoint).
+// Точки разбираются в фоновом потоке и копятся в ограниченном буфере (maxBatchSize точек), в UI-поток они передаются
+// пачкой через frameExecutor - не чаще одного раза за кадр (см. VsyncExecutor), а не на каждую точку. Если UI не
+// успевает забирать точки и буфер заполнен, новая точка по overflowMode либо вытесняет самую старую (DROP_OLDEST), либо
+// усредняется с последней точкой буфера (AGGREGATE).
+public class ChartFeed {
+    private static final String FEED_CHARSET = "UTF8";
+    // период опроса дописываемого файла, мс
+    private static final long TAIL_POLL_INTERVAL = 50;
+
+    public enum OverflowMode {
+        DROP_OLDEST,
+        AGGREGATE,
+    }
+
+    // Получатель точек (вызывается через frameExecutor, обычно в UI-потоке)
+    public interface Sink {
+        // пачка точек: xValues[i], linesValues[j][i] для i < count. Массивы переиспользуются после возврата.
+        void onPoints(@NotNull long[] xValues, @NotNull int[][] linesValues, int count);
+
+        // лента закончилась (поток закрыт или остановлен - e == null) или прервалась ошибкой
+        void onFeedEnded(@Nullable Exception e);
+    }
+
+    private final @NotNull ChartInputDataMapper.FeedSource source;
+    private final int linesCount;
+    private final int maxBatchSize;
+    private final @NotNull OverflowMode overflowMode;
+    private final @NotNull Sink sink;
+    private final @NotNull Executor frameExecutor;
+
+    private final @NotNull Object lock = new Object();
+    // пополняемая (фоновым потоком) и передаваемая (в Sink) пачки, меняются местами под lock
+    private @NotNull Batch pending;
+    private @NotNull Batch delivering;
+    // флаг: передача пачки поставлена в frameExecutor
+    private boolean deliveryScheduled = false;
+    // лента закончилась (после передачи оставшихся точек вызывается onFeedEnded)
+    private boolean ended = false;
+    private @Nullable Exception endError = null;
+    // поток открыт (source.open вернул управление) и окончание уже поставлено на передачу (stop или поток чтения) -
+    // onFeedEnded вызывается один раз
+    private boolean opened = false;
+    private boolean endPosted = false;
+    // кол-во вытесненных и усреднённых точек (при переполнении буфера)
+    private long droppedCount = 0;
+    private long aggregatedCount = 0;
+
+    private @Nullable Thread thread = null;
+    private volatile @Nullable InputStream stream = null;
+    private volatile boolean stopped = false;
+
+    public ChartFeed(@NotNull ChartInputDataMapper.FeedSource source, int linesCount, int maxBatchSize,
+                     @NotNull OverflowMode overflowMode, @NotNull Sink sink, @NotNull Executor frameExecutor) {
+        if (BuildConfig.DEBUG && (linesCount <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (maxBatchSize <= 0)) throw new AssertionError();
+
+        this.source = source;
+        this.linesCount = linesCount;
+        this.maxBatchSize = maxBatchSize;
+        this.overflowMode = overflowMode;
+        this.sink = sink;
+        this.frameExecutor = frameExecutor;
+
+        pending = new Batch(linesCount, maxBatchSize);
+        delivering = new Batch(linesCount, maxBatchSize);
+    }
+
+    // Запуск чтения ленты в фоновом потоке
+    public void start() {
+        if (BuildConfig.DEBUG && (thread != null)) throw new AssertionError();
+
+        thread = new Thread(readRunnable, "ChartFeed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Остановка чтения: поток закрывается, точки, ещё не переданные в Sink, передаются перед onFeedEnded. Если поток
+    // ещё открывается, открытие прерывается через source.cancel, а onFeedEnded передаётся сразу: interrupt не прерывает
+    // открытие FIFO и подключение к сокету, и cancel может не успеть (см. pipe).
+    public void stop() {
+        stopped = true;
+        source.cancel();
+
+        final InputStream s = stream;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                // поток всё равно больше не читаем
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+
+        final boolean opening;
+        synchronized (lock) {
+            opening = thread != null && !opened && !endPosted;
+            if (opening) {
+                endPosted = true;
+                ended = true;
+                endError = null;
+            }
+        }
+        if (opening) {
+            scheduleDelivery();
+        }
+    }
+
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    public long getAggregatedCount() {
+        synchronized (lock) {
+            return aggregatedCount;
+        }
+    }
+
+    private final @NotNull Runnable readRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Exception error = null;
+            try {
+                final InputStream s = source.open();
+                synchronized (lock) {
+                    opened = true;
+                }
+                stream = s;
+                try {
+                    if (!stopped) {
+                        read(s);
+                    }
+                } finally {
+                    s.close();
+                }
+            } catch (IOException | JSONException e) {
+                // закрытие потока при остановке - не ошибка
+                if (!stopped) {
+                    error = e;
+                }
+            }
+
+            synchronized (lock) {
+                if (endPosted) {
+                    // остановлена во время открытия, окончание уже передано из stop
+                    return;
+                }
+                endPosted = true;
+                ended = true;
+                endError = error;
+            }
+            scheduleDelivery();
+        }
+    };
+
+    private void read(@NotNull InputStream s) throws IOException, JSONException {
+        final ChartInputDataReader reader = new ChartInputDataReader(new InputStreamReader(s, FEED_CHARSET));
+        final long[] values = new long[1 + linesCount];
+
+        while (!stopped && reader.readPoint(values)) {
+            offer(values);
+        }
+    }
+
+    // добавление точки (x, y0, y1, ...) в пополняемую пачку
+    void offer(@NotNull long[] values) {
+        if (BuildConfig.DEBUG && (values.length != 1 + linesCount)) throw new AssertionError();
+
+        synchronized (lock) {
+            final Batch b = pending;
+
+            if (b.count == maxBatchSize) {
+                switch (overflowMode) {
+                    case DROP_OLDEST:
+                        b.dropFirst();
+                        droppedCount++;
+                        b.add(values);
+                        break;
+                    case AGGREGATE:
+                        b.aggregateLast(values);
+                        aggregatedCount++;
+                        break;
+                }
+            } else {
+                b.add(values);
+            }
+        }
+
+        scheduleDelivery();
+    }
+
+    private void scheduleDelivery() {
+        synchronized (lock) {
+            if (deliveryScheduled) {
+                return;
+            }
+            deliveryScheduled = true;
+        }
+
+        frameExecutor.execute(deliverRunnable);
+    }
+
+    private final @NotNull Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final Batch b;
+            final boolean feedEnded;
+            final Exception error;
+            synchronized (lock) {
+                deliveryScheduled = false;
+
+                b = pending;
+                pending = delivering;
+                pending.clear();
+                delivering = b;
+
+                feedEnded = ended;
+                error = endError;
+                ended = false;
+            }
+
+            if (b.count > 0) {
+                // пачка уже не пополняется - выравнивание кольца вне lock, один раз на передачу
+                b.linearize();
+                sink.onPoints(b.xValues, b.linesValues, b.count);
+            }
+            if (feedEnded) {
+                sink.onFeedEnded(error);
+            }
+        }
+    };
+
+    // Пачка точек, хранится кольцом (при DROP_OLDEST вытеснение без сдвига и копирования), перед передачей выравнивается
+    // (см. linearize)
+    static class Batch {
+        final @NotNull long[] xValues;
+        final @NotNull int[][] linesValues;
+        int count = 0;
+        // индекс первой точки (кольцо)
+        int start = 0;
+        // кол-во точек, усреднённых в последней точке, и их суммы по линиям (AGGREGATE)
+        int lastAggregated = 1;
+        final @NotNull long[] lastSums;
+
+        Batch(int linesCount, int capacity) {
+            xValues = new long[capacity];
+            linesValues = new int[linesCount][capacity];
+            lastSums = new long[linesCount];
+        }
+
+        void clear() {
+            count = 0;
+            start = 0;
+            lastAggregated = 1;
+        }
+
+        void add(@NotNull long[] values) {
+            final int p = physical(count);
+            xValues[p] = values[0];
+            for (int j = 0; j < linesValues.length; j++) {
+                lastSums[j] = values[j + 1];
+                linesValues[j][p] = toInt(values[j + 1]);
+            }
+            lastAggregated = 1;
+            count++;
+        }
+
+        void dropFirst() {
+            start = start + 1 < xValues.length ? start + 1 : 0;
+            count--;
+        }
+
+        // усреднение точки values с последней точкой пачки (X берётся от новой точки)
+        void aggregateLast(@NotNull long[] values) {
+            final int p = physical(count - 1);
+            xValues[p] = values[0];
+            lastAggregated++;
+            for (int j = 0; j < linesValues.length; j++) {
+                lastSums[j] += values[j + 1];
+                linesValues[j][p] = toInt(lastSums[j] / lastAggregated);
+            }
+        }
+
+        private int physical(int index) {
+            final int p = start + index;
+            return p < xValues.length ? p : p - xValues.length;
+        }
+
+        // Перенос точек в начало массивов (первая точка - с индекса 0), на месте, без выделения памяти
+        void linearize() {
+            if (start == 0) {
+                return;
+            }
+
+            final int capacity = xValues.length;
+            if (start + count <= capacity) {
+                System.arraycopy(xValues, start, xValues, 0, count);
+                for (int[] lineValues : linesValues) {
+                    System.arraycopy(lineValues, start, lineValues, 0, count);
+                }
+            } else {
+                // кольцо переходит через конец массивов - это только заполненная пачка, поворот тремя разворотами
+                if (BuildConfig.DEBUG && (count != capacity)) throw new AssertionError();
+
+                reverse(xValues, 0, start);
+                reverse(xValues, start, capacity);
+                reverse(xValues, 0, capacity);
+                for (int[] lineValues : linesValues) {
+                    reverse(lineValues, 0, start);
+                    reverse(lineValues, start, capacity);
+                    reverse(lineValues, 0, capacity);
+                }
+            }
+            start = 0;
+        }
+
+        private static void reverse(@NotNull long[] a, int from, int to) {
+            for (int i = from, k = to - 1; i < k; i++, k--) {
+                final long tmp = a[i];
+                a[i] = a[k];
+                a[k] = tmp;
+            }
+        }
+
+        private static void reverse(@NotNull int[] a, int from, int to) {
+            for (int i = from, k = to - 1; i < k; i++, k--) {
+                final int tmp = a[i];
+                a[i] = a[k];
+                a[k] = tmp;
+            }
+        }
+
+        private static int toInt(long value) {
+            return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+        }
+    }
+
+    // Unix domain socket. cancel закрывает сокет, в т.ч. ждущий подключения.
+    public static @NotNull ChartInputDataMapper.FeedSource localSocket(@NotNull final LocalSocketAddress address) {
+        return new ChartInputDataMapper.FeedSource() {
+            private @Nullable LocalSocket socket = null;
+            private boolean cancelled = false;
+
+            @Override
+            public @NotNull InputStream open() throws IOException {
+                final LocalSocket s = new LocalSocket();
+                synchronized (this) {
+                    if (cancelled) {
+                        throw new InterruptedIOException();
+                    }
+                    socket = s;
+                }
+                s.connect(address);
+                return s.getInputStream();
+            }
+
+            @Override
+            public void cancel() {
+                final LocalSocket s;
+                synchronized (this) {
+                    cancelled = true;
+                    s = socket;
+                }
+                if (s != null) {
+                    try {
+                        s.close();
+                    } catch (IOException e) {
+                        // сокет всё равно больше не нужен
+                    }
+                }
+            }
+        };
+    }
+
+    // Именованный канал (FIFO): открытие ждёт пишущую сторону, поток заканчивается при её закрытии. cancel открывает и
+    // сразу закрывает пишущую сторону без ожидания (O_NONBLOCK, API 21+) - ждущее открытие завершается, поток сразу
+    // заканчивается. На API < 21 открытие не прерывается, поток чтения ждёт пишущую сторону (ChartFeed.stop всё равно
+    // передаёт onFeedEnded).
+    public static @NotNull ChartInputDataMapper.FeedSource pipe(@NotNull final File file) {
+        return new ChartInputDataMapper.FeedSource() {
+            private volatile boolean cancelled = false;
+
+            @Override
+            public @NotNull InputStream open() throws IOException {
+                if (cancelled) {
+                    throw new InterruptedIOException();
+                }
+                return new FileInputStream(file);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    releasePipeReader(file);
+                }
+            }
+        };
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void releasePipeReader(@NotNull File file) {
+        try {
+            final FileDescriptor fd = Os.open(file.getPath(), OsConstants.O_WRONLY | OsConstants.O_NONBLOCK, 0);
+            Os.close(fd);
+        } catch (ErrnoException e) {
+            // ENXIO - читающая сторона не открыта, прерывать нечего
+        }
+    }
+
+    // Дописываемый файл (как tail -f): читается с начала, по достижении конца ждёт новых данных. Поток заканчивается
+    // только остановкой ленты.
+    public static @NotNull ChartInputDataMapper.FeedSource tailFile(@NotNull final File file) {
+        return new ChartInputDataMapper.FeedSource() {
+            @Override
+            public @NotNull InputStream open() throws IOException {
+                return new TailInputStream(file, TAIL_POLL_INTERVAL);
+            }
+
+            @Override
+            public void cancel() {
+                // открытие не ждёт
+            }
+        };
+    }
+
+    private static class TailInputStream extends InputStream {
+        private final @NotNull RandomAccessFile file;
+        private final long pollInterval;
+        private volatile boolean closed = false;
+
+        TailInputStream(@NotNull File file, long pollInterval) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            this.pollInterval = pollInterval;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            while (!closed) {
+                final int n = file.read(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            file.close();
+        }
+    }
+
+    // Выполнение в UI-потоке на ближайшем кадре (Choreographer), из любого потока
+    public static class VsyncExecutor implements Executor {
+        private final @NotNull Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NotNull final Runnable command) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                        @Override
+                        public void doFrame(long frameTimeNanos) {
+                            command.run();
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,1399 @@
+package com.github.alunegov.tchart;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Геометрия графика без зависимостей от Android: диапазоны индексов и значений, масштабы, отрезки линий (LINE),
+// многоугольники накопленных линий (BAR/AREA) и курсора (BAR), метки осей - всё в пикселях, в массивах float. Заполнение
+// Path/Canvas по этим буферам - в ChartDrawData. Может строиться и проверяться на JVM без эмулятора.
+public class ChartGeometry {
+    // курсор не задан
+    public static final int NO_CURSOR = -1;
+
+    // исходные данные графика
+    private ChartInputData inputData;
+    private ChartInputDataStats inputDataStats;
+    // значения inputData (массивы или хранилище вне кучи)
+    private final @NotNull ChartColumns columns;
+    // Кол-во линий оцифровки осей
+    private int axisLineCount;
+    // Преобразователь значения в текст для оцифровки оси X
+    private AxisTextConverter xAxisTextCnv;
+    // Преобразователь значения в текст для оцифровки оси Y
+    private AxisTextConverter yAxisTextCnv;
+    //
+    private boolean mYRangeEnlarging;
+    // процентили значений (доли от 0 до 1), по которым определяется диапазон Y (только для LINE). 0 и 1 - мин/макс.
+    private float yRangeLowPercentile = 0, yRangeHighPercentile = 1;
+    // режим нижней границы Y
+    private YMinMode yMinMode;
+    private DrawLinesMode drawLinesMode;
+    // область отображения графика, пиксели
+    private float areaLeft, areaTop, areaRight, areaBottom;
+    // флаг: область отображения графика задана
+    private boolean areaSet;
+    // границы отображаемого диапазона по X, значение (double - см. XTransform)
+    private double xLeftValue, xRightValue;
+    // преобразование X в пиксели без потери точности на больших значениях
+    private final @NotNull XTransform xTransform = new XTransform();
+    // границы отображаемого диапазона по X, индекс в inputData.XValues
+    private int xLeftIndex, xRightIndex;
+    // флаг: границы отображаемого диапазона по X заданы
+    private boolean xLeftSet, xRightSet;
+    // минимальное и максимальное значения Y по отображаемому диапазону X по всем сигналам (с учётом yMinMode)
+    private int yLeftMin, yLeftMax, yRightMin, yRightMax;
+    // коэффициент пересчета значений в пиксели
+    private float scaleX, scaleYLeft, scaleYRight;
+    // смещения пересчета в пиксели: пиксель X = XTransform.toLocal(x) * scaleX + xTranslate, пиксель Y = yTranslate -
+    // y * scaleY (замена матриц android.graphics.Matrix)
+    private float xTranslate, yLeftTranslate, yRightTranslate;
+    // отрезки линий для canvas.drawLines (только для LINE)
+    private float[][] linesLines;
+    // кол-во заполненных значений в linesLines для каждой линии
+    private int[] linesLinesCount;
+    // замкнутые многоугольники накопленных линий (только для BAR/AREA): пары x, y вершин
+    private float[][] linesPolygons;
+    // кол-во заполненных значений в linesPolygons для каждой линии (0 - линия не видима)
+    private int[] linesPolygonsCount;
+    // предыдущее обсчитанное значение курсора - запоминается в updateCursorPaths, используется в updateLines_BAR_Polygons
+    private int prevCursorIndex = NO_CURSOR;
+    // прямоугольник столбика с курсором в режиме BAR - рисуется поверх области сигналов, задаваемой linesPolygons
+    private float[][] cursorPolygons;
+    // кол-во заполненных значений в cursorPolygons для каждой линии (0 - нет курсора)
+    private int[] cursorPolygonsCount;
+    // Метки для оцифровки осей
+    private List<AxisMark> xAxisMarks, yAxisMarks;
+
+    private float[] mTmpStackedSum;
+    // накопительные суммы линий и коэф. видимости линий для PointMajorChartColumns (см. stackLinesPointMajor)
+    private float[][] mTmpLinesStackedSum;
+    private float[] mTmpLinesK;
+
+    // поиск индексов в inputData.XValues по значению X
+    private final @NotNull XIndexLocator xIndexLocator;
+
+    // прореживание точек линий (только для LINE, по умолчанию - пирамида мин/макс) и буфер индексов выводимых точек
+    private LineSampler lineSampler;
+    private int[] sampledIndexes;
+
+    // состояние видимости линий, по которому строится геометрия. Своя копия, а не inputDataStats: кадр может строиться
+    // в фоновом потоке (см. ChartGeometryEngine), пока UI-поток меняет видимость в статистике.
+    private final @NotNull int[] linesVisibilityState;
+    // сумма линий по linesVisibilityState (только для AREA)
+    private StackedSumIndex stackedSumIndex;
+    // флаг: строить геометрию (линии, пути курсора, метки осей). Выключается, если геометрию строит ChartGeometryEngine,
+    // а этот объект хранит только состояние (диапазоны, область)
+    private boolean geometryUpdating = true;
+    // максимальное кол-во точек: для данных с дописыванием (RingChartColumns) - ёмкость буфера, под неё выделяются
+    // массивы геометрии
+    private final int maxPointsCount;
+    // данные с дописыванием: кол-во добавленных точек и кол-во точек, учтённые в диапазоне X (см. onPointsAppended)
+    private long appliedAppendedCount;
+    private int appliedPointsCount;
+    // флаг: последнее обновление линий - дописывание отрезков новых точек (см. onPointsAppended)
+    private boolean linesTailAppended;
+    // замеры фаз построения (null - не ведутся)
+    private @Nullable ChartProfiler profiler;
+
+    public ChartGeometry(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
+        this.inputData = inputData;
+        this.inputDataStats = inputDataStats;
+        columns = inputData.getColumns();
+
+        maxPointsCount = (columns instanceof RingChartColumns) ? ((RingChartColumns) columns).getCapacity()
+                : columns.getPointsCount();
+        applyAppendedPoints();
+
+        xIndexLocator = new XIndexLocator(columns);
+
+        linesVisibilityState = inputDataStats.getLinesVisibilityState().clone();
+        if (inputData.linesType == ChartInputData.LineType.AREA) {
+            stackedSumIndex = new StackedSumIndex(inputData, linesVisibilityState);
+        }
+
+        switch (inputData.linesType) {
+            case LINE:
+                yMinMode = YMinMode.RANGE;
+                break;
+            case BAR:
+            case AREA:
+                yMinMode = YMinMode.ZERO;
+                break;
+        }
+
+        switch (inputData.linesType) {
+            case LINE:
+                drawLinesMode = DrawLinesMode.LINES;
+                break;
+            case BAR:
+            case AREA:
+                drawLinesMode = DrawLinesMode.PATH_REVERSE;
+                break;
+        }
+
+        final int linesCount = columns.getLinesCount();
+
+        // память выделяется только под буферы режима отрисовки: отрезки для LINE, многоугольники для BAR/AREA
+        final int lineLinesSize, linePolygonSize;
+        switch (inputData.linesType) {
+            case LINE:
+                lineLinesSize = (maxPointsCount - 1) * 4;
+                linePolygonSize = 0;
+                break;
+            case BAR:
+                // две вершины на точку (ступенька) и две на основание
+                lineLinesSize = 0;
+                linePolygonSize = (maxPointsCount * 2 + 2) * 2;
+                break;
+            default:
+                // вершина на точку и две на основание
+                lineLinesSize = 0;
+                linePolygonSize = (maxPointsCount + 2) * 2;
+                break;
+        }
+
+        linesLines = new float[linesCount][lineLinesSize];
+        linesLinesCount = new int[linesCount];
+
+        linesPolygons = new float[linesCount][linePolygonSize];
+        linesPolygonsCount = new int[linesCount];
+
+        cursorPolygons = new float[linesCount][8];
+        cursorPolygonsCount = new int[linesCount];
+
+        if (inputData.linesType == ChartInputData.LineType.LINE) {
+            // пирамида прореживания для дописываемых данных не строится
+            lineSampler = !inputData.isLive() ? inputData.getLodPyramid() : null;
+            sampledIndexes = new int[maxPointsCount];
+        }
+
+        mYRangeEnlarging = false;
+    }
+
+    public void enableMarksUpdating(int axisLineCount, @NotNull AxisTextConverter xAxisTextCnv, @NotNull AxisTextConverter yAxisTextCnv) {
+        this.axisLineCount = axisLineCount;
+        this.xAxisTextCnv = xAxisTextCnv;
+        this.yAxisTextCnv = yAxisTextCnv;
+
+        xAxisMarks = new ArrayList<>();
+        yAxisMarks = new ArrayList<>();
+    }
+
+    // Замена прореживания точек линий (только для LINE). null - выводятся все точки диапазона.
+    public void setLineSampler(@Nullable LineSampler lineSampler) {
+        this.lineSampler = lineSampler;
+
+        updateLinesAndAxis();
+    }
+
+    public void setProfiler(@Nullable ChartProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public @Nullable ChartProfiler getProfiler() {
+        return profiler;
+    }
+
+    // значения inputData (для данных с дописыванием - буфер, состояние которого снимает ChartGeometryEngine)
+    public @NotNull ChartColumns getColumns() {
+        return columns;
+    }
+
+    public void setGeometryUpdating(boolean geometryUpdating) {
+        this.geometryUpdating = geometryUpdating;
+    }
+
+    public void enableYRangeEnlarging() {
+        mYRangeEnlarging = true;
+    }
+
+    // Устойчивый к выбросам диапазон Y: по процентилям low и high (доли от 0 до 1) значений видимых линий в отображаемом
+    // диапазоне X вместо мин/макс, например 0.01 и 0.99. Только для LINE.
+    public void setYRangePercentiles(float low, float high) {
+        if (BuildConfig.DEBUG && ((low < 0) || (low > high) || (high > 1))) throw new AssertionError();
+
+        yRangeLowPercentile = low;
+        yRangeHighPercentile = high;
+    }
+
+    public DrawLinesMode getDrawLinesMode() {
+        return drawLinesMode;
+    }
+
+    // область отображения графика: left, top, right, bottom
+    public void getArea(@NotNull float[] area) {
+        if (BuildConfig.DEBUG && (area.length != 4)) throw new AssertionError();
+
+        area[0] = areaLeft;
+        area[1] = areaTop;
+        area[2] = areaRight;
+        area[3] = areaBottom;
+    }
+
+    public void setArea(float left, float top, float right, float bottom) {
+        setAreaNoUpdate(left, top, right, bottom);
+
+        updateYRange();
+        updateScalesAndTransform();
+        updateLinesAndAxis();
+    }
+
+    private void setAreaNoUpdate(float left, float top, float right, float bottom) {
+        areaLeft = left;
+        areaTop = top;
+        areaRight = right;
+        areaBottom = bottom;
+        areaSet = true;
+    }
+
+    private float getAreaWidth() {
+        return areaRight - areaLeft;
+    }
+
+    private float getAreaHeight() {
+        return areaBottom - areaTop;
+    }
+
+    // отображаемый диапазон по X, фактические значения. М.б. не из XValues
+    public void getXRange(@NotNull double[] range) {
+        if (BuildConfig.DEBUG && (range.length != 2)) throw new AssertionError();
+
+        range[0] = xLeftValue;
+        range[1] = xRightValue;
+    }
+
+    // отображаемый диапазон по Х, индексы в XValues. М.б. -1/+1, чтобы "охватить" фактические значения
+    // (см. findXLeftIndex и findXRightIndex)
+    public void getXRange(@NotNull int[] range) {
+        if (BuildConfig.DEBUG && (range.length != 2)) throw new AssertionError();
+
+        range[0] = xLeftIndex;
+        range[1] = xRightIndex;
+    }
+
+    // отображаемый диапазон по Х, значения в XValues
+    public void getXRange(@NotNull long[] range) {
+        if (BuildConfig.DEBUG && (range.length != 2)) throw new AssertionError();
+
+        range[0] = columns.getX(xLeftIndex) < xLeftValue ? columns.getX(xLeftIndex + 1) : columns.getX(xLeftIndex);
+        range[1] = columns.getX(xRightIndex) > xRightValue ? columns.getX(xRightIndex - 1) : columns.getX(xRightIndex);
+    }
+
+    // отображаемый диапазон по Х, индексы точек внутри диапазона (те же точки, что и у getXRange(long[]))
+    public void getXRangeInner(@NotNull int[] range) {
+        if (BuildConfig.DEBUG && (range.length != 2)) throw new AssertionError();
+
+        range[0] = columns.getX(xLeftIndex) < xLeftValue ? xLeftIndex + 1 : xLeftIndex;
+        range[1] = columns.getX(xRightIndex) > xRightValue ? xRightIndex - 1 : xRightIndex;
+    }
+
+    public void setXRange(double xLeftValue, double xRightValue, boolean doUpdate) {
+        this.xLeftValue = xLeftValue;
+        xLeftIndex = findXLeftIndex(xLeftValue);
+        xLeftSet = true;
+
+        this.xRightValue = xRightValue;
+        xRightIndex = findXRightIndex(xRightValue, xLeftIndex);
+        xRightSet = true;
+
+        // индексы найдены по текущим данным - добавленные точки учтены
+        applyAppendedPoints();
+
+        if (doUpdate) {
+            final ChartProfiler profiler = this.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_SET_X_RANGE) : 0;
+
+            updateYRange();
+            updateScalesAndTransform();
+            updateLinesAndAxis();
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_SET_X_RANGE, startTime);
+            }
+        }
+    }
+
+    private void applyAppendedPoints() {
+        if (columns instanceof RingChartColumns) {
+            appliedAppendedCount = ((RingChartColumns) columns).getAppendedCount();
+        }
+        appliedPointsCount = columns.getPointsCount();
+    }
+
+    // Обновление после добавления точек в данные с дописыванием (см. RingChartColumns), диапазон X не меняется.
+    // Геометрия перестраивается, только если изменилась видимая часть: точки правее диапазона X или вытесненные левее
+    // него перестроения не требуют. Для LINE при неизменном диапазоне Y к линиям добавляются только отрезки новых точек
+    // (см. isLinesTailAppended). Результат - флаг: видимая часть изменилась.
+    public boolean onPointsAppended() {
+        return onPointsAppended(true);
+    }
+
+    // doUpdateYRange - пересчёт диапазона Y по статистике (false - диапазон Y задан извне, см. setFrame)
+    private boolean onPointsAppended(boolean doUpdateYRange) {
+        if (!(columns instanceof RingChartColumns)) {
+            return false;
+        }
+
+        final long appendedCount = ((RingChartColumns) columns).getAppendedCount();
+        if (appendedCount == appliedAppendedCount) {
+            return false;
+        }
+
+        final int pointsCount = columns.getPointsCount();
+        // вытесненные точки сдвигают логические индексы
+        final int droppedCount = (int) Math.min(appendedCount - appliedAppendedCount - (pointsCount - appliedPointsCount),
+                Integer.MAX_VALUE);
+        appliedAppendedCount = appendedCount;
+        appliedPointsCount = pointsCount;
+
+        if (!xLeftSet || !xRightSet) {
+            return false;
+        }
+
+        final int prevXLeftIndex = xLeftIndex - droppedCount;
+        final int prevXRightIndex = xRightIndex - droppedCount;
+
+        xLeftIndex = findXLeftIndex(xLeftValue);
+        xRightIndex = findXRightIndex(xRightValue, xLeftIndex);
+
+        if (prevXLeftIndex == xLeftIndex && prevXRightIndex == xRightIndex) {
+            return false;
+        }
+
+        boolean yRangeChanged = false;
+        if (doUpdateYRange) {
+            final int prevYLeftMin = yLeftMin, prevYLeftMax = yLeftMax, prevYRightMin = yRightMin, prevYRightMax = yRightMax;
+            updateYRange();
+
+            yRangeChanged = (prevYLeftMin != yLeftMin) || (prevYLeftMax != yLeftMax) || (prevYRightMin != yRightMin)
+                    || (prevYRightMax != yRightMax);
+        }
+
+        if (yRangeChanged || !isLinesTailAppendable(prevXLeftIndex, prevXRightIndex) || !appendLinesTail(prevXRightIndex)) {
+            updateScalesAndTransform();
+            updateLinesAndAxis();
+        }
+
+        return true;
+    }
+
+    // Можно ли дописать к линиям только отрезки новых точек: LINE, масштабы прежние, новые точки справа от прежних
+    // видимых. Начало диапазона может быть левее данных (предпросмотр с запасом, см. PreviewChartView) - тогда отрезки
+    // вытесненных точек остаются до полного перестроения.
+    private boolean isLinesTailAppendable(int prevXLeftIndex, int prevXRightIndex) {
+        if ((drawLinesMode != DrawLinesMode.LINES) || !geometryUpdating || !areaSet) {
+            return false;
+        }
+
+        final boolean xLeftKept = (prevXLeftIndex == xLeftIndex)
+                || ((xLeftIndex == 0) && (prevXLeftIndex < 0) && (xLeftValue < columns.getX(0)));
+
+        return xLeftKept && (prevXRightIndex >= xLeftIndex) && (prevXRightIndex < xRightIndex);
+    }
+
+    // Добавление к линиям отрезков от точки fromIndex до xRightIndex. Прореживание - по ширине новых точек в пикселях,
+    // первая и последняя точки остаются, поэтому отрезки продолжают прежние. Результат - false, если отрезки не
+    // помещаются в буферы (нужно полное перестроение).
+    private boolean appendLinesTail(int fromIndex) {
+        final int tailLinesSize = (xRightIndex - fromIndex) * 4;
+        for (int j = 0; j < linesLines.length; j++) {
+            if ((linesVisibilityState[j] != ChartInputDataStats.VISIBILITY_STATE_OFF)
+                    && (linesLinesCount[j] + tailLinesSize > linesLines[j].length)) {
+                return false;
+            }
+        }
+
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+        final float tailWidth = (xTransform.toLocal(columns.getX(xRightIndex)) - xTransform.toLocal(columns.getX(fromIndex))) * scaleX;
+
+        for (int j = 0; j < linesLines.length; j++) {
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            final float[] lineLines = linesLines[j];
+            final float scaleY = linesRightAlign[j] ? scaleYRight : scaleYLeft;
+            final float yTranslate = linesRightAlign[j] ? yRightTranslate : yLeftTranslate;
+
+            final int sampledPtsCount = (lineSampler != null)
+                    ? lineSampler.sample(inputData, j, fromIndex, xRightIndex, tailWidth, sampledIndexes)
+                    : LineSampler.NO_SAMPLING;
+
+            int k = linesLinesCount[j];
+            if (sampledPtsCount == LineSampler.NO_SAMPLING) {
+                for (int i = fromIndex; i < xRightIndex; i++) {
+                    k = putLineSegment(lineLines, k, j, i, i + 1, scaleY, yTranslate);
+                }
+            } else {
+                for (int n = 0; n < sampledPtsCount - 1; n++) {
+                    k = putLineSegment(lineLines, k, j, sampledIndexes[n], sampledIndexes[n + 1], scaleY, yTranslate);
+                }
+            }
+
+            linesLinesCount[j] = k;
+        }
+
+        linesTailAppended = true;
+
+        return true;
+    }
+
+    // отрезок линии lineIndex между точками i1 и i2 с позиции k, результат - позиция за ним
+    private int putLineSegment(@NotNull float[] lineLines, int k, int lineIndex, int i1, int i2, float scaleY, float yTranslate) {
+        lineLines[k] = xTransform.toLocal(columns.getX(i1)) * scaleX + xTranslate;
+        lineLines[k + 1] = yTranslate - columns.getY(lineIndex, i1) * scaleY;
+        lineLines[k + 2] = xTransform.toLocal(columns.getX(i2)) * scaleX + xTranslate;
+        lineLines[k + 3] = yTranslate - columns.getY(lineIndex, i2) * scaleY;
+        return k + 4;
+    }
+
+    // Флаг: последнее обновление линий - дописывание отрезков новых точек (см. onPointsAppended), отрезки линий до
+    // прежнего кол-ва getLinesLinesCount не менялись
+    public boolean isLinesTailAppended() {
+        return linesTailAppended;
+    }
+
+    public @NotNull int[] getLinesVisibilityState() {
+        return linesVisibilityState;
+    }
+
+    // копирование состояния видимости линий (без пересчёта диапазонов и геометрии)
+    public void setLinesVisibilityState(@NotNull int[] linesVisibilityState) {
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != this.linesVisibilityState.length)) throw new AssertionError();
+
+        System.arraycopy(linesVisibilityState, 0, this.linesVisibilityState, 0, linesVisibilityState.length);
+
+        if (stackedSumIndex != null) {
+            stackedSumIndex.update(this.linesVisibilityState);
+        }
+    }
+
+    // количество видимых линий (с не нулевым состоянием) с привязкой к оси
+    private int getVisibleLinesCount(boolean rightAlign) {
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+
+        int visibleLinesCount = 0;
+        for (int j = 0; j < linesVisibilityState.length; j++) {
+            if (linesRightAlign[j] == rightAlign && linesVisibilityState[j] != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                visibleLinesCount++;
+            }
+        }
+
+        return visibleLinesCount;
+    }
+
+    public void updateLineVisibility(boolean doUpdate) {
+        setLinesVisibilityState(inputDataStats.getLinesVisibilityState());
+
+        if (doUpdate) {
+            final ChartProfiler profiler = this.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_LINE_VISIBILITY) : 0;
+
+            updateYRange();
+            updateScalesAndTransform();
+            updateLinesAndAxis();
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_LINE_VISIBILITY, startTime);
+            }
+        }
+    }
+
+    public void getYRange(@NotNull int[] range) {
+        if (BuildConfig.DEBUG && (range.length != 4)) throw new AssertionError();
+
+        range[0] = yLeftMin;
+        range[1] = yLeftMax;
+        range[2] = yRightMin;
+        range[3] = yRightMax;
+    }
+
+    public void setYRange(int yLeftMin, int yLeftMax, int yRightMin, int yRightMax) {
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_SET_Y_RANGE) : 0;
+
+        // оставляем мин/макс последней видимой линии
+        if (ChartInputDataStats.isYMinMaxDetected(yLeftMin, yLeftMax)) {
+            this.yLeftMin = yLeftMin;
+            this.yLeftMax = yLeftMax;
+        }
+        if (ChartInputDataStats.isYMinMaxDetected(yRightMin, yRightMax)) {
+            this.yRightMin = yRightMin;
+            this.yRightMax = yRightMax;
+        }
+
+        updateScalesAndTransform();
+        updateLinesAndAxis();
+
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_SET_Y_RANGE, startTime);
+        }
+    }
+
+    // Применение состояния кадра целиком (для ChartGeometryEngine): видимость линий, область (left, top, right, bottom),
+    // диапазоны X и Y и курсор. Диапазон Y не пересчитывается, а берётся из yRange - статистика при этом не используется.
+    // Если состояние не изменилось, а в данные добавлены точки, обрабатываются только они (см. onPointsAppended).
+    public void setFrame(@NotNull float[] area, double xLeftValue, double xRightValue, @NotNull int[] yRange,
+                         @NotNull int[] linesVisibilityState, int cursorIndex) {
+        if (BuildConfig.DEBUG && (area.length != 4)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (yRange.length != 4)) throw new AssertionError();
+
+        if (isFrameApplied(area, xLeftValue, xRightValue, yRange, linesVisibilityState, cursorIndex)) {
+            if (onPointsAppended(false)) {
+                updateCursorPaths(cursorIndex);
+            }
+            return;
+        }
+
+        setLinesVisibilityState(linesVisibilityState);
+
+        setAreaNoUpdate(area[0], area[1], area[2], area[3]);
+
+        setXRange(xLeftValue, xRightValue, false);
+
+        prevCursorIndex = cursorIndex;
+
+        setYRange(yRange[0], yRange[1], yRange[2], yRange[3]);
+
+        updateCursorPaths(cursorIndex);
+    }
+
+    // состояние совпадает с тем, что задал бы setFrame с этими параметрами
+    private boolean isFrameApplied(@NotNull float[] area, double xLeftValue, double xRightValue, @NotNull int[] yRange,
+                                   @NotNull int[] linesVisibilityState, int cursorIndex) {
+        if (!areaSet || !xLeftSet || !xRightSet) {
+            return false;
+        }
+
+        return (area[0] == areaLeft) && (area[1] == areaTop) && (area[2] == areaRight) && (area[3] == areaBottom)
+                && (xLeftValue == this.xLeftValue) && (xRightValue == this.xRightValue)
+                && isYRangeApplied(yRange[0], yRange[1], yLeftMin, yLeftMax)
+                && isYRangeApplied(yRange[2], yRange[3], yRightMin, yRightMax)
+                && Arrays.equals(linesVisibilityState, this.linesVisibilityState) && (cursorIndex == prevCursorIndex);
+    }
+
+    // не определённый диапазон Y не применяется (см. setYRange)
+    private static boolean isYRangeApplied(int min, int max, int appliedMin, int appliedMax) {
+        return !ChartInputDataStats.isYMinMaxDetected(min, max) || ((min == appliedMin) && (max == appliedMax));
+    }
+
+    // курсор, по которому построены пути курсора (см. updateCursorPaths)
+    public int getCursorIndex() {
+        return prevCursorIndex;
+    }
+
+    public void updateCursorPaths(int cursorIndex) {
+        prevCursorIndex = cursorIndex;
+
+        if (!geometryUpdating) {
+            return;
+        }
+
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_CURSOR) : 0;
+
+        updateCursorPolygons(cursorIndex);
+
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_CURSOR, startTime);
+        }
+    }
+
+    // по аналогии с updateLines_BAR_Polygons
+    private void updateCursorPolygons(int cursorIndex) {
+        if (cursorIndex == NO_CURSOR || inputData.linesType != ChartInputData.LineType.BAR) {
+            for (int j = 0; j < cursorPolygonsCount.length; j++) {
+                cursorPolygonsCount[j] = 0;
+            }
+            onCursorUpdated();
+            return;
+        }
+
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+
+        float tmpStackedSum = 0;
+
+        final int ptsCount = xRightIndex - xLeftIndex + 1;
+        final float rectWidth = (float )(columns.getX(xRightIndex) - columns.getX(xLeftIndex)) / ptsCount;
+        final float halfRectWidth = rectWidth / 2f;
+
+        float prevMin = yLeftMin;
+
+        for (int j = 0; j < cursorPolygons.length; j++) {
+            if (BuildConfig.DEBUG && linesRightAlign[j]) throw new AssertionError();
+
+            cursorPolygonsCount[j] = 0;
+
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            final float lineK = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+
+            tmpStackedSum += columns.getY(j, cursorIndex) * lineK;
+
+            cursorPolygonsCount[j] = putLeftRect(
+                    cursorPolygons[j],
+                    xTransform.toLocal(columns.getX(cursorIndex)) - halfRectWidth,
+                    tmpStackedSum,
+                    xTransform.toLocal(columns.getX(cursorIndex)) + halfRectWidth,
+                    prevMin
+            );
+
+            prevMin = tmpStackedSum;
+        }
+
+        onCursorUpdated();
+    }
+
+    private final @NotNull int[] tmpYLeftMinMax = new int[2];
+    private final @NotNull int[] tmpYRightMinMax = new int[2];
+
+    private void calcYRangeAt(int xLeftIndex, int xRightIndex, @NotNull int[] linesVisibilityState, @NotNull int[] range) {
+        if (BuildConfig.DEBUG && (range.length != 4)) throw new AssertionError();
+
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_STATS_QUERY) : 0;
+
+        if (yRangeLowPercentile != 0 || yRangeHighPercentile != 1) {
+            inputDataStats.findYPercentiles(xLeftIndex, xRightIndex, false, linesVisibilityState, yRangeLowPercentile,
+                    yRangeHighPercentile, tmpYLeftMinMax);
+            inputDataStats.findYPercentiles(xLeftIndex, xRightIndex, true, linesVisibilityState, yRangeLowPercentile,
+                    yRangeHighPercentile, tmpYRightMinMax);
+        } else {
+            inputDataStats.findYMinMax(xLeftIndex, xRightIndex, false, linesVisibilityState, tmpYLeftMinMax);
+            inputDataStats.findYMinMax(xLeftIndex, xRightIndex, true, linesVisibilityState, tmpYRightMinMax);
+        }
+
+        switch (yMinMode) {
+            case RANGE:
+                range[0] = tmpYLeftMinMax[0];
+                range[2] = tmpYRightMinMax[0];
+                break;
+            case ZERO:
+                if (BuildConfig.DEBUG && (tmpYLeftMinMax[0] < 0)) throw new AssertionError();
+                range[0] = 0;
+                range[2] = 0;
+                break;
+            default:
+                range[0] = 0;
+                range[2] = 0;
+        }
+
+        range[1] = tmpYLeftMinMax[1];
+        range[3] = tmpYRightMinMax[1];
+
+        // добавляем к минимуму/максимуму часть размаха, чтобы снизу/сверху было немного места (так на ref, была видна пометка точки)
+        // TODO: добавлять к минимуму не просто "часть размаха", а так, чтобы первая линия оцифровки была в "нулевом пикселе"
+        if (mYRangeEnlarging && (ChartInputDataStats.isYMinMaxDetected(tmpYLeftMinMax) || ChartInputDataStats.isYMinMaxDetected(tmpYRightMinMax))) {
+            if (ChartInputDataStats.isYMinMaxDetected(tmpYLeftMinMax)) {
+                final int yLeftDelta = Math.round(0.06f * (range[1] - range[0]));
+                if (range[0] != 0) {
+                    range[0] -= yLeftDelta;
+                }
+                range[1] += yLeftDelta;
+            }
+
+            if (ChartInputDataStats.isYMinMaxDetected(tmpYRightMinMax)) {
+                final int yRightDelta = Math.round(0.06f * (range[3] - range[2]));
+                if (range[2] != 0) {
+                    range[2] -= yRightDelta;
+                }
+                range[3] += yRightDelta;
+            }
+        }
+
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_STATS_QUERY, startTime);
+        }
+    }
+
+    public void calcYRangeAt(double xLeftValue, double xRightValue, @NotNull int[] linesVisibilityState, @NotNull int[] range) {
+        final int xLeftIndexAt = findXLeftIndex(xLeftValue);
+        final int xRightIndexAt = findXRightIndex(xRightValue, xLeftIndexAt);
+
+        calcYRangeAt(xLeftIndexAt, xRightIndexAt, linesVisibilityState, range);
+    }
+
+    public @NotNull float[][] getLinesLines() {
+        return linesLines;
+    }
+
+    // кол-во значений для canvas.drawLines в каждом из getLinesLines
+    public @NotNull int[] getLinesLinesCount() {
+        return linesLinesCount;
+    }
+
+    // многоугольники линий BAR/AREA (пары x, y вершин, замыкаются на первую)
+    public @NotNull float[][] getLinesPolygons() {
+        return linesPolygons;
+    }
+
+    // кол-во значений в каждом из getLinesPolygons
+    public @NotNull int[] getLinesPolygonsCount() {
+        return linesPolygonsCount;
+    }
+
+    // прямоугольники столбика с курсором BAR (4 вершины)
+    public @NotNull float[][] getCursorPolygons() {
+        return cursorPolygons;
+    }
+
+    // кол-во значений в каждом из getCursorPolygons (0 - нет курсора)
+    public @NotNull int[] getCursorPolygonsCount() {
+        return cursorPolygonsCount;
+    }
+
+    public @Nullable List<AxisMark> getXAxisMarks() {
+        return xAxisMarks;
+    }
+
+    public @Nullable List<AxisMark> getYAxisMarks() {
+        return yAxisMarks;
+    }
+
+    // коэффициенты пересчета в пиксели для левой оси: масштаб и смещение по X (для локальных значений, см.
+    // XTransform.toLocal), масштаб и смещение по Y
+    public void getLeftTransform(@NotNull float[] transform) {
+        if (BuildConfig.DEBUG && (transform.length != 4)) throw new AssertionError();
+
+        transform[0] = scaleX;
+        transform[1] = xTranslate;
+        transform[2] = -scaleYLeft;
+        transform[3] = yLeftTranslate;
+    }
+
+    // Вызывается после построения линий (updateLines) - для заполнения платформенных объектов по буферам геометрии
+    protected void onLinesUpdated() {
+    }
+
+    // Вызывается после построения прямоугольников курсора
+    protected void onCursorUpdated() {
+    }
+
+    private final @NotNull int[] tmpYRange = new int[4];
+
+    private void updateYRange() {
+        calcYRangeAt(xLeftIndex, xRightIndex, linesVisibilityState, tmpYRange);
+
+        // оставляем мин/макс последней видимой линии
+        if (ChartInputDataStats.isYMinMaxDetected(tmpYRange[0], tmpYRange[1])) {
+            yLeftMin = tmpYRange[0];
+            yLeftMax = tmpYRange[1];
+        }
+        if (ChartInputDataStats.isYMinMaxDetected(tmpYRange[2], tmpYRange[3])) {
+            yRightMin = tmpYRange[2];
+            yRightMax = tmpYRange[3];
+        }
+    }
+
+    private void updateScalesAndTransform() {
+        xTransform.setArea(areaLeft, getAreaWidth());
+        xTransform.setRange(xLeftValue, xRightValue);
+
+        scaleX = (float) xTransform.getScale();
+        scaleYLeft = getAreaHeight() / (float) Math.abs(yLeftMax - yLeftMin);
+        scaleYRight = getAreaHeight() / (float) Math.abs(yRightMax - yRightMin);
+
+        // пересчет работает с локальными значениями X (см. XTransform.toLocal)
+        xTranslate = xTransform.getMatrixTranslate();
+
+        yLeftTranslate = areaBottom/* - y * scaleYLeft*/ + yLeftMin * scaleYLeft;
+        yRightTranslate = areaBottom/* - y * scaleYRight*/ + yRightMin * scaleYRight;
+    }
+
+    private void updateLinesAndAxis() {
+        if (!geometryUpdating) {
+            return;
+        }
+        if (!areaSet) {
+            return;
+        }
+        if (!xLeftSet || !xRightSet) {
+            return;
+        }
+
+        updateLines();
+
+        updateAxisMarks();
+    }
+
+    private void updateLines() {
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_GEOMETRY) : 0;
+
+        linesTailAppended = false;
+
+        switch (inputData.linesType) {
+            case LINE:
+                updateLines_LINE_Lines();
+                break;
+
+            case BAR:
+                updateLines_BAR_Polygons();
+                break;
+
+            case AREA:
+                updateLines_AREA_Polygons();
+                break;
+        }
+
+        onLinesUpdated();
+
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_GEOMETRY, startTime);
+            profiler.count(ChartProfiler.COUNTER_POINTS_EMITTED, getEmittedPointsCount());
+        }
+    }
+
+    // кол-во точек (вершин) в буферах линий
+    private int getEmittedPointsCount() {
+        final int[] counts = (drawLinesMode == DrawLinesMode.LINES) ? linesLinesCount : linesPolygonsCount;
+
+        int res = 0;
+        for (int count : counts) {
+            res += count / 2;
+        }
+        return res;
+    }
+
+    private void updateLines_LINE_Lines() {
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+
+        for (int j = 0; j < linesLines.length; j++) {
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            final float[] lineLines = linesLines[j];
+            final float scaleY = linesRightAlign[j] ? scaleYRight : scaleYLeft;
+            final float yTranslate = linesRightAlign[j] ? yRightTranslate : yLeftTranslate;
+
+            // при большом кол-ве точек на пиксель выводим прореженные точки
+            final int sampledPtsCount = (lineSampler != null)
+                    ? lineSampler.sample(inputData, j, xLeftIndex, xRightIndex, getAreaWidth(), sampledIndexes)
+                    : LineSampler.NO_SAMPLING;
+
+            final int linePtsCount;
+            int k = 0;
+
+            if (sampledPtsCount == LineSampler.NO_SAMPLING) {
+                linePtsCount = (xRightIndex - xLeftIndex) << 1;
+
+                lineLines[k] = xTransform.toLocal(columns.getX(xLeftIndex)) * scaleX + xTranslate;
+                lineLines[k + 1] = yTranslate - columns.getY(j, xLeftIndex) * scaleY;
+                k += 2;
+                for (int i = xLeftIndex + 1; i < xRightIndex; i++) {
+                    lineLines[k] = xTransform.toLocal(columns.getX(i)) * scaleX + xTranslate;
+                    lineLines[k + 1] = yTranslate - columns.getY(j, i) * scaleY;
+                    lineLines[k + 2] = lineLines[k];
+                    lineLines[k + 3] = lineLines[k + 1];
+                    k += 4;
+                }
+                lineLines[k] = xTransform.toLocal(columns.getX(xRightIndex)) * scaleX + xTranslate;
+                lineLines[k + 1] = yTranslate - columns.getY(j, xRightIndex) * scaleY;
+            } else {
+                if (BuildConfig.DEBUG && (sampledPtsCount < 2)) throw new AssertionError();
+
+                linePtsCount = (sampledPtsCount - 1) << 1;
+
+                lineLines[k] = xTransform.toLocal(columns.getX(sampledIndexes[0])) * scaleX + xTranslate;
+                lineLines[k + 1] = yTranslate - columns.getY(j, sampledIndexes[0]) * scaleY;
+                k += 2;
+                for (int n = 1; n < sampledPtsCount - 1; n++) {
+                    final int i = sampledIndexes[n];
+                    lineLines[k] = xTransform.toLocal(columns.getX(i)) * scaleX + xTranslate;
+                    lineLines[k + 1] = yTranslate - columns.getY(j, i) * scaleY;
+                    lineLines[k + 2] = lineLines[k];
+                    lineLines[k + 3] = lineLines[k + 1];
+                    k += 4;
+                }
+                lineLines[k] = xTransform.toLocal(columns.getX(sampledIndexes[sampledPtsCount - 1])) * scaleX + xTranslate;
+                lineLines[k + 1] = yTranslate - columns.getY(j, sampledIndexes[sampledPtsCount - 1]) * scaleY;
+            }
+
+            linesLinesCount[j] = linePtsCount << 1;
+
+            if (BuildConfig.DEBUG && ((k + 2) != linePtsCount * 2)) throw new AssertionError();
+        }
+    }
+
+    // обновление курсора по аналогии с updateCursorPaths, предыдущее обсчитанное значение курсора запоминается там-же
+    private void updateLines_BAR_Polygons() {
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+
+        final @NotNull float[] tmpStackedSum = getTmpStackedSum();
+        // для значений по точкам накопительные суммы всех линий считаются сразу, за один проход
+        final @Nullable float[][] linesStackedSum = stackLinesPointMajor();
+        if (linesStackedSum == null) {
+            for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                tmpStackedSum[i] = 0;
+            }
+        }
+
+        final int ptsCount = xRightIndex - xLeftIndex + 1;
+        final float rectWidth = (float) (columns.getX(xRightIndex) - columns.getX(xLeftIndex)) / ptsCount;
+        final float halfRectWidth = rectWidth / 2f;
+
+        float prevMin = yLeftMin;
+        float currMin;
+
+        for (int j = 0; j < linesPolygons.length; j++) {
+            if (BuildConfig.DEBUG && linesRightAlign[j]) throw new AssertionError();
+
+            linesPolygonsCount[j] = 0;
+            cursorPolygonsCount[j] = 0;
+
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            final float lineK = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+
+            currMin = yLeftMax;
+
+            final float[] lineStackedSum;
+            if (linesStackedSum != null) {
+                lineStackedSum = linesStackedSum[j];
+
+                for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                    if (lineStackedSum[i] < currMin) {
+                        currMin = lineStackedSum[i];
+                    }
+                }
+            } else {
+                lineStackedSum = tmpStackedSum;
+
+                for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                    tmpStackedSum[i] += columns.getY(j, i) * lineK;
+
+                    if (tmpStackedSum[i] < currMin) {
+                        currMin = tmpStackedSum[i];
+                    }
+                }
+            }
+
+            final float[] polygon = linesPolygons[j];
+            int k = 0;
+
+            k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xLeftIndex)) - halfRectWidth, lineStackedSum[xLeftIndex]);
+            k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xLeftIndex)) + halfRectWidth, lineStackedSum[xLeftIndex]);
+            for (int i = xLeftIndex + 1; i <= xRightIndex; i++) {
+                k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(i - 1)) + halfRectWidth, lineStackedSum[i]);
+                k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(i)) + halfRectWidth, lineStackedSum[i]);
+            }
+
+            // right |
+            k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xRightIndex)) + halfRectWidth, prevMin);
+            // _
+            k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xLeftIndex)) - halfRectWidth, prevMin);
+            // left | - замыкание на первую вершину
+
+            linesPolygonsCount[j] = k;
+
+            // cursor
+            if (prevCursorIndex != NO_CURSOR) {
+                cursorPolygonsCount[j] = putLeftRect(
+                        cursorPolygons[j],
+                        xTransform.toLocal(columns.getX(prevCursorIndex)) - halfRectWidth,
+                        lineStackedSum[prevCursorIndex],
+                        xTransform.toLocal(columns.getX(prevCursorIndex)) + halfRectWidth,
+                        prevMin
+                );
+            }
+
+            prevMin = currMin;
+        }
+    }
+
+    private void updateLines_AREA_Polygons() {
+        final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
+
+        int lastVisibleLineIndex = -1;
+        for (int j = linesPolygons.length - 1; j >= 0; j--) {
+            if (linesVisibilityState[j] != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                lastVisibleLineIndex = j;
+                break;
+            }
+        }
+
+        if (BuildConfig.DEBUG && (stackedSumIndex == null)) throw new AssertionError();
+
+        final @NotNull float[] tmpStackedSum = getTmpStackedSum();
+        // для значений по точкам накопительные суммы всех линий считаются сразу, за один проход
+        final @Nullable float[][] linesStackedSum = stackLinesPointMajor();
+        if (linesStackedSum == null) {
+            for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                tmpStackedSum[i] = 0;
+            }
+        }
+
+        float prevPercMin = 0f;
+
+        for (int j = 0; j < linesPolygons.length; j++) {
+            if (BuildConfig.DEBUG && linesRightAlign[j]) throw new AssertionError();
+
+            linesPolygonsCount[j] = 0;
+
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            final float[] polygon = linesPolygons[j];
+
+            float currPercMin = 100f;
+
+            if (j != lastVisibleLineIndex) {
+                final float lineK = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+
+                final float[] lineStackedSum;
+                if (linesStackedSum != null) {
+                    lineStackedSum = linesStackedSum[j];
+
+                    for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                        final float perc = lineStackedSum[i] / stackedSumIndex.getSum(i) * 100f;
+                        if (perc < currPercMin) {
+                            currPercMin = perc;
+                        }
+                    }
+                } else {
+                    lineStackedSum = tmpStackedSum;
+
+                    for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                        tmpStackedSum[i] += columns.getY(j, i) * lineK;
+
+                        final float perc = tmpStackedSum[i] / stackedSumIndex.getSum(i) * 100f;
+                        if (perc < currPercMin) {
+                            currPercMin = perc;
+                        }
+                    }
+                }
+
+                int k = 0;
+                for (int i = xLeftIndex; i <= xRightIndex; i++) {
+                    k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(i)), lineStackedSum[i] / stackedSumIndex.getSum(i) * 100f);
+                }
+
+                // right |
+                k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xRightIndex)), prevPercMin);
+                // bottom _
+                k = putLeftVertex(polygon, k, xTransform.toLocal(columns.getX(xLeftIndex)), prevPercMin);
+                // left | - замыкание на первую вершину
+
+                linesPolygonsCount[j] = k;
+            } else {
+                linesPolygonsCount[j] = putLeftRect(
+                        polygon,
+                        xTransform.toLocal(columns.getX(xLeftIndex)),
+                        currPercMin,
+                        xTransform.toLocal(columns.getX(xRightIndex)),
+                        prevPercMin
+                );
+            }
+
+            prevPercMin = currPercMin;
+        }
+    }
+
+    // вершина многоугольника в пикселях по локальному значению X (см. XTransform.toLocal) и значению Y левой оси.
+    // Результат - индекс следующей вершины.
+    private int putLeftVertex(@NotNull float[] polygon, int k, float x, float y) {
+        polygon[k] = x * scaleX + xTranslate;
+        polygon[k + 1] = yLeftTranslate - y * scaleYLeft;
+        return k + 2;
+    }
+
+    // прямоугольник из 4 вершин (обход как у многоугольников линий). Результат - кол-во значений.
+    private int putLeftRect(@NotNull float[] polygon, float left, float top, float right, float bottom) {
+        int k = 0;
+        k = putLeftVertex(polygon, k, left, top);
+        // top _
+        k = putLeftVertex(polygon, k, right, top);
+        // right |
+        k = putLeftVertex(polygon, k, right, bottom);
+        // bottom _
+        k = putLeftVertex(polygon, k, left, bottom);
+        // left | - замыкание на первую вершину
+        return k;
+    }
+
+    private @NotNull float[] getTmpStackedSum() {
+        if (mTmpStackedSum == null) {
+            mTmpStackedSum = new float[maxPointsCount];
+        }
+        return mTmpStackedSum;
+    }
+
+    // Накопительные суммы всех линий в диапазоне [xLeftIndex, xRightIndex] по текущим состояниям видимости для значений,
+    // упорядоченных по точкам (см. PointMajorChartColumns), иначе null
+    private @Nullable float[][] stackLinesPointMajor() {
+        if (!(columns instanceof PointMajorChartColumns)) {
+            return null;
+        }
+
+        if (mTmpLinesStackedSum == null) {
+            mTmpLinesStackedSum = new float[columns.getLinesCount()][maxPointsCount];
+            mTmpLinesK = new float[columns.getLinesCount()];
+        }
+        for (int j = 0; j < mTmpLinesK.length; j++) {
+            mTmpLinesK[j] = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+        }
+
+        ((PointMajorChartColumns) columns).stackLines(xLeftIndex, xRightIndex, mTmpLinesK, mTmpLinesStackedSum);
+        return mTmpLinesStackedSum;
+    }
+
+    private void updateAxisMarks() {
+        if (getIsMarksUpdating()) {
+            final ChartProfiler profiler = this.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_AXIS_MARKS) : 0;
+
+            updateXAxisMarks();
+            updateYAxisMarks();
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_AXIS_MARKS, startTime);
+                profiler.count(ChartProfiler.COUNTER_LABELS_FORMATTED, getAxisLabelsCount());
+            }
+        }
+    }
+
+    // кол-во текстов меток осей
+    private int getAxisLabelsCount() {
+        int res = xAxisMarks.size();
+        for (int i = 0; i < yAxisMarks.size(); i++) {
+            final AxisMark mark = yAxisMarks.get(i);
+            if (mark.getText() != null) {
+                res++;
+            }
+            if (mark.getTextRight() != null) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    public int findXLeftIndex(double xValue) {
+        return xIndexLocator.findLeftIndex(xValue);
+    }
+
+    private int findXRightIndex(double xValue, int startingXIndex) {
+        return xIndexLocator.findRightIndex(xValue, startingXIndex);
+    }
+
+    public float xToPixel(double x) {
+        return xTransform.toPixel(x);
+    }
+
+    public double pixelToX(float px) {
+        return xTransform.toValue(px);
+    }
+
+    public float yLeftToPixel(float y) {
+        return areaBottom - (y - yLeftMin) * scaleYLeft;
+    }
+
+    public float yRightToPixel(float y) {
+        return areaBottom - (y - yRightMin) * scaleYRight;
+    }
+
+    public float pixelToYRight(float px) {
+        return (areaBottom - px) / scaleYRight + yRightMin;
+    }
+
+    private boolean getIsMarksUpdating() {
+        return (axisLineCount > 0) && ((xAxisTextCnv != null) || (yAxisTextCnv != null));
+    }
+
+    private static final long MSEC_PER_HOUR = 60 * 60 * 1000L;
+    private static final long MSEC_PER_DAY = 24 * MSEC_PER_HOUR;
+
+    private void updateXAxisMarks() {
+        if (BuildConfig.DEBUG && (xAxisMarks == null)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (axisLineCount <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (xAxisTextCnv == null)) throw new AssertionError();
+
+        xAxisMarks.clear();
+
+        final double xSwing = Math.abs(xRightValue - xLeftValue);
+
+        long stepValue = (long) (xSwing / axisLineCount);
+
+        // beautify step
+        if (stepValue > MSEC_PER_DAY) {
+            stepValue = stepValue / MSEC_PER_DAY * MSEC_PER_DAY;
+        } else {
+            stepValue = stepValue / MSEC_PER_HOUR * MSEC_PER_HOUR;
+        }
+
+        if (BuildConfig.DEBUG && (stepValue == 0)) throw new AssertionError();
+
+        final float stepPixel = (float) (stepValue * xTransform.getScale());
+        if (stepPixel <= 0) {
+            return;
+        }
+
+        // начало отсчёта
+        final long startXValue = (long) (xLeftValue / stepValue) * stepValue;
+        final float startXPixel = xToPixel(startXValue);
+
+        final float w = getAreaWidth();
+
+        long i = startXValue;
+        for (float x = startXPixel; x < w; x += stepPixel) {
+            final String text = xAxisTextCnv.toText(i);
+
+            xAxisMarks.add(new AxisMark(x, text, null));
+
+            i += stepValue;
+        }
+    }
+
+    private final @NotNull YAxisMarksHelper yLeftMarksHelper = new YAxisMarksHelper();
+    private final @NotNull YAxisMarksHelper yRightMarksHelper = new YAxisMarksHelper();
+
+    private void updateYAxisMarks() {
+        if (BuildConfig.DEBUG && (yAxisMarks == null)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (yAxisTextCnv == null)) throw new AssertionError();
+
+        final boolean gotLeftAligned = getVisibleLinesCount(false) != 0;
+        final boolean gotRightAligned = getVisibleLinesCount(true) != 0;
+
+        calcYAxisMarksHelper(yLeftMin, yLeftMax, yLeftMarksHelper);
+        if (gotRightAligned) {
+            calcYAxisMarksHelper(yRightMin, yRightMax, yRightMarksHelper);
+        }
+        final @NotNull YAxisMarksHelper yMarksHelper = (!gotLeftAligned && gotRightAligned) ? yRightMarksHelper : yLeftMarksHelper;
+
+        yAxisMarks.clear();
+
+        int mainValue = yMarksHelper.startValue;
+        int rightValue = yRightMarksHelper.startValue;
+        for (float y = yMarksHelper.startPixel; y >= 0; y -= yMarksHelper.stepPixel) {
+            final String leftText = gotLeftAligned ? yAxisTextCnv.toText(mainValue) : null;
+
+            final String rightText;
+            if (gotRightAligned) {
+                // TODO: hack
+                if (gotLeftAligned) {
+                    rightValue = (int) pixelToYRight(y) / 100 * 100;
+                }
+                rightText = yAxisTextCnv.toText(rightValue);
+            } else {
+                rightText = null;
+            }
+
+            yAxisMarks.add(new AxisMark(y, leftText, rightText));
+
+            mainValue += yMarksHelper.stepValue;
+            rightValue += yRightMarksHelper.stepValue;
+        }
+    }
+
+    private void calcYAxisMarksHelper(int yMin, int yMax, @NotNull YAxisMarksHelper marksHelper) {
+        if (BuildConfig.DEBUG && (axisLineCount <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && !areaSet) throw new AssertionError();
+
+        final float ySwing = Math.abs(yMax - yMin);
+        final float scaleY = getAreaHeight() / ySwing;
+
+        marksHelper.stepValue = Math.round(ySwing / axisLineCount);
+
+        // beautify step
+        int k = 0;
+        while (marksHelper.stepValue >= 20) {
+            marksHelper.stepValue /= 10;
+            k++;
+        }
+        // значения (10, 19] при делении на 10 "дадут" 1, и линий окажется слишком много - равномерно распределяем их
+        // между значениями 10, 15 и 20.
+        if (marksHelper.stepValue > 10) {
+            if (marksHelper.stepValue >= 18) {
+                marksHelper.stepValue = 20;
+            } else if (marksHelper.stepValue >= 14) {
+                marksHelper.stepValue = 15;
+            } else {
+                marksHelper.stepValue = 10;
+            }
+        }
+        while (k > 0) {
+            marksHelper.stepValue *= 10;
+            k--;
+        }
+
+        if (marksHelper.stepValue == 0) {
+            return;
+        }
+
+        marksHelper.stepPixel = marksHelper.stepValue * scaleY;
+        if (marksHelper.stepPixel <= 0) {
+            return;
+        }
+
+        // начало отсчёта
+        marksHelper.startValue = yMin / marksHelper.stepValue * marksHelper.stepValue;
+        if (marksHelper.startValue < yMin) {
+            marksHelper.startValue += marksHelper.stepValue;
+        }
+
+        final float yToPixelHelper = areaBottom/* - y * scaleY*/ + yMin * scaleY;
+        marksHelper.startPixel = yToPixelHelper - marksHelper.startValue * scaleY;
+    }
+
+    // Режим нижней границы Y - какое значение используется для минимума по Y на графике
+    private enum YMinMode {
+        // использование минимума в отображаемом диапазоне X
+        RANGE,
+        // нулевое значение
+        ZERO,
+    }
+
+    public enum DrawLinesMode {
+        PATH,
+        PATH_REVERSE,
+        LINES,
+    }
+
+    private static class YAxisMarksHelper {
+        int stepValue;
+        float stepPixel;
+
+        int startValue;
+        float startPixel;
+
+        public String toString() {
+            return String.format(Locale.getDefault(), "stepValue = %d, stepPixel = %f, startValue = %d, startPixel = %f",
+                    stepValue, stepPixel, startValue, startPixel);
+        }
+    }
+
+    public interface AxisTextConverter {
+        @NotNull String toText(long value);
+    }
+
+    public static class AxisMark {
+        private float position;
+        private @Nullable String text;
+        private @Nullable String textRight;
+
+        public AxisMark(float position, @Nullable String text, @Nullable String textRegiht) {
+            this.position = position;
+            this.text = text;
+            this.textRight = textRegiht;
+        }
+
+        public float getPosition() {
+            return position;
+        }
+
+        public @Nullable String getText() {
+            return text;
+        }
+
+        public @Nullable String getTextRight() {
+            return textRight;
+        }
+    }
+}
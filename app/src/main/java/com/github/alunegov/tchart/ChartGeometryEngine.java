@@ -0,0 +1,195 @@
+package com.github.alunegov.tchart;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Построение геометрии графика (линии, пути, метки осей) в фоновом потоке с двойной буферизацией.
+// UI-поток меняет состояние "модели" (ChartDrawData с выключенным построением геометрии) и вызывает requestFrame:
+// состояние модели копируется, а кадр строится в фоновом потоке в заднем буфере. Готовый буфер под блокировкой
+// становится передним, и вызывается Listener.onFrameReady. onDraw рисует передний буфер под той же блокировкой (getLock),
+// поэтому построение следующего кадра не мешает отрисовке текущего. Если кадры запрашиваются быстрее, чем строятся,
+// промежуточные состояния пропускаются - строится последнее запрошенное.
+// Для данных с дописыванием буферы строятся по виду на буфер точек (см. ChartInputData.toLiveView): в состояние кадра
+// входит снимок буфера точек (RingChartColumns.getState), и фоновый поток читает только точки до снимка. Кадр, у
+// которого изменился только снимок, обрабатывает в буфере лишь новые точки (см. ChartGeometry.setFrame).
+public class ChartGeometryEngine<T extends ChartGeometry> {
+    // общий для всех графиков поток построения геометрии
+    private static final @NotNull ExecutorService GEOMETRY_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            final Thread thread = new Thread(r, "ChartGeometry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public interface Listener {
+        // кадр готов (вызывается в фоновом потоке)
+        void onFrameReady();
+    }
+
+    private final @NotNull Executor executor;
+    private final @NotNull Listener listener;
+
+    // буферы кадров, buffers[frontIndex] - передний (готовый для отрисовки)
+    private final @NotNull T[] buffers;
+    private int frontIndex = 0;
+    // флаг: передний буфер содержит построенный кадр
+    private boolean frontReady = false;
+
+    private final @NotNull Object lock = new Object();
+
+    // последнее запрошенное состояние кадра
+    private final @NotNull FrameState pendingState;
+    // состояние строящегося кадра (копия pendingState, с которой работает фоновый поток)
+    private final @NotNull FrameState workState;
+    // флаг: построение кадра поставлено в очередь, но ещё не начато
+    private boolean frameScheduled = false;
+    // флаг: кадры ещё не запрашивались. Первый кадр строится сразу в вызывающем потоке, чтобы после замены данных вида
+    // (новый движок) не было пустого кадра.
+    private boolean firstFrame = true;
+
+    public ChartGeometryEngine(@NotNull T buffer1, @NotNull T buffer2, @NotNull Listener listener) {
+        this(buffer1, buffer2, listener, GEOMETRY_EXECUTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ChartGeometryEngine(@NotNull T buffer1, @NotNull T buffer2, @NotNull Listener listener,
+                               @NotNull Executor executor) {
+        if (BuildConfig.DEBUG && (buffer1 == buffer2)) throw new AssertionError();
+        // буферы данных с дописыванием - только по видам (см. ChartInputData.toLiveView)
+        if (BuildConfig.DEBUG && !isBufferColumns(buffer1.getColumns())) throw new AssertionError();
+        if (BuildConfig.DEBUG && !isBufferColumns(buffer2.getColumns())) throw new AssertionError();
+
+        this.buffers = (T[]) new ChartGeometry[] {buffer1, buffer2};
+        this.listener = listener;
+        this.executor = executor;
+
+        final int linesCount = buffer1.getLinesVisibilityState().length;
+        pendingState = new FrameState(linesCount);
+        workState = new FrameState(linesCount);
+    }
+
+    private static boolean isBufferColumns(@NotNull ChartColumns columns) {
+        return !(columns instanceof RingChartColumns) || ((RingChartColumns) columns).isView();
+    }
+
+    // Запрос построения кадра по текущему состоянию модели (вызывается в UI-потоке). Модель работает с самими данными,
+    // а не с видом.
+    public void requestFrame(@NotNull ChartGeometry model, int cursorIndex) {
+        final boolean buildNow;
+        synchronized (lock) {
+            pendingState.copyFrom(model, cursorIndex);
+
+            if (frameScheduled) {
+                return;
+            }
+            frameScheduled = true;
+
+            buildNow = firstFrame;
+            firstFrame = false;
+        }
+
+        if (buildNow) {
+            buildFrameRunnable.run();
+        } else {
+            executor.execute(buildFrameRunnable);
+        }
+    }
+
+    // замеры построения кадров в буферах (null - не ведутся)
+    public void setProfiler(@Nullable ChartProfiler profiler) {
+        for (T buffer : buffers) {
+            buffer.setProfiler(profiler);
+        }
+    }
+
+    // блокировка, под которой нужно работать с getFront
+    public @NotNull Object getLock() {
+        return lock;
+    }
+
+    // Передний буфер (null, если ни один кадр ещё не построен). Вызывать под getLock.
+    public @Nullable T getFront() {
+        if (BuildConfig.DEBUG && !Thread.holdsLock(lock)) throw new AssertionError();
+
+        return frontReady ? buffers[frontIndex] : null;
+    }
+
+    private final @NotNull Runnable buildFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final T back;
+            synchronized (lock) {
+                workState.copyFrom(pendingState);
+                frameScheduled = false;
+
+                back = buffers[1 - frontIndex];
+            }
+
+            // задний буфер не используется ни UI-потоком, ни другими задачами (поток построения один). Точки данных с
+            // дописыванием - до снимка в workState (значения записаны до передачи снимка под блокировкой)
+            workState.applyTo(back);
+
+            synchronized (lock) {
+                frontIndex = 1 - frontIndex;
+                frontReady = true;
+            }
+
+            listener.onFrameReady();
+        }
+    };
+
+    // состояние кадра: всё, от чего зависит геометрия
+    private static class FrameState {
+        final @NotNull float[] area = new float[4];
+        final @NotNull double[] xRange = new double[2];
+        final @NotNull int[] yRange = new int[4];
+        final @NotNull int[] linesVisibilityState;
+        int cursorIndex;
+        // снимок буфера точек данных с дописыванием (см. RingChartColumns.getState)
+        final @NotNull long[] ringState = new long[RingChartColumns.STATE_SIZE];
+
+        FrameState(int linesCount) {
+            linesVisibilityState = new int[linesCount];
+        }
+
+        void copyFrom(@NotNull ChartGeometry model, int cursorIndex) {
+            model.getArea(area);
+            model.getXRange(xRange);
+            model.getYRange(yRange);
+            System.arraycopy(model.getLinesVisibilityState(), 0, linesVisibilityState, 0, linesVisibilityState.length);
+            this.cursorIndex = cursorIndex;
+
+            final ChartColumns columns = model.getColumns();
+            if (columns instanceof RingChartColumns) {
+                if (BuildConfig.DEBUG && ((RingChartColumns) columns).isView()) throw new AssertionError();
+
+                ((RingChartColumns) columns).getState(ringState);
+            }
+        }
+
+        void copyFrom(@NotNull FrameState state) {
+            System.arraycopy(state.area, 0, area, 0, area.length);
+            System.arraycopy(state.xRange, 0, xRange, 0, xRange.length);
+            System.arraycopy(state.yRange, 0, yRange, 0, yRange.length);
+            System.arraycopy(state.linesVisibilityState, 0, linesVisibilityState, 0, linesVisibilityState.length);
+            cursorIndex = state.cursorIndex;
+            System.arraycopy(state.ringState, 0, ringState, 0, ringState.length);
+        }
+
+        void applyTo(@NotNull ChartGeometry geometry) {
+            final ChartColumns columns = geometry.getColumns();
+            if (columns instanceof RingChartColumns) {
+                ((RingChartColumns) columns).setState(ringState);
+            }
+
+            geometry.setFrame(area, xRange[0], xRange[1], yRange, linesVisibilityState, cursorIndex);
+        }
+    }
+}
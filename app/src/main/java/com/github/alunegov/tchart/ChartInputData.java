@@ -10,9 +10,9 @@ public class ChartInputData {
     public static final int FLAG_STACKED = 1;
     public static final int FLAG_Y_SCALED = 2;
 
-    // Значения по X (линия x)
+    // Значения по X (линия x). null, если значения хранятся вне кучи или X равномерны (см. getColumns)
     public long[] XValues;
-    // Значения сигналов по Y (линии типа LinesType)
+    // Значения сигналов по Y (линии типа LinesType). null, если значения хранятся вне кучи или в узких типах (см. getColumns)
     public int[][] LinesValues;
     // Имена сигналов
     public String[] LinesNames;
@@ -22,6 +22,11 @@ public class ChartInputData {
     public LineType linesType;
     //
     public BitSet flags;
+    // доступ к значениям X и линий - через него данные читают статистика и отрисовка. Массивы XValues/LinesValues
+    // оборачиваются без копирования, поэтому сами поля после конструктора не переприсваиваются.
+    private final @NotNull ChartColumns columns;
+    // пирамида прореживания для LINE, строится при первом обращении
+    private LodPyramid lodPyramid = null;
 
     public ChartInputData(int linesCount, int pointsCount, LineType linesType) {
         this(linesCount, pointsCount, linesType, new BitSet());
@@ -33,12 +38,148 @@ public class ChartInputData {
 
         XValues = new long[pointsCount];
         LinesValues = new int[linesCount][pointsCount];
+        columns = new HeapChartColumns(XValues, LinesValues);
         LinesNames = new String[linesCount];
         LinesColors = new int[linesCount];
         this.linesType = linesType;
         this.flags = flags;
     }
 
+    // конструктор для уже заполненных значений (без выделения и копирования массивов)
+    public ChartInputData(@NotNull long[] xValues, @NotNull int[][] linesValues, LineType linesType, @NotNull BitSet flags) {
+        if (BuildConfig.DEBUG && (linesValues.length <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (xValues.length <= 0)) throw new AssertionError();
+
+        XValues = xValues;
+        LinesValues = linesValues;
+        columns = new HeapChartColumns(XValues, LinesValues);
+        LinesNames = new String[linesValues.length];
+        LinesColors = new int[linesValues.length];
+        this.linesType = linesType;
+        this.flags = flags;
+    }
+
+    // конструктор для значений в произвольном хранилище (XValues и LinesValues при этом null)
+    public ChartInputData(@NotNull ChartColumns columns, LineType linesType, @NotNull BitSet flags) {
+        if (BuildConfig.DEBUG && (columns.getLinesCount() <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (columns.getPointsCount() <= 0)) throw new AssertionError();
+
+        this.columns = columns;
+        LinesNames = new String[columns.getLinesCount()];
+        LinesColors = new int[columns.getLinesCount()];
+        this.linesType = linesType;
+        this.flags = flags;
+    }
+
+    public @NotNull ChartColumns getColumns() {
+        return columns;
+    }
+
+    // Данные с равномерным X без массива XValues (см. UniformXChartColumns), если X равномерны, иначе this. Значения
+    // линий не копируются.
+    public @NotNull ChartInputData toUniformX() {
+        if (XValues == null || LinesValues == null) {
+            return this;
+        }
+
+        final long xStep = UniformXChartColumns.detectXStep(columns);
+        if (xStep == 0) {
+            return this;
+        }
+
+        final ChartInputData res = new ChartInputData(new UniformXChartColumns(XValues[0], xStep, LinesValues), linesType, flags);
+        res.LinesValues = LinesValues;
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Копия данных с линиями в самом узком подходящем типе и без массива равномерного X (см. CompactChartColumns). Если
+    // значения хранятся вне кучи - this.
+    public @NotNull ChartInputData toCompact() {
+        if (LinesValues == null) {
+            return this;
+        }
+
+        final ChartInputData res = new ChartInputData(CompactChartColumns.of(columns), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Копия данных со значениями, упорядоченными по точкам (см. PointMajorChartColumns), - для накопительных сумм
+    // BAR/AREA с большим кол-вом линий
+    public @NotNull ChartInputData toPointMajor() {
+        final ChartInputData res = new ChartInputData(PointMajorChartColumns.of(columns), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Копия данных в сжатых блоках (см. CompressedChartColumns) - для длинной истории. Мин/макс линий (LINE) берутся из
+    // заголовков блоков, а не из индекса по точкам (см. ChartInputDataStats).
+    public @NotNull ChartInputData toCompressed() {
+        final ChartInputData res = new ChartInputData(CompressedChartColumns.of(columns), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Копия данных с дописыванием точек (см. appendPoint): хранятся последние capacity точек в кольцевом буфере (см.
+    // RingChartColumns)
+    public @NotNull ChartInputData toLive(int capacity) {
+        final ChartInputData res = new ChartInputData(RingChartColumns.copyOf(columns, capacity), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // флаг: данные с дописыванием точек (см. toLive)
+    public boolean isLive() {
+        return columns instanceof RingChartColumns;
+    }
+
+    // Данные с видом на буфер этих данных с дописыванием (см. RingChartColumns.makeView) - для построения в другом потоке
+    public @NotNull ChartInputData toLiveView() {
+        if (!isLive()) {
+            throw new IllegalStateException("not live data");
+        }
+
+        final ChartInputData res = new ChartInputData(((RingChartColumns) columns).makeView(), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Добавление точки в данные с дописыванием (см. toLive). Статистика и данные отрисовки подхватывают новые точки
+    // сами, см. TelegramChartView.appendPoint.
+    public void appendPoint(long x, @NotNull int[] values) {
+        if (!isLive()) {
+            throw new IllegalStateException("not live data");
+        }
+
+        ((RingChartColumns) columns).append(x, values);
+    }
+
+    // копия данных со значениями вне кучи Java (см. DirectChartColumns)
+    public @NotNull ChartInputData toDirect() {
+        final ChartInputData res = new ChartInputData(DirectChartColumns.copyOf(columns), linesType, flags);
+        System.arraycopy(LinesNames, 0, res.LinesNames, 0, LinesNames.length);
+        System.arraycopy(LinesColors, 0, res.LinesColors, 0, LinesColors.length);
+        return res;
+    }
+
+    // Пирамида прореживания мин/макс (см. LodPyramid). Строится при первом обращении, поэтому значения к этому моменту
+    // должны быть заполнены. Для данных с дописыванием не используется.
+    public synchronized @NotNull LodPyramid getLodPyramid() {
+        if (BuildConfig.DEBUG && isLive()) throw new AssertionError();
+
+        if (lodPyramid == null) {
+            lodPyramid = new LodPyramid(this);
+        }
+        return lodPyramid;
+    }
+
     public enum LineType {
         LINE,
         BAR,
@@ -1,8 +1,6 @@
 package com.github.alunegov.tchart;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.util.*;
 
 import org.jetbrains.annotations.NotNull;
@@ -21,6 +19,14 @@ public class ChartInputDataMapper {
         InputStream openResource(String fileName) throws IOException;
     }
 
+    // Источник ленты живых данных (см. ChartFeed): открытие потока точек в формате NDJSON
+    public interface FeedSource {
+        @NotNull InputStream open() throws IOException;
+
+        // прерывание open, ждущего в другом потоке (открытие FIFO, подключение к сокету); вызывается из любого потока
+        void cancel();
+    }
+
     // Абстракция над android.Color
     public interface ColorParser {
         // преобразование строки в код цвета (ref Color.parseColor)
@@ -34,13 +40,10 @@ public class ChartInputDataMapper {
     public static @NotNull List<ChartInputData> load(@NotNull ResourceLoader resourceLoader, @NotNull ColorParser colorParser) throws IOException, JSONException {
         final List<ChartInputData> res = new ArrayList<>();
 
-        final String[] resources = resourceLoader.listResources("contest");
+        final String[] resources = listCharts(resourceLoader);
 
         for (String r: resources) {
-            final String fileName = "contest" +  File.separator + r + File.separator + "overview.json";
-            final String json = ChartUtils.readStreamToString(resourceLoader.openResource(fileName), CHART_DATA_CHARSET);
-
-            final ChartInputData cid = loadChart(json, colorParser);
+            final ChartInputData cid = loadChart(resourceLoader, r, colorParser);
 
             res.add(cid);
         }
@@ -48,7 +51,42 @@ public class ChartInputDataMapper {
         return res;
     }
 
+    // имена графиков (каталогов в contest), каждый загружается через loadChart
+    public static @NotNull String[] listCharts(@NotNull ResourceLoader resourceLoader) throws IOException {
+        return resourceLoader.listResources("contest");
+    }
+
+    // загрузка графика chartName (contest/chartName/overview.json). Можно вызывать из нескольких потоков одновременно.
+    public static @NotNull ChartInputData loadChart(@NotNull ResourceLoader resourceLoader, @NotNull String chartName, @NotNull ColorParser colorParser) throws IOException, JSONException {
+        final String fileName = "contest" +  File.separator + chartName + File.separator + "overview.json";
+
+        return loadChart(resourceLoader.openResource(fileName), colorParser);
+    }
+
     public static @NotNull List<ChartInputData> load(@NotNull String json, @NotNull ColorParser colorParser) throws JSONException {
+        try {
+            final List<ChartInputData> res = new ArrayList<>();
+            for (ChartInputData cid: new ChartInputDataReader(new StringReader(json)).readCharts(colorParser)) {
+                res.add(cid.toCompact());
+            }
+            return res;
+        } catch (IOException e) {
+            throw new JSONException(e.toString());
+        }
+    }
+
+    // Потоковый разбор одного графика, поток закрывается. Значения хранятся компактно (см. ChartInputData.toCompact).
+    public static @NotNull ChartInputData loadChart(@NotNull InputStream stream, @NotNull ColorParser colorParser) throws IOException, JSONException {
+        final Reader reader = new InputStreamReader(stream, CHART_DATA_CHARSET);
+        try {
+            return new ChartInputDataReader(reader).readChart(colorParser).toCompact();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Разбор через org.json (DOM) - прежний способ загрузки. Оставлен для сравнения с потоковым разбором в тестах.
+    static @NotNull List<ChartInputData> loadDom(@NotNull String json, @NotNull ColorParser colorParser) throws JSONException {
         final List<ChartInputData> res = new ArrayList<>();
         final JSONArray ja = new JSONArray(json);
         for (int i = 0; i < ja.length(); i++) {
@@ -58,7 +96,7 @@ public class ChartInputDataMapper {
         return res;
     }
 
-    private static @NotNull ChartInputData loadChart(@NotNull String json, @NotNull ColorParser colorParser) throws JSONException {
+    static @NotNull ChartInputData loadChartDom(@NotNull String json, @NotNull ColorParser colorParser) throws JSONException {
         final JSONObject jo = new JSONObject(json);
         return parseChart(jo, colorParser);
     }
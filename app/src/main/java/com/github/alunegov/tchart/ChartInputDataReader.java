@@ -0,0 +1,527 @@
+package com.github.alunegov.tchart;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+
+import org.json.JSONException;
+
+// Потоковый разбор json-данных графиков (без построения DOM).
+// Значения колонок читаются сразу в примитивные массивы (x - в long[], значения линий - в int[]), без промежуточных
+// JSONArray/boxing.
+public class ChartInputDataReader {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_COLUMN_CAPACITY = 256;
+
+    private final @NotNull Reader reader;
+    private final @NotNull char[] buffer = new char[BUFFER_SIZE];
+    // текущая позиция и количество прочитанных символов в buffer
+    private int pos = 0;
+    private int limit = 0;
+
+    private final @NotNull StringBuilder tmpSb = new StringBuilder();
+
+    public ChartInputDataReader(@NotNull Reader reader) {
+        this.reader = reader;
+    }
+
+    // чтение массива графиков (формат chart_data.json)
+    public @NotNull List<ChartInputData> readCharts(@NotNull ChartInputDataMapper.ColorParser colorParser) throws IOException, JSONException {
+        final List<ChartInputData> res = new ArrayList<>();
+
+        expect('[');
+        if (!tryConsume(']')) {
+            do {
+                res.add(readChart(colorParser));
+            } while (tryConsume(','));
+            expect(']');
+        }
+
+        return res;
+    }
+
+    // чтение одного графика (формат overview.json)
+    public @NotNull ChartInputData readChart(@NotNull ChartInputDataMapper.ColorParser colorParser) throws IOException, JSONException {
+        final List<String> columnsIds = new ArrayList<>();
+        final List<Object> columnsValues = new ArrayList<>();
+        final List<Integer> columnsLengths = new ArrayList<>();
+        Map<String, String> types = null;
+        Map<String, String> names = null;
+        Map<String, String> colors = null;
+        final BitSet flags = new BitSet();
+
+        expect('{');
+        if (!tryConsume('}')) {
+            do {
+                final String key = readString();
+                expect(':');
+
+                switch (key) {
+                    case "columns":
+                        readColumns(columnsIds, columnsValues, columnsLengths);
+                        break;
+                    case "types":
+                        types = readStringMap();
+                        break;
+                    case "names":
+                        names = readStringMap();
+                        break;
+                    case "colors":
+                        colors = readStringMap();
+                        break;
+                    case "percentage":
+                        readFlag(flags, ChartInputData.FLAG_PERCENTAGE);
+                        break;
+                    case "stacked":
+                        readFlag(flags, ChartInputData.FLAG_STACKED);
+                        break;
+                    case "y_scaled":
+                        readFlag(flags, ChartInputData.FLAG_Y_SCALED);
+                        break;
+                    default:
+                        skipValue();
+                }
+            } while (tryConsume(','));
+            expect('}');
+        }
+
+        if (types == null) {
+            throw new JSONException("no types");
+        }
+        if (names == null) {
+            throw new JSONException("no names");
+        }
+        if (colors == null) {
+            throw new JSONException("no colors");
+        }
+
+        return makeChart(columnsIds, columnsValues, columnsLengths, types, names, colors, flags, colorParser);
+    }
+
+    // чтение точки ленты живых данных (формат NDJSON: массив [x, y0, y1, ...] на строку) в values. false - конец потока.
+    public boolean readPoint(@NotNull long[] values) throws IOException, JSONException {
+        if (peek() == 0) {
+            return false;
+        }
+
+        expect('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                expect(',');
+            }
+            values[i] = readLong();
+        }
+        expect(']');
+
+        return true;
+    }
+
+    private static @NotNull ChartInputData makeChart(@NotNull List<String> columnsIds, @NotNull List<Object> columnsValues,
+                                                     @NotNull List<Integer> columnsLengths, @NotNull Map<String, String> types,
+                                                     @NotNull Map<String, String> names, @NotNull Map<String, String> colors,
+                                                     @NotNull BitSet flags, @NotNull ChartInputDataMapper.ColorParser colorParser) throws JSONException {
+        if (columnsIds.size() <= 1) {
+            throw new JSONException("not enough lines (2 or more req.)");
+        }
+
+        final int linesCount = columnsIds.size() - 1;  // without x-type line
+        final int pointsCount = columnsLengths.get(0);
+        final ChartInputData.LineType linesType = detectLinesType(types);
+
+        long[] xValues = null;
+        final int[][] linesValues = new int[linesCount][];
+        final String[] linesNames = new String[linesCount];
+        final String[] linesColors = new String[linesCount];
+        int l = 0;
+
+        for (int j = 0; j < columnsIds.size(); j++) {
+            final String lineId = columnsIds.get(j);
+            final Object values = columnsValues.get(j);
+
+            if (columnsLengths.get(j) != pointsCount) {
+                throw new JSONException("different points count in lines");
+            }
+
+            final String lineTypeAsStr = types.get(lineId);
+            if (lineTypeAsStr == null) {
+                throw new JSONException("no type for line " + lineId);
+            }
+
+            if (lineTypeAsStr.equals("x")) {
+                if (xValues != null) {
+                    throw new JSONException("duplicate x-type line");
+                }
+
+                xValues = toLongs(values, pointsCount);
+            } else {
+                if (l == linesCount) {
+                    throw new JSONException("no x-type line");
+                }
+
+                final ChartInputData.LineType lineType = ChartInputData.LineType.valueOf(lineTypeAsStr.toUpperCase(Locale.US));
+                if (lineType != linesType) {
+                    throw new JSONException("unsupported line type");
+                }
+
+                linesValues[l] = toInts(values, pointsCount, lineId);
+
+                linesNames[l] = names.get(lineId);
+                linesColors[l] = colors.get(lineId);
+                if (linesNames[l] == null || linesColors[l] == null) {
+                    throw new JSONException("no name or color for line " + lineId);
+                }
+
+                l++;
+            }
+
+            // значения колонки больше не нужны
+            columnsValues.set(j, null);
+        }
+
+        if (xValues == null) {
+            throw new JSONException("no x-type line");
+        }
+
+        final ChartInputData res = new ChartInputData(xValues, linesValues, linesType, flags);
+        for (int k = 0; k < linesCount; k++) {
+            res.LinesNames[k] = linesNames[k];
+            res.LinesColors[k] = colorParser.parseColor(linesColors[k]);
+        }
+
+        return res;
+    }
+
+    // значения колонки (long[] или int[]) в long[] длиной pointsCount
+    private static @NotNull long[] toLongs(@NotNull Object values, int pointsCount) {
+        if (values instanceof long[]) {
+            final long[] longValues = (long[]) values;
+            return (longValues.length == pointsCount) ? longValues : Arrays.copyOf(longValues, pointsCount);
+        }
+
+        final int[] intValues = (int[]) values;
+        final long[] res = new long[pointsCount];
+        for (int k = 0; k < pointsCount; k++) {
+            res[k] = intValues[k];
+        }
+        return res;
+    }
+
+    // значения колонки (int[] или long[]) в int[] длиной pointsCount, значение вне int - ошибка
+    private static @NotNull int[] toInts(@NotNull Object values, int pointsCount, @NotNull String lineId) throws JSONException {
+        if (values instanceof int[]) {
+            final int[] intValues = (int[]) values;
+            return (intValues.length == pointsCount) ? intValues : Arrays.copyOf(intValues, pointsCount);
+        }
+
+        final long[] longValues = (long[]) values;
+        final int[] res = new int[pointsCount];
+        for (int k = 0; k < pointsCount; k++) {
+            if (longValues[k] != (int) longValues[k]) {
+                throw new JSONException("value out of int range in line " + lineId);
+            }
+            res[k] = (int) longValues[k];
+        }
+        return res;
+    }
+
+    // тип линий - по первой не x-линии в "types"
+    private static @NotNull ChartInputData.LineType detectLinesType(@NotNull Map<String, String> types) {
+        for (String lineTypeAsStr: types.values()) {
+            if (!lineTypeAsStr.equals("x")) {
+                return ChartInputData.LineType.valueOf(lineTypeAsStr.toUpperCase(Locale.US));
+            }
+        }
+        return ChartInputData.LineType.LINE;
+    }
+
+    // "columns": [["x", 1, 2, ...], ["y0", 1, 2, ...], ...]. Первая колонка (обычно x) читается в long[], остальные -
+    // сразу в int[] размером с первую (колонки одной длины, перевыделений нет). Колонка с значением вне int (x не первой)
+    // переводится в long[], проверка - в makeChart.
+    private void readColumns(@NotNull List<String> columnsIds, @NotNull List<Object> columnsValues,
+                             @NotNull List<Integer> columnsLengths) throws IOException, JSONException {
+        // размер первой колонки - как начальная ёмкость остальных
+        int capacity = INITIAL_COLUMN_CAPACITY;
+
+        expect('[');
+        if (tryConsume(']')) {
+            return;
+        }
+        do {
+            expect('[');
+            final String lineId = readString();
+
+            final boolean first = columnsIds.isEmpty();
+            long[] longValues = first ? new long[capacity] : null;
+            int[] intValues = first ? null : new int[capacity];
+            int count = 0;
+            while (tryConsume(',')) {
+                final long value = readLong();
+
+                if (intValues != null) {
+                    if (value == (int) value) {
+                        if (count == intValues.length) {
+                            intValues = Arrays.copyOf(intValues, count * 2);
+                        }
+                        intValues[count++] = (int) value;
+                        continue;
+                    }
+
+                    longValues = new long[intValues.length];
+                    for (int k = 0; k < count; k++) {
+                        longValues[k] = intValues[k];
+                    }
+                    intValues = null;
+                }
+
+                if (count == longValues.length) {
+                    longValues = Arrays.copyOf(longValues, count * 2);
+                }
+                longValues[count++] = value;
+            }
+            expect(']');
+
+            columnsIds.add(lineId);
+            columnsValues.add((intValues != null) ? intValues : longValues);
+            columnsLengths.add(count);
+
+            if (first && count > 0) {
+                capacity = count;
+            }
+        } while (tryConsume(','));
+        expect(']');
+    }
+
+    // объект со строковыми значениями, порядок ключей сохраняется
+    private @NotNull Map<String, String> readStringMap() throws IOException, JSONException {
+        final Map<String, String> res = new LinkedHashMap<>();
+
+        expect('{');
+        if (tryConsume('}')) {
+            return res;
+        }
+        do {
+            final String key = readString();
+            expect(':');
+            res.put(key, readString());
+        } while (tryConsume(','));
+        expect('}');
+
+        return res;
+    }
+
+    private void readFlag(@NotNull BitSet flags, int flag) throws IOException, JSONException {
+        if (readBoolean()) {
+            flags.set(flag);
+        }
+    }
+
+    private boolean readBoolean() throws IOException, JSONException {
+        final char c = peek();
+        if (c == 't') {
+            expectLiteral("true");
+            return true;
+        } else if (c == 'f') {
+            expectLiteral("false");
+            return false;
+        }
+        throw syntaxError("boolean expected");
+    }
+
+    private long readLong() throws IOException, JSONException {
+        char c = peek();
+
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            pos++;
+            c = peekRaw();
+        }
+
+        if (c < '0' || c > '9') {
+            throw syntaxError("number expected");
+        }
+
+        long res = 0;
+        while (c >= '0' && c <= '9') {
+            res = res * 10 + (c - '0');
+            pos++;
+            c = peekRaw();
+        }
+
+        // дробная часть или экспонента - редкий случай, разбираем через double
+        if (c == '.' || c == 'e' || c == 'E') {
+            tmpSb.setLength(0);
+            tmpSb.append(negative ? -res : res);
+            while (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-' || (c >= '0' && c <= '9')) {
+                tmpSb.append(c);
+                pos++;
+                c = peekRaw();
+            }
+            try {
+                return (long) Double.parseDouble(tmpSb.toString());
+            } catch (NumberFormatException e) {
+                throw syntaxError("bad number " + tmpSb);
+            }
+        }
+
+        return negative ? -res : res;
+    }
+
+    private @NotNull String readString() throws IOException, JSONException {
+        expect('"');
+
+        tmpSb.setLength(0);
+        while (true) {
+            final char c = nextRaw();
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                tmpSb.append(c);
+                continue;
+            }
+
+            final char e = nextRaw();
+            switch (e) {
+                case 'b':
+                    tmpSb.append('\b');
+                    break;
+                case 't':
+                    tmpSb.append('\t');
+                    break;
+                case 'n':
+                    tmpSb.append('\n');
+                    break;
+                case 'f':
+                    tmpSb.append('\f');
+                    break;
+                case 'r':
+                    tmpSb.append('\r');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int k = 0; k < 4; k++) {
+                        final int digit = Character.digit(nextRaw(), 16);
+                        if (digit < 0) {
+                            throw syntaxError("bad unicode escape");
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    tmpSb.append((char) code);
+                    break;
+                default:
+                    tmpSb.append(e);
+            }
+        }
+
+        return tmpSb.toString();
+    }
+
+    // пропуск значения любого типа
+    private void skipValue() throws IOException, JSONException {
+        final char c = peek();
+        switch (c) {
+            case '{':
+                pos++;
+                if (!tryConsume('}')) {
+                    do {
+                        readString();
+                        expect(':');
+                        skipValue();
+                    } while (tryConsume(','));
+                    expect('}');
+                }
+                break;
+            case '[':
+                pos++;
+                if (!tryConsume(']')) {
+                    do {
+                        skipValue();
+                    } while (tryConsume(','));
+                    expect(']');
+                }
+                break;
+            case '"':
+                readString();
+                break;
+            case 't':
+                expectLiteral("true");
+                break;
+            case 'f':
+                expectLiteral("false");
+                break;
+            case 'n':
+                expectLiteral("null");
+                break;
+            default:
+                readLong();
+        }
+    }
+
+    private void expectLiteral(@NotNull String literal) throws IOException, JSONException {
+        peek();
+        for (int k = 0; k < literal.length(); k++) {
+            if (nextRaw() != literal.charAt(k)) {
+                throw syntaxError(literal + " expected");
+            }
+        }
+    }
+
+    private void expect(char c) throws IOException, JSONException {
+        if (peek() != c) {
+            throw syntaxError("'" + c + "' expected");
+        }
+        pos++;
+    }
+
+    private boolean tryConsume(char c) throws IOException, JSONException {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    // следующий значимый символ (пропуская пробелы), без перемещения позиции
+    private char peek() throws IOException, JSONException {
+        while (true) {
+            final char c = peekRaw();
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    // следующий символ без перемещения позиции, 0 в конце потока
+    private char peekRaw() throws IOException {
+        if (pos == limit && !fill()) {
+            return 0;
+        }
+        return buffer[pos];
+    }
+
+    private char nextRaw() throws IOException, JSONException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("unexpected end of input");
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        pos = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private @NotNull JSONException syntaxError(@NotNull String message) {
+        return new JSONException(message);
+    }
+}
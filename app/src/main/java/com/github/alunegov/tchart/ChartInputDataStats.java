@@ -11,34 +11,99 @@ public class ChartInputDataStats {
     private boolean[] linesRightAlign;
     // состояние видимости линии (0 - не видима, 255 - видима)
     private int[] linesVisibilityState;
-    private int[] stackedSum = null;
-    private int[] tmpStackedSum = null;
+    // сумма линий по текущему состоянию видимости (только для BAR/AREA)
+    private StackedSumIndex stackedSum = null;
+    // сумма линий для запросов findYMinMax с произвольным состоянием видимости (только для BAR), создаётся при первом
+    // запросе. Отдельно от stackedSum, чтобы запросы на "будущее" состояние (см. calcAnimationRanges) не перебивали её.
+    private StackedSumIndex queryStackedSum = null;
+    // индексы мин/макс по каждой линии (только для LINE), строятся один раз в конструкторе
+    private RangeMinMaxIndex[] linesMinMaxIndexes = null;
+    // значения с дописыванием точек (null - данные не меняются). Индексы мин/макс тогда строятся по физическим индексам
+    // буфера и дополняются новыми точками при запросе (см. syncAppended).
+    private final @Nullable RingChartColumns ring;
+    // кол-во добавленных в ring точек, учтённых в linesMinMaxIndexes
+    private long appliedAppendedCount = 0;
+    // префиксные суммы линий для сумм/средних в диапазоне (см. getLineSum)
+    private final @NotNull RangeSumIndex rangeSums;
+    // значения в сжатых блоках (null - не сжаты). Мин/макс линий (LINE) тогда берутся из заголовков блоков, индексы
+    // мин/макс по точкам не строятся.
+    private final @Nullable CompressedChartColumns compressed;
+    // индексы порядковых статистик по каждой линии для findYPercentiles (только для LINE без дописывания точек),
+    // создаются при первом запросе
+    private RangePercentileIndex[] linesPercentileIndexes = null;
 
     public ChartInputDataStats(ChartInputData inputData) {
         this.inputData = inputData;
+        ring = inputData.getColumns() instanceof RingChartColumns ? (RingChartColumns) inputData.getColumns() : null;
+        compressed = inputData.getColumns() instanceof CompressedChartColumns ? (CompressedChartColumns) inputData.getColumns() : null;
 
-        linesRightAlign = new boolean[inputData.LinesValues.length];
+        linesRightAlign = new boolean[inputData.getColumns().getLinesCount()];
         for (int i = 0; i < linesRightAlign.length; i++) {
             linesRightAlign[i] = inputData.flags.get(ChartInputData.FLAG_Y_SCALED) && (i == 1);  // TODO: wtf. алгоритм привязки к осям?
         }
 
-        linesVisibilityState = new int[inputData.LinesValues.length];
+        linesVisibilityState = new int[inputData.getColumns().getLinesCount()];
         for (int i = 0; i < linesVisibilityState.length; i++) {
             linesVisibilityState[i] = VISIBILITY_STATE_ON;
         }
 
         if (inputData.linesType == ChartInputData.LineType.BAR || inputData.linesType == ChartInputData.LineType.AREA) {
-            stackedSum = new int[inputData.XValues.length];
-            internalUpdateStackedSum(stackedSum, linesVisibilityState);
+            stackedSum = new StackedSumIndex(inputData, linesVisibilityState);
+        }
+
+        rangeSums = new RangeSumIndex(inputData.getColumns());
+
+        if (inputData.linesType == ChartInputData.LineType.LINE && compressed != null) {
+            inputData.getLodPyramid();
+        } else if (inputData.linesType == ChartInputData.LineType.LINE) {
+            linesMinMaxIndexes = new RangeMinMaxIndex[inputData.getColumns().getLinesCount()];
+            if (ring != null) {
+                for (int j = 0; j < linesMinMaxIndexes.length; j++) {
+                    linesMinMaxIndexes[j] = new RangeMinMaxIndex(ring.getCapacity());
+                }
+                syncAppended();
+            } else {
+                for (int j = 0; j < linesMinMaxIndexes.length; j++) {
+                    linesMinMaxIndexes[j] = new RangeMinMaxIndex(inputData.getColumns().getPointsCount());
+                    linesMinMaxIndexes[j].build(inputData.getColumns(), j);
+                }
+
+                // пирамида прореживания строится здесь же (статистика может готовиться в фоновом потоке), а не при
+                // первой отрисовке. Для дописываемых данных не используется.
+                inputData.getLodPyramid();
+            }
         }
     }
 
+    // Дополнение индексов мин/макс (LINE) точками, добавленными в ring с прошлого вызова, - O(log n) на точку и линию
+    private void syncAppended() {
+        if (BuildConfig.DEBUG && (ring == null)) throw new AssertionError();
+
+        final long appendedCount = ring.getAppendedCount();
+        if (appendedCount == appliedAppendedCount) {
+            return;
+        }
+
+        final int pointsCount = ring.getPointsCount();
+        // все хранимые точки новые - заполняем индексы заново (вытесненные значения в физических ячейках перезаписаны)
+        final int newPointsCount = (int) Math.min(appendedCount - appliedAppendedCount, pointsCount);
+
+        for (int i = pointsCount - newPointsCount; i < pointsCount; i++) {
+            final int p = ring.getPhysicalIndex(i);
+            for (int j = 0; j < linesMinMaxIndexes.length; j++) {
+                linesMinMaxIndexes[j].update(p, ring.getY(j, i));
+            }
+        }
+
+        appliedAppendedCount = appendedCount;
+    }
+
     public @NotNull int[] getLinesVisibilityState() {
         return linesVisibilityState;
     }
 
     public void updateLineVisibility(int lineIndex, boolean exceptLine, int state) {
-        if ((lineIndex < 0) || (inputData.LinesValues.length <= lineIndex)) {
+        if ((lineIndex < 0) || (inputData.getColumns().getLinesCount() <= lineIndex)) {
             return;
         }
 
@@ -54,14 +119,25 @@ public class ChartInputDataStats {
         linesVisibilityState[lineIndex] = state;
 
         if (inputData.linesType == ChartInputData.LineType.BAR || inputData.linesType == ChartInputData.LineType.AREA) {
-            internalUpdateStackedSum(stackedSum, linesVisibilityState);
+            stackedSum.update(linesVisibilityState);
+        }
+    }
+
+    // копирование состояния видимости линий (из статистики других данных того же графика)
+    public void setLinesVisibilityState(@NotNull int[] linesVisibilityState) {
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != this.linesVisibilityState.length)) throw new AssertionError();
+
+        System.arraycopy(linesVisibilityState, 0, this.linesVisibilityState, 0, linesVisibilityState.length);
+
+        if (inputData.linesType == ChartInputData.LineType.BAR || inputData.linesType == ChartInputData.LineType.AREA) {
+            stackedSum.update(this.linesVisibilityState);
         }
     }
 
     // количество видимых линий (с не нулевым состоянием)
     public int getVisibleLinesCount() {
         int visibleLinesCount = 0;
-        for (int j = 0; j < inputData.LinesValues.length; j++) {
+        for (int j = 0; j < inputData.getColumns().getLinesCount(); j++) {
             if (linesVisibilityState[j] != VISIBILITY_STATE_OFF) {
                 visibleLinesCount++;
             }
@@ -73,7 +149,7 @@ public class ChartInputDataStats {
     // количество видимых линий (с не нулевым состоянием) с привязкой к оси
     public int getVisibleLinesCount(boolean rightAlign) {
         int visibleLinesCount = 0;
-        for (int j = 0; j < inputData.LinesValues.length; j++) {
+        for (int j = 0; j < inputData.getColumns().getLinesCount(); j++) {
             if (linesRightAlign[j] != rightAlign) {
                 continue;
             }
@@ -91,40 +167,19 @@ public class ChartInputDataStats {
         return linesRightAlign;
     }
 
-    public @Nullable int[] getStackedSum() {
-        return stackedSum;
-    }
-
-    private void internalUpdateStackedSum(@NotNull int[] sum, @NotNull int[] linesVisibilityState) {
-        for (int i = 0; i < inputData.XValues.length; i++) {
-            sum[i] = 0;
-        }
-
-        for (int j = 0; j < inputData.LinesValues.length; j++) {
-            if (linesVisibilityState[j] == VISIBILITY_STATE_OFF) {
-                continue;
-            }
-
-            if (linesVisibilityState[j] == VISIBILITY_STATE_ON) {
-                for (int i = 0; i < inputData.XValues.length; i++) {
-                    sum[i] += inputData.LinesValues[j][i];
-                }
-            } else {
-                final float lineK = (float) linesVisibilityState[j] / VISIBILITY_STATE_ON;
+    // сумма линий в точке index по текущему состоянию видимости (только для BAR/AREA)
+    public long getStackedSum(int index) {
+        if (BuildConfig.DEBUG && (stackedSum == null)) throw new AssertionError();
 
-                for (int i = 0; i < inputData.XValues.length; i++) {
-                    sum[i] += (int) (inputData.LinesValues[j][i] * lineK);
-                }
-            }
-        }
+        return stackedSum.getSum(index);
     }
 
     // Определение минимума и максимума по Y в указанном диапазоне X по включенным сигналам. Для LINE ещё смотрится
     // привязка к оси.
     public void findYMinMax(int l, int r, boolean rightAlign, @NotNull int[] linesVisibilityState, @NotNull int[] minMax) {
         if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
-        if (BuildConfig.DEBUG && (inputData.LinesValues.length <= 0)) throw new AssertionError();
-        if (BuildConfig.DEBUG && ((l < 0) || (r >= inputData.LinesValues[0].length))) throw new AssertionError();
+        if (BuildConfig.DEBUG && (inputData.getColumns().getLinesCount() <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= inputData.getColumns().getPointsCount()))) throw new AssertionError();
         if (BuildConfig.DEBUG && (minMax.length != 2)) throw new AssertionError();
 
         int min = Integer.MAX_VALUE;
@@ -132,7 +187,17 @@ public class ChartInputDataStats {
 
         switch (inputData.linesType) {
             case LINE:
-                for (int j = 0; j < inputData.LinesValues.length; j++) {
+                if (BuildConfig.DEBUG && (linesMinMaxIndexes == null) && (compressed == null)) throw new AssertionError();
+
+                minMax[0] = min;
+                minMax[1] = max;
+
+                if (ring != null) {
+                    syncAppended();
+                }
+
+                // мин/макс каждой линии берём из её индекса за O(log n), объединяя результат по видимым линиям
+                for (int j = 0; j < inputData.getColumns().getLinesCount(); j++) {
                     if (linesRightAlign[j] != rightAlign) {
                         continue;
                     }
@@ -140,35 +205,30 @@ public class ChartInputDataStats {
                         continue;
                     }
 
-                    for (int i = l; i <= r; i++) {
-                        int val = inputData.LinesValues[j][i];
-                        if (val < min) {
-                            min = val;
-                        }
-                        if (val > max) {
-                            max = val;
-                        }
+                    if (compressed != null) {
+                        compressed.findMinMax(j, l, r, minMax);
+                    } else if (ring != null) {
+                        linesMinMaxIndexes[j].findRing(l, r, ring.getPhysicalIndex(0), minMax);
+                    } else {
+                        linesMinMaxIndexes[j].find(l, r, minMax);
                     }
                 }
 
+                min = minMax[0];
+                max = minMax[1];
+
                 break;
 
             case BAR:
-                if (tmpStackedSum == null) {
-                    tmpStackedSum = new int[inputData.XValues.length];
+                if (queryStackedSum == null) {
+                    queryStackedSum = new StackedSumIndex(inputData, linesVisibilityState);
                 }
 
-                internalUpdateStackedSum(tmpStackedSum, linesVisibilityState);
+                // сумма пересчитывается только по линиям, изменившим состояние с прошлого запроса
+                queryStackedSum.findMinMax(l, r, linesVisibilityState, minMax);
 
-                for (int i = l; i <= r; i++) {
-                    int val = tmpStackedSum[i];
-                    if (val < min) {
-                        min = val;
-                    }
-                    if (val > max) {
-                        max = val;
-                    }
-                }
+                min = minMax[0];
+                max = minMax[1];
 
                 break;
 
@@ -183,6 +243,119 @@ public class ChartInputDataStats {
         minMax[1] = max;
     }
 
+    // Определение процентилей lowFraction и highFraction (доли от 0 до 1) значений по Y в указанном диапазоне X по
+    // включенным сигналам с учётом привязки к оси - устойчивый к выбросам аналог findYMinMax. Значения всех видимых линий
+    // рассматриваются как одна выборка. Только для LINE без дописывания точек, иначе - мин/макс как в findYMinMax.
+    // O(log σ) для одной видимой линии, O(кол-во линий * log σ * log(max - min)) для нескольких.
+    public void findYPercentiles(int l, int r, boolean rightAlign, @NotNull int[] linesVisibilityState,
+                                 float lowFraction, float highFraction, @NotNull int[] minMax) {
+        if (BuildConfig.DEBUG && ((lowFraction < 0) || (lowFraction > highFraction) || (highFraction > 1))) throw new AssertionError();
+
+        findYMinMax(l, r, rightAlign, linesVisibilityState, minMax);
+
+        if (inputData.linesType != ChartInputData.LineType.LINE || ring != null || !isYMinMaxDetected(minMax)) {
+            return;
+        }
+
+        if (linesPercentileIndexes == null) {
+            linesPercentileIndexes = new RangePercentileIndex[inputData.getColumns().getLinesCount()];
+        }
+
+        int visibleLinesCount = 0;
+        int visibleLineIndex = -1;
+        for (int j = 0; j < linesPercentileIndexes.length; j++) {
+            if (linesRightAlign[j] != rightAlign) {
+                continue;
+            }
+            if (linesVisibilityState[j] == VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            if (linesPercentileIndexes[j] == null) {
+                linesPercentileIndexes[j] = new RangePercentileIndex(inputData.getColumns(), j);
+            }
+            visibleLinesCount++;
+            visibleLineIndex = j;
+        }
+
+        final long valuesCount = (long) getPointsCount(l, r) * visibleLinesCount;
+        final long lowK = (long) Math.floor(lowFraction * (valuesCount - 1));
+        final long highK = (long) Math.ceil(highFraction * (valuesCount - 1));
+
+        if (visibleLinesCount == 1) {
+            final RangePercentileIndex index = linesPercentileIndexes[visibleLineIndex];
+            minMax[0] = index.findKth(l, r, (int) lowK);
+            minMax[1] = index.findKth(l, r, (int) highK);
+        } else {
+            final int rawMin = minMax[0];
+            final int rawMax = minMax[1];
+            minMax[0] = findKthOfLines(l, r, rightAlign, linesVisibilityState, lowK, rawMin, rawMax);
+            minMax[1] = findKthOfLines(l, r, rightAlign, linesVisibilityState, highK, rawMin, rawMax);
+        }
+    }
+
+    // k-е (с 0) по возрастанию значение видимых линий в диапазоне [l, r] - двоичный поиск по значению в [min, max]
+    // наименьшего, не больших которого больше k
+    private int findKthOfLines(int l, int r, boolean rightAlign, @NotNull int[] linesVisibilityState, long k, int min,
+                               int max) {
+        long lo = min;
+        long hi = max;
+        while (lo < hi) {
+            final long mid = (lo + hi) >> 1;
+
+            long count = 0;
+            for (int j = 0; j < linesPercentileIndexes.length; j++) {
+                if (linesRightAlign[j] != rightAlign) {
+                    continue;
+                }
+                if (linesVisibilityState[j] == VISIBILITY_STATE_OFF) {
+                    continue;
+                }
+
+                count += linesPercentileIndexes[j].countLessOrEqual(l, r, (int) mid);
+            }
+
+            if (count > k) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return (int) lo;
+    }
+
+    // Сумма значений линии lineIndex в диапазоне индексов [l, r], O(1)
+    public long getLineSum(int lineIndex, int l, int r) {
+        return rangeSums.getSum(lineIndex, l, r);
+    }
+
+    // Среднее значение линии lineIndex в диапазоне индексов [l, r], O(1)
+    public double getLineAverage(int lineIndex, int l, int r) {
+        return rangeSums.getAverage(lineIndex, l, r);
+    }
+
+    // Кол-во точек в диапазоне индексов [l, r]
+    public static int getPointsCount(int l, int r) {
+        return r - l + 1;
+    }
+
+    // Сумма значений видимых линий в диапазоне индексов [l, r] с учётом состояния видимости (вклад линии - её сумма,
+    // умноженная на state / VISIBILITY_STATE_ON), O(кол-во линий)
+    public long getVisibleLinesSum(int l, int r, @NotNull int[] linesVisibilityState) {
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != inputData.getColumns().getLinesCount())) throw new AssertionError();
+
+        long res = 0;
+        for (int j = 0; j < linesVisibilityState.length; j++) {
+            final int state = linesVisibilityState[j];
+            if (state == VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            res += rangeSums.getSum(j, l, r) * state / VISIBILITY_STATE_ON;
+        }
+        return res;
+    }
+
     public static boolean isYMinMaxDetected(@NotNull int[] minMax) {
         return isYMinMaxDetected(minMax[0], minMax[1]);
     }
@@ -0,0 +1,199 @@
+package com.github.alunegov.tchart;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Замеры фаз построения и отрисовки кадра одного графика: время каждой фазы (процентили по последним WINDOW_SIZE замерам),
+// счётчики (выведенные точки, перестроенные пути, форматированные метки), секции трассировки (см. Tracer) и интервалы
+// в ChartTraceRecorder. Отчёт - getReport. Выключенный профилировщик - это null у графика (см.
+// ChartGeometry.setProfiler): замеры тогда стоят одну проверку на null на фазу. Фазы могут замеряться в разных потоках (геометрия строится в фоне, см. ChartGeometryEngine).
+public class ChartProfiler {
+    // запрос диапазона Y к статистике (ChartGeometry.calcYRangeAt)
+    public static final int PHASE_STATS_QUERY = 0;
+    // построение отрезков/многоугольников линий (ChartGeometry.updateLines), включая PHASE_PATHS
+    public static final int PHASE_GEOMETRY = 1;
+    // заполнение Path по многоугольникам (ChartDrawData.onLinesUpdated/onCursorUpdated)
+    public static final int PHASE_PATHS = 2;
+    // метки осей (ChartGeometry.updateAxisMarks)
+    public static final int PHASE_AXIS_MARKS = 3;
+    // прямоугольники курсора (ChartGeometry.updateCursorPaths)
+    public static final int PHASE_CURSOR = 4;
+    // onDraw целиком и его проходы: линии, оси, курсор
+    public static final int PHASE_DRAW = 5;
+    public static final int PHASE_DRAW_LINES = 6;
+    public static final int PHASE_DRAW_AXES = 7;
+    public static final int PHASE_DRAW_CURSOR = 8;
+    // смена диапазона X, диапазона Y, видимости линий (ChartGeometry.setXRange/setYRange/updateLineVisibility), включая
+    // построение геометрии
+    public static final int PHASE_SET_X_RANGE = 9;
+    public static final int PHASE_SET_Y_RANGE = 10;
+    public static final int PHASE_LINE_VISIBILITY = 11;
+    // шаг анимации (зоны, видимости линий) в TelegramChartView
+    public static final int PHASE_ANIMATION = 12;
+    private static final int PHASES_COUNT = 13;
+
+    // имена фаз - в отчёте, в секциях трассировки и интервалах ChartTraceRecorder
+    private static final String[] PHASES_NAMES = new String[] {"stats query", "geometry", "paths", "axis marks", "cursor",
+            "draw", "draw lines", "draw axes", "draw cursor", "set x range", "set y range", "line visibility",
+            "animation"};
+
+    // кол-во точек, выведенных в буферы геометрии (вершины отрезков/многоугольников)
+    public static final int COUNTER_POINTS_EMITTED = 0;
+    // кол-во перестроенных непустых Path
+    public static final int COUNTER_PATHS_REBUILT = 1;
+    // кол-во текстов меток осей (вызовов AxisTextConverter.toText)
+    public static final int COUNTER_LABELS_FORMATTED = 2;
+    private static final int COUNTERS_COUNT = 3;
+
+    private static final String[] COUNTERS_NAMES = new String[] {"points emitted", "paths rebuilt", "labels formatted"};
+
+    // кол-во последних замеров фазы, по которым считаются процентили
+    private static final int WINDOW_SIZE = 256;
+
+    // Секции трассировки (на Android - android.os.Trace, см. ChartUtils.makeTracer). begin/end вызываются парами в одном
+    // потоке.
+    public interface Tracer {
+        void beginSection(@NotNull String name);
+
+        void endSection();
+    }
+
+    // флаг: профилировщики создаются видами графиков (см. TelegramChartView), задаётся при запуске приложения
+    private static volatile boolean enabled = false;
+
+    // имя графика в отчёте
+    private final @NotNull String name;
+    private final @Nullable Tracer tracer;
+    private final @Nullable ChartTraceRecorder recorder;
+    // имена секций трассировки: "<name>: <фаза>"
+    private final @NotNull String[] sectionsNames = new String[PHASES_COUNT];
+
+    // последние WINDOW_SIZE длительностей каждой фазы по кругу, нс
+    private final @NotNull long[][] phasesWindows = new long[PHASES_COUNT][WINDOW_SIZE];
+    // общее кол-во замеров, суммарная и максимальная длительности фазы, нс
+    private final @NotNull long[] phasesCounts = new long[PHASES_COUNT];
+    private final @NotNull long[] phasesTotals = new long[PHASES_COUNT];
+    private final @NotNull long[] phasesMax = new long[PHASES_COUNT];
+
+    private final @NotNull long[] counters = new long[COUNTERS_COUNT];
+
+    public ChartProfiler(@NotNull String name, @Nullable Tracer tracer) {
+        this(name, tracer, null);
+    }
+
+    public ChartProfiler(@NotNull String name, @Nullable Tracer tracer, @Nullable ChartTraceRecorder recorder) {
+        this.name = name;
+        this.tracer = tracer;
+        this.recorder = recorder;
+
+        for (int i = 0; i < PHASES_COUNT; i++) {
+            sectionsNames[i] = name + ": " + PHASES_NAMES[i];
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Включение профилирования для видов, создаваемых после вызова
+    public static void setEnabled(boolean enabled) {
+        ChartProfiler.enabled = enabled;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    // Начало фазы, результат - метка времени для end
+    public long begin(int phase) {
+        if (tracer != null) {
+            tracer.beginSection(sectionsNames[phase]);
+        }
+        return System.nanoTime();
+    }
+
+    // Конец фазы, начатой begin (в том же потоке)
+    public void end(int phase, long startTime) {
+        final long duration = System.nanoTime() - startTime;
+
+        if (tracer != null) {
+            tracer.endSection();
+        }
+        if (recorder != null) {
+            recorder.record(sectionsNames[phase], (phase == PHASE_ANIMATION) ? ChartTraceRecorder.CATEGORY_ANIMATION
+                    : ChartTraceRecorder.CATEGORY_CHART, startTime, duration);
+        }
+
+        synchronized (this) {
+            phasesWindows[phase][(int) (phasesCounts[phase] % WINDOW_SIZE)] = duration;
+            phasesCounts[phase]++;
+            phasesTotals[phase] += duration;
+            phasesMax[phase] = Math.max(phasesMax[phase], duration);
+        }
+    }
+
+    public synchronized void count(int counter, long value) {
+        counters[counter] += value;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(phasesCounts, 0);
+        Arrays.fill(phasesTotals, 0);
+        Arrays.fill(phasesMax, 0);
+        Arrays.fill(counters, 0);
+    }
+
+    // кол-во замеров фазы
+    public synchronized long getPhaseCount(int phase) {
+        return phasesCounts[phase];
+    }
+
+    // процентиль p (0..1) длительности фазы по последним замерам, нс (0 - замеров нет)
+    public synchronized long getPhasePercentile(int phase, float p) {
+        final long[] window = getWindowSorted(phase);
+        if (window.length == 0) {
+            return 0;
+        }
+        return window[Math.min(window.length - 1, (int) (p * window.length))];
+    }
+
+    public synchronized long getCounter(int counter) {
+        return counters[counter];
+    }
+
+    // Отчёт: по фазе - кол-во замеров, среднее, процентили 50/90/99 по последним замерам и максимум (мкс), по счётчику -
+    // всего и на построенный кадр геометрии
+    public synchronized @NotNull String getReport() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(name).append('\n');
+
+        for (int i = 0; i < PHASES_COUNT; i++) {
+            if (phasesCounts[i] == 0) {
+                continue;
+            }
+
+            final long[] window = getWindowSorted(i);
+            sb.append(String.format(Locale.ROOT, "  %-12s n=%d avg=%d p50=%d p90=%d p99=%d max=%d us%n", PHASES_NAMES[i],
+                    phasesCounts[i], phasesTotals[i] / phasesCounts[i] / 1000, window[window.length / 2] / 1000,
+                    window[window.length * 9 / 10] / 1000, window[window.length * 99 / 100] / 1000, phasesMax[i] / 1000));
+        }
+
+        final long framesCount = Math.max(1, phasesCounts[PHASE_GEOMETRY]);
+        for (int i = 0; i < COUNTERS_COUNT; i++) {
+            sb.append(String.format(Locale.ROOT, "  %-16s %d (%d/frame)%n", COUNTERS_NAMES[i], counters[i],
+                    counters[i] / framesCount));
+        }
+
+        return sb.toString();
+    }
+
+    private @NotNull long[] getWindowSorted(int phase) {
+        final int n = (int) Math.min(phasesCounts[phase], WINDOW_SIZE);
+        final long[] res = Arrays.copyOf(phasesWindows[phase], n);
+        Arrays.sort(res);
+        return res;
+    }
+}
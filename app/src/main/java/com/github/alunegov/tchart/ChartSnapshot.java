@@ -0,0 +1,252 @@
+package com.github.alunegov.tchart;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+// Двоичный снимок разобранного графика - чтобы при следующих запусках не разбирать json.
+// Значения хранятся как в CompactChartColumns: линия - в самом узком подходящем типе, равномерный X - началом и шагом.
+// Файл снимка отображается в память (FileChannel.map), столбцы копируются из отображения в CompactChartColumns целиком
+// (без разбора по значению). Формат (little-endian):
+//   заголовок: MAGIC, FORMAT_VERSION, версия исходных данных (sourceVersion), длина и CRC32 полезной нагрузки;
+//   полезная нагрузка: тип линий, флаги, кол-во линий и точек, начало и шаг X (шаг 0 - X хранится столбцом), цвета,
+//   размеры значений (CompactChartColumns.WIDTH_*) и имена линий, выравнивание до 8 байт, столбцы значений (X, если
+//   хранится, затем линии, см. CompactChartColumns.writeTo).
+// Снимок другой версии формата или исходных данных, а также повреждённый снимок не загружаются (read возвращает null).
+public class ChartSnapshot {
+    private static final int MAGIC = 0x53484354;  // "TCHS"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final String NAME_CHARSET = "UTF8";
+    private static final String SNAPSHOT_FILE_EXT = ".snapshot";
+
+    // Загрузка графика chartName: из снимка в snapshotsDir, если он есть и соответствует sourceVersion, иначе разбором
+    // json (см. ChartInputDataMapper.loadChart) с записью снимка. Ошибка записи снимка не мешает загрузке.
+    public static @NotNull ChartInputData loadChart(@NotNull ChartInputDataMapper.ResourceLoader resourceLoader,
+                                                    @NotNull String chartName,
+                                                    @NotNull ChartInputDataMapper.ColorParser colorParser,
+                                                    @NotNull File snapshotsDir, long sourceVersion) throws IOException, JSONException {
+        final File file = new File(snapshotsDir, chartName + SNAPSHOT_FILE_EXT);
+
+        try {
+            final ChartInputData inputData = read(file, sourceVersion);
+            if (inputData != null) {
+                return inputData;
+            }
+        } catch (IOException e) {
+            // снимок недоступен - разбираем json
+        }
+
+        final ChartInputData inputData = ChartInputDataMapper.loadChart(resourceLoader, chartName, colorParser);
+
+        try {
+            if (snapshotsDir.isDirectory() || snapshotsDir.mkdirs()) {
+                write(inputData, sourceVersion, file);
+            }
+        } catch (IOException e) {
+            // без снимка - при следующем запуске снова разбор json
+        }
+
+        return inputData;
+    }
+
+    // Запись снимка. Файл пишется во временный и переименовывается, чтобы при сбое не остался недописанный снимок.
+    // Значения не в CompactChartColumns предварительно переводятся в него.
+    public static void write(@NotNull ChartInputData inputData, long sourceVersion, @NotNull File file) throws IOException {
+        final CompactChartColumns columns = (inputData.getColumns() instanceof CompactChartColumns)
+                ? (CompactChartColumns) inputData.getColumns() : CompactChartColumns.of(inputData.getColumns());
+        final int linesCount = columns.getLinesCount();
+        final int pointsCount = columns.getPointsCount();
+
+        final byte[][] names = new byte[linesCount][];
+        int namesSize = 0;
+        for (int j = 0; j < linesCount; j++) {
+            names[j] = (inputData.LinesNames[j] != null ? inputData.LinesNames[j] : "").getBytes(NAME_CHARSET);
+            namesSize += 4 + 4 + 4 + names[j].length;
+        }
+
+        final int columnsOffset = align8(HEADER_SIZE + 4 + 4 + 4 + 4 + 8 + 8 + namesSize);
+        final long fileSize = columnsOffset + columns.getValuesSize();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("chart is too large");
+        }
+
+        final ByteBuffer bb = ByteBuffer.allocate((int) fileSize).order(BYTE_ORDER);
+
+        bb.position(HEADER_SIZE);
+        bb.putInt(inputData.linesType.ordinal());
+        bb.putInt(flagsToInt(inputData.flags));
+        bb.putInt(linesCount);
+        bb.putInt(pointsCount);
+        bb.putLong(columns.getX(0));
+        bb.putLong(columns.getXStep());
+        for (int j = 0; j < linesCount; j++) {
+            bb.putInt(inputData.LinesColors[j]);
+            bb.putInt(columns.getLineWidth(j));
+            bb.putInt(names[j].length);
+            bb.put(names[j]);
+        }
+
+        bb.position(columnsOffset);
+        columns.writeTo(bb);
+
+        final CRC32 crc = new CRC32();
+        crc.update(bb.array(), HEADER_SIZE, (int) fileSize - HEADER_SIZE);
+
+        bb.position(0);
+        bb.putInt(MAGIC);
+        bb.putInt(FORMAT_VERSION);
+        bb.putLong(sourceVersion);
+        bb.putInt((int) fileSize - HEADER_SIZE);
+        bb.putInt((int) crc.getValue());
+
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        final FileOutputStream os = new FileOutputStream(tmpFile);
+        try {
+            os.write(bb.array());
+        } finally {
+            os.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            // на некоторых ФС renameTo не заменяет существующий файл
+            if (!file.delete() || !tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("can't rename " + tmpFile);
+            }
+        }
+    }
+
+    // Загрузка снимка. null - файла нет, он другой версии (формата или исходных данных) или повреждён.
+    public static @Nullable ChartInputData read(@NotNull File file, long sourceVersion) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final MappedByteBuffer map;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            // отображение остаётся действительным и после закрытия файла
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        map.order(BYTE_ORDER);
+
+        try {
+            return parse(map, sourceVersion);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable ChartInputData parse(@NotNull ByteBuffer bb, long sourceVersion) throws IOException {
+        if (bb.getInt() != MAGIC || bb.getInt() != FORMAT_VERSION || bb.getLong() != sourceVersion) {
+            return null;
+        }
+        final int payloadSize = bb.getInt();
+        final int payloadCrc = bb.getInt();
+        if (payloadSize != bb.limit() - HEADER_SIZE) {
+            return null;
+        }
+        if (payloadCrc != calcCrc(bb, HEADER_SIZE)) {
+            return null;
+        }
+
+        bb.position(HEADER_SIZE);
+
+        final int linesTypeOrdinal = bb.getInt();
+        final ChartInputData.LineType[] linesTypes = ChartInputData.LineType.values();
+        if (linesTypeOrdinal < 0 || linesTypeOrdinal >= linesTypes.length) {
+            return null;
+        }
+        final BitSet flags = intToFlags(bb.getInt());
+        final int linesCount = bb.getInt();
+        final int pointsCount = bb.getInt();
+        if (linesCount <= 0 || pointsCount <= 0) {
+            return null;
+        }
+        final long xStart = bb.getLong();
+        final long xStep = bb.getLong();
+
+        final int[] colors = new int[linesCount];
+        final int[] widths = new int[linesCount];
+        final String[] names = new String[linesCount];
+        for (int j = 0; j < linesCount; j++) {
+            colors[j] = bb.getInt();
+            widths[j] = bb.getInt();
+            final int nameSize = bb.getInt();
+            if (nameSize < 0 || nameSize > bb.remaining()) {
+                return null;
+            }
+            final byte[] name = new byte[nameSize];
+            bb.get(name);
+            names[j] = new String(name, NAME_CHARSET);
+        }
+
+        bb.position(align8(bb.position()));
+
+        final ChartInputData res = new ChartInputData(CompactChartColumns.readFrom(bb, xStart, xStep, widths, pointsCount),
+                linesTypes[linesTypeOrdinal], flags);
+        System.arraycopy(names, 0, res.LinesNames, 0, linesCount);
+        System.arraycopy(colors, 0, res.LinesColors, 0, linesCount);
+
+        return res;
+    }
+
+    // CRC32 от offset до конца буфера (CRC32.update(ByteBuffer) недоступен на старых API - читаем кусками)
+    private static int calcCrc(@NotNull ByteBuffer bb, int offset) {
+        final ByteBuffer dup = bb.duplicate();
+        dup.position(offset);
+
+        final CRC32 crc = new CRC32();
+        final byte[] chunk = new byte[8192];
+        while (dup.hasRemaining()) {
+            final int n = Math.min(chunk.length, dup.remaining());
+            dup.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+
+        return (int) crc.getValue();
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    // BitSet.toLongArray/valueOf недоступны на старых API, флагов немного - хватает int
+    private static int flagsToInt(@NotNull BitSet flags) {
+        int res = 0;
+        for (int i = flags.nextSetBit(0); i >= 0 && i < 32; i = flags.nextSetBit(i + 1)) {
+            res |= 1 << i;
+        }
+        return res;
+    }
+
+    private static @NotNull BitSet intToFlags(int value) {
+        final BitSet res = new BitSet();
+        for (int i = 0; i < 32; i++) {
+            if ((value & (1 << i)) != 0) {
+                res.set(i);
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.alunegov.tchart;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Запись интервалов работы графиков (загрузка, статистика, построение геометрии, отрисовка, шаги анимаций) в кольцевой
+// буфер ограниченного размера - при переполнении вытесняются самые старые. Содержимое выгружается в формате Chrome
+// trace-event (JSON, события "X"), который открывается в chrome://tracing или Perfetto. Так сеанс прокрутки/
+// масштабирования/переключения линий можно сравнить до и после изменений. Запись - из любого потока.
+public class ChartTraceRecorder {
+    // категории событий
+    public static final String CATEGORY_LOAD = "load";
+    public static final String CATEGORY_CHART = "chart";
+    public static final String CATEGORY_ANIMATION = "animation";
+
+    // общий экземпляр приложения (null - запись не ведётся), задаётся при запуске приложения
+    private static volatile @Nullable ChartTraceRecorder global;
+
+    // имена и категории интервалов (ссылки на заранее подготовленные строки - запись без выделения памяти), начало
+    // (от origin) и длительность, нс, id потока
+    private final @NotNull String[] names;
+    private final @NotNull String[] categories;
+    private final @NotNull long[] starts;
+    private final @NotNull long[] durations;
+    private final @NotNull long[] threadsIds;
+    // общее кол-во записанных интервалов (позиция следующего в кольце - recordedCount % ёмкость)
+    private long recordedCount = 0;
+    // имена потоков, записывавших интервалы, и id потока последнего интервала (имя уже в threadsNames)
+    private final @NotNull Map<Long, String> threadsNames = new HashMap<>();
+    private long lastThreadId = -1;
+    // начало отсчёта времени, System.nanoTime
+    private final long origin = System.nanoTime();
+
+    public ChartTraceRecorder(int capacity) {
+        if (BuildConfig.DEBUG && (capacity <= 0)) throw new AssertionError();
+
+        names = new String[capacity];
+        categories = new String[capacity];
+        starts = new long[capacity];
+        durations = new long[capacity];
+        threadsIds = new long[capacity];
+    }
+
+    public static @Nullable ChartTraceRecorder getGlobal() {
+        return global;
+    }
+
+    public static void setGlobal(@Nullable ChartTraceRecorder recorder) {
+        global = recorder;
+    }
+
+    public int getCapacity() {
+        return names.length;
+    }
+
+    // кол-во интервалов в буфере
+    public synchronized int getSize() {
+        return (int) Math.min(recordedCount, names.length);
+    }
+
+    // Интервал в текущем потоке: начало startTime (System.nanoTime), длительность duration, нс
+    public void record(@NotNull String name, @NotNull String category, long startTime, long duration) {
+        final Thread thread = Thread.currentThread();
+        final long threadId = thread.getId();
+
+        synchronized (this) {
+            final int k = (int) (recordedCount % names.length);
+            names[k] = name;
+            categories[k] = category;
+            starts[k] = Math.max(0, startTime - origin);
+            durations[k] = duration;
+            threadsIds[k] = threadId;
+            recordedCount++;
+
+            if (threadId != lastThreadId) {
+                if (!threadsNames.containsKey(threadId)) {
+                    threadsNames.put(threadId, thread.getName());
+                }
+                lastThreadId = threadId;
+            }
+        }
+    }
+
+    // Интервал с началом startTime (System.nanoTime) и концом - сейчас
+    public void recordSince(@NotNull String name, @NotNull String category, long startTime) {
+        record(name, category, startTime, System.nanoTime() - startTime);
+    }
+
+    public synchronized void clear() {
+        recordedCount = 0;
+        threadsNames.clear();
+        lastThreadId = -1;
+    }
+
+    // Выгрузка в формате Chrome trace-event: {"traceEvents": [...]}, время в мкс. Имена потоков - метаданными
+    // thread_name. Буфер не очищается.
+    public void writeChromeTrace(@NotNull Writer writer) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+
+        synchronized (this) {
+            sb.append("{\"traceEvents\":[");
+
+            boolean first = true;
+            for (Map.Entry<Long, String> entry : threadsNames.entrySet()) {
+                sb.append(first ? "\n" : ",\n");
+                first = false;
+
+                sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(entry.getKey())
+                        .append(",\"args\":{\"name\":");
+                appendJsonString(sb, entry.getValue());
+                sb.append("}}");
+            }
+
+            final int size = getSize();
+            final long firstIndex = recordedCount - size;
+            for (long i = firstIndex; i < recordedCount; i++) {
+                final int k = (int) (i % names.length);
+
+                sb.append(first ? "\n" : ",\n");
+                first = false;
+
+                sb.append("{\"name\":");
+                appendJsonString(sb, names[k]);
+                sb.append(",\"cat\":\"").append(categories[k]).append("\",\"ph\":\"X\",\"ts\":");
+                appendMicros(sb, starts[k]);
+                sb.append(",\"dur\":");
+                appendMicros(sb, durations[k]);
+                sb.append(",\"pid\":1,\"tid\":").append(threadsIds[k]).append('}');
+            }
+
+            sb.append("\n],\"displayTimeUnit\":\"ms\"}\n");
+        }
+
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+    // нс в мкс с тремя знаками после точки
+    private static void appendMicros(@NotNull StringBuilder sb, long nanos) {
+        sb.append(nanos / 1000).append('.');
+        final long frac = nanos % 1000;
+        if (frac < 100) {
+            sb.append('0');
+        }
+        if (frac < 10) {
+            sb.append('0');
+        }
+        sb.append(frac);
+    }
+
+    private static void appendJsonString(@NotNull StringBuilder sb, @NotNull String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
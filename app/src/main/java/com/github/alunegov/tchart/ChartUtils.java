@@ -1,7 +1,10 @@
 package com.github.alunegov.tchart;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Paint;
+import android.os.Build;
+import android.os.Trace;
 import android.support.v4.content.ContextCompat;
 import android.text.format.DateFormat;
 import android.util.TypedValue;
@@ -12,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ChartUtils {
     public static @NotNull String readFileToString(@NotNull File file, @NotNull String charsetName) throws IOException {
@@ -62,6 +66,27 @@ public class ChartUtils {
         return paints;
     }
 
+    // секции трассировки замеров (см. ChartProfiler) в android.os.Trace (systrace), null - если Trace нет (API < 18)
+    public static @Nullable ChartProfiler.Tracer makeTracer() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return null;
+        }
+
+        return new ChartProfiler.Tracer() {
+            @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+            @Override
+            public void beginSection(@NotNull String name) {
+                Trace.beginSection(name);
+            }
+
+            @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+            @Override
+            public void endSection() {
+                Trace.endSection();
+            }
+        };
+    }
+
     private static final String DEF_AXIS_DATE_FORMAT_TEMPLATE = "MMM dd";
 
     // формат преобразования дат на отметках оси Х
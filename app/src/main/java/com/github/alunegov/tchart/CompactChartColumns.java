@@ -0,0 +1,261 @@
+package com.github.alunegov.tchart;
+
+import java.nio.ByteBuffer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Значения графика в куче Java с минимальным размером: каждая линия хранится в самом узком типе (byte, short или int),
+// в который укладываются её значения, равномерный X не хранится (как в UniformXChartColumns). Тип линии выбирается
+// один раз при создании (см. of), значения линий после этого не меняются.
+public class CompactChartColumns implements ChartColumns {
+    // размер значения линии, байт
+    public static final int WIDTH_BYTE = 1;
+    public static final int WIDTH_SHORT = 2;
+    public static final int WIDTH_INT = 4;
+
+    // значения X, null - X равномерны (xStart + xStep * i)
+    private final @Nullable long[] xValues;
+    private final long xStart;
+    private final long xStep;
+    private final int pointsCount;
+    // размер значения каждой линии (WIDTH_*)
+    private final @NotNull int[] linesWidth;
+    // значения линий: для линии j заполнен только массив её типа
+    private final @NotNull byte[][] byteLines;
+    private final @NotNull short[][] shortLines;
+    private final @NotNull int[][] intLines;
+
+    private CompactChartColumns(@Nullable long[] xValues, long xStart, long xStep, int linesCount, int pointsCount) {
+        this.xValues = xValues;
+        this.xStart = xStart;
+        this.xStep = xStep;
+        this.pointsCount = pointsCount;
+        linesWidth = new int[linesCount];
+        byteLines = new byte[linesCount][];
+        shortLines = new short[linesCount][];
+        intLines = new int[linesCount][];
+    }
+
+    // Копия значений columns с выбором типа каждой линии по диапазону её значений
+    public static @NotNull CompactChartColumns of(@NotNull ChartColumns columns) {
+        final int linesCount = columns.getLinesCount();
+        final int pointsCount = columns.getPointsCount();
+
+        final CompactChartColumns res;
+        final long xStep = UniformXChartColumns.detectXStep(columns);
+        if (xStep != 0) {
+            res = new CompactChartColumns(null, columns.getX(0), xStep, linesCount, pointsCount);
+        } else {
+            final long[] xValues = new long[pointsCount];
+            for (int i = 0; i < pointsCount; i++) {
+                xValues[i] = columns.getX(i);
+            }
+            res = new CompactChartColumns(xValues, 0, 0, linesCount, pointsCount);
+        }
+
+        for (int j = 0; j < linesCount; j++) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < pointsCount; i++) {
+                final int value = columns.getY(j, i);
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+
+            if (Byte.MIN_VALUE <= min && max <= Byte.MAX_VALUE) {
+                final byte[] values = new byte[pointsCount];
+                for (int i = 0; i < pointsCount; i++) {
+                    values[i] = (byte) columns.getY(j, i);
+                }
+                res.byteLines[j] = values;
+                res.linesWidth[j] = WIDTH_BYTE;
+            } else if (Short.MIN_VALUE <= min && max <= Short.MAX_VALUE) {
+                final short[] values = new short[pointsCount];
+                for (int i = 0; i < pointsCount; i++) {
+                    values[i] = (short) columns.getY(j, i);
+                }
+                res.shortLines[j] = values;
+                res.linesWidth[j] = WIDTH_SHORT;
+            } else {
+                final int[] values = new int[pointsCount];
+                for (int i = 0; i < pointsCount; i++) {
+                    values[i] = columns.getY(j, i);
+                }
+                res.intLines[j] = values;
+                res.linesWidth[j] = WIDTH_INT;
+            }
+        }
+
+        return res;
+    }
+
+    // Значения из буфера bb с его текущей позиции (порядок байт - буфера), позиция сдвигается за них: X (если xStep == 0),
+    // затем линии в размерах linesWidth подряд - как пишет writeTo. Размер линии не WIDTH_* - IllegalArgumentException,
+    // нехватка данных - BufferUnderflowException.
+    public static @NotNull CompactChartColumns readFrom(@NotNull ByteBuffer bb, long xStart, long xStep,
+                                                        @NotNull int[] linesWidth, int pointsCount) {
+        long[] xValues = null;
+        if (xStep == 0) {
+            xValues = new long[pointsCount];
+            bb.asLongBuffer().get(xValues);
+            bb.position(bb.position() + pointsCount * 8);
+        }
+
+        final CompactChartColumns res = new CompactChartColumns(xValues, xStart, xStep, linesWidth.length, pointsCount);
+
+        for (int j = 0; j < linesWidth.length; j++) {
+            switch (linesWidth[j]) {
+                case WIDTH_BYTE:
+                    res.byteLines[j] = new byte[pointsCount];
+                    bb.get(res.byteLines[j]);
+                    break;
+                case WIDTH_SHORT:
+                    res.shortLines[j] = new short[pointsCount];
+                    bb.asShortBuffer().get(res.shortLines[j]);
+                    bb.position(bb.position() + pointsCount * 2);
+                    break;
+                case WIDTH_INT:
+                    res.intLines[j] = new int[pointsCount];
+                    bb.asIntBuffer().get(res.intLines[j]);
+                    bb.position(bb.position() + pointsCount * 4);
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad line width " + linesWidth[j]);
+            }
+            res.linesWidth[j] = linesWidth[j];
+        }
+
+        return res;
+    }
+
+    // Запись значений в буфер bb с его текущей позиции (см. readFrom), размер - getValuesSize
+    public void writeTo(@NotNull ByteBuffer bb) {
+        if (xValues != null) {
+            bb.asLongBuffer().put(xValues);
+            bb.position(bb.position() + pointsCount * 8);
+        }
+
+        for (int j = 0; j < linesWidth.length; j++) {
+            switch (linesWidth[j]) {
+                case WIDTH_BYTE:
+                    bb.put(byteLines[j]);
+                    break;
+                case WIDTH_SHORT:
+                    bb.asShortBuffer().put(shortLines[j]);
+                    bb.position(bb.position() + pointsCount * 2);
+                    break;
+                default:
+                    bb.asIntBuffer().put(intLines[j]);
+                    bb.position(bb.position() + pointsCount * 4);
+                    break;
+            }
+        }
+    }
+
+    // шаг равномерного X, 0 - X хранятся массивом
+    public long getXStep() {
+        return xStep;
+    }
+
+    // размер значения линии lineIndex, байт (WIDTH_*)
+    public int getLineWidth(int lineIndex) {
+        return linesWidth[lineIndex];
+    }
+
+    // размер хранимых значений (X и линий), байт
+    public long getValuesSize() {
+        long res = xValues != null ? 8L * pointsCount : 0;
+        for (int width : linesWidth) {
+            res += (long) width * pointsCount;
+        }
+        return res;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesWidth.length;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xValues != null ? xValues[index] : xStart + xStep * index;
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        switch (linesWidth[lineIndex]) {
+            case WIDTH_BYTE:
+                return byteLines[lineIndex][index];
+            case WIDTH_SHORT:
+                return shortLines[lineIndex][index];
+            default:
+                return intLines[lineIndex][index];
+        }
+    }
+
+    // Добавление к sum значений линии lineIndex, умноженных на sign. Цикл отдельный для каждого типа линии, без выбора
+    // типа на каждой точке.
+    public void addLineTo(int lineIndex, int sign, @NotNull long[] sum) {
+        if (BuildConfig.DEBUG && (sum.length != pointsCount)) throw new AssertionError();
+
+        switch (linesWidth[lineIndex]) {
+            case WIDTH_BYTE: {
+                final byte[] values = byteLines[lineIndex];
+                for (int i = 0; i < pointsCount; i++) {
+                    sum[i] += sign * values[i];
+                }
+                break;
+            }
+            case WIDTH_SHORT: {
+                final short[] values = shortLines[lineIndex];
+                for (int i = 0; i < pointsCount; i++) {
+                    sum[i] += sign * values[i];
+                }
+                break;
+            }
+            default: {
+                final int[] values = intLines[lineIndex];
+                for (int i = 0; i < pointsCount; i++) {
+                    sum[i] += sign * (long) values[i];
+                }
+                break;
+            }
+        }
+    }
+
+    // Копирование значений линии lineIndex в диапазоне [from, from + count) в dst, начиная с dstPos
+    public void getLine(int lineIndex, int from, int count, @NotNull int[] dst, int dstPos) {
+        if (BuildConfig.DEBUG && ((from < 0) || (from + count > pointsCount))) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((dstPos < 0) || (dstPos + count > dst.length))) throw new AssertionError();
+
+        switch (linesWidth[lineIndex]) {
+            case WIDTH_BYTE: {
+                final byte[] values = byteLines[lineIndex];
+                for (int i = 0; i < count; i++) {
+                    dst[dstPos + i] = values[from + i];
+                }
+                break;
+            }
+            case WIDTH_SHORT: {
+                final short[] values = shortLines[lineIndex];
+                for (int i = 0; i < count; i++) {
+                    dst[dstPos + i] = values[from + i];
+                }
+                break;
+            }
+            default:
+                System.arraycopy(intLines[lineIndex], from, dst, dstPos, count);
+                break;
+        }
+    }
+}
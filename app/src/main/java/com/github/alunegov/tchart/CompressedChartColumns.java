@@ -0,0 +1,398 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика в сжатых блоках по BLOCK_SIZE точек (по схеме Gorilla): X - разность разностей соседних точек (у
+// равномерного X - нули), значения линий - разности соседних значений. Разности в блоке упаковываются побитно, с общей для
+// блока и линии шириной в битах по наибольшей из них (равномерный X не занимает места, плавная линия - несколько бит на
+// точку).
+// В заголовке блока хранятся X первой точки и мин/макс каждой линии - поиск индекса по X (см. XIndexLocator) и мин/макс
+// по линии в диапазоне (см. findMinMax) по целиком охваченным блокам обходятся без декодирования.
+// Для getX/getY блок декодируется целиком в буфер, буфер на несколько блоков (SCRATCH_BLOCKS) свой у каждого потока -
+// при отрисовке видимого диапазона каждый его блок декодируется один раз на проход. Значения после создания не меняются.
+public class CompressedChartColumns implements ChartColumns {
+    // кол-во точек в блоке, степень двойки
+    public static final int BLOCK_SIZE = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    // кол-во декодированных блоков в буфере потока
+    private static final int SCRATCH_BLOCKS = 8;
+
+    private final int pointsCount;
+    private final int linesCount;
+    // закодированные блоки: X, затем линии по порядку
+    private final @NotNull byte[][] blocks;
+    // заголовки блоков: X первой точки и мин/макс линий, [line][block]
+    private final @NotNull long[] blocksFirstX;
+    private final @NotNull int[][] blocksMin;
+    private final @NotNull int[][] blocksMax;
+    // декодированные блоки, свои у каждого потока (отрисовка может идти в фоновом потоке, см. ChartGeometryEngine)
+    private final @NotNull ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(linesCount);
+        }
+    };
+
+    private CompressedChartColumns(int pointsCount, int linesCount) {
+        this.pointsCount = pointsCount;
+        this.linesCount = linesCount;
+
+        final int blocksCount = (pointsCount + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        blocks = new byte[blocksCount][];
+        blocksFirstX = new long[blocksCount];
+        blocksMin = new int[linesCount][blocksCount];
+        blocksMax = new int[linesCount][blocksCount];
+    }
+
+    // Сжатая копия значений columns (X не убывают)
+    public static @NotNull CompressedChartColumns of(@NotNull ChartColumns columns) {
+        final int pointsCount = columns.getPointsCount();
+        final int linesCount = columns.getLinesCount();
+        if (BuildConfig.DEBUG && (pointsCount <= 0)) throw new AssertionError();
+
+        final CompressedChartColumns res = new CompressedChartColumns(pointsCount, linesCount);
+        final BlockWriter writer = new BlockWriter(BLOCK_SIZE * (1 + linesCount));
+        final long[] deltas = new long[BLOCK_SIZE];
+
+        for (int b = 0; b < res.blocks.length; b++) {
+            final int from = b << BLOCK_SHIFT;
+            final int to = Math.min(from + BLOCK_SIZE, pointsCount);
+
+            writer.reset();
+
+            // X: первое значение, первая разность, затем разности разностей
+            final long firstX = columns.getX(from);
+            long prevDelta = to - from > 1 ? columns.getX(from + 1) - firstX : 0;
+            writer.writeVarLong(zigZag(firstX));
+            writer.writeVarLong(zigZag(prevDelta));
+            for (int i = from + 2; i < to; i++) {
+                final long delta = columns.getX(i) - columns.getX(i - 1);
+                deltas[i - from - 2] = zigZag(delta - prevDelta);
+                prevDelta = delta;
+            }
+            writer.writePacked(deltas, Math.max(0, to - from - 2));
+            res.blocksFirstX[b] = firstX;
+
+            // линии: первое значение, затем разности соседних значений
+            for (int j = 0; j < linesCount; j++) {
+                int prevY = columns.getY(j, from);
+                int min = prevY;
+                int max = prevY;
+                writer.writeVarLong(zigZag(prevY));
+                for (int i = from + 1; i < to; i++) {
+                    final int y = columns.getY(j, i);
+                    deltas[i - from - 1] = zigZag((long) y - prevY);
+                    prevY = y;
+                    if (y < min) {
+                        min = y;
+                    }
+                    if (y > max) {
+                        max = y;
+                    }
+                }
+                writer.writePacked(deltas, to - from - 1);
+                res.blocksMin[j][b] = min;
+                res.blocksMax[j][b] = max;
+            }
+
+            res.blocks[b] = writer.toByteArray();
+        }
+
+        return res;
+    }
+
+    public int getBlocksCount() {
+        return blocks.length;
+    }
+
+    // размер хранимых значений (блоки и заголовки), байт
+    public long getValuesSize() {
+        long res = 0;
+        for (byte[] block : blocks) {
+            res += block.length;
+        }
+        res += 8L * blocks.length + 2 * 4L * linesCount * blocks.length;
+        return res;
+    }
+
+    // Индекс блока, в котором находится первая точка с X не меньше xValue: последний блок с X первой точки меньше xValue
+    // (-1 - таких нет, точка - первая). Только по заголовкам, без декодирования.
+    public int findBlock(double xValue) {
+        int l = 0;
+        int r = blocksFirstX.length;
+        while (l < r) {
+            final int m = (l + r) >>> 1;
+            if (blocksFirstX[m] < xValue) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l - 1;
+    }
+
+    // Поиск минимума и максимума линии lineIndex в диапазоне [l, r] с объединением с minMax (как в
+    // RangeMinMaxIndex.find). Целиком охваченные блоки берутся из заголовков, декодируются только крайние блоки.
+    public void findMinMax(int lineIndex, int l, int r, @NotNull int[] minMax) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= pointsCount))) throw new AssertionError();
+
+        int resMin = minMax[0];
+        int resMax = minMax[1];
+
+        final int lb = l >>> BLOCK_SHIFT;
+        final int rb = r >>> BLOCK_SHIFT;
+        for (int b = lb; b <= rb; b++) {
+            final int from = b << BLOCK_SHIFT;
+            final int to = Math.min(from + BLOCK_SIZE, pointsCount) - 1;
+
+            if (l <= from && to <= r) {
+                if (blocksMin[lineIndex][b] < resMin) {
+                    resMin = blocksMin[lineIndex][b];
+                }
+                if (blocksMax[lineIndex][b] > resMax) {
+                    resMax = blocksMax[lineIndex][b];
+                }
+                continue;
+            }
+
+            // блок охвачен частично: если мин/макс блока уже в результате, декодировать нечего
+            if (resMin <= blocksMin[lineIndex][b] && blocksMax[lineIndex][b] <= resMax) {
+                continue;
+            }
+
+            final int[] values = getBlock(b).linesValues[lineIndex];
+            for (int i = Math.max(l, from); i <= Math.min(r, to); i++) {
+                final int value = values[i & BLOCK_MASK];
+                if (value < resMin) {
+                    resMin = value;
+                }
+                if (value > resMax) {
+                    resMax = value;
+                }
+            }
+        }
+
+        minMax[0] = resMin;
+        minMax[1] = resMax;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesCount;
+    }
+
+    @Override
+    public long getX(int index) {
+        return getBlock(index >>> BLOCK_SHIFT).xValues[index & BLOCK_MASK];
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return getBlock(index >>> BLOCK_SHIFT).linesValues[lineIndex][index & BLOCK_MASK];
+    }
+
+    // декодированный блок из буфера потока (декодируется при отсутствии)
+    private @NotNull DecodedBlock getBlock(int blockIndex) {
+        final DecodedBlock res = scratch.get().blocks[blockIndex % SCRATCH_BLOCKS];
+        if (res.blockIndex != blockIndex) {
+            decode(blockIndex, res);
+        }
+        return res;
+    }
+
+    private void decode(int blockIndex, @NotNull DecodedBlock dst) {
+        final BlockReader reader = dst.reader;
+        reader.reset(blocks[blockIndex]);
+        final int count = Math.min(BLOCK_SIZE, pointsCount - (blockIndex << BLOCK_SHIFT));
+
+        final long[] xValues = dst.xValues;
+        long x = unZigZag(reader.readVarLong());
+        long delta = unZigZag(reader.readVarLong());
+        xValues[0] = x;
+        if (count > 1) {
+            x += delta;
+            xValues[1] = x;
+        }
+        int width = reader.readWidth();
+        for (int i = 2; i < count; i++) {
+            delta += unZigZag(reader.readBits(width));
+            x += delta;
+            xValues[i] = x;
+        }
+        reader.align();
+
+        for (int j = 0; j < linesCount; j++) {
+            final int[] values = dst.linesValues[j];
+            int y = (int) unZigZag(reader.readVarLong());
+            values[0] = y;
+            width = reader.readWidth();
+            for (int i = 1; i < count; i++) {
+                y += (int) unZigZag(reader.readBits(width));
+                values[i] = y;
+            }
+            reader.align();
+        }
+
+        dst.blockIndex = blockIndex;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Запись блока: varint (по 7 бит, младшие первыми, старший бит байта - признак продолжения) и упакованные значения
+    // (байт ширины в битах, затем значения по столько бит, младшие первыми, с выравниванием на байт в конце)
+    private static class BlockWriter {
+        private final @NotNull ByteArrayOutputStream os;
+        private long bits = 0;
+        private int bitsCount = 0;
+
+        BlockWriter(int initialSize) {
+            os = new ByteArrayOutputStream(initialSize);
+        }
+
+        void reset() {
+            os.reset();
+        }
+
+        @NotNull byte[] toByteArray() {
+            return os.toByteArray();
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                os.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            os.write((int) value);
+        }
+
+        // упаковка count беззнаковых значений с шириной по наибольшему из них
+        void writePacked(@NotNull long[] values, int count) {
+            long or = 0;
+            for (int i = 0; i < count; i++) {
+                or |= values[i];
+            }
+            final int width = 64 - Long.numberOfLeadingZeros(or);
+            os.write(width);
+
+            for (int i = 0; i < count; i++) {
+                if (width > 32) {
+                    writeBits(values[i] & 0xFFFFFFFFL, 32);
+                    writeBits(values[i] >>> 32, width - 32);
+                } else {
+                    writeBits(values[i], width);
+                }
+            }
+
+            if (bitsCount > 0) {
+                os.write((int) bits);
+                bits = 0;
+                bitsCount = 0;
+            }
+        }
+
+        private void writeBits(long value, int width) {
+            bits |= value << bitsCount;
+            bitsCount += width;
+            while (bitsCount >= 8) {
+                os.write((int) bits);
+                bits >>>= 8;
+                bitsCount -= 8;
+            }
+        }
+    }
+
+    // Чтение блока, записанного BlockWriter
+    private static class BlockReader {
+        private byte[] block;
+        private int pos;
+        private long bits;
+        private int bitsCount;
+
+        void reset(@NotNull byte[] block) {
+            this.block = block;
+            pos = 0;
+            bits = 0;
+            bitsCount = 0;
+        }
+
+        long readVarLong() {
+            long res = 0;
+            int shift = 0;
+            while (true) {
+                final byte b = block[pos++];
+                res |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return res;
+                }
+                shift += 7;
+            }
+        }
+
+        int readWidth() {
+            return block[pos++];
+        }
+
+        long readBits(int width) {
+            if (width > 32) {
+                final long low = readBitsImpl(32);
+                return low | (readBitsImpl(width - 32) << 32);
+            }
+            return readBitsImpl(width);
+        }
+
+        private long readBitsImpl(int width) {
+            while (bitsCount < width) {
+                bits |= (long) (block[pos++] & 0xFF) << bitsCount;
+                bitsCount += 8;
+            }
+            final long res = bits & ((1L << width) - 1);
+            bits >>>= width;
+            bitsCount -= width;
+            return res;
+        }
+
+        // переход к следующему байту после упакованных значений
+        void align() {
+            bits = 0;
+            bitsCount = 0;
+        }
+    }
+
+    private static class DecodedBlock {
+        // индекс декодированного блока (-1 - нет)
+        int blockIndex = -1;
+        final @NotNull long[] xValues = new long[BLOCK_SIZE];
+        final @NotNull int[][] linesValues;
+        final @NotNull BlockReader reader = new BlockReader();
+
+        DecodedBlock(int linesCount) {
+            linesValues = new int[linesCount][BLOCK_SIZE];
+        }
+    }
+
+    private static class Scratch {
+        // блок b хранится в ячейке b % SCRATCH_BLOCKS
+        final @NotNull DecodedBlock[] blocks = new DecodedBlock[SCRATCH_BLOCKS];
+
+        Scratch(int linesCount) {
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = new DecodedBlock(linesCount);
+            }
+        }
+    }
+}
@@ -62,7 +62,7 @@ public class CursorPopupView {
     private float maxPercentW, maxNameW, maxValueW;
 
     public CursorPopupView(Context context, @NotNull ChartInputData inputData) {
-        linesValues = new LineValues[inputData.LinesValues.length + 1];
+        linesValues = new LineValues[inputData.getColumns().getLinesCount() + 1];
         for (int i = 0; i < linesValues.length; i++) {
             linesValues[i] = new LineValues();
         }
@@ -2,16 +2,17 @@ package com.github.alunegov.tchart;
 
 import android.app.Application;
 
-import com.codemonkeylabs.fpslibrary.TinyDancer;
-
 public class DebugApplication extends Application {
+    // ёмкость буфера интервалов для выгрузки трассы (см. ChartTraceRecorder)
+    private static final int TRACE_CAPACITY = 32 * 1024;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
-/*        TinyDancer.create()
-                .startingXPosition(0)
-                .startingYPosition(0)
-                .show(this);*/
+        // замеры фаз построения и отрисовки графиков (см. ChartProfiler) и запись их интервалов - только в отладочной
+        // сборке
+        ChartProfiler.setEnabled(BuildConfig.DEBUG);
+        ChartTraceRecorder.setGlobal(BuildConfig.DEBUG ? new ChartTraceRecorder(TRACE_CAPACITY) : null);
     }
 }
@@ -0,0 +1,107 @@
+package com.github.alunegov.tchart;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика вне кучи Java - в одном direct-буфере: сначала столбец X (long), затем столбцы линий (int) подряд.
+// Большие данные (детальные, с почасовыми точками за годы) не нагружают сборщик мусора, а чтение идёт по абсолютному
+// индексу без копирования и упаковки.
+public class DirectChartColumns implements ChartColumns {
+    private final int pointsCount;
+    // весь буфер (держим ссылку, чтобы память не освободилась раньше представлений)
+    private final @NotNull ByteBuffer buffer;
+    // представления столбцов
+    private final @NotNull LongBuffer xColumn;
+    private final @NotNull IntBuffer[] linesColumns;
+
+    public DirectChartColumns(int linesCount, int pointsCount) {
+        this(ByteBuffer.allocateDirect(getBufferSize(linesCount, pointsCount)).order(ByteOrder.nativeOrder()), linesCount,
+                pointsCount);
+    }
+
+    // Столбцы в уже заполненном буфере (например, отображённом в память файле) - без копирования. Порядок байт берётся
+    // из буфера, столбцы начинаются с его текущей позиции.
+    public DirectChartColumns(@NotNull ByteBuffer buffer, int linesCount, int pointsCount) {
+        if (BuildConfig.DEBUG && (linesCount <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (pointsCount <= 0)) throw new AssertionError();
+        if (buffer.remaining() < getBufferSize(linesCount, pointsCount)) {
+            throw new IllegalArgumentException("buffer is too small");
+        }
+
+        this.pointsCount = pointsCount;
+        this.buffer = buffer;
+
+        final int xColumnSize = pointsCount * 8;
+        final int lineColumnSize = pointsCount * 4;
+        final int start = buffer.position();
+
+        xColumn = slice(start, xColumnSize).asLongBuffer();
+
+        linesColumns = new IntBuffer[linesCount];
+        for (int j = 0; j < linesCount; j++) {
+            linesColumns[j] = slice(start + xColumnSize + j * lineColumnSize, lineColumnSize).asIntBuffer();
+        }
+    }
+
+    // размер буфера под столбцы, байт
+    public static int getBufferSize(int linesCount, int pointsCount) {
+        return pointsCount * 8 + linesCount * pointsCount * 4;
+    }
+
+    // копия значений columns
+    public static @NotNull DirectChartColumns copyOf(@NotNull ChartColumns columns) {
+        final int pointsCount = columns.getPointsCount();
+        final int linesCount = columns.getLinesCount();
+
+        final DirectChartColumns res = new DirectChartColumns(linesCount, pointsCount);
+        for (int i = 0; i < pointsCount; i++) {
+            res.setX(i, columns.getX(i));
+        }
+        for (int j = 0; j < linesCount; j++) {
+            for (int i = 0; i < pointsCount; i++) {
+                res.setY(j, i, columns.getY(j, i));
+            }
+        }
+
+        return res;
+    }
+
+    private @NotNull ByteBuffer slice(int offset, int size) {
+        final ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        dup.limit(offset + size);
+        return dup.slice().order(buffer.order());
+    }
+
+    @Override
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesColumns.length;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xColumn.get(index);
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return linesColumns[lineIndex].get(index);
+    }
+
+    public void setX(int index, long value) {
+        xColumn.put(index, value);
+    }
+
+    public void setY(int lineIndex, int index, int value) {
+        linesColumns[lineIndex].put(index, value);
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика в массивах в куче Java (без копирования)
+public class HeapChartColumns implements ChartColumns {
+    private final @NotNull long[] xValues;
+    private final @NotNull int[][] linesValues;
+
+    public HeapChartColumns(@NotNull long[] xValues, @NotNull int[][] linesValues) {
+        this.xValues = xValues;
+        this.linesValues = linesValues;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return xValues.length;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesValues.length;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xValues[index];
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return linesValues[lineIndex][index];
+    }
+}
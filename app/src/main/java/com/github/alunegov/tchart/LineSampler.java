@@ -0,0 +1,14 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Прореживание точек линии перед построением отрезков (ChartGeometry, LINE)
+public interface LineSampler {
+    // прореживание не нужно - выводятся все точки диапазона
+    int NO_SAMPLING = -1;
+
+    // Индексы точек линии lineIndex из диапазона [l, r] для вывода в области шириной width пикселей. Индексы пишутся в
+    // indexes (размером с кол-во точек) по возрастанию, первый - l, последний - r. Возвращает кол-во индексов или
+    // NO_SAMPLING.
+    int sample(@NotNull ChartInputData inputData, int lineIndex, int l, int r, float width, @NotNull int[] indexes);
+}
@@ -0,0 +1,156 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Пирамида прореживания мин/макс для линий (LINE).
+// Уровень level (1, 2, ...) разбивает точки на корзины по 2^level точек, для каждой корзины и каждой линии хранятся
+// индексы точек с минимальным и максимальным значением. Уровень 0 - исходные точки. При отрисовке выбирается уровень,
+// у которого ширина корзины около одного пикселя, и из каждой корзины выводятся только точки мин и макс - кол-во
+// отрезков ограничено шириной области отображения, а не кол-вом точек в диапазоне, и пики при этом не теряются.
+public class LodPyramid implements LineSampler {
+    // индексы точек с мин/макс значением в корзине, [level - 1][line][bucket]
+    private final @NotNull int[][][] minIndexes;
+    private final @NotNull int[][][] maxIndexes;
+
+    public LodPyramid(@NotNull ChartInputData inputData) {
+        final ChartColumns columns = inputData.getColumns();
+        final int pointsCount = columns.getPointsCount();
+        final int linesCount = columns.getLinesCount();
+
+        // уровни строим, пока корзин больше одной
+        int levelsCount = 0;
+        while (getBucketsCount(pointsCount, levelsCount + 1) > 1) {
+            levelsCount++;
+        }
+
+        minIndexes = new int[levelsCount][linesCount][];
+        maxIndexes = new int[levelsCount][linesCount][];
+
+        for (int j = 0; j < linesCount; j++) {
+            for (int level = 1; level <= levelsCount; level++) {
+                final int bucketsCount = getBucketsCount(pointsCount, level);
+                final int[] levelMin = new int[bucketsCount];
+                final int[] levelMax = new int[bucketsCount];
+
+                // корзина уровня - две корзины предыдущего уровня (последняя м.б. одна)
+                final int prevCount = (level == 1) ? pointsCount : minIndexes[level - 2][j].length;
+                for (int b = 0; b < bucketsCount; b++) {
+                    final int c1 = b << 1;
+                    final int c2 = c1 + 1;
+
+                    int minIndex = (level == 1) ? c1 : minIndexes[level - 2][j][c1];
+                    int maxIndex = (level == 1) ? c1 : maxIndexes[level - 2][j][c1];
+                    if (c2 < prevCount) {
+                        final int min2 = (level == 1) ? c2 : minIndexes[level - 2][j][c2];
+                        final int max2 = (level == 1) ? c2 : maxIndexes[level - 2][j][c2];
+                        if (columns.getY(j, min2) < columns.getY(j, minIndex)) {
+                            minIndex = min2;
+                        }
+                        if (columns.getY(j, max2) > columns.getY(j, maxIndex)) {
+                            maxIndex = max2;
+                        }
+                    }
+
+                    levelMin[b] = minIndex;
+                    levelMax[b] = maxIndex;
+                }
+
+                minIndexes[level - 1][j] = levelMin;
+                maxIndexes[level - 1][j] = levelMax;
+            }
+        }
+    }
+
+    private static int getBucketsCount(int pointsCount, int level) {
+        return ((pointsCount - 1) >> level) + 1;
+    }
+
+    // макс. уровень (0 - прореживания нет)
+    public int getMaxLevel() {
+        return minIndexes.length;
+    }
+
+    // Уровень для диапазона [l, r] при ширине области width пикселей - ширина корзины ближе всего к одному пикселю.
+    // Уровень понижается, если его точки не помещаются в maxPointsCount.
+    public int chooseLevel(int l, int r, float width, int maxPointsCount) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+
+        if (width < 1) {
+            return 0;
+        }
+
+        final float pointsPerPixel = (r - l + 1) / width;
+        if (pointsPerPixel <= 1) {
+            return 0;
+        }
+
+        int level = Math.round((float) (Math.log(pointsPerPixel) / Math.log(2)));
+        if (level > getMaxLevel()) {
+            level = getMaxLevel();
+        }
+
+        while (level > 0 && getMaxPointsCount(level, l, r) > maxPointsCount) {
+            level--;
+        }
+
+        return level;
+    }
+
+    // прореживание для ChartGeometry: уровень по ширине области и точки мин/макс его корзин
+    @Override
+    public int sample(@NotNull ChartInputData inputData, int lineIndex, int l, int r, float width, @NotNull int[] indexes) {
+        final int level = chooseLevel(l, r, width, indexes.length);
+        if (level == 0) {
+            return NO_SAMPLING;
+        }
+
+        return collectIndexes(level, lineIndex, l, r, indexes);
+    }
+
+    // макс. кол-во точек, выводимых collectIndexes на уровне level
+    public static int getMaxPointsCount(int level, int l, int r) {
+        if (level == 0) {
+            return r - l + 1;
+        }
+        return 2 + 2 * ((r >> level) - (l >> level) + 1);
+    }
+
+    // Индексы точек линии lineIndex в диапазоне [l, r] на уровне level (>= 1) по возрастанию: граничные точки l и r и
+    // точки мин/макс каждой корзины между ними. Возвращает кол-во индексов в indexes.
+    public int collectIndexes(int level, int lineIndex, int l, int r, @NotNull int[] indexes) {
+        if (BuildConfig.DEBUG && ((level < 1) || (level > getMaxLevel()))) throw new AssertionError();
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (indexes.length < getMaxPointsCount(level, l, r))) throw new AssertionError();
+
+        final int[] levelMin = minIndexes[level - 1][lineIndex];
+        final int[] levelMax = maxIndexes[level - 1][lineIndex];
+
+        int count = 0;
+        indexes[count++] = l;
+
+        final int bl = l >> level;
+        final int br = r >> level;
+        for (int b = bl; b <= br; b++) {
+            int first = levelMin[b];
+            int second = levelMax[b];
+            if (first > second) {
+                first = levelMax[b];
+                second = levelMin[b];
+            }
+
+            // точки крайних корзин за пределами диапазона отбрасываем
+            if (first > l && first < r && first != indexes[count - 1]) {
+                indexes[count++] = first;
+            }
+            if (second > l && second < r && second != indexes[count - 1]) {
+                indexes[count++] = second;
+            }
+        }
+
+        if (r != l) {
+            indexes[count++] = r;
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Прореживание по алгоритму Largest-Triangle-Three-Buckets (LTTB, S. Steinarsson, 2013).
+// Внутренние точки диапазона делятся на корзины, из каждой корзины берётся одна точка - образующая треугольник
+// наибольшей площади с точкой, выбранной в предыдущей корзине, и средней точкой следующей корзины. В отличие от
+// прореживания мин/макс (LodPyramid) выводится примерно pointsPerPixel точек на пиксель ширины, а форма линии
+// сохраняется лучше, чем при равномерном прореживании. Используется в предпросмотре.
+public class LttbSampler implements LineSampler {
+    // кол-во точек на пиксель ширины области по умолчанию
+    public static final float DEF_POINTS_PER_PIXEL = 2;
+
+    private final float pointsPerPixel;
+
+    public LttbSampler() {
+        this(DEF_POINTS_PER_PIXEL);
+    }
+
+    public LttbSampler(float pointsPerPixel) {
+        if (BuildConfig.DEBUG && (pointsPerPixel <= 0)) throw new AssertionError();
+
+        this.pointsPerPixel = pointsPerPixel;
+    }
+
+    @Override
+    public int sample(@NotNull ChartInputData inputData, int lineIndex, int l, int r, float width, @NotNull int[] indexes) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+
+        if (width < 1) {
+            return NO_SAMPLING;
+        }
+
+        // кол-во выводимых точек, включая граничные
+        final int threshold = Math.min(Math.max(3, (int) (width * pointsPerPixel)), indexes.length);
+
+        final int pointsCount = r - l + 1;
+        if (pointsCount <= threshold) {
+            return NO_SAMPLING;
+        }
+
+        final ChartColumns columns = inputData.getColumns();
+        // X считаем от начала диапазона, чтобы не терять точность на больших значениях
+        final long x0 = columns.getX(l);
+
+        final int bucketsCount = threshold - 2;
+        final double bucketSize = (double) (pointsCount - 2) / bucketsCount;
+
+        int count = 0;
+        indexes[count++] = l;
+
+        int a = l;
+        for (int b = 0; b < bucketsCount; b++) {
+            final int bucketStart = l + 1 + (int) (b * bucketSize);
+            final int bucketEnd = Math.min(l + 1 + (int) ((b + 1) * bucketSize), r);
+
+            // средняя точка следующей корзины (для последней корзины - точка r)
+            final int nextStart, nextEnd;
+            if (b == bucketsCount - 1) {
+                nextStart = r;
+                nextEnd = r + 1;
+            } else {
+                nextStart = bucketEnd;
+                nextEnd = Math.min(l + 1 + (int) ((b + 2) * bucketSize), r);
+            }
+
+            double avgX = 0, avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += columns.getX(i) - x0;
+                avgY += columns.getY(lineIndex, i);
+            }
+            avgX /= (nextEnd - nextStart);
+            avgY /= (nextEnd - nextStart);
+
+            final double ax = columns.getX(a) - x0;
+            final double ay = columns.getY(lineIndex, a);
+
+            // удвоенная площадь треугольника, множитель не важен
+            double maxArea = -1;
+            int maxAreaIndex = bucketStart;
+            for (int i = bucketStart; i < bucketEnd; i++) {
+                final double area = Math.abs((ax - avgX) * (columns.getY(lineIndex, i) - ay) - (ax - (columns.getX(i) - x0)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxAreaIndex = i;
+                }
+            }
+
+            indexes[count++] = maxAreaIndex;
+            a = maxAreaIndex;
+        }
+
+        indexes[count++] = r;
+
+        return count;
+    }
+}
@@ -10,8 +10,12 @@ import android.view.*;
 import android.widget.LinearLayout;
 
 import java.io.*;
-import java.util.List;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -20,8 +24,25 @@ public class MainActivity extends AppCompatActivity {
 
     private static final String CHART_DATA_CHARSET = "UTF8";
 
+    // максимальное кол-во потоков загрузки графиков
+    private static final int MAX_LOADING_THREADS = 4;
+
+    // максимальное кол-во файлов дней в кэше детальных данных (общем для всех графиков)
+    private static final int MAX_DETAIL_CACHED_DAYS = 64;
+
+    // каталог снимков разобранных графиков (см. ChartSnapshot) в кэше приложения
+    private static final String SNAPSHOTS_DIR = "snapshots";
+
+    // каталог выгрузки трасс (см. exportTrace) в файлах приложения
+    private static final String TRACES_DIR = "traces";
+
     private boolean isLight = true;
 
+    // пул потоков для загрузки графиков
+    private ExecutorService loadingExecutor;
+    // флаг: активность уничтожена, загруженные графики не нужны
+    private volatile boolean isDestroyedFlag = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         isLight = getPreferences(MODE_PRIVATE)
@@ -61,24 +82,153 @@ public class MainActivity extends AppCompatActivity {
             }
         };
 
+        // Графики загружаются параллельно в фоновых потоках. Пока график не загружен, выводится его "заготовка" (вид без
+        // данных), данные передаются в вид по мере загрузки каждого графика.
+        final String[] chartsNames;
         try {
-/*            final String json = ChartUtils.readStreamToString(getAssets().open("chart_data.json"), CHART_DATA_CHARSET);
-            final List<ChartInputData> charts = ChartInputDataMapper.load(json, colorParser);*/
+            chartsNames = ChartInputDataMapper.listCharts(resourceLoader);
+        } catch (Exception e) {
+            Log.e("MA", e.toString(), e);
+            return;
+        }
 
-            final List<ChartInputData> charts = ChartInputDataMapper.load(resourceLoader, colorParser);
+        final int threadsCount = Math.max(1, Math.min(MAX_LOADING_THREADS, Runtime.getRuntime().availableProcessors()));
+        loadingExecutor = Executors.newFixedThreadPool(Math.min(threadsCount, Math.max(1, chartsNames.length)));
 
-            for (int i = 0; i < charts.size(); i++) {
-                final View view = inflater.inflate(R.layout.telegram_chart_list_item, root, false);
+        // детальные данные грузятся в том же пуле потоков, запросы и результаты после уничтожения активности отбрасываются
+        final Executor detailLoadingExecutor = new Executor() {
+            @Override
+            public void execute(@NotNull Runnable command) {
+                if (!isDestroyedFlag) {
+                    loadingExecutor.execute(command);
+                }
+            }
+        };
+        final Executor detailResultExecutor = new Executor() {
+            @Override
+            public void execute(@NotNull final Runnable command) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isDestroyedFlag) {
+                            command.run();
+                        }
+                    }
+                });
+            }
+        };
+        final ChartDetailDataSource.Cache detailDataCache = new ChartDetailDataSource.Cache(MAX_DETAIL_CACHED_DAYS);
 
-                final TelegramChartView tc = (TelegramChartView) view.findViewById(R.id.telegram_chart);
+        // графики берутся из снимков, пока приложение (а с ним и assets) не обновлено
+        final File snapshotsDir = new File(getCacheDir(), SNAPSHOTS_DIR);
+        final long snapshotsSourceVersion = getAssetsVersion();
 
-                tc.setTitle(String.format(Locale.getDefault(), getString(R.string.chart_title_fmt), i + 1));
-                tc.setInputData(charts.get(i));
+        for (int i = 0; i < chartsNames.length; i++) {
+            final View view = inflater.inflate(R.layout.telegram_chart_list_item, root, false);
 
-                root.addView(tc);
+            final TelegramChartView tc = (TelegramChartView) view.findViewById(R.id.telegram_chart);
+
+            tc.setTitle(String.format(Locale.getDefault(), getString(R.string.chart_title_fmt), i + 1));
+            if (ChartProfiler.isEnabled()) {
+                tc.setProfilingEnabled(true);
             }
+
+            root.addView(tc);
+
+            tc.setDetailDataSource(new ChartDetailDataSource(resourceLoader, colorParser, chartsNames[i], detailDataCache,
+                    detailLoadingExecutor, detailResultExecutor));
+
+            loadingExecutor.execute(new ChartLoadingTask(chartsNames[i], tc, resourceLoader, colorParser, snapshotsDir,
+                    snapshotsSourceVersion));
+        }
+    }
+
+    // версия assets - время установки/обновления приложения (assets меняются только вместе с ним)
+    private long getAssetsVersion() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
         } catch (Exception e) {
             Log.e("MA", e.toString(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        isDestroyedFlag = true;
+
+        if (loadingExecutor != null) {
+            loadingExecutor.shutdownNow();
+        }
+
+        super.onDestroy();
+    }
+
+    // Загрузка графика и подготовка статистики по нему (индексы мин/макс и т.п.) в фоновом потоке с последующей
+    // передачей в вид в UI-потоке
+    private class ChartLoadingTask implements Runnable {
+        private final @NotNull String chartName;
+        private final @NotNull TelegramChartView chartView;
+        private final @NotNull ChartInputDataMapper.ResourceLoader resourceLoader;
+        private final @NotNull ChartInputDataMapper.ColorParser colorParser;
+        private final @NotNull File snapshotsDir;
+        private final long snapshotsSourceVersion;
+        // имена интервалов загрузки и статистики для ChartTraceRecorder
+        private final @NotNull String loadSpanName, statsSpanName;
+
+        ChartLoadingTask(@NotNull String chartName, @NotNull TelegramChartView chartView,
+                         @NotNull ChartInputDataMapper.ResourceLoader resourceLoader,
+                         @NotNull ChartInputDataMapper.ColorParser colorParser, @NotNull File snapshotsDir,
+                         long snapshotsSourceVersion) {
+            this.chartName = chartName;
+            this.chartView = chartView;
+            this.resourceLoader = resourceLoader;
+            this.colorParser = colorParser;
+            this.snapshotsDir = snapshotsDir;
+            this.snapshotsSourceVersion = snapshotsSourceVersion;
+
+            loadSpanName = "load " + chartName;
+            statsSpanName = "stats " + chartName;
+        }
+
+        @Override
+        public void run() {
+            if (isDestroyedFlag) {
+                return;
+            }
+
+            final ChartTraceRecorder recorder = ChartTraceRecorder.getGlobal();
+
+            final ChartInputData inputData;
+            final ChartInputDataStats inputDataStats;
+            try {
+                long startTime = System.nanoTime();
+                inputData = ChartSnapshot.loadChart(resourceLoader, chartName, colorParser, snapshotsDir,
+                        snapshotsSourceVersion);
+                if (recorder != null) {
+                    recorder.recordSince(loadSpanName, ChartTraceRecorder.CATEGORY_LOAD, startTime);
+                }
+
+                startTime = System.nanoTime();
+                inputDataStats = new ChartInputDataStats(inputData);
+                if (recorder != null) {
+                    recorder.recordSince(statsSpanName, ChartTraceRecorder.CATEGORY_LOAD, startTime);
+                }
+            } catch (Exception e) {
+                Log.e("MA", e.toString(), e);
+                return;
+            }
+
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (isDestroyedFlag) {
+                        return;
+                    }
+
+                    chartView.setInputData(inputData, inputDataStats);
+                }
+            });
         }
     }
 
@@ -86,6 +236,8 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         final MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.main_menu, menu);
+        menu.findItem(R.id.profile_menu).setVisible(ChartProfiler.isEnabled());
+        menu.findItem(R.id.trace_menu).setVisible(ChartTraceRecorder.getGlobal() != null);
         return true;
     }
 
@@ -99,6 +251,67 @@ public class MainActivity extends AppCompatActivity {
             recreate();
             return true;
         }
+        if (item.getItemId() == R.id.profile_menu) {
+            logProfilerReports();
+            return true;
+        }
+        if (item.getItemId() == R.id.trace_menu) {
+            exportTrace();
+            return true;
+        }
         return false;
     }
+
+    // Выгрузка записанных интервалов (см. ChartTraceRecorder) в формате Chrome trace-event в файл
+    // <files>/traces/tchart-<дата-время>.json (внешнее хранилище приложения, если доступно), в фоновом потоке
+    private void exportTrace() {
+        final ChartTraceRecorder recorder = ChartTraceRecorder.getGlobal();
+        if (recorder == null || loadingExecutor == null) {
+            return;
+        }
+
+        File dir = getExternalFilesDir(TRACES_DIR);
+        if (dir == null) {
+            dir = new File(getFilesDir(), TRACES_DIR);
+        }
+        final String fileName = "tchart-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".json";
+        final File file = new File(dir, fileName);
+
+        loadingExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                        throw new IOException("can't create " + file.getParent());
+                    }
+
+                    final Writer writer = new OutputStreamWriter(new FileOutputStream(file), CHART_DATA_CHARSET);
+                    try {
+                        recorder.writeChromeTrace(writer);
+                    } finally {
+                        writer.close();
+                    }
+
+                    Log.i("Profiler", "trace: " + file.getAbsolutePath());
+                } catch (IOException e) {
+                    Log.e("MA", e.toString(), e);
+                }
+            }
+        });
+    }
+
+    // отчёты замеров всех графиков (см. ChartProfiler) в лог
+    private void logProfilerReports() {
+        final LinearLayout root = (LinearLayout) findViewById(R.id.root);
+        if (root == null) {
+            return;
+        }
+
+        for (int i = 0; i < root.getChildCount(); i++) {
+            final View view = root.getChildAt(i);
+            if (view instanceof TelegramChartView) {
+                Log.i("Profiler", ((TelegramChartView) view).getProfilerReport());
+            }
+        }
+    }
 }
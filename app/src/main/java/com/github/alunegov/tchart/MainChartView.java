@@ -12,6 +12,7 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class MainChartView extends AbsChartView {
     private static final String NO_DATA = "NO VISIBLE LINES";
@@ -64,6 +65,12 @@ public class MainChartView extends AbsChartView {
     // настройки отрисовки линий оцифровки (и курсора)
     private Paint axisLinePaint;
 
+    // построение геометрии в фоновом потоке: drawData хранит только состояние, рисуются буферы движка
+    private ChartGeometryEngine<ChartDrawData> geometryEngine;
+
+    // процентили значений для диапазона Y (см. ChartGeometry.setYRangePercentiles), сохраняются при смене данных
+    private float yRangeLowPercentile = 0, yRangeHighPercentile = 1;
+
     public MainChartView(Context context, AttributeSet attrs) {
         super(context, attrs);
 
@@ -130,20 +137,34 @@ public class MainChartView extends AbsChartView {
     public void setInputData(@NotNull final ChartInputData inputData, @NotNull final ChartInputDataStats inputDataStats) {
         super.setInputData(inputData, inputDataStats);
 
+        // индексы точек новых данных не совпадают с прежними
+        cursorIndex = NO_CURSOR;
+
         drawData.enableMarksUpdating(AXIS_LINES_COUNT, new XAxisConverter(getContext()), new YAxisConverter());
         drawData.enableYRangeEnlarging();
+        drawData.setYRangePercentiles(yRangeLowPercentile, yRangeHighPercentile);
+        drawData.setGeometryUpdating(false);
+
+        geometryEngine = new ChartGeometryEngine<>(makeFrameBuffer(inputData, inputDataStats),
+                makeFrameBuffer(inputData, inputDataStats), new ChartGeometryEngine.Listener() {
+            @Override
+            public void onFrameReady() {
+                postInvalidateOnAnimation();
+            }
+        });
+        geometryEngine.setProfiler(profiler);
 
         if (inputData.flags.get(ChartInputData.FLAG_Y_SCALED)) {
             final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
 
-            for (int j = 0; j < inputData.LinesValues.length; j++) {
+            for (int j = 0; j < columns.getLinesCount(); j++) {
                 if (!linesRightAlign[j]) {
                     yLeftAxisTextPaint.setColor(inputData.LinesColors[j]);
                     break;
                 }
             }
 
-            for (int j = 0; j < inputData.LinesValues.length; j++) {
+            for (int j = 0; j < columns.getLinesCount(); j++) {
                 if (linesRightAlign[j]) {
                     yRightAxisTextPaint.setColor(inputData.LinesColors[j]);
                     break;
@@ -168,37 +189,80 @@ public class MainChartView extends AbsChartView {
                 drawData.updateCursorPaths(cursorIndex);
                 updateCursorPopup();
 
-                invalidate();
+                onDrawDataChanged();
             }
 
             @Override
             public void OnCursorNextClick() {
-                if (cursorIndex < (inputData.XValues.length - 1)) {
+                if (cursorIndex < (columns.getPointsCount() - 1)) {
                     cursorIndex++;
 
                     drawData.updateCursorPaths(cursorIndex);
                     updateCursorPopup();
 
-                    invalidate();
+                    onDrawDataChanged();
                 }
             }
         };
 
-        //invalidate();
+        // данные могут прийти после onSizeChanged (асинхронная загрузка) - сразу задаём область графика
+        if (getWidth() != 0 && getHeight() != 0) {
+            updateGraphAreaHeight();
+        }
+
+        onDrawDataChanged();
+    }
+
+    // буфер кадра для geometryEngine - настроен как drawData, но со своими преобразователями текста (работают в фоне).
+    // Данные с дописыванием - через вид, точки в который передаются снимком с каждым кадром.
+    private @NotNull ChartDrawData makeFrameBuffer(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
+        final ChartDrawData frameData = new ChartDrawData(inputData.isLive() ? inputData.toLiveView() : inputData,
+                inputDataStats);
+        frameData.enableMarksUpdating(AXIS_LINES_COUNT, new XAxisConverter(getContext()), new YAxisConverter());
+        return frameData;
+    }
+
+    @Override
+    public void setProfiler(@Nullable ChartProfiler profiler) {
+        super.setProfiler(profiler);
+
+        if (geometryEngine != null) {
+            geometryEngine.setProfiler(profiler);
+        }
+    }
+
+    @Override
+    protected void onDrawDataChanged() {
+        if (geometryEngine == null) {
+            return;
+        }
+
+        geometryEngine.requestFrame(drawData, cursorIndex);
+    }
+
+    // Устойчивый к выбросам диапазон Y по процентилям low и high значений (доли от 0 до 1, 0 и 1 - мин/макс). Применяется
+    // при следующем определении диапазона Y (смена диапазона X или видимости линий).
+    public void setYRangePercentiles(float low, float high) {
+        yRangeLowPercentile = low;
+        yRangeHighPercentile = high;
+
+        if (drawData != null) {
+            drawData.setYRangePercentiles(low, high);
+        }
     }
 
-    public void setXRange(float xLeftValue, float xRightValue) {
+    public void setXRange(double xLeftValue, double xRightValue) {
         if (drawData == null) {
             return;
         }
 
         drawData.setXRange(xLeftValue, xRightValue, true);
 
-        invalidate();
+        onDrawDataChanged();
         //postInvalidateDelayed(12);
     }
 
-    public void setXYRange(float xLeftValue, float xRightValue, int yLeftMin, int yLeftMax, int yRightMin, int yRightMax) {
+    public void setXYRange(double xLeftValue, double xRightValue, int yLeftMin, int yLeftMax, int yRightMin, int yRightMax) {
         if (drawData == null) {
             return;
         }
@@ -206,15 +270,16 @@ public class MainChartView extends AbsChartView {
         drawData.setXRange(xLeftValue, xRightValue, false);
         drawData.setYRange(yLeftMin, yLeftMax, yRightMin, yRightMax);
 
-        invalidate();
+        onDrawDataChanged();
         //postInvalidateDelayed(12);
     }
 
     @Override
     public void updateLineVisibility(int lineIndex, boolean exceptLine, int state, boolean doUpdate, boolean doInvalidate) {
+        drawData.updateCursorPaths(cursorIndex);
+
         super.updateLineVisibility(lineIndex, exceptLine, state, doUpdate, doInvalidate);
 
-        drawData.updateCursorPaths(cursorIndex);
         updateCursorPopup();
     }
 
@@ -239,6 +304,8 @@ public class MainChartView extends AbsChartView {
 
         if (drawData != null) {
             drawData.setArea(new RectF(getPaddingLeft(), 0, getWidth() - getPaddingRight(), graphAreaHeight));
+
+            onDrawDataChanged();
         }
     }
 
@@ -258,7 +325,7 @@ public class MainChartView extends AbsChartView {
     }
 
     private void onCursorChanged(float xPixel, boolean tapping) {
-        final float xValue = drawData.pixelToX(xPixel);
+        final double xValue = drawData.pixelToX(xPixel);
         final int newCursorIndex = findCursorIndex(xValue);
 
         if (tapping) {
@@ -271,15 +338,15 @@ public class MainChartView extends AbsChartView {
         drawData.updateCursorPaths(cursorIndex);
         updateCursorPopup();
 
-        invalidate();
+        onDrawDataChanged();
     }
 
-    private int findCursorIndex(float cursorXValue) {
+    private int findCursorIndex(double cursorXValue) {
         // use the closer point to cursorXValue
         final int cursorIndex = drawData.findXLeftIndex(cursorXValue);
-        if ((cursorIndex + 1) < inputData.XValues.length) {
-            final float prevPointDelta = Math.abs(inputData.XValues[cursorIndex] - cursorXValue);
-            final float nextPointDelta = Math.abs(inputData.XValues[cursorIndex + 1] - cursorXValue);
+        if ((cursorIndex + 1) < columns.getPointsCount()) {
+            final double prevPointDelta = Math.abs(columns.getX(cursorIndex) - cursorXValue);
+            final double nextPointDelta = Math.abs(columns.getX(cursorIndex + 1) - cursorXValue);
             return (prevPointDelta < nextPointDelta) ? cursorIndex : cursorIndex + 1;
         } else {
             return cursorIndex;
@@ -294,25 +361,22 @@ public class MainChartView extends AbsChartView {
         }
 
         final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
-        final boolean showAll = (inputData.linesType == ChartInputData.LineType.BAR) && (inputData.LinesValues.length > 1);
+        final boolean showAll = (inputData.linesType == ChartInputData.LineType.BAR) && (columns.getLinesCount() > 1);
         final boolean showPercentage = inputData.linesType == ChartInputData.LineType.AREA;
 
-        cursorPopupView.date = cursorDateCnv.toText(inputData.XValues[cursorIndex]);
+        cursorPopupView.date = cursorDateCnv.toText(columns.getX(cursorIndex));
 
         cursorPopupView.linesValuesCount = 0;
-        for (int j = 0; j < inputData.LinesValues.length; j++) {
+        for (int j = 0; j < columns.getLinesCount(); j++) {
             if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
                 continue;
             }
 
             final String percent;
             if (showPercentage) {
-                final int[] stackedSum = inputDataStats.getStackedSum();
-                assert stackedSum != null;
-
                 final float lineK = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
 
-                float percentValue = (float) inputData.LinesValues[j][cursorIndex] * lineK / stackedSum[cursorIndex] * 100f;
+                float percentValue = (float) columns.getY(j, cursorIndex) * lineK / inputDataStats.getStackedSum(cursorIndex) * 100f;
 
                 percent = String.format(Locale.getDefault(), "%d%%", Math.round(percentValue));
             } else {
@@ -321,7 +385,7 @@ public class MainChartView extends AbsChartView {
 
             CursorPopupView.LineValues lineValues = cursorPopupView.linesValues[cursorPopupView.linesValuesCount];
             lineValues.name = inputData.LinesNames[j];
-            lineValues.value = String.format(Locale.getDefault(), "%,d", inputData.LinesValues[j][cursorIndex]);
+            lineValues.value = String.format(Locale.getDefault(), "%,d", columns.getY(j, cursorIndex));
             lineValues.percent = percent;
             lineValues.color = inputData.LinesColors[j];
             lineValues.boldName = false;
@@ -331,14 +395,7 @@ public class MainChartView extends AbsChartView {
         }
         // сумма всех значений
         if (showAll) {
-            int sum = 0;
-            for (int i = 0; i < inputData.LinesValues.length; i++) {
-                if (linesVisibilityState[i] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
-                    continue;
-                }
-
-                sum += inputData.LinesValues[i][cursorIndex] * linesVisibilityState[i] / ChartInputDataStats.VISIBILITY_STATE_ON;
-            }
+            final long sum = inputDataStats.getVisibleLinesSum(cursorIndex, cursorIndex, linesVisibilityState);
 
             final Context context = getContext();
 
@@ -358,31 +415,57 @@ public class MainChartView extends AbsChartView {
 
     @Override
     protected void onDraw(Canvas canvas) {
-//        synchronized (lock) {
-            if (drawData == null) {
-                return;
+        if (drawData == null) {
+            return;
+        }
+
+        final ChartProfiler profiler = this.profiler;
+        final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_DRAW) : 0;
+
+        // рисуем передний буфер, пока фоновый поток строит следующий кадр в заднем
+        synchronized (geometryEngine.getLock()) {
+            final ChartDrawData frameData = geometryEngine.getFront();
+            if (frameData != null) {
+                drawFrame(canvas, frameData, profiler);
             }
+        }
 
-            // если нет видимых сигналов, оставляем xAxis и выводим текст NO_DATA по центру области графика
-            if (inputDataStats.getVisibleLinesCount() == 0) {
-                final float x = getWidth() / 2f - xAxisTextPaint.measureText(NO_DATA) / 2f;
-                final float y = graphAreaHeight / 2f;
-                canvas.drawText(NO_DATA, x, y, xAxisTextPaint);
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_DRAW, startTime);
+        }
+    }
 
-                drawXAxis(canvas);
+    // отрисовка кадра frameData (вызывается под блокировкой geometryEngine)
+    private void drawFrame(@NotNull Canvas canvas, @NotNull ChartDrawData frameData, @Nullable ChartProfiler profiler) {
+        // если нет видимых сигналов, оставляем xAxis и выводим текст NO_DATA по центру области графика
+        if (inputDataStats.getVisibleLinesCount() == 0) {
+            final float x = getWidth() / 2f - xAxisTextPaint.measureText(NO_DATA) / 2f;
+            final float y = graphAreaHeight / 2f;
+            canvas.drawText(NO_DATA, x, y, xAxisTextPaint);
 
-                return;
-            }
+            drawXAxis(canvas, frameData);
 
-            drawLines(canvas);
-            drawXAxis(canvas);
-            drawYAxis(canvas);
-            drawCursor(canvas);
-//        }
+            return;
+        }
+
+        drawLines(canvas, frameData);
+
+        long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_DRAW_AXES) : 0;
+        drawXAxis(canvas, frameData);
+        drawYAxis(canvas, frameData);
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_DRAW_AXES, startTime);
+            startTime = profiler.begin(ChartProfiler.PHASE_DRAW_CURSOR);
+        }
+
+        drawCursor(canvas, frameData);
+        if (profiler != null) {
+            profiler.end(ChartProfiler.PHASE_DRAW_CURSOR, startTime);
+        }
     }
 
-    private void drawXAxis(@NotNull Canvas canvas) {
-        final List<ChartDrawData.AxisMark> marks = drawData.getXAxisMarks();
+    private void drawXAxis(@NotNull Canvas canvas, @NotNull ChartDrawData frameData) {
+        final List<ChartGeometry.AxisMark> marks = frameData.getXAxisMarks();
         if (marks == null) throw new AssertionError();
 
         final float viewLeft = getPaddingLeft();
@@ -390,7 +473,7 @@ public class MainChartView extends AbsChartView {
 
         final float y = getHeight() - xAxisTextVerticalMargin;
 
-        for (ChartDrawData.AxisMark mark: marks) {
+        for (ChartGeometry.AxisMark mark: marks) {
             final float textWidth = xAxisTextPaint.measureText(mark.getText());
 
             // центруем текст относительно точки
@@ -406,8 +489,8 @@ public class MainChartView extends AbsChartView {
         }
     }
 
-    private void drawYAxis(@NotNull Canvas canvas) {
-        final List<ChartDrawData.AxisMark> marks = drawData.getYAxisMarks();
+    private void drawYAxis(@NotNull Canvas canvas, @NotNull ChartDrawData frameData) {
+        final List<ChartGeometry.AxisMark> marks = frameData.getYAxisMarks();
         if (marks == null) throw new AssertionError();
 
         final boolean isLayoutRtl = ViewUtils.isLayoutRtl(this);
@@ -415,7 +498,7 @@ public class MainChartView extends AbsChartView {
         final int viewLeft = getPaddingLeft();
         final int viewRight = getWidth() - getPaddingRight();
 
-        for (ChartDrawData.AxisMark mark: marks) {
+        for (ChartGeometry.AxisMark mark: marks) {
             final float y = mark.getPosition();
 
             // не выводим текст, если он выходит за верхнюю границу
@@ -447,12 +530,14 @@ public class MainChartView extends AbsChartView {
         }
     }
 
-    private void drawCursor(@NotNull Canvas canvas) {
+    private void drawCursor(@NotNull Canvas canvas, @NotNull ChartDrawData frameData) {
+        // курсор кадра - может отставать от cursorIndex, пока строится следующий кадр
+        final int cursorIndex = frameData.getCursorIndex();
         if (cursorIndex == NO_CURSOR) {
             return;
         }
 
-        final float cursorX = drawData.xToPixel(inputData.XValues[cursorIndex]);
+        final float cursorX = frameData.xToPixel(columns.getX(cursorIndex));
 
         // в BAR не нужны ни линия, ни отметки точек, только tooltip
         if (inputData.linesType == ChartInputData.LineType.BAR) {
@@ -468,19 +553,19 @@ public class MainChartView extends AbsChartView {
             return;
         }
 
-        final int[] linesVisibilityState = inputDataStats.getLinesVisibilityState();
+        final int[] linesVisibilityState = frameData.getLinesVisibilityState();
         final boolean[] linesRightAlign = inputDataStats.getLinesRightAlign();
 
-        for (int i = 0; i < inputData.LinesValues.length; i++) {
+        for (int i = 0; i < columns.getLinesCount(); i++) {
             if (linesVisibilityState[i] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
                 continue;
             }
 
             final float cursorY;
             if (linesRightAlign[i]) {
-                cursorY = drawData.yRightToPixel(inputData.LinesValues[i][cursorIndex]);
+                cursorY = frameData.yRightToPixel(columns.getY(i, cursorIndex));
             } else {
-                cursorY = drawData.yLeftToPixel(inputData.LinesValues[i][cursorIndex]);
+                cursorY = frameData.yLeftToPixel(columns.getY(i, cursorIndex));
             }
 
             // граница маркера цветом графика
@@ -559,7 +644,7 @@ public class MainChartView extends AbsChartView {
         }
     }
 
-    public static class XAxisConverter implements ChartDrawData.AxisTextConverter {
+    public static class XAxisConverter implements ChartGeometry.AxisTextConverter {
         private SimpleDateFormat dateFormat;
         private final @NotNull Date tmpDate = new Date();
 
@@ -578,7 +663,7 @@ public class MainChartView extends AbsChartView {
         }
     }
 
-    public static class YAxisConverter implements ChartDrawData.AxisTextConverter {
+    public static class YAxisConverter implements ChartGeometry.AxisTextConverter {
         @Override
         public @NotNull String toText(long value) {
             if (value >= 1_000_000) {
@@ -0,0 +1,102 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика в куче Java, упорядоченные по точкам: значения всех линий точки i лежат подряд в одном массиве
+// (values[i * linesCount + j]). Для накопительных сумм BAR/AREA (см. stackLines, addLinesTo) все линии проходятся за
+// один последовательный проход по массиву, а не по отдельному массиву на линию. Строится один раз (см. of), значения
+// после этого не меняются.
+public class PointMajorChartColumns implements ChartColumns {
+    private final @NotNull long[] xValues;
+    private final int linesCount;
+    // значения линий по точкам
+    private final @NotNull int[] values;
+
+    private PointMajorChartColumns(@NotNull long[] xValues, int linesCount) {
+        this.xValues = xValues;
+        this.linesCount = linesCount;
+        values = new int[xValues.length * linesCount];
+    }
+
+    // Копия значений columns
+    public static @NotNull PointMajorChartColumns of(@NotNull ChartColumns columns) {
+        final int pointsCount = columns.getPointsCount();
+        final int linesCount = columns.getLinesCount();
+
+        final long[] xValues = new long[pointsCount];
+        for (int i = 0; i < pointsCount; i++) {
+            xValues[i] = columns.getX(i);
+        }
+
+        final PointMajorChartColumns res = new PointMajorChartColumns(xValues, linesCount);
+        for (int j = 0; j < linesCount; j++) {
+            for (int i = 0, k = j; i < pointsCount; i++, k += linesCount) {
+                res.values[k] = columns.getY(j, i);
+            }
+        }
+
+        return res;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return xValues.length;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesCount;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xValues[index];
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return values[index * linesCount + lineIndex];
+    }
+
+    // Накопительные суммы линий в точках [from, to]: dst[j][i] - сумма значений линий 0..j точки i, умноженных на
+    // linesK. Порядок сложения тот же, что и при накоплении по линиям (см. ChartGeometry.updateLines_BAR_Polygons), -
+    // результат совпадает в точности.
+    public void stackLines(int from, int to, @NotNull float[] linesK, @NotNull float[][] dst) {
+        if (BuildConfig.DEBUG && ((from < 0) || (to >= xValues.length))) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((linesK.length != linesCount) || (dst.length != linesCount))) throw new AssertionError();
+
+        for (int i = from, k = from * linesCount; i <= to; i++) {
+            float sum = 0;
+            for (int j = 0; j < linesCount; j++, k++) {
+                if (linesK[j] != 0) {
+                    sum += values[k] * linesK[j];
+                }
+                dst[j][i] = sum;
+            }
+        }
+    }
+
+    // Добавление к sum вклада всех линий по их состояниям видимости (как StackedSumIndex.addLine для каждой линии)
+    public void addLinesTo(@NotNull int[] linesVisibilityState, @NotNull long[] sum) {
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != linesCount)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (sum.length != xValues.length)) throw new AssertionError();
+
+        final float[] linesK = new float[linesCount];
+        for (int j = 0; j < linesCount; j++) {
+            linesK[j] = (float) linesVisibilityState[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+        }
+
+        for (int i = 0, k = 0; i < xValues.length; i++) {
+            long pointSum = 0;
+            for (int j = 0; j < linesCount; j++, k++) {
+                final int state = linesVisibilityState[j];
+                if (state == ChartInputDataStats.VISIBILITY_STATE_ON) {
+                    pointSum += values[k];
+                } else if (state != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                    pointSum += (int) (values[k] * linesK[j]);
+                }
+            }
+            sum[i] += pointSum;
+        }
+    }
+}
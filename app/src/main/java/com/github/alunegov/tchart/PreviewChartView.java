@@ -10,6 +10,7 @@ import android.util.TypedValue;
 import android.view.MotionEvent;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class PreviewChartView extends AbsChartView {
     // Scroll Background
@@ -32,6 +33,9 @@ public class PreviewChartView extends AbsChartView {
 
     private static final float TICK_CORNER_RADIUS = 2f;
 
+    // запас диапазона X справа для данных с дописыванием, доля от диапазона данных (см. updateLiveXRange)
+    private static final float LIVE_X_RESERVE = 0.1f;
+
     private float borderVerticalWidth;
     private int borderHorizontalHeight;
     private float touchSlop1;
@@ -47,10 +51,17 @@ public class PreviewChartView extends AbsChartView {
     private OnChangeListener onChangeListener;
     private MoveMode moveMode = MoveMode.NOP;
     private float moveStart;
-    private float zoneLeftValue, zoneRightValue;
+    private double zoneLeftValue, zoneRightValue;
     private RectF zoneLeftBorder, zoneRightBorder;
     private Bitmap cachedLines = null;
+    private Canvas cachedLinesCanvas = null;
     private boolean useCachedLines = true;
+    // прореживание точек линий (LINE) по ширине вида, включено по умолчанию
+    private @Nullable LineSampler lineSampler = new LttbSampler();
+    private final @NotNull double[] tmpXRange = new double[2];
+    // данные с дописыванием: X последней точки при прошлом обновлении и кол-во значений отрезков линий до дописывания
+    private double lastXValue;
+    private int[] tmpLinesLinesCount;
 
     // настройки отрисовки скрывающего слоя для зон слева и справа от выбранного диапазона по X
     private Paint fadedPaint;
@@ -100,6 +111,18 @@ public class PreviewChartView extends AbsChartView {
         tickPaint.setColor(Color.WHITE);
     }
 
+    // замена прореживания точек линий (null - выводятся все точки)
+    public void setLineSampler(@Nullable LineSampler lineSampler) {
+        this.lineSampler = lineSampler;
+
+        if (drawData != null) {
+            drawData.setLineSampler(lineSampler);
+
+            useCachedLines(true);
+            invalidate();
+        }
+    }
+
     public void setOnChangeListener(@NotNull OnChangeListener onChangeListener) {
         this.onChangeListener = onChangeListener;
     }
@@ -108,19 +131,115 @@ public class PreviewChartView extends AbsChartView {
     public void setInputData(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
         super.setInputData(inputData, inputDataStats);
 
-        zoneLeftValue = inputData.XValues[0];//inputData.XValues[inputData.XValues.length * 4 / 6];  // TODO: starting zoneLeft?
-        zoneRightValue = inputData.XValues[inputData.XValues.length - 1];
+        // предпросмотр - узкая полоса во всю ширину X, полное разрешение ему не нужно
+        drawData.setLineSampler(lineSampler);
 
-        updateZoneLeftBorder(false);
-        updateZoneRightBorder(false);
+        if (inputData.isLive()) {
+            updateLiveXRange();
+        }
+        lastXValue = columns.getX(columns.getPointsCount() - 1);
+        tmpLinesLinesCount = new int[columns.getLinesCount()];
 
-        useCachedLines(true);
+        zoneLeftValue = columns.getX(0);//columns.getX(columns.getPointsCount() * 4 / 6);  // TODO: starting zoneLeft?
+        zoneRightValue = columns.getX(columns.getPointsCount() - 1);
+
+        // данные могут прийти после onSizeChanged (асинхронная загрузка) - сразу задаём область графика
+        if (getWidth() != 0 && getHeight() != 0) {
+            updateArea(getWidth(), getHeight());
+
+            invalidate();
+        } else {
+            updateZoneLeftBorder(false);
+            updateZoneRightBorder(false);
+
+            useCachedLines(true);
+        }
 
         // оповещение через onChangeListener. если нужно получить зону, то есть getZone
 
         //invalidate();
     }
 
+    // Данные дополнены точками (вызывается не чаще раза за кадр или пачку точек, см. TelegramChartView.appendPoint).
+    // Пока новые точки попадают в диапазон X с запасом (см. updateLiveXRange), к линиям LINE дописываются и дорисовываются
+    // в кэш-картинку только их отрезки. Полное перестроение - когда точки выходят за диапазон, т.е. раз на
+    // LIVE_X_RESERVE долю данных, или при изменении диапазона Y. Зона, прижатая к последней точке, сдвигается вместе с
+    // ней (с сохранением ширины).
+    @Override
+    public void onInputDataAppended() {
+        if (drawData == null) {
+            return;
+        }
+
+        final long xLeft = columns.getX(0);
+        final long xRight = columns.getX(columns.getPointsCount() - 1);
+
+        if (zoneRightValue >= lastXValue) {
+            final double zoneWidth = zoneRightValue - zoneLeftValue;
+            zoneRightValue = xRight;
+            zoneLeftValue = Math.max(xLeft, xRight - zoneWidth);
+        } else if (zoneLeftValue < xLeft) {
+            // начало зоны вытеснено из буфера
+            zoneLeftValue = xLeft;
+            zoneRightValue = Math.max(zoneRightValue, xLeft);
+        }
+        lastXValue = xRight;
+
+        final double[] xRange = tmpXRange;
+        drawData.getXRange(xRange);
+
+        if (xRight > xRange[1]) {
+            updateLiveXRange();
+
+            useCachedLines(true);
+        } else {
+            final int[] linesLinesCount = drawData.getLinesLinesCount();
+            System.arraycopy(linesLinesCount, 0, tmpLinesLinesCount, 0, linesLinesCount.length);
+
+            // без кэш-картинки (анимация) она перестроится при включении, см. useCachedLines
+            if (drawData.onPointsAppended() && useCachedLines) {
+                if (drawData.isLinesTailAppended()) {
+                    drawCachedLinesTail(tmpLinesLinesCount);
+                } else {
+                    useCachedLines(true);
+                }
+            }
+        }
+
+        updateZoneLeftBorder(false);
+        updateZoneRightBorder(false);
+
+        invalidate();
+    }
+
+    // Диапазон X данных с дописыванием: от первой точки до последней с запасом справа в LIVE_X_RESERVE диапазона
+    // данных - новые точки попадают в него без изменения масштаба. Отрезки вытесненных из буфера точек остаются слева
+    // до следующей смены диапазона.
+    private void updateLiveXRange() {
+        final long xLeft = columns.getX(0);
+        final long xRight = columns.getX(columns.getPointsCount() - 1);
+
+        drawData.setXRange(xLeft, xRight + Math.max(1, (long) ((xRight - xLeft) * LIVE_X_RESERVE)), true);
+    }
+
+    // дорисовка в кэш-картинку отрезков, дописанных к линиям после prevLinesLinesCount значений
+    private void drawCachedLinesTail(@NotNull int[] prevLinesLinesCount) {
+        if (BuildConfig.DEBUG && (cachedLinesCanvas == null)) throw new AssertionError();
+
+        final float[][] lines = drawData.getLinesLines();
+        final int[] linesLinesCount = drawData.getLinesLinesCount();
+        final int[] linesVisibilityState = drawData.getLinesVisibilityState();
+
+        for (int j = 0; j < lines.length; j++) {
+            if (linesVisibilityState[j] == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                continue;
+            }
+
+            cachedLinesCanvas.drawLines(lines[j], prevLinesLinesCount[j], linesLinesCount[j] - prevLinesLinesCount[j],
+                    linesPaints[j]);
+        }
+    }
+
 /*    @Override
     public void updateLineVisibility(int lineIndex, boolean exceptLine, int state, boolean doUpdate, boolean doInvalidate) {
         super.updateLineVisibility(lineIndex, exceptLine, state, doUpdate, false);
@@ -162,7 +281,7 @@ public class PreviewChartView extends AbsChartView {
         }
     }*/
 
-    public void getZone(@NotNull float[] zone) {
+    public void getZone(@NotNull double[] zone) {
         if (BuildConfig.DEBUG && (zone.length != 2)) throw new AssertionError();
 
         zone[0] = zoneLeftValue;
@@ -182,6 +301,10 @@ public class PreviewChartView extends AbsChartView {
         }
 
         if (BuildConfig.DEBUG && ((getWidth() != w) || (getHeight() != h))) throw new AssertionError();
+        updateArea(w, h);
+    }
+
+    private void updateArea(int w, int h) {
         drawData.setArea(new RectF(0, borderHorizontalHeight, w, h - borderHorizontalHeight));
 
         updateZoneLeftBorder(true);
@@ -357,14 +480,16 @@ public class PreviewChartView extends AbsChartView {
 
         if (getWidth() == 0 || getHeight() == 0) {
             cachedLines = null;
+            cachedLinesCanvas = null;
             return false;
         }
 
         if (cachedLines == null) {
             cachedLines = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.RGB_565);
+            cachedLinesCanvas = new Canvas(cachedLines);
         }
 
-        final Canvas canvas = new Canvas(cachedLines);
+        final Canvas canvas = cachedLinesCanvas;
 
         final int backColor = ChartUtils.getThemedColor(getContext(), R.attr.app_background_color, Color.WHITE);
         canvas.drawColor(backColor);
@@ -381,9 +506,16 @@ public class PreviewChartView extends AbsChartView {
                 return;
             }
 
+            final ChartProfiler profiler = this.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_DRAW) : 0;
+
             drawLines(canvas);
             drawLinesFade(canvas);
             drawFrame(canvas);
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_DRAW, startTime);
+            }
 //        }
     }
 
@@ -460,7 +592,7 @@ public class PreviewChartView extends AbsChartView {
     }
 
     public interface OnChangeListener {
-        void onZoneChanged(float zoneLeftValue, float zoneRightValue);
+        void onZoneChanged(double zoneLeftValue, double zoneRightValue);
     }
 
     // Режим перемещения выделения (диапазона по X)
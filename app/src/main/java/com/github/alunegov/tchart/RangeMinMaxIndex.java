@@ -0,0 +1,172 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Индекс для поиска минимума и максимума значений в диапазоне индексов. Дерево отрезков (снизу-вверх) - построение
+// за O(n), запрос за O(log n), 2 * n элементов на минимум и на максимум.
+public class RangeMinMaxIndex {
+    // количество значений (листьев дерева)
+    private final int size;
+    // узлы дерева: [1, size) - внутренние, [size, 2 * size) - листья (исходные значения)
+    private final int[] min;
+    private final int[] max;
+
+    public RangeMinMaxIndex(int size) {
+        if (BuildConfig.DEBUG && (size <= 0)) throw new AssertionError();
+
+        this.size = size;
+        min = new int[2 * size];
+        max = new int[2 * size];
+    }
+
+    public RangeMinMaxIndex(@NotNull int[] values) {
+        this(values.length);
+
+        build(values);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // полное перестроение индекса по значениям values, O(n)
+    public void build(@NotNull int[] values) {
+        if (BuildConfig.DEBUG && (values.length != size)) throw new AssertionError();
+
+        System.arraycopy(values, 0, min, size, size);
+        System.arraycopy(values, 0, max, size, size);
+
+        buildInnerNodes();
+    }
+
+    // полное перестроение индекса по значениям линии lineIndex из columns, O(n)
+    public void build(@NotNull ChartColumns columns, int lineIndex) {
+        if (BuildConfig.DEBUG && (columns.getPointsCount() != size)) throw new AssertionError();
+
+        if (columns instanceof CompactChartColumns) {
+            ((CompactChartColumns) columns).getLine(lineIndex, 0, size, min, size);
+            System.arraycopy(min, size, max, size, size);
+
+            buildInnerNodes();
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            final int value = columns.getY(lineIndex, i);
+            min[size + i] = value;
+            max[size + i] = value;
+        }
+
+        buildInnerNodes();
+    }
+
+    // Полное перестроение индекса по значениям values, O(n). Значения вне диапазона int ограничиваются им (индекс
+    // используется для границ оси Y, которые в int).
+    public void build(@NotNull long[] values) {
+        if (BuildConfig.DEBUG && (values.length != size)) throw new AssertionError();
+
+        for (int i = 0; i < size; i++) {
+            final int value = saturate(values[i]);
+            min[size + i] = value;
+            max[size + i] = value;
+        }
+
+        buildInnerNodes();
+    }
+
+    private void buildInnerNodes() {
+        for (int i = size - 1; i > 0; i--) {
+            min[i] = Math.min(min[i << 1], min[(i << 1) | 1]);
+            max[i] = Math.max(max[i << 1], max[(i << 1) | 1]);
+        }
+    }
+
+    // изменение одного значения, O(log n)
+    public void update(int index, int value) {
+        if (BuildConfig.DEBUG && ((index < 0) || (index >= size))) throw new AssertionError();
+
+        int i = index + size;
+        min[i] = value;
+        max[i] = value;
+
+        for (i >>= 1; i > 0; i >>= 1) {
+            min[i] = Math.min(min[i << 1], min[(i << 1) | 1]);
+            max[i] = Math.max(max[i << 1], max[(i << 1) | 1]);
+        }
+    }
+
+    // изменение одного значения с ограничением диапазоном int (см. build(long[])), O(log n)
+    public void update(int index, long value) {
+        update(index, saturate(value));
+    }
+
+    private static int saturate(long value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    // Поиск минимума и максимума в диапазоне индексов [l, r] (включительно). Результат объединяется с уже имеющимися
+    // в minMax значениями (minMax[0] - минимум, minMax[1] - максимум), что позволяет собирать мин/макс по нескольким
+    // линиям. Для "чистого" поиска minMax нужно заполнить Integer.MAX_VALUE/Integer.MIN_VALUE.
+    public void find(int l, int r, @NotNull int[] minMax) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= size))) throw new AssertionError();
+        if (BuildConfig.DEBUG && (minMax.length != 2)) throw new AssertionError();
+
+        int resMin = minMax[0];
+        int resMax = minMax[1];
+
+        // полуинтервал [l, r + 1) на уровне листьев
+        l += size;
+        r += size + 1;
+
+        while (l < r) {
+            if ((l & 1) != 0) {
+                if (min[l] < resMin) {
+                    resMin = min[l];
+                }
+                if (max[l] > resMax) {
+                    resMax = max[l];
+                }
+                l++;
+            }
+            if ((r & 1) != 0) {
+                r--;
+                if (min[r] < resMin) {
+                    resMin = min[r];
+                }
+                if (max[r] > resMax) {
+                    resMax = max[r];
+                }
+            }
+            l >>= 1;
+            r >>= 1;
+        }
+
+        minMax[0] = resMin;
+        minMax[1] = resMax;
+    }
+
+    // Поиск минимума и максимума по значениям кольцевого буфера (см. RingChartColumns), размер индекса - ёмкость буфера.
+    // [l, r] - логические индексы, start - физический индекс логического индекса 0. Диапазон в массиве - один или два
+    // (с переходом через конец) отрезка.
+    public void findRing(int l, int r, int start, @NotNull int[] minMax) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= size))) throw new AssertionError();
+
+        int pl = start + l;
+        if (pl >= size) {
+            pl -= size;
+        }
+        int pr = start + r;
+        if (pr >= size) {
+            pr -= size;
+        }
+
+        if (pl <= pr) {
+            find(pl, pr, minMax);
+        } else {
+            find(pl, size - 1, minMax);
+            find(0, pr, minMax);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.alunegov.tchart;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+// Индекс порядковых статистик значений линии в диапазоне индексов (k-е по величине значение, кол-во значений не больше
+// заданного) - для процентилей при устойчивом к выбросам масштабе по Y (см. ChartInputDataStats.findYPercentiles).
+// Wavelet matrix: значения заменяются их рангами среди различных значений линии, каждый бит ранга (от старшего) - уровень
+// из битового вектора по точкам с подсчётом единиц по словам. Построение за O(n log σ), запрос за O(log σ) (σ - кол-во
+// различных значений), ~1.5 бита на точку на уровень - в отличие от дерева отрезков с отсортированными списками
+// (merge-sort tree) с O(n log n) значений.
+public class RangePercentileIndex {
+    // кол-во значений
+    private final int size;
+    // различные значения по возрастанию (ранг значения - индекс в массиве)
+    private final @NotNull int[] sortedValues;
+    // кол-во уровней (бит ранга)
+    private final int levelsCount;
+    // биты уровней [level][word], уровень 0 - старший бит ранга
+    private final @NotNull long[][] bits;
+    // кол-во единиц до слова [level][word]
+    private final @NotNull int[][] ones;
+    // кол-во нулей на уровне (нули при переходе на следующий уровень идут первыми)
+    private final @NotNull int[] zerosCount;
+
+    // Индекс по значениям линии lineIndex из columns
+    public RangePercentileIndex(@NotNull ChartColumns columns, int lineIndex) {
+        size = columns.getPointsCount();
+        if (BuildConfig.DEBUG && (size <= 0)) throw new AssertionError();
+
+        final int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = columns.getY(lineIndex, i);
+        }
+
+        final int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int distinctCount = 1;
+        for (int i = 1; i < size; i++) {
+            if (sorted[i] != sorted[distinctCount - 1]) {
+                sorted[distinctCount++] = sorted[i];
+            }
+        }
+        sortedValues = Arrays.copyOf(sorted, distinctCount);
+
+        levelsCount = 32 - Integer.numberOfLeadingZeros(distinctCount - 1);
+
+        int[] cur = new int[size];
+        for (int i = 0; i < size; i++) {
+            cur[i] = Arrays.binarySearch(sortedValues, values[i]);
+        }
+        int[] next = new int[size];
+
+        final int wordsCount = (size + 63) >>> 6;
+        bits = new long[levelsCount][wordsCount];
+        ones = new int[levelsCount][wordsCount + 1];
+        zerosCount = new int[levelsCount];
+
+        for (int level = 0; level < levelsCount; level++) {
+            final int shift = levelsCount - 1 - level;
+            final long[] levelBits = bits[level];
+
+            int zeros = 0;
+            for (int i = 0; i < size; i++) {
+                if (((cur[i] >>> shift) & 1) != 0) {
+                    levelBits[i >>> 6] |= 1L << (i & 63);
+                } else {
+                    zeros++;
+                }
+            }
+            zerosCount[level] = zeros;
+
+            final int[] levelOnes = ones[level];
+            for (int w = 0; w < wordsCount; w++) {
+                levelOnes[w + 1] = levelOnes[w] + Long.bitCount(levelBits[w]);
+            }
+
+            // устойчивое разделение: сначала нули, затем единицы
+            int z = 0;
+            int o = zeros;
+            for (int i = 0; i < size; i++) {
+                if (((cur[i] >>> shift) & 1) != 0) {
+                    next[o++] = cur[i];
+                } else {
+                    next[z++] = cur[i];
+                }
+            }
+
+            final int[] tmp = cur;
+            cur = next;
+            next = tmp;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // k-е (с 0) по возрастанию значение в диапазоне [l, r]
+    public int findKth(int l, int r, int k) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= size))) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((k < 0) || (k > r - l))) throw new AssertionError();
+
+        // полуинтервал [l, r + 1)
+        int from = l;
+        int to = r + 1;
+        int rank = 0;
+
+        for (int level = 0; level < levelsCount; level++) {
+            final int onesFrom = rank1(level, from);
+            final int onesTo = rank1(level, to);
+            final int zeros = (to - from) - (onesTo - onesFrom);
+
+            if (k < zeros) {
+                from -= onesFrom;
+                to -= onesTo;
+            } else {
+                k -= zeros;
+                rank |= 1 << (levelsCount - 1 - level);
+                from = zerosCount[level] + onesFrom;
+                to = zerosCount[level] + onesTo;
+            }
+        }
+
+        return sortedValues[rank];
+    }
+
+    // кол-во значений, не больших value, в диапазоне [l, r]
+    public int countLessOrEqual(int l, int r, int value) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= size))) throw new AssertionError();
+
+        // ранг первого значения, большего value
+        int rankLimit = Arrays.binarySearch(sortedValues, value);
+        rankLimit = rankLimit >= 0 ? rankLimit + 1 : -rankLimit - 1;
+        if (rankLimit == 0) {
+            return 0;
+        }
+        if (rankLimit == sortedValues.length) {
+            return r - l + 1;
+        }
+
+        // кол-во значений с рангом меньше rankLimit
+        int from = l;
+        int to = r + 1;
+        int res = 0;
+
+        for (int level = 0; level < levelsCount; level++) {
+            final int onesFrom = rank1(level, from);
+            final int onesTo = rank1(level, to);
+
+            if (((rankLimit >>> (levelsCount - 1 - level)) & 1) != 0) {
+                res += (to - from) - (onesTo - onesFrom);
+                from = zerosCount[level] + onesFrom;
+                to = zerosCount[level] + onesTo;
+            } else {
+                from -= onesFrom;
+                to -= onesTo;
+            }
+        }
+
+        return res;
+    }
+
+    // кол-во единиц уровня level в позициях [0, i)
+    private int rank1(int level, int i) {
+        final int w = i >>> 6;
+        final int res = ones[level][w];
+        final int bit = i & 63;
+        return bit == 0 ? res : res + Long.bitCount(bits[level][w] & ((1L << bit) - 1));
+    }
+}
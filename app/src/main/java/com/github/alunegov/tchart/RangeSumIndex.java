@@ -0,0 +1,92 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Префиксные суммы значений линий для запросов суммы/среднего линии в диапазоне индексов за O(1) - построение за O(n),
+// n + 1 значений long на линию (сумма многих точек может не уложиться в int).
+// Для данных с дописыванием точек (RingChartColumns) префиксные суммы хранятся по номеру добавления точки в кольце из
+// capacity + 1 значений и дополняются новыми точками при запросе - O(кол-во линий) на точку. Начало отсчёта сумм при этом
+// произвольное, важны только разности.
+public class RangeSumIndex {
+    private final @NotNull ChartColumns columns;
+    // значения с дописыванием точек (null - данные не меняются)
+    private final @Nullable RingChartColumns ring;
+    // кол-во добавленных в ring точек, учтённых в prefix
+    private long appliedAppendedCount = 0;
+    // префиксные суммы [line][k]: сумма значений точек до k (не включая). Для ring k - номер добавления по модулю
+    // размера кольца.
+    private final @NotNull long[][] prefix;
+
+    public RangeSumIndex(@NotNull ChartColumns columns) {
+        this.columns = columns;
+        ring = columns instanceof RingChartColumns ? (RingChartColumns) columns : null;
+
+        final int size = (ring != null ? ring.getCapacity() : columns.getPointsCount()) + 1;
+        prefix = new long[columns.getLinesCount()][size];
+
+        if (ring != null) {
+            syncAppended();
+        } else {
+            for (int j = 0; j < prefix.length; j++) {
+                final long[] linePrefix = prefix[j];
+                for (int i = 0; i < size - 1; i++) {
+                    linePrefix[i + 1] = linePrefix[i] + columns.getY(j, i);
+                }
+            }
+        }
+    }
+
+    // сумма значений линии lineIndex в диапазоне [l, r]
+    public long getSum(int lineIndex, int l, int r) {
+        if (BuildConfig.DEBUG && (l > r)) throw new AssertionError();
+        if (BuildConfig.DEBUG && ((l < 0) || (r >= columns.getPointsCount()))) throw new AssertionError();
+
+        final long[] linePrefix = prefix[lineIndex];
+        if (ring != null) {
+            syncAppended();
+
+            // номер добавления точки 0
+            final long first = ring.getAppendedCount() - ring.getPointsCount();
+            return linePrefix[slot(first + r + 1)] - linePrefix[slot(first + l)];
+        }
+        return linePrefix[r + 1] - linePrefix[l];
+    }
+
+    // среднее значение линии lineIndex в диапазоне [l, r]
+    public double getAverage(int lineIndex, int l, int r) {
+        return (double) getSum(lineIndex, l, r) / (r - l + 1);
+    }
+
+    private int slot(long k) {
+        return (int) (k % prefix[0].length);
+    }
+
+    // дополнение сумм точками, добавленными в ring с прошлого вызова
+    private void syncAppended() {
+        if (BuildConfig.DEBUG && (ring == null)) throw new AssertionError();
+
+        final long appendedCount = ring.getAppendedCount();
+        if (appendedCount == appliedAppendedCount) {
+            return;
+        }
+
+        final int pointsCount = ring.getPointsCount();
+        final int newPointsCount = (int) Math.min(appendedCount - appliedAppendedCount, pointsCount);
+        final long first = appendedCount - pointsCount;
+
+        for (int j = 0; j < prefix.length; j++) {
+            final long[] linePrefix = prefix[j];
+            final int from = pointsCount - newPointsCount;
+            if (from == 0) {
+                // все хранимые точки новые - прежних сумм в кольце может не быть, отсчёт заново
+                linePrefix[slot(first)] = 0;
+            }
+            for (int i = from; i < pointsCount; i++) {
+                linePrefix[slot(first + i + 1)] = linePrefix[slot(first + i)] + ring.getY(j, i);
+            }
+        }
+
+        appliedAppendedCount = appendedCount;
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика с дописыванием точек (живые данные) в кольцевом буфере ограниченного размера (capacity). При
+// заполнении буфера новая точка вытесняет самую старую, так что хранятся последние capacity точек. Добавление - O(кол-во
+// линий), без перевыделения и сдвига массивов.
+// Индексы ChartColumns - логические (0 - самая старая хранимая точка), в массивах точка i лежит по физическому индексу
+// getPhysicalIndex(i). Пока буфер не заполнен, физический индекс совпадает с логическим. Индексы мин/макс и сумм (см.
+// ChartInputDataStats, StackedSumIndex) строятся по физическим индексам, поэтому при вытеснении не сдвигаются, а
+// изменения подхватываются по счётчику getAppendedCount.
+// Добавлять точки нужно в UI-потоке. Другие потоки работают с видом (makeView) - теми же массивами, но со своим
+// состоянием (начало, кол-во точек), которое задаётся снимком getState, снятым в UI-потоке и переданным под блокировкой
+// (см. ChartGeometryEngine). Вид видит только точки, записанные до снимка, поэтому индексы по нему (StackedSumIndex)
+// считаются по записанным значениям. Точки, добавленные после снимка в заполненный буфер, затирают самые старые точки
+// вида - их отрезки в этом кадре могут быть неверными, следующий кадр (с новым снимком) это исправит.
+public class RingChartColumns implements ChartColumns {
+    // размер снимка состояния (см. getState)
+    public static final int STATE_SIZE = 3;
+
+    private final int capacity;
+    private final @NotNull long[] xValues;
+    private final @NotNull int[][] linesValues;
+    // флаг: вид на массивы другого буфера (см. makeView), точки не добавляются
+    private final boolean view;
+    // физический индекс самой старой точки
+    private int start = 0;
+    // кол-во хранимых точек
+    private int pointsCount = 0;
+    // кол-во добавленных точек за всё время (включая вытесненные)
+    private long appendedCount = 0;
+
+    public RingChartColumns(int linesCount, int capacity) {
+        if (BuildConfig.DEBUG && (linesCount <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (capacity <= 0)) throw new AssertionError();
+
+        this.capacity = capacity;
+        xValues = new long[capacity];
+        linesValues = new int[linesCount][capacity];
+        view = false;
+    }
+
+    private RingChartColumns(@NotNull RingChartColumns source) {
+        capacity = source.capacity;
+        xValues = source.xValues;
+        linesValues = source.linesValues;
+        view = true;
+
+        start = source.start;
+        pointsCount = source.pointsCount;
+        appendedCount = source.appendedCount;
+    }
+
+    // Буфер с последними (не более capacity) точками columns
+    public static @NotNull RingChartColumns copyOf(@NotNull ChartColumns columns, int capacity) {
+        final RingChartColumns res = new RingChartColumns(columns.getLinesCount(), capacity);
+
+        final int[] values = new int[columns.getLinesCount()];
+        for (int i = Math.max(0, columns.getPointsCount() - capacity); i < columns.getPointsCount(); i++) {
+            for (int j = 0; j < values.length; j++) {
+                values[j] = columns.getY(j, i);
+            }
+            res.append(columns.getX(i), values);
+        }
+
+        return res;
+    }
+
+    // Добавление точки (x не меньше X последней точки). При заполненном буфере вытесняется самая старая точка.
+    public void append(long x, @NotNull int[] values) {
+        if (BuildConfig.DEBUG && view) throw new AssertionError();
+        if (BuildConfig.DEBUG && (values.length != linesValues.length)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (pointsCount > 0) && (x < getX(pointsCount - 1))) throw new AssertionError();
+
+        final int p;
+        if (pointsCount < capacity) {
+            p = getPhysicalIndex(pointsCount);
+            pointsCount++;
+        } else {
+            p = start;
+            start = start + 1 < capacity ? start + 1 : 0;
+        }
+
+        xValues[p] = x;
+        for (int j = 0; j < linesValues.length; j++) {
+            linesValues[j][p] = values[j];
+        }
+
+        appendedCount++;
+    }
+
+    // Вид на массивы буфера с текущим состоянием. Создавать в UI-потоке, дальше состояние меняется только setState.
+    public @NotNull RingChartColumns makeView() {
+        return new RingChartColumns(this);
+    }
+
+    public boolean isView() {
+        return view;
+    }
+
+    // снимок состояния (STATE_SIZE значений) для setState вида
+    public void getState(@NotNull long[] state) {
+        if (BuildConfig.DEBUG && (state.length != STATE_SIZE)) throw new AssertionError();
+
+        state[0] = start;
+        state[1] = pointsCount;
+        state[2] = appendedCount;
+    }
+
+    // состояние вида по снимку getState буфера, на массивы которого он смотрит
+    public void setState(@NotNull long[] state) {
+        if (BuildConfig.DEBUG && !view) throw new AssertionError();
+        if (BuildConfig.DEBUG && (state.length != STATE_SIZE)) throw new AssertionError();
+
+        start = (int) state[0];
+        pointsCount = (int) state[1];
+        appendedCount = state[2];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // кол-во добавленных точек за всё время, включая вытесненные (для отслеживания изменений)
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    // физический индекс точки index
+    public int getPhysicalIndex(int index) {
+        final int p = start + index;
+        return p < capacity ? p : p - capacity;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesValues.length;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xValues[getPhysicalIndex(index)];
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return linesValues[lineIndex][getPhysicalIndex(index)];
+    }
+}
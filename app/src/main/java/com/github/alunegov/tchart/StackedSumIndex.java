@@ -0,0 +1,187 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Сумма значений линий с учётом их состояния видимости (для BAR/AREA) с инкрементальным обновлением и индексом мин/макс
+// по ней.
+// При изменении состояния видимости одной линии сумма не пересчитывается целиком, а из неё вычитается старый вклад
+// линии и добавляется новый - O(n) на каждую изменившуюся линию. Индекс мин/макс перестраивается лениво, при первом
+// запросе после изменения суммы, после чего запросы выполняются за O(log n).
+// Сумма хранится в long: сумма нескольких линий с большими значениями может не уложиться в int.
+// Для данных с дописыванием точек (RingChartColumns) сумма и индекс хранятся по физическим индексам буфера, а новые точки
+// добавляются при обращении - O(кол-во линий + log n) на точку.
+public class StackedSumIndex {
+    private final @NotNull ChartColumns columns;
+    // значения с дописыванием точек (null - данные не меняются)
+    private final @Nullable RingChartColumns ring;
+    // кол-во добавленных в ring точек, учтённых в sum
+    private long appliedAppendedCount = 0;
+    // сумма по точкам (для ring - по физическим индексам)
+    private final @NotNull long[] sum;
+    // состояния видимости линий, по которым посчитана sum
+    private final @NotNull int[] appliedLinesVisibilityState;
+    // индекс мин/макс по sum, создаётся при первом запросе
+    private RangeMinMaxIndex minMaxIndex = null;
+    // флаг: minMaxIndex соответствует sum
+    private boolean minMaxIndexValid = false;
+
+    public StackedSumIndex(@NotNull ChartInputData inputData, @NotNull int[] linesVisibilityState) {
+        columns = inputData.getColumns();
+        ring = columns instanceof RingChartColumns ? (RingChartColumns) columns : null;
+
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != columns.getLinesCount())) throw new AssertionError();
+
+        sum = new long[ring != null ? ring.getCapacity() : columns.getPointsCount()];
+        if (ring != null) {
+            appliedAppendedCount = ring.getAppendedCount();
+        }
+        appliedLinesVisibilityState = new int[columns.getLinesCount()];
+
+        if (columns instanceof PointMajorChartColumns) {
+            // все линии за один проход по точкам
+            ((PointMajorChartColumns) columns).addLinesTo(linesVisibilityState, sum);
+            System.arraycopy(linesVisibilityState, 0, appliedLinesVisibilityState, 0, appliedLinesVisibilityState.length);
+            return;
+        }
+
+        for (int j = 0; j < appliedLinesVisibilityState.length; j++) {
+            appliedLinesVisibilityState[j] = ChartInputDataStats.VISIBILITY_STATE_OFF;
+
+            addLine(j, linesVisibilityState[j], 1);
+        }
+    }
+
+    // сумма по точкам (для данных с дописыванием - по физическим индексам буфера, см. getSum(int))
+    public @NotNull long[] getSum() {
+        if (ring != null) {
+            syncAppended();
+        }
+        return sum;
+    }
+
+    // сумма в точке index
+    public long getSum(int index) {
+        if (ring != null) {
+            syncAppended();
+            return sum[ring.getPhysicalIndex(index)];
+        }
+        return sum[index];
+    }
+
+    // Приведение суммы к состояниям видимости linesVisibilityState. Пересчитываются только линии, состояние которых
+    // изменилось с прошлого обновления.
+    public void update(@NotNull int[] linesVisibilityState) {
+        if (BuildConfig.DEBUG && (linesVisibilityState.length != appliedLinesVisibilityState.length)) throw new AssertionError();
+
+        if (ring != null) {
+            syncAppended();
+        }
+
+        for (int j = 0; j < appliedLinesVisibilityState.length; j++) {
+            if (appliedLinesVisibilityState[j] == linesVisibilityState[j]) {
+                continue;
+            }
+
+            // вычитаем старый вклад линии
+            addLine(j, appliedLinesVisibilityState[j], -1);
+            // добавляем новый
+            addLine(j, linesVisibilityState[j], 1);
+        }
+    }
+
+    // Определение минимума и максимума суммы в диапазоне [l, r] при состояниях видимости linesVisibilityState.
+    public void findMinMax(int l, int r, @NotNull int[] linesVisibilityState, @NotNull int[] minMax) {
+        if (BuildConfig.DEBUG && (minMax.length != 2)) throw new AssertionError();
+
+        update(linesVisibilityState);
+
+        if (minMaxIndex == null) {
+            minMaxIndex = new RangeMinMaxIndex(sum.length);
+        }
+        if (!minMaxIndexValid) {
+            minMaxIndex.build(sum);
+            minMaxIndexValid = true;
+        }
+
+        minMax[0] = Integer.MAX_VALUE;
+        minMax[1] = Integer.MIN_VALUE;
+        if (ring != null) {
+            minMaxIndex.findRing(l, r, ring.getPhysicalIndex(0), minMax);
+        } else {
+            minMaxIndex.find(l, r, minMax);
+        }
+    }
+
+    // Подсчёт суммы для точек, добавленных в ring с прошлого вызова (по текущим состояниям видимости)
+    private void syncAppended() {
+        if (BuildConfig.DEBUG && (ring == null)) throw new AssertionError();
+
+        final long appendedCount = ring.getAppendedCount();
+        if (appendedCount == appliedAppendedCount) {
+            return;
+        }
+
+        final int pointsCount = ring.getPointsCount();
+        final int newPointsCount = (int) Math.min(appendedCount - appliedAppendedCount, pointsCount);
+
+        for (int i = pointsCount - newPointsCount; i < pointsCount; i++) {
+            long pointSum = 0;
+            for (int j = 0; j < appliedLinesVisibilityState.length; j++) {
+                final int state = appliedLinesVisibilityState[j];
+                if (state == ChartInputDataStats.VISIBILITY_STATE_ON) {
+                    pointSum += ring.getY(j, i);
+                } else if (state != ChartInputDataStats.VISIBILITY_STATE_OFF) {
+                    // как в addLine
+                    final float lineK = (float) state / ChartInputDataStats.VISIBILITY_STATE_ON;
+                    pointSum += (int) (ring.getY(j, i) * lineK);
+                }
+            }
+
+            final int p = ring.getPhysicalIndex(i);
+            sum[p] = pointSum;
+            if (minMaxIndexValid) {
+                minMaxIndex.update(p, pointSum);
+            }
+        }
+
+        appliedAppendedCount = appendedCount;
+    }
+
+    // добавление (sign = 1) или вычитание (sign = -1) вклада линии lineIndex в состоянии state
+    private void addLine(int lineIndex, int state, int sign) {
+        if (sign > 0) {
+            appliedLinesVisibilityState[lineIndex] = state;
+        }
+
+        if (state == ChartInputDataStats.VISIBILITY_STATE_OFF) {
+            return;
+        }
+
+        final int pointsCount = columns.getPointsCount();
+
+        if (state == ChartInputDataStats.VISIBILITY_STATE_ON) {
+            if (columns instanceof CompactChartColumns) {
+                ((CompactChartColumns) columns).addLineTo(lineIndex, sign, sum);
+            } else if (ring != null) {
+                for (int i = 0; i < pointsCount; i++) {
+                    sum[ring.getPhysicalIndex(i)] += sign * (long) ring.getY(lineIndex, i);
+                }
+            } else {
+                for (int i = 0; i < pointsCount; i++) {
+                    sum[i] += sign * (long) columns.getY(lineIndex, i);
+                }
+            }
+        } else {
+            // вклад считается так же, как и при отрисовке (с отбрасыванием дробной части), чтобы при вычитании
+            // получить в точности прежнюю сумму
+            final float lineK = (float) state / ChartInputDataStats.VISIBILITY_STATE_ON;
+
+            for (int i = 0; i < pointsCount; i++) {
+                sum[ring != null ? ring.getPhysicalIndex(i) : i] += sign * (int) (columns.getY(lineIndex, i) * lineK);
+            }
+        }
+
+        minMaxIndexValid = false;
+    }
+}
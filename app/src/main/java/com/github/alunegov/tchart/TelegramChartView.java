@@ -15,6 +15,8 @@ import android.view.LayoutInflater;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.util.Locale;
+
 import org.jetbrains.annotations.NotNull;
 
 public class TelegramChartView extends LinearLayout {
@@ -29,10 +31,19 @@ public class TelegramChartView extends LinearLayout {
 
     private MainChartView.XAxisConverter xRangeTextConverter;
     private final @NotNull long[] tmpXRange = new long[2];
+    private final @NotNull int[] tmpXRangeIndexes = new int[2];
+    private final @NotNull double[] tmpXRangeValues = new double[2];
+    private final @NotNull double[] tmpZone = new double[2];
+    private final @NotNull double[] tmpPrevZone = new double[2];
+    // обновление графиков после добавления точек запланировано на ближайший кадр (см. appendPoint)
+    private boolean isPendingPointsAppended = false;
 
     private final @NotNull ValueAnimator zoneChangeAnimator = new ValueAnimator();
     private boolean isPendingZoneChangeAnimation = false;
-    private float zoneLeftValuePending, zoneRightValuePending;
+    private double zoneLeftValuePending, zoneRightValuePending;
+    // границы X в начале и в конце анимации изменения зоны. Анимируется доля (0..1), а не сами значения, т.к.
+    // ValueAnimator работает с float, а значения X (мс эпохи) во float теряют точность (см. XTransform)
+    private double zoneAnimationStartLeft, zoneAnimationStartRight, zoneAnimationStopLeft, zoneAnimationStopRight;
 
     private final @NotNull ValueAnimator lineVisibilityAnimator = new ValueAnimator();
     private int lineVisibilityAnimation_lineIndex;
@@ -41,6 +52,15 @@ public class TelegramChartView extends LinearLayout {
 
     private ChartInputDataStats inputDataStats;
 
+    // обзорные данные (в предпросмотре всегда они)
+    private ChartInputData overviewData;
+    // статистика данных главного графика: inputDataStats или статистика детальных данных
+    private ChartInputDataStats mainInputDataStats;
+    // источник детальных данных для узкой зоны (может не быть)
+    private ChartDetailDataSource detailDataSource;
+    // задержка запроса детальных данных после изменения зоны, чтобы не грузить их на каждом шаге перемещения
+    private static final long DETAIL_DATA_REQUEST_DELAY = 300;
+
     private final Handler h = new Handler();
 
     private int ymin_main1, ymax_main1, ymin_main2, ymax_main2, ymin_main3, ymax_main3;
@@ -68,6 +88,9 @@ public class TelegramChartView extends LinearLayout {
         final String xRangeDateFormatTemplate = ChartUtils.getXRangeDateFormatTemplate(context);
         xRangeTextConverter = new MainChartView.XAxisConverter(xRangeDateFormatTemplate);
 
+        // до загрузки данных вместо диапазона выводим признак загрузки
+        xRangeView.setText(R.string.chart_loading);
+
         previewChartView.setOnChangeListener(previewChartChangeListener);
         lineNamesView.setOnChangeListener(lineNamesChangeListener);
 
@@ -103,7 +126,12 @@ public class TelegramChartView extends LinearLayout {
 
     private final PreviewChartView.OnChangeListener previewChartChangeListener = new PreviewChartView.OnChangeListener() {
         @Override
-        public void onZoneChanged(float zoneLeftValue, float zoneRightValue) {
+        public void onZoneChanged(double zoneLeftValue, double zoneRightValue) {
+            if (detailDataSource != null) {
+                h.removeCallbacks(detailDataRequestRunnable);
+                h.postDelayed(detailDataRequestRunnable, DETAIL_DATA_REQUEST_DELAY);
+            }
+
 //            mainChartView.setXRange(zoneLeftValue, zoneRightValue);
 
             //zoneChangeAnimator.cancel();
@@ -145,17 +173,20 @@ public class TelegramChartView extends LinearLayout {
     private final int[] tmpStartYRangePreview = new int[4];
     private final int[] tmpStopYRangePreview = new int[4];
 
-    private void startZoneChangeAnimation(float zoneLeftValue, float zoneRightValue, boolean b) {
-        final PropertyValuesHolder xl, xr;
+    private void startZoneChangeAnimation(double zoneLeftValue, double zoneRightValue, boolean b) {
         if (b) {
-            final float[] startXRange = new float[2];
+            final double[] startXRange = new double[2];
             mainChartView.getXRange(startXRange);
-            xl = PropertyValuesHolder.ofFloat("xl", startXRange[0], zoneLeftValue);
-            xr = PropertyValuesHolder.ofFloat("xr", startXRange[1], zoneRightValue);
+            zoneAnimationStartLeft = startXRange[0];
+            zoneAnimationStartRight = startXRange[1];
         } else {
-            xl = PropertyValuesHolder.ofFloat("xl", zoneLeftValue, zoneLeftValue);
-            xr = PropertyValuesHolder.ofFloat("xr", zoneRightValue, zoneRightValue);
+            zoneAnimationStartLeft = zoneLeftValue;
+            zoneAnimationStartRight = zoneRightValue;
         }
+        zoneAnimationStopLeft = zoneLeftValue;
+        zoneAnimationStopRight = zoneRightValue;
+
+        final PropertyValuesHolder xFraction = PropertyValuesHolder.ofFloat("xFraction", 0f, 1f);
         //Log.v("TCV", String.format("left = %f, right = %f, swing = %f startZoneChangeAnimation", zoneLeftValue, zoneRightValue, zoneRightValue - zoneLeftValue));
 
         mainChartView.calcAnimationRanges(zoneLeftValue, zoneRightValue, tmpStartYRange, tmpStopYRange);
@@ -187,25 +218,33 @@ public class TelegramChartView extends LinearLayout {
             yRightMax = PropertyValuesHolder.ofInt("yRightMax", tmpStartYRange[3], tmpStopYRange[3]);
         }
 
-        zoneChangeAnimator.setValues(xl, xr, yLeftMin, yLeftMax, yRightMin, yRightMax);
+        zoneChangeAnimator.setValues(xFraction, yLeftMin, yLeftMax, yRightMin, yRightMax);
         zoneChangeAnimator.start();
     }
 
     private final @NotNull ValueAnimator.AnimatorUpdateListener zoneChangeAnimatorUpdateListener = new ValueAnimator.AnimatorUpdateListener() {
         @Override
         public void onAnimationUpdate(ValueAnimator animation) {
-            final float xl = (float) animation.getAnimatedValue("xl");
-            final float xr = (float) animation.getAnimatedValue("xr");
+            final float xFraction = (float) animation.getAnimatedValue("xFraction");
+            final double xl = zoneAnimationStartLeft + (zoneAnimationStopLeft - zoneAnimationStartLeft) * xFraction;
+            final double xr = zoneAnimationStartRight + (zoneAnimationStopRight - zoneAnimationStartRight) * xFraction;
             final int yLeftMin = (int) animation.getAnimatedValue("yLeftMin");
             final int yLeftMax = (int) animation.getAnimatedValue("yLeftMax");
             final int yRightMin = (int) animation.getAnimatedValue("yRightMin");
             final int yRightMax = (int) animation.getAnimatedValue("yRightMax");
             //Log.v("TCV", String.format("left = %f, right = %f, swing = %f setXYRange at %d", xl, xr, xr - xl, animation.getCurrentPlayTime()));
 
+            final ChartProfiler profiler = mainChartView.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_ANIMATION) : 0;
+
             mainChartView.setXYRange(xl, xr, yLeftMin, yLeftMax, yRightMin, yRightMax);
 
             mainChartView.getXRange(tmpXRange);
             updateXRangeText(tmpXRange[0], tmpXRange[1]);
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_ANIMATION, startTime);
+            }
         }
     };
 
@@ -230,7 +269,7 @@ public class TelegramChartView extends LinearLayout {
 
             // типа доводим анимацию видимости до конца, но только если следующая анимация для другого сигнала
             if (lineIndex != lineVisibilityAnimation_lineIndex) {
-                inputDataStats.updateLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
+                updateStatsLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
                         lineVisibilityAnimation_stopState);
 
                 mainChartView.updateLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
@@ -428,7 +467,10 @@ public class TelegramChartView extends LinearLayout {
             // НО при обновлении ChartDrawData.updateLineVisibility пересчитываются y (updateYRange), а нам это не
             // нужно - мы сами анимируем изменение.
 
-            inputDataStats.updateLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
+            final ChartProfiler profiler = mainChartView.profiler;
+            final long startTime = (profiler != null) ? profiler.begin(ChartProfiler.PHASE_ANIMATION) : 0;
+
+            updateStatsLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
                     lineVisibilityState);
 
             mainChartView.updateLineVisibility(lineVisibilityAnimation_lineIndex, lineVisibilityAnimation_exceptLine,
@@ -438,9 +480,78 @@ public class TelegramChartView extends LinearLayout {
 
             mainChartView.setYRange(yLeftMin_main, yLeftMax_main, yRightMin_main, yRightMax_main, true);
             previewChartView.setYRange(yLeftMin_preview, yLeftMax_preview, yRightMin_preview, yRightMax_preview, true);
+
+            if (profiler != null) {
+                profiler.end(ChartProfiler.PHASE_ANIMATION, startTime);
+            }
         }
     };
 
+    private void updateStatsLineVisibility(int lineIndex, boolean exceptLine, int state) {
+        inputDataStats.updateLineVisibility(lineIndex, exceptLine, state);
+        if (mainInputDataStats != inputDataStats) {
+            mainInputDataStats.updateLineVisibility(lineIndex, exceptLine, state);
+        }
+
+        // сумма по зоне зависит от видимости линий
+        if (overviewData != null && overviewData.linesType != ChartInputData.LineType.LINE) {
+            mainChartView.getXRange(tmpXRange);
+            updateXRangeText(tmpXRange[0], tmpXRange[1]);
+        }
+    }
+
+    // Запрос детальных данных для текущей зоны (если она узкая) или возврат к обзорным данным (если зона расширилась).
+    // Для данных с дописыванием детальные данные не запрашиваются: главный график перестал бы показывать новые точки, а
+    // источник читает обзорные данные в фоновом потоке.
+    private final @NotNull Runnable detailDataRequestRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (detailDataSource == null || overviewData == null || overviewData.isLive()) {
+                return;
+            }
+
+            final double[] zone = tmpZone;
+            previewChartView.getZone(zone);
+
+            if (ChartDetailDataSource.isDetailZone(zone[0], zone[1])) {
+                detailDataSource.request(overviewData, (long) zone[0], (long) zone[1], detailDataCallback);
+            } else {
+                detailDataSource.cancel();
+
+                if (mainInputDataStats != inputDataStats) {
+                    setMainInputData(overviewData, inputDataStats);
+                }
+            }
+        }
+    };
+
+    private final @NotNull ChartDetailDataSource.Callback detailDataCallback = new ChartDetailDataSource.Callback() {
+        @Override
+        public void onDetailDataLoaded(@NotNull ChartInputData detailData, @NotNull ChartInputDataStats detailDataStats) {
+            // видимость линий могла измениться за время загрузки
+            detailDataStats.setLinesVisibilityState(inputDataStats.getLinesVisibilityState());
+
+            setMainInputData(detailData, detailDataStats);
+        }
+    };
+
+    // замена данных главного графика с сохранением отображаемого диапазона
+    private void setMainInputData(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
+        mainInputDataStats = inputDataStats;
+
+        final double[] xRange = tmpXRangeValues;
+        mainChartView.getXRange(xRange);
+
+        mainChartView.setInputData(inputData, inputDataStats);
+        mainChartView.setXRange(xRange[0], xRange[1]);
+    }
+
+    // Источник детальных данных (см. ChartDetailDataSource), используется при сужении зоны до MAX_DETAIL_DAYS дней.
+    // С данными с дописыванием (см. appendPoint) не используется.
+    public void setDetailDataSource(@NotNull ChartDetailDataSource detailDataSource) {
+        this.detailDataSource = detailDataSource;
+    }
+
     public void setTitle(@NotNull String title) {
         titleView.setText(title);
     }
@@ -453,17 +564,58 @@ public class TelegramChartView extends LinearLayout {
         mainChartView.setAxisTextSize(px);
     }
 
+    // Устойчивый к выбросам масштаб по Y основного графика: по процентилям low и high значений видимых линий (доли от 0
+    // до 1, например 0.01 и 0.99) вместо мин/макс. Только для LINE.
+    public void setYRangePercentiles(float low, float high) {
+        mainChartView.setYRangePercentiles(low, high);
+    }
+
+    // Замеры фаз построения и отрисовки главного графика и предпросмотра (см. ChartProfiler), имена в отчёте - по
+    // заголовку. Отчёт - getProfilerReport, интервалы пишутся в ChartTraceRecorder.getGlobal (если задан).
+    public void setProfilingEnabled(boolean enabled) {
+        if (enabled) {
+            final String title = titleView.getText().toString();
+            final ChartProfiler.Tracer tracer = ChartUtils.makeTracer();
+            final ChartTraceRecorder recorder = ChartTraceRecorder.getGlobal();
+
+            mainChartView.setProfiler(new ChartProfiler(title + " main", tracer, recorder));
+            previewChartView.setProfiler(new ChartProfiler(title + " preview", tracer, recorder));
+        } else {
+            mainChartView.setProfiler(null);
+            previewChartView.setProfiler(null);
+        }
+    }
+
+    // отчёт замеров (пустой, если замеры не ведутся)
+    public @NotNull String getProfilerReport() {
+        final StringBuilder sb = new StringBuilder();
+        if (mainChartView.profiler != null) {
+            sb.append(mainChartView.profiler.getReport());
+        }
+        if (previewChartView.profiler != null) {
+            sb.append(previewChartView.profiler.getReport());
+        }
+        return sb.toString();
+    }
+
     public void setLineNameTextSize(float px) {
         lineNamesView.setTextSize(px);
     }
 
     public void setInputData(@NotNull ChartInputData inputData) {
-        inputDataStats = new ChartInputDataStats(inputData);
+        setInputData(inputData, new ChartInputDataStats(inputData));
+    }
+
+    // inputDataStats можно подготовить заранее (например, в фоновом потоке при загрузке данных)
+    public void setInputData(@NotNull ChartInputData inputData, @NotNull ChartInputDataStats inputDataStats) {
+        this.inputDataStats = inputDataStats;
+        overviewData = inputData;
+        mainInputDataStats = inputDataStats;
 
         mainChartView.setInputData(inputData, inputDataStats);
         previewChartView.setInputData(inputData, inputDataStats);
 
-        if (inputData.LinesValues.length > 1) {
+        if (inputData.getColumns().getLinesCount() > 1) {
             final LineName[] linesNames = new LineName[inputData.LinesNames.length];
             for (int i = 0; i < inputData.LinesNames.length; i++) {
                 linesNames[i] = new LineName(inputData.LinesNames[i], inputData.LinesColors[i]);
@@ -474,7 +626,7 @@ public class TelegramChartView extends LinearLayout {
             lineNamesView.setVisibility(GONE);
         }
 
-        final float[] zone = new float[2];
+        final double[] zone = tmpZone;
         previewChartView.getZone(zone);
         mainChartView.setXRange(zone[0], zone[1]);
 
@@ -482,8 +634,88 @@ public class TelegramChartView extends LinearLayout {
         updateXRangeText(tmpXRange[0], tmpXRange[1]);
     }
 
+    // Добавление точки в данные с дописыванием (см. ChartInputData.toLive). Статистика дополняется новой точкой за
+    // O(log n), графики обновляются на ближайшем кадре - один раз за все точки, добавленные до него (линии LINE при
+    // неизменных масштабах - только новыми отрезками, см. ChartGeometry.onPointsAppended). Главный график следует за
+    // зоной предпросмотра, если она прижата к последней точке. Вызывать в UI-потоке.
+    public void appendPoint(long x, @NotNull int[] values) {
+        if (overviewData == null) {
+            return;
+        }
+
+        overviewData.appendPoint(x, values);
+
+        if (!isPendingPointsAppended) {
+            isPendingPointsAppended = true;
+            postOnAnimation(pointsAppendedRunnable);
+        }
+    }
+
+    // Добавление пачки точек (xValues[i], linesValues[j][i] для i < count) с одним обновлением графиков на всю пачку
+    // (см. ChartFeed). Вызывать в UI-потоке.
+    public void appendPoints(@NotNull long[] xValues, @NotNull int[][] linesValues, int count) {
+        if (overviewData == null || count == 0) {
+            return;
+        }
+
+        final int[] values = new int[linesValues.length];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < values.length; j++) {
+                values[j] = linesValues[j][i];
+            }
+            overviewData.appendPoint(xValues[i], values);
+        }
+
+        // точки, добавленные appendPoint до пачки, учитываются вместе с ней
+        if (isPendingPointsAppended) {
+            removeCallbacks(pointsAppendedRunnable);
+            isPendingPointsAppended = false;
+        }
+
+        onPointsAppended();
+    }
+
+    private final @NotNull Runnable pointsAppendedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isPendingPointsAppended = false;
+
+            onPointsAppended();
+        }
+    };
+
+    private void onPointsAppended() {
+        final double[] prevZone = tmpPrevZone;
+        previewChartView.getZone(prevZone);
+
+        previewChartView.onInputDataAppended();
+
+        final double[] zone = tmpZone;
+        previewChartView.getZone(zone);
+
+        if (zone[0] != prevZone[0] || zone[1] != prevZone[1]) {
+            mainChartView.setXRange(zone[0], zone[1]);
+        } else {
+            mainChartView.onInputDataAppended();
+        }
+
+        mainChartView.getXRange(tmpXRange);
+        updateXRangeText(tmpXRange[0], tmpXRange[1]);
+    }
+
     private void updateXRangeText(long xLeft, long xRight) {
-        final String text = String.format("%s - %s", xRangeTextConverter.toText(xLeft), xRangeTextConverter.toText(xRight));
+        String text = String.format("%s - %s", xRangeTextConverter.toText(xLeft), xRangeTextConverter.toText(xRight));
+
+        // для BAR/AREA - сумма видимых линий по зоне (из префиксных сумм, без обхода точек)
+        if (overviewData != null && overviewData.linesType != ChartInputData.LineType.LINE) {
+            mainChartView.getXRangeInner(tmpXRangeIndexes);
+            if (tmpXRangeIndexes[0] <= tmpXRangeIndexes[1]) {
+                final long sum = mainInputDataStats.getVisibleLinesSum(tmpXRangeIndexes[0], tmpXRangeIndexes[1],
+                        mainInputDataStats.getLinesVisibilityState());
+                text += String.format(Locale.getDefault(), ", \u03A3 %,d", sum);
+            }
+        }
+
         xRangeView.setText(text);
     }
 }
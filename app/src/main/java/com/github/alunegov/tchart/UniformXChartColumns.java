@@ -0,0 +1,71 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+
+// Значения графика с равномерным X: X точки i вычисляется как xStart + xStep * i, массив X не хранится. Значения линий -
+// массивы в куче Java (без копирования). Индекс точки по значению X находится арифметически (см. XIndexLocator).
+public class UniformXChartColumns implements ChartColumns {
+    private final long xStart;
+    private final long xStep;
+    private final @NotNull int[][] linesValues;
+    private final int pointsCount;
+
+    public UniformXChartColumns(long xStart, long xStep, @NotNull int[][] linesValues) {
+        if (BuildConfig.DEBUG && (xStep <= 0)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (linesValues.length <= 0)) throw new AssertionError();
+
+        this.xStart = xStart;
+        this.xStep = xStep;
+        this.linesValues = linesValues;
+        pointsCount = linesValues[0].length;
+    }
+
+    // Шаг X, если X равномерны (не менее двух точек с одинаковым положительным шагом), иначе 0
+    public static long detectXStep(@NotNull ChartColumns columns) {
+        final int pointsCount = columns.getPointsCount();
+        if (pointsCount < 2) {
+            return 0;
+        }
+
+        final long xStep = columns.getX(1) - columns.getX(0);
+        if (xStep <= 0) {
+            return 0;
+        }
+
+        for (int i = 2; i < pointsCount; i++) {
+            if (columns.getX(i) - columns.getX(i - 1) != xStep) {
+                return 0;
+            }
+        }
+
+        return xStep;
+    }
+
+    public long getXStart() {
+        return xStart;
+    }
+
+    public long getXStep() {
+        return xStep;
+    }
+
+    @Override
+    public int getPointsCount() {
+        return pointsCount;
+    }
+
+    @Override
+    public int getLinesCount() {
+        return linesValues.length;
+    }
+
+    @Override
+    public long getX(int index) {
+        return xStart + xStep * index;
+    }
+
+    @Override
+    public int getY(int lineIndex, int index) {
+        return linesValues[lineIndex][index];
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.alunegov.tchart;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// Поиск индексов точек в XValues (отсортированы по возрастанию) по значению X.
+// Используется половинное деление, а перед ним проверяется окно вокруг результата предыдущего поиска - при
+// перемещении/анимации зоны соседние запросы обычно попадают в ту же или соседнюю точку, и поиск выполняется за O(1).
+// Сравнение выполняется в double - значения X (мс эпохи, ~1.5e12) представимы в нём точно, в отличие от float.
+// Для равномерного X (проверяется в конструкторе, у UniformXChartColumns - сразу) индекс вычисляется арифметически, без
+// поиска. Для данных с дописыванием (RingChartColumns) кол-во точек берётся при каждом поиске, а X считаются
+// неравномерными. Для сжатых данных (CompressedChartColumns) блок находится по заголовкам, и половинное деление идёт
+// только внутри него.
+public class XIndexLocator {
+    private final @NotNull ChartColumns columns;
+    // кол-во точек (для RingChartColumns обновляется при поиске)
+    private int pointsCount;
+    // флаг: кол-во точек может меняться
+    private final boolean appendable;
+    // сжатые значения (null - не сжаты)
+    private final @Nullable CompressedChartColumns compressed;
+    // равномерный X: начало и шаг (xStep == 0 - X не равномерны)
+    private final long xStart, xStep;
+    // результаты предыдущих поисков (нижняя граница), используются как подсказка для следующих
+    private int lastLeftBound = 0;
+    private int lastRightBound = 0;
+
+    public XIndexLocator(@NotNull ChartColumns columns) {
+        if (BuildConfig.DEBUG && (columns.getPointsCount() <= 0)) throw new AssertionError();
+
+        this.columns = columns;
+        pointsCount = columns.getPointsCount();
+        appendable = columns instanceof RingChartColumns;
+        compressed = columns instanceof CompressedChartColumns ? (CompressedChartColumns) columns : null;
+
+        if (appendable) {
+            xStart = 0;
+            xStep = 0;
+        } else if (columns instanceof UniformXChartColumns) {
+            xStart = ((UniformXChartColumns) columns).getXStart();
+            xStep = ((UniformXChartColumns) columns).getXStep();
+        } else {
+            xStep = UniformXChartColumns.detectXStep(columns);
+            xStart = xStep != 0 ? columns.getX(0) : 0;
+        }
+    }
+
+    public XIndexLocator(@NotNull long[] xValues) {
+        this(new HeapChartColumns(xValues, new int[0][]));
+    }
+
+    // Индекс точки, совпадающей с xValue, или ближайшей точки слева от неё (чтобы "охватить" xValue). Если xValue
+    // меньше первой точки или больше последней - 0.
+    public int findLeftIndex(double xValue) {
+        if (appendable) {
+            pointsCount = columns.getPointsCount();
+        }
+
+        final int i = lowerBound(xValue, 0, lastLeftBound);
+        lastLeftBound = i;
+
+        if (i == pointsCount) {
+            return 0;
+        }
+        if (columns.getX(i) == xValue) {
+            return i;
+        }
+        return i > 0 ? i - 1 : i;
+    }
+
+    // Индекс первой точки (начиная со startingIndex), не меньшей xValue. Если такой нет - индекс последней точки.
+    public int findRightIndex(double xValue, int startingIndex) {
+        if (appendable) {
+            pointsCount = columns.getPointsCount();
+        }
+
+        if (BuildConfig.DEBUG && ((startingIndex < 0) || (startingIndex >= pointsCount))) throw new AssertionError();
+
+        final int i = lowerBound(xValue, startingIndex, lastRightBound);
+        lastRightBound = i;
+
+        return i == pointsCount ? pointsCount - 1 : i;
+    }
+
+    // Первый индекс из [from, n), для которого XValues[i] >= xValue, или n, если такого нет. hint - предполагаемый
+    // результат (предыдущий результат поиска).
+    private int lowerBound(double xValue, int from, int hint) {
+        if (xStep != 0) {
+            return uniformLowerBound(xValue, from);
+        }
+
+        // окно вокруг предыдущего результата
+        if (isLowerBound(xValue, from, hint)) {
+            return hint;
+        }
+        if (isLowerBound(xValue, from, hint + 1)) {
+            return hint + 1;
+        }
+        if (isLowerBound(xValue, from, hint - 1)) {
+            return hint - 1;
+        }
+
+        // половинное деление
+        int l = from;
+        int r = pointsCount;
+        if (compressed != null) {
+            // результат - в найденном блоке или первая точка следующего
+            final int blockStart = compressed.findBlock(xValue) * CompressedChartColumns.BLOCK_SIZE;
+            l = Math.max(from, blockStart);
+            r = Math.max(l, Math.min(pointsCount, blockStart + CompressedChartColumns.BLOCK_SIZE));
+        }
+        while (l < r) {
+            final int m = (l + r) >>> 1;
+            if (columns.getX(m) < xValue) {
+                l = m + 1;
+            } else {
+                r = m;
+            }
+        }
+        return l;
+    }
+
+    // lowerBound для равномерного X: xStart + xStep * i >= xValue
+    private int uniformLowerBound(double xValue, int from) {
+        final double k = Math.ceil((xValue - xStart) / xStep);
+        if (k <= from) {
+            return from;
+        }
+        if (k >= pointsCount) {
+            return pointsCount;
+        }
+
+        // поправка на округление при делении
+        int i = (int) k;
+        while (i > from && columns.getX(i - 1) >= xValue) {
+            i--;
+        }
+        while (i < pointsCount && columns.getX(i) < xValue) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isLowerBound(double xValue, int from, int i) {
+        if ((i < from) || (i > pointsCount)) {
+            return false;
+        }
+        return ((i == from) || (columns.getX(i - 1) < xValue)) && ((i == pointsCount) || (columns.getX(i) >= xValue));
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.alunegov.tchart;
+
+// Преобразование значений X (мс эпохи) в пиксели и обратно.
+// Значения X ~1.5e12, и float различает их лишь с шагом 2^17 мс (~131 с) - при приближении до часов точки "прыгают".
+// Поэтому границы диапазона хранятся в double, а перед переходом во float X отсчитываются от начала отображаемого
+// диапазона (origin, long): в пределах видимой части такие "локальные" значения малы и во float точны. Пересчёт в
+// пиксели ChartGeometry работает с локальными значениями (toLocal), смещение для них - getMatrixTranslate.
+public class XTransform {
+    // отображаемый диапазон по X
+    private double xLeftValue, xRightValue;
+    // начало отсчёта локальных значений (целая часть xLeftValue)
+    private long origin;
+    // левая граница и ширина области отображения, пиксели
+    private float areaLeft, areaWidth;
+    // пикселей на единицу X
+    private double scale;
+
+    public void setRange(double xLeftValue, double xRightValue) {
+        this.xLeftValue = xLeftValue;
+        this.xRightValue = xRightValue;
+        origin = (long) Math.floor(xLeftValue);
+
+        updateScale();
+    }
+
+    public void setArea(float areaLeft, float areaWidth) {
+        this.areaLeft = areaLeft;
+        this.areaWidth = areaWidth;
+
+        updateScale();
+    }
+
+    private void updateScale() {
+        final double swing = Math.abs(xRightValue - xLeftValue);
+        scale = swing > 0 ? areaWidth / swing : 0;
+    }
+
+    public double getXLeftValue() {
+        return xLeftValue;
+    }
+
+    public double getXRightValue() {
+        return xRightValue;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public long getOrigin() {
+        return origin;
+    }
+
+    // локальное значение X (от начала диапазона) - для матриц и Path
+    public float toLocal(long x) {
+        return (float) (x - origin);
+    }
+
+    // смещение матрицы по X: пиксель = toLocal(x) * scale + getMatrixTranslate()
+    public float getMatrixTranslate() {
+        return areaLeft - (float) ((xLeftValue - origin) * scale);
+    }
+
+    public float toPixel(double x) {
+        return areaLeft + (float) ((x - xLeftValue) * scale);
+    }
+
+    public double toValue(float px) {
+        return (px - areaLeft) / scale + xLeftValue;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChartDataGeneratorTest {
+    // одинаковые параметры - одинаковые данные
+    @Test
+    public void testDeterministic() {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 1000);
+        params.irregularity = 0.5;
+        params.spikesProbability = 0.01;
+        params.seed = 7;
+
+        final ChartInputData a = ChartDataGenerator.generate(params);
+        final ChartInputData b = ChartDataGenerator.generate(params);
+        assertArrayEquals(a.XValues, b.XValues);
+        for (int j = 0; j < 3; j++) {
+            assertArrayEquals(a.LinesValues[j], b.LinesValues[j]);
+        }
+
+        params.seed = 8;
+        final ChartInputData c = ChartDataGenerator.generate(params);
+        assertFalse(a.LinesValues[0][500] == c.LinesValues[0][500] && a.XValues[500] == c.XValues[500]);
+    }
+
+    // шаг X в пределах разброса, X строго возрастает, значения неотрицательные
+    @Test
+    public void testIrregularity() {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 2, 5000);
+        params.xStep = 1000;
+        params.irregularity = 0.9;
+
+        final ChartInputData data = ChartDataGenerator.generate(params);
+        assertEquals(ChartDataGenerator.DEFAULT_START_X, data.XValues[0]);
+        boolean irregular = false;
+        for (int i = 1; i < 5000; i++) {
+            final long step = data.XValues[i] - data.XValues[i - 1];
+            assertTrue(step >= 100 && step <= 1900);
+            irregular |= step != 1000;
+        }
+        assertTrue(irregular);
+        for (int j = 0; j < 2; j++) {
+            for (int v : data.LinesValues[j]) {
+                assertTrue(v >= 0);
+            }
+        }
+        assertTrue(data.flags.get(ChartInputData.FLAG_STACKED));
+    }
+
+    // выбросы - в заданной доле точек, y_scaled - вторая линия на порядки больше
+    @Test
+    public void testSpikesAndYScaled() {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 10000);
+        params.spikesProbability = 0.05;
+        params.spikesScale = 100;
+        params.yScaled = true;
+
+        final ChartInputData data = ChartDataGenerator.generate(params);
+        assertTrue(data.flags.get(ChartInputData.FLAG_Y_SCALED));
+        assertFalse(data.flags.get(ChartInputData.FLAG_STACKED));
+
+        int spikes = 0;
+        for (int i = 1; i < 10000; i++) {
+            // блуждание меняется не больше чем на 100 за точку
+            if (data.LinesValues[0][i] > 20 * (data.LinesValues[0][i - 1] + 100)) {
+                spikes++;
+            }
+        }
+        assertTrue(spikes > 200 && spikes < 800);
+
+        long sum0 = 0, sum1 = 0;
+        for (int i = 0; i < 10000; i++) {
+            sum0 += data.LinesValues[0][i];
+            sum1 += data.LinesValues[1][i];
+        }
+        assertTrue(sum1 > 100 * sum0);
+    }
+
+    // overview.json читается загрузчиком в те же данные
+    @Test
+    public void testToOverviewJson() throws Exception {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(ChartInputData.LineType.AREA, 4, 300);
+        params.irregularity = 0.2;
+        params.percentage = true;
+
+        final ChartInputData data = ChartDataGenerator.generate(params);
+        final String json = ChartDataGenerator.toOverviewJson(data);
+
+        final ChartInputData loaded = ChartInputDataMapper.loadChart(new ByteArrayInputStream(json.getBytes("UTF8")),
+                new ChartInputDataMapper.ColorParser() {
+                    @Override
+                    public int parseColor(String color) {
+                        return 0xFF000000 | Integer.parseInt(color.substring(1), 16);
+                    }
+                });
+
+        assertEquals(ChartInputData.LineType.AREA, loaded.linesType);
+        assertEquals(data.flags, loaded.flags);
+        final ChartColumns columns = loaded.getColumns();
+        assertEquals(300, columns.getPointsCount());
+        assertEquals(4, columns.getLinesCount());
+        for (int j = 0; j < 4; j++) {
+            assertEquals(data.LinesNames[j], loaded.LinesNames[j]);
+            assertEquals(data.LinesColors[j], loaded.LinesColors[j]);
+            for (int i = 0; i < 300; i++) {
+                assertEquals(data.LinesValues[j][i], columns.getY(j, i));
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            assertEquals(data.XValues[i], columns.getX(i));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.NotNull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChartDetailDataSourceTest {
+    private static final long DAY = ChartDetailDataSource.MSEC_PER_DAY;
+    private static final long HOUR = 60 * 60 * 1000L;
+    // 2018-05-15 00:00 UTC
+    private static final long FIRST_DAY = 1526342400000L;
+    private static final int DAYS_COUNT = 10;
+    // день с детальными данными (2018-05-20)
+    private static final int DETAIL_DAY_INDEX = 5;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NotNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final ChartInputDataMapper.ColorParser COLOR_PARSER = new ChartInputDataMapper.ColorParser() {
+        @Override
+        public int parseColor(String color) {
+            return 0;
+        }
+    };
+
+    // ресурсы в памяти с подсчётом открытий
+    private static class FakeResourceLoader implements ChartInputDataMapper.ResourceLoader {
+        final Map<String, String> resources = new HashMap<>();
+        int openCount = 0;
+
+        @Override
+        public String[] listResources(@NotNull String path) {
+            return new String[0];
+        }
+
+        @Override
+        public InputStream openResource(String fileName) throws IOException {
+            openCount++;
+
+            final String json = resources.get(fileName.replace('\\', '/'));
+            if (json == null) {
+                throw new FileNotFoundException(fileName);
+            }
+            return new ByteArrayInputStream(json.getBytes("UTF8"));
+        }
+    }
+
+    // точки x0, x0 + step, ... со значениями y0, y0 + 1, ...
+    private static String makeChartJson(long x0, long step, int count, int y0) {
+        final StringBuilder x = new StringBuilder("[\"x\"");
+        final StringBuilder y = new StringBuilder("[\"y0\"");
+        for (int i = 0; i < count; i++) {
+            x.append(',').append(x0 + i * step);
+            y.append(',').append(y0 + i);
+        }
+        x.append(']');
+        y.append(']');
+
+        return "{\"columns\":[" + x + "," + y + "],\"types\":{\"y0\":\"line\",\"x\":\"x\"},\"names\":{\"y0\":\"#0\"}," +
+                "\"colors\":{\"y0\":\"#3DC23F\"}}";
+    }
+
+    private static ChartInputData makeOverview() throws Exception {
+        return ChartInputDataMapper.loadChart(
+                new ByteArrayInputStream(makeChartJson(FIRST_DAY, DAY, DAYS_COUNT, 0).getBytes("UTF8")), COLOR_PARSER);
+    }
+
+    private static FakeResourceLoader makeResourceLoader() {
+        final FakeResourceLoader resourceLoader = new FakeResourceLoader();
+        // как и в graph_data2.zip, файл дня содержит и соседние дни
+        resourceLoader.resources.put("contest/1/2018-05/20.json",
+                makeChartJson(FIRST_DAY + (DETAIL_DAY_INDEX - 1) * DAY, HOUR, 3 * 24, 1000));
+        return resourceLoader;
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        final ChartInputData overview = makeOverview();
+        final FakeResourceLoader resourceLoader = makeResourceLoader();
+        final ChartDetailDataSource detailDataSource = new ChartDetailDataSource(resourceLoader, COLOR_PARSER, "1",
+                new ChartDetailDataSource.Cache(16), DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+
+        final long detailDay = FIRST_DAY + DETAIL_DAY_INDEX * DAY;
+        final ChartInputData res = detailDataSource.load(overview, detailDay + HOUR, detailDay + 12 * HOUR);
+        assertNotNull(res);
+
+        // дневная точка детального дня заменена 24 почасовыми
+        final ChartColumns columns = res.getColumns();
+        assertEquals(DAYS_COUNT - 1 + 24, columns.getPointsCount());
+        assertEquals(1, columns.getLinesCount());
+        assertEquals("#0", res.LinesNames[0]);
+
+        for (int i = 1; i < columns.getPointsCount(); i++) {
+            assertTrue(columns.getX(i - 1) < columns.getX(i));
+        }
+
+        assertEquals(detailDay - DAY, columns.getX(DETAIL_DAY_INDEX - 1));
+        assertEquals(DETAIL_DAY_INDEX - 1, columns.getY(0, DETAIL_DAY_INDEX - 1));
+        for (int h = 0; h < 24; h++) {
+            assertEquals(detailDay + h * HOUR, columns.getX(DETAIL_DAY_INDEX + h));
+            assertEquals(1000 + 24 + h, columns.getY(0, DETAIL_DAY_INDEX + h));
+        }
+        assertEquals(detailDay + DAY, columns.getX(DETAIL_DAY_INDEX + 24));
+        assertEquals(DETAIL_DAY_INDEX + 1, columns.getY(0, DETAIL_DAY_INDEX + 24));
+
+        // повторный запрос обслуживается из кэша (включая отсутствующие дни)
+        final int openCount = resourceLoader.openCount;
+        assertNotNull(detailDataSource.load(overview, detailDay + HOUR, detailDay + 12 * HOUR));
+        assertEquals(openCount, resourceLoader.openCount);
+    }
+
+    @Test
+    public void testLoad_noDetails() throws Exception {
+        final ChartInputData overview = makeOverview();
+        final ChartDetailDataSource detailDataSource = new ChartDetailDataSource(makeResourceLoader(), COLOR_PARSER, "2",
+                new ChartDetailDataSource.Cache(16), DIRECT_EXECUTOR, DIRECT_EXECUTOR);
+
+        final long detailDay = FIRST_DAY + DETAIL_DAY_INDEX * DAY;
+        assertNull(detailDataSource.load(overview, detailDay, detailDay + DAY));
+    }
+
+    @Test
+    public void testCache() {
+        final ChartDetailDataSource.Cache cache = new ChartDetailDataSource.Cache(2);
+        final ChartInputData data = new ChartInputData(1, 1, ChartInputData.LineType.LINE);
+
+        cache.put("a", data);
+        cache.put("b", null);
+        assertSame(data, cache.get("a"));
+        // "a" использован последним, поэтому вытесняется "b"
+        cache.put("c", data);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testRequest_staleResultDropped() throws Exception {
+        final ChartInputData overview = makeOverview();
+
+        // фоновые задачи копятся и выполняются вручную
+        final List<Runnable> pending = new ArrayList<>();
+        final Executor deferredExecutor = new Executor() {
+            @Override
+            public void execute(@NotNull Runnable command) {
+                pending.add(command);
+            }
+        };
+
+        final ChartDetailDataSource detailDataSource = new ChartDetailDataSource(makeResourceLoader(), COLOR_PARSER, "1",
+                new ChartDetailDataSource.Cache(16), deferredExecutor, DIRECT_EXECUTOR);
+
+        final int[] callbacksCount = new int[1];
+        final ChartDetailDataSource.Callback callback = new ChartDetailDataSource.Callback() {
+            @Override
+            public void onDetailDataLoaded(@NotNull ChartInputData detailData, @NotNull ChartInputDataStats detailDataStats) {
+                callbacksCount[0]++;
+            }
+        };
+
+        final long detailDay = FIRST_DAY + DETAIL_DAY_INDEX * DAY;
+        detailDataSource.request(overview, detailDay, detailDay + DAY, callback);
+        detailDataSource.request(overview, detailDay, detailDay + 2 * DAY, callback);
+
+        assertEquals(2, pending.size());
+        pending.get(0).run();
+        assertEquals(0, callbacksCount[0]);
+        pending.get(1).run();
+        assertEquals(1, callbacksCount[0]);
+
+        detailDataSource.request(overview, detailDay, detailDay + DAY, callback);
+        detailDataSource.cancel();
+        pending.get(2).run();
+        assertEquals(1, callbacksCount[0]);
+    }
+}
@@ -0,0 +1,398 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ChartFeedTest {
+    private static final long START_X = 1553040000000L;
+    private static final long STEP_X = 1000L;
+
+    @Rule
+    public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadPoint() throws Exception {
+        final ChartInputDataReader reader = new ChartInputDataReader(new StringReader("[1, 2, -3]\n[4,5,6]\n\n"));
+        final long[] values = new long[3];
+
+        assertTrue(reader.readPoint(values));
+        assertArrayEquals(new long[] {1, 2, -3}, values);
+        assertTrue(reader.readPoint(values));
+        assertArrayEquals(new long[] {4, 5, 6}, values);
+        assertFalse(reader.readPoint(values));
+    }
+
+    // все точки от источника доходят до получателя в исходном порядке
+    @Test
+    public void testPipe() throws Exception {
+        final int pointsCount = 5000;
+
+        final PipedInputStream is = new PipedInputStream();
+        final FeedProducer producer = new FeedProducer(new PipedOutputStream(is), 2, 0, pointsCount, true);
+
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(singleUse(is), 2, 64, ChartFeed.OverflowMode.DROP_OLDEST, sink,
+                new FrameExecutor(true));
+        feed.start();
+        producer.start();
+
+        assertTrue(sink.ended.await(10, TimeUnit.SECONDS));
+        assertNull(sink.error);
+        // получатель успевает за источником только частично, поэтому проверяем порядок, а не полноту
+        assertEquals(pointsCount - feed.getDroppedCount(), sink.xValues.size());
+        assertOrdered(sink);
+        assertEquals(START_X + (pointsCount - 1) * STEP_X, (long) sink.xValues.get(sink.xValues.size() - 1));
+    }
+
+    // пока кадр не наступил, точки копятся, при переполнении остаются последние
+    @Test
+    public void testDropOldest() {
+        final FrameExecutor frames = new FrameExecutor(false);
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(singleUse(null), 1, 4, ChartFeed.OverflowMode.DROP_OLDEST, sink, frames);
+
+        for (int i = 0; i < 10; i++) {
+            feed.offer(new long[] {START_X + i * STEP_X, i});
+        }
+        // одна передача на кадр
+        assertEquals(1, frames.queue.size());
+        frames.runFrame();
+
+        assertEquals(1, sink.batchesCount);
+        assertEquals(4, sink.xValues.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(START_X + (6 + i) * STEP_X, (long) sink.xValues.get(i));
+            assertEquals(6 + i, (int) sink.yValues.get(i));
+        }
+        assertEquals(6, feed.getDroppedCount());
+
+        // следующая пачка начинается заново
+        feed.offer(new long[] {START_X + 10 * STEP_X, 10});
+        frames.runFrame();
+        assertEquals(5, sink.xValues.size());
+        assertEquals(10, (int) sink.yValues.get(4));
+    }
+
+    // при постоянном переполнении точки не сдвигаются и не копируются на каждой точке - кольцо выравнивается только
+    // перед передачей
+    @Test
+    public void testDropOldest_noCopyPerPoint() {
+        final ChartFeed.Batch b = new ChartFeed.Batch(2, 4);
+        final long[] xValues = b.xValues;
+        final int[] lineValues = b.linesValues[1];
+
+        for (int i = 0; i < 4; i++) {
+            b.add(new long[] {i, i, -i});
+        }
+        for (int i = 4; i < 1003; i++) {
+            b.dropFirst();
+            b.add(new long[] {i, i, -i});
+
+            // новая точка - на место вытесненной, остальные на своих местах
+            assertEquals((i - 3) % 4, b.start);
+            assertEquals(i, b.xValues[i % 4]);
+            assertEquals(i - 1, b.xValues[(i - 1) % 4]);
+        }
+        assertSame(xValues, b.xValues);
+        assertSame(lineValues, b.linesValues[1]);
+
+        b.linearize();
+        assertEquals(0, b.start);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(999 + i, b.xValues[i]);
+            assertEquals(999 + i, b.linesValues[0][i]);
+            assertEquals(-(999 + i), b.linesValues[1][i]);
+        }
+    }
+
+    @Test
+    public void testAggregate() {
+        final FrameExecutor frames = new FrameExecutor(false);
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(singleUse(null), 1, 4, ChartFeed.OverflowMode.AGGREGATE, sink, frames);
+
+        for (int i = 0; i < 10; i++) {
+            feed.offer(new long[] {START_X + i * STEP_X, i * 10});
+        }
+        frames.runFrame();
+
+        assertEquals(4, sink.xValues.size());
+        assertEquals(0, (int) sink.yValues.get(0));
+        assertEquals(10, (int) sink.yValues.get(1));
+        assertEquals(20, (int) sink.yValues.get(2));
+        // точки 3..9 усреднены в последней, X - последней точки
+        assertEquals(60, (int) sink.yValues.get(3));
+        assertEquals(START_X + 9 * STEP_X, (long) sink.xValues.get(3));
+        assertEquals(6, feed.getAggregatedCount());
+        assertEquals(0, feed.getDroppedCount());
+    }
+
+    // дописываемый файл: точки, дописанные после запуска, тоже читаются
+    @Test
+    public void testTailFile() throws Exception {
+        final File file = tmpFolder.newFile();
+        final OutputStream os = new FileOutputStream(file);
+        final FeedProducer producer = new FeedProducer(os, 3, 0, 100, false);
+        producer.writePoints(0, 50);
+
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(ChartFeed.tailFile(file), 3, 1000, ChartFeed.OverflowMode.DROP_OLDEST, sink,
+                new FrameExecutor(true));
+        feed.start();
+
+        producer.writePoints(50, 100);
+        os.close();
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (sink.size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        feed.stop();
+
+        assertTrue(sink.ended.await(10, TimeUnit.SECONDS));
+        assertNull(sink.error);
+        assertEquals(100, sink.xValues.size());
+        assertOrdered(sink);
+    }
+
+    // остановка во время открытия: cancel прерывает открытие, окончание передаётся без ошибки
+    @Test
+    public void testStop_opening() throws Exception {
+        final BlockingSource source = new BlockingSource(true);
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(source, 1, 16, ChartFeed.OverflowMode.DROP_OLDEST, sink,
+                new FrameExecutor(true));
+        feed.start();
+
+        feed.stop();
+
+        assertTrue(sink.ended.await(10, TimeUnit.SECONDS));
+        assertNull(sink.error);
+        assertTrue(source.returned.await(10, TimeUnit.SECONDS));
+    }
+
+    // открытие не прерывается: onFeedEnded передаётся из stop сразу и только один раз, точки после открытия не читаются
+    @Test
+    public void testStop_openingNotCancellable() throws Exception {
+        final BlockingSource source = new BlockingSource(false);
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(source, 1, 16, ChartFeed.OverflowMode.DROP_OLDEST, sink,
+                new FrameExecutor(true));
+        feed.start();
+
+        feed.stop();
+        assertTrue(sink.ended.await(10, TimeUnit.SECONDS));
+        assertNull(sink.error);
+
+        source.released.countDown();
+        assertTrue(source.returned.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, sink.endedCount);
+        assertEquals(0, sink.size());
+    }
+
+    @Test
+    public void testSyntaxError() throws Exception {
+        final PipedInputStream is = new PipedInputStream();
+        final PipedOutputStream os = new PipedOutputStream(is);
+        os.write("[1, 2]\n[3, }\n".getBytes("UTF8"));
+        os.close();
+
+        final CollectingSink sink = new CollectingSink();
+        final ChartFeed feed = new ChartFeed(singleUse(is), 1, 16, ChartFeed.OverflowMode.DROP_OLDEST, sink,
+                new FrameExecutor(true));
+        feed.start();
+
+        assertTrue(sink.ended.await(10, TimeUnit.SECONDS));
+        assertNotNull(sink.error);
+        assertEquals(1, sink.xValues.size());
+    }
+
+    private static void assertOrdered(CollectingSink sink) {
+        for (int i = 0; i < sink.xValues.size(); i++) {
+            final long x = sink.xValues.get(i);
+            if (i > 0) {
+                assertTrue(x > sink.xValues.get(i - 1));
+            }
+            // значения точки соответствуют её X (см. FeedProducer)
+            assertEquals((int) ((x - START_X) / STEP_X) % 1000, (int) sink.yValues.get(i));
+        }
+    }
+
+    private static ChartInputDataMapper.FeedSource singleUse(final InputStream is) {
+        return new ChartInputDataMapper.FeedSource() {
+            @Override
+            public InputStream open() throws IOException {
+                if (is == null) {
+                    throw new IOException("no stream");
+                }
+                return is;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    // Источник, открытие которого ждёт (не прерываясь interrupt) cancel или release
+    private static class BlockingSource implements ChartInputDataMapper.FeedSource {
+        private final boolean cancellable;
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch returned = new CountDownLatch(1);
+
+        BlockingSource(boolean cancellable) {
+            this.cancellable = cancellable;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            try {
+                while (true) {
+                    try {
+                        released.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // как открытие FIFO - interrupt не прерывает
+                    }
+                }
+                if (cancellable) {
+                    throw new InterruptedIOException();
+                }
+                return new ByteArrayInputStream("[1, 2]\n".getBytes("UTF8"));
+            } finally {
+                returned.countDown();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancellable) {
+                released.countDown();
+            }
+        }
+    }
+
+    // Замена источника ленты: пишет точки [x, y0, y1, ...] построчно, y0 = i % 1000, остальные линии - производные
+    private static class FeedProducer extends Thread {
+        private final OutputStream os;
+        private final int linesCount;
+        private final long pointDelayMs;
+        private final int pointsCount;
+        private final boolean closeAtEnd;
+
+        FeedProducer(OutputStream os, int linesCount, long pointDelayMs, int pointsCount, boolean closeAtEnd) {
+            this.os = os;
+            this.linesCount = linesCount;
+            this.pointDelayMs = pointDelayMs;
+            this.pointsCount = pointsCount;
+            this.closeAtEnd = closeAtEnd;
+        }
+
+        @Override
+        public void run() {
+            try {
+                writePoints(0, pointsCount);
+                if (closeAtEnd) {
+                    os.close();
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void writePoints(int from, int to) throws IOException, InterruptedException {
+            for (int i = from; i < to; i++) {
+                final StringBuilder sb = new StringBuilder();
+                sb.append('[').append(START_X + i * STEP_X);
+                for (int j = 0; j < linesCount; j++) {
+                    sb.append(", ").append(j == 0 ? i % 1000 : -i * j);
+                }
+                sb.append("]\n");
+                os.write(sb.toString().getBytes("UTF8"));
+                os.flush();
+
+                if (pointDelayMs > 0) {
+                    Thread.sleep(pointDelayMs);
+                }
+            }
+        }
+    }
+
+    // Кадры: сразу (immediate) или по вызову runFrame
+    private static class FrameExecutor implements Executor {
+        private final boolean immediate;
+        final Queue<Runnable> queue = new ArrayDeque<>();
+
+        FrameExecutor(boolean immediate) {
+            this.immediate = immediate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (immediate) {
+                command.run();
+            } else {
+                queue.add(command);
+            }
+        }
+
+        void runFrame() {
+            final List<Runnable> commands = new ArrayList<>(queue);
+            queue.clear();
+            for (Runnable command : commands) {
+                command.run();
+            }
+        }
+    }
+
+    private static class CollectingSink implements ChartFeed.Sink {
+        final List<Long> xValues = new ArrayList<>();
+        final List<Integer> yValues = new ArrayList<>();
+        int batchesCount = 0;
+        volatile Exception error = null;
+        final CountDownLatch ended = new CountDownLatch(1);
+        int endedCount = 0;
+
+        @Override
+        public synchronized void onPoints(long[] xValues, int[][] linesValues, int count) {
+            for (int i = 0; i < count; i++) {
+                this.xValues.add(xValues[i]);
+                yValues.add(linesValues[0][i]);
+            }
+            batchesCount++;
+        }
+
+        @Override
+        public synchronized void onFeedEnded(Exception e) {
+            error = e;
+            endedCount++;
+            ended.countDown();
+        }
+
+        synchronized int size() {
+            return xValues.size();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.alunegov.tchart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ChartGeometryEngineTest {
+    private static final float[] AREA = new float[] {0, 0, 1000, 500};
+
+    // точки, добавленные в видимый диапазон LINE: буферы дописывают только новые отрезки (полностью строятся лишь первые
+    // два кадра), результат совпадает с кадром, построенным заново. Часть точек вытесняет старые.
+    @Test
+    public void testAppendedPoints_LINE() {
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 100)).toLive(150);
+        final Frames frames = new Frames(live);
+
+        for (int k = 0; k < 80; k++) {
+            frames.appendPoint();
+
+            frames.executor.runAll();
+            frames.assertFrontEqualsExpected(live);
+        }
+
+        assertEquals(2, frames.profiler.getPhaseCount(ChartProfiler.PHASE_GEOMETRY));
+    }
+
+    // AREA перестраивается целиком, суммы линий буферов (по виду на буфер точек) совпадают с построенными заново
+    @Test
+    public void testAppendedPoints_AREA() {
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.AREA, 3, 100)).toLive(150);
+        final Frames frames = new Frames(live);
+
+        for (int k = 0; k < 80; k++) {
+            frames.appendPoint();
+
+            frames.executor.runAll();
+            frames.assertFrontEqualsExpected(live);
+        }
+    }
+
+    // кадр строится по снимку буфера точек на момент запроса: точки, добавленные до начала построения, в него не попадают
+    // (буфер не заполнен - снимок не затирается)
+    @Test
+    public void testRingSnapshot() {
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.AREA, 3, 100)).toLive(150);
+        final Frames frames = new Frames(live);
+
+        frames.appendPoint();
+        final ChartInputData requested = live.toLiveView();
+
+        final int[] values = new int[] {1000000, 1000000, 1000000};
+        for (int k = 0; k < 10; k++) {
+            live.appendPoint(live.getColumns().getX(live.getColumns().getPointsCount() - 1) + 1, values);
+        }
+
+        frames.executor.runAll();
+        frames.assertFrontEqualsExpected(requested);
+    }
+
+    // модель, движок с двумя построенными буферами и задачами в очереди
+    private static class Frames {
+        final @NotNull ChartInputData live;
+        final @NotNull ChartInputDataStats stats;
+        final @NotNull ChartGeometry model;
+        final @NotNull ChartProfiler profiler = new ChartProfiler("engine", null);
+        final @NotNull QueueExecutor executor = new QueueExecutor();
+        final @NotNull ChartGeometryEngine<ChartGeometry> engine;
+
+        Frames(@NotNull ChartInputData live) {
+            this.live = live;
+            stats = new ChartInputDataStats(live);
+
+            final ChartColumns columns = live.getColumns();
+            model = new ChartGeometry(live, stats);
+            model.setGeometryUpdating(false);
+            model.setArea(AREA[0], AREA[1], AREA[2], AREA[3]);
+            // диапазон X с запасом справа - новые точки попадают в него
+            model.setXRange(columns.getX(50), columns.getX(columns.getPointsCount() - 1)
+                    + 100 * ChartDataGenerator.DEFAULT_X_STEP, true);
+
+            engine = new ChartGeometryEngine<>(makeBuffer(), makeBuffer(), new ChartGeometryEngine.Listener() {
+                @Override
+                public void onFrameReady() {
+                }
+            }, executor);
+
+            // первый кадр строится сразу, второй - в очереди
+            engine.requestFrame(model, ChartGeometry.NO_CURSOR);
+            engine.requestFrame(model, ChartGeometry.NO_CURSOR);
+            executor.runAll();
+        }
+
+        private @NotNull ChartGeometry makeBuffer() {
+            final ChartGeometry buffer = new ChartGeometry(live.toLiveView(), stats);
+            buffer.setProfiler(profiler);
+            return buffer;
+        }
+
+        // точка со значениями в середине диапазона Y и запрос кадра, как в MainChartView
+        void appendPoint() {
+            final ChartColumns columns = live.getColumns();
+            final int[] yRange = new int[4];
+            model.getYRange(yRange);
+
+            final int[] values = new int[columns.getLinesCount()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = (yRange[0] + yRange[1]) / 2 / values.length;
+            }
+            live.appendPoint(columns.getX(columns.getPointsCount() - 1) + ChartDataGenerator.DEFAULT_X_STEP, values);
+
+            if (model.onPointsAppended()) {
+                engine.requestFrame(model, ChartGeometry.NO_CURSOR);
+            }
+        }
+
+        // передний буфер совпадает с кадром модели, построенным заново по data
+        void assertFrontEqualsExpected(@NotNull ChartInputData data) {
+            final double[] xRange = new double[2];
+            model.getXRange(xRange);
+            final int[] yRange = new int[4];
+            model.getYRange(yRange);
+
+            final ChartGeometry expected = new ChartGeometry(data, stats);
+            expected.setFrame(AREA, xRange[0], xRange[1], yRange, model.getLinesVisibilityState(), ChartGeometry.NO_CURSOR);
+
+            synchronized (engine.getLock()) {
+                final ChartGeometry front = engine.getFront();
+                assertNotNull(front);
+
+                if (data.linesType == ChartInputData.LineType.LINE) {
+                    assertLinesEqual(expected.getLinesLines(), expected.getLinesLinesCount(), front.getLinesLines(),
+                            front.getLinesLinesCount());
+                } else {
+                    assertLinesEqual(expected.getLinesPolygons(), expected.getLinesPolygonsCount(),
+                            front.getLinesPolygons(), front.getLinesPolygonsCount());
+                }
+            }
+        }
+    }
+
+    private static void assertLinesEqual(@NotNull float[][] expected, @NotNull int[] expectedCount,
+                                         @NotNull float[][] actual, @NotNull int[] actualCount) {
+        assertArrayEquals(expectedCount, actualCount);
+        for (int j = 0; j < expected.length; j++) {
+            for (int k = 0; k < expectedCount[j]; k++) {
+                assertEquals(expected[j][k], actual[j][k], 1e-3);
+            }
+        }
+    }
+
+    // задачи выполняются по runAll в потоке теста
+    private static class QueueExecutor implements Executor {
+        private final @NotNull List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(@NotNull Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+}
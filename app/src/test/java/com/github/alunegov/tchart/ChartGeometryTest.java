@@ -0,0 +1,168 @@
+package com.github.alunegov.tchart;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Геометрия графика на JVM: свойства буферов отрезков/многоугольников и меток осей
+public class ChartGeometryTest {
+    private static final float WIDTH = 1000;
+    private static final float HEIGHT = 500;
+    private static final float EPS = 0.01f;
+
+    // все точки без прореживания: крайние точки диапазона - на границах области, мин/макс - на нижней/верхней
+    @Test
+    public void testLines() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 300));
+        final ChartGeometry geometry = makeGeometry(data);
+        geometry.setLineSampler(null);
+
+        final float[][] lines = geometry.getLinesLines();
+        final int[] linesCount = geometry.getLinesLinesCount();
+        for (int j = 0; j < 2; j++) {
+            assertEquals(299 * 4, linesCount[j]);
+            assertInArea(lines[j], linesCount[j]);
+
+            assertEquals(0, lines[j][0], EPS);
+            assertEquals(WIDTH, lines[j][linesCount[j] - 2], EPS);
+            // конец отрезка - начало следующего
+            for (int k = 4; k < linesCount[j]; k += 4) {
+                assertEquals(lines[j][k - 2], lines[j][k], 0);
+                assertEquals(lines[j][k - 1], lines[j][k + 1], 0);
+            }
+        }
+
+        final int[] yRange = new int[4];
+        geometry.getYRange(yRange);
+        float minY = Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int j = 0; j < 2; j++) {
+            for (int k = 1; k < linesCount[j]; k += 2) {
+                minY = Math.min(minY, lines[j][k]);
+                maxY = Math.max(maxY, lines[j][k]);
+            }
+        }
+        assertEquals(0, minY, EPS);
+        assertEquals(HEIGHT, maxY, EPS);
+    }
+
+    // прореживание: отрезков не больше, чем без него, и все в области
+    @Test
+    public void testLinesSampled() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 100000));
+        final ChartGeometry geometry = makeGeometry(data);
+
+        final int count = geometry.getLinesLinesCount()[0];
+        assertTrue(count < 99999 * 4);
+        assertInArea(geometry.getLinesLines()[0], count);
+    }
+
+    // столбики: основание первой линии - низ области, каждая следующая линия не ниже предыдущей, скрытая - пустая
+    @Test
+    public void testBars() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 3, 200));
+        final ChartInputDataStats stats = new ChartInputDataStats(data);
+        stats.updateLineVisibility(1, false, ChartInputDataStats.VISIBILITY_STATE_OFF);
+        final ChartGeometry geometry = makeGeometry(data, stats);
+
+        final float[][] polygons = geometry.getLinesPolygons();
+        final int[] polygonsCount = geometry.getLinesPolygonsCount();
+
+        assertEquals(0, polygonsCount[1]);
+        for (int j : new int[] {0, 2}) {
+            assertEquals((200 * 2 + 2) * 2, polygonsCount[j]);
+            assertInArea(polygons[j], polygonsCount[j]);
+        }
+        // последние две вершины - основание
+        assertEquals(HEIGHT, polygons[0][polygonsCount[0] - 1], EPS);
+        for (int k = 1; k < 200 * 4; k += 2) {
+            assertTrue(polygons[2][k] <= polygons[0][k] + EPS);
+        }
+
+        geometry.updateCursorPaths(50);
+        assertEquals(8, geometry.getCursorPolygonsCount()[0]);
+        assertEquals(0, geometry.getCursorPolygonsCount()[1]);
+        assertEquals(8, geometry.getCursorPolygonsCount()[2]);
+        assertInArea(geometry.getCursorPolygons()[2], 8);
+
+        geometry.updateCursorPaths(ChartGeometry.NO_CURSOR);
+        assertEquals(0, geometry.getCursorPolygonsCount()[0]);
+    }
+
+    // доли: последняя видимая линия - прямоугольник до верха области (100%)
+    @Test
+    public void testArea() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.AREA, 3, 200));
+        final ChartGeometry geometry = makeGeometry(data);
+
+        final float[][] polygons = geometry.getLinesPolygons();
+        final int[] polygonsCount = geometry.getLinesPolygonsCount();
+
+        assertEquals((200 + 2) * 2, polygonsCount[0]);
+        assertEquals(8, polygonsCount[2]);
+        for (int j = 0; j < 3; j++) {
+            assertInArea(polygons[j], polygonsCount[j]);
+        }
+        assertEquals(0, polygons[2][1], EPS);
+        assertEquals(HEIGHT, polygons[0][polygonsCount[0] - 1], EPS);
+    }
+
+    @Test
+    public void testAxisMarks() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 300));
+        final ChartGeometry geometry = makeGeometry(data);
+
+        final List<ChartGeometry.AxisMark> xMarks = geometry.getXAxisMarks();
+        final List<ChartGeometry.AxisMark> yMarks = geometry.getYAxisMarks();
+        assertTrue(xMarks != null && xMarks.size() >= 2);
+        assertTrue(yMarks != null && yMarks.size() >= 2);
+
+        for (int i = 1; i < xMarks.size(); i++) {
+            assertTrue(xMarks.get(i).getPosition() > xMarks.get(i - 1).getPosition());
+            assertTrue(xMarks.get(i).getPosition() < WIDTH);
+        }
+        for (int i = 0; i < yMarks.size(); i++) {
+            assertTrue(yMarks.get(i).getPosition() >= 0 && yMarks.get(i).getPosition() <= HEIGHT + EPS);
+            assertTrue(yMarks.get(i).getText() != null);
+        }
+    }
+
+    private static void assertInArea(@NotNull float[] values, int count) {
+        for (int k = 0; k < count; k += 2) {
+            assertTrue(values[k] >= -WIDTH && values[k] <= 2 * WIDTH);
+            assertTrue(values[k + 1] >= -EPS && values[k + 1] <= HEIGHT + EPS);
+        }
+    }
+
+    private static @NotNull ChartGeometry makeGeometry(@NotNull ChartInputData data) {
+        return makeGeometry(data, new ChartInputDataStats(data));
+    }
+
+    private static @NotNull ChartGeometry makeGeometry(@NotNull ChartInputData data, @NotNull ChartInputDataStats stats) {
+        final ChartGeometry geometry = new ChartGeometry(data, stats);
+        geometry.enableMarksUpdating(6, new ChartGeometry.AxisTextConverter() {
+            @Override
+            public @NotNull String toText(long value) {
+                return Long.toString(value);
+            }
+        }, new ChartGeometry.AxisTextConverter() {
+            @Override
+            public @NotNull String toText(long value) {
+                return Long.toString(value);
+            }
+        });
+        geometry.setXRange(data.XValues[0], data.XValues[data.XValues.length - 1], false);
+        geometry.setArea(0, 0, WIDTH, HEIGHT);
+        return geometry;
+    }
+
+}
@@ -31,10 +31,8 @@ public class ChartInputDataMapperTest {
         assertEquals(5, l.size());
 
         ChartInputData c = l.get(0);
-        assertEquals(112, c.XValues.length);
-        assertEquals(2, c.LinesValues.length);
-        assertEquals(112, c.LinesValues[0].length);
-        assertEquals(112, c.LinesValues[1].length);
+        assertEquals(112, c.getColumns().getPointsCount());
+        assertEquals(2, c.getColumns().getLinesCount());
         assertEquals(2, c.LinesNames.length);
         assertEquals("#0", c.LinesNames[0]);
         assertEquals("#1", c.LinesNames[1]);
@@ -0,0 +1,222 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// Проверка потокового разбора и сравнение по времени с разбором через org.json (DOM)
+public class ChartInputDataReaderTest {
+    private static final int BENCHMARK_WARMUP_ITERATIONS = 5;
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    private static final ChartInputDataMapper.ColorParser colorParser = new ChartInputDataMapper.ColorParser() {
+        @Override
+        public int parseColor(String color) {
+            return color.hashCode();
+        }
+    };
+
+    @Test
+    public void testReadChart() throws Exception {
+        final String json = "{\"columns\":[[\"x\",1,2,3],[\"y0\",10,-20,30],[\"y1\",4,5,6]]," +
+                "\"types\":{\"y0\":\"line\",\"y1\":\"line\",\"x\":\"x\"}," +
+                "\"names\":{\"y0\":\"#0\",\"y1\":\"\\u0023\\\"1\"}," +
+                "\"colors\":{\"y0\":\"#3DC23F\",\"y1\":\"#F34C44\"}," +
+                "\"unknown\":[{\"a\":null},1.5e3,true]," +
+                "\"y_scaled\":true,\"stacked\":false}";
+
+        final ChartInputData c = new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+
+        assertEquals(ChartInputData.LineType.LINE, c.linesType);
+        assertArrayEquals(new long[] {1, 2, 3}, c.XValues);
+        assertEquals(2, c.LinesValues.length);
+        assertArrayEquals(new int[] {10, -20, 30}, c.LinesValues[0]);
+        assertArrayEquals(new int[] {4, 5, 6}, c.LinesValues[1]);
+        assertEquals("#0", c.LinesNames[0]);
+        assertEquals("#\"1", c.LinesNames[1]);
+        assertEquals("#3DC23F".hashCode(), c.LinesColors[0]);
+        assertTrue(c.flags.get(ChartInputData.FLAG_Y_SCALED));
+        assertTrue(!c.flags.get(ChartInputData.FLAG_STACKED));
+        assertTrue(!c.flags.get(ChartInputData.FLAG_PERCENTAGE));
+    }
+
+    // x - не первой колонкой: значения вне int в колонке x читаются без потерь
+    @Test
+    public void testXLineNotFirst() throws Exception {
+        final String json = "{\"columns\":[[\"y0\",1,2,3],[\"x\",1523059200000,1523145600000,1523232000000]]," +
+                "\"types\":{\"y0\":\"bar\",\"x\":\"x\"},\"names\":{\"y0\":\"#0\"},\"colors\":{\"y0\":\"#0\"}}";
+
+        final ChartInputData c = new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+
+        assertEquals(ChartInputData.LineType.BAR, c.linesType);
+        assertArrayEquals(new long[] {1523059200000L, 1523145600000L, 1523232000000L}, c.XValues);
+        assertArrayEquals(new int[] {1, 2, 3}, c.LinesValues[0]);
+    }
+
+    // значение линии вне int - ошибка, а не усечение
+    @Test(expected = JSONException.class)
+    public void testLineValueOutOfIntRange() throws Exception {
+        final String json = "{\"columns\":[[\"x\",1,2],[\"y0\",1,4294967296]],\"types\":{\"y0\":\"line\",\"x\":\"x\"}," +
+                "\"names\":{\"y0\":\"#0\"},\"colors\":{\"y0\":\"#0\"}}";
+
+        new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+    }
+
+    @Test(expected = JSONException.class)
+    public void testNoXLine() throws Exception {
+        final String json = "{\"columns\":[[\"y0\",1,2],[\"y1\",3,4]],\"types\":{\"y0\":\"line\",\"y1\":\"line\"}," +
+                "\"names\":{\"y0\":\"#0\",\"y1\":\"#1\"},\"colors\":{\"y0\":\"#0\",\"y1\":\"#1\"}}";
+
+        new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+    }
+
+    @Test(expected = JSONException.class)
+    public void testTruncated() throws Exception {
+        new ChartInputDataReader(new StringReader("{\"columns\":[[\"x\",1,2")).readChart(colorParser);
+    }
+
+    @Test
+    public void testChartDataJson() throws Exception {
+        final String json = ChartUtils.readFileToString(new File("src/main/assets", "chart_data.json"), "UTF8");
+
+        final List<ChartInputData> expected = ChartInputDataMapper.loadDom(json, colorParser);
+        final List<ChartInputData> actual = ChartInputDataMapper.load(json, colorParser);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertChartEquals(expected.get(i), actual.get(i));
+        }
+
+        final long domTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ChartInputDataMapper.loadDom(json, colorParser);
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        final long streamingTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ChartInputDataMapper.load(json, colorParser);
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        System.out.printf("chart_data.json: dom %d us, streaming %d us%n", domTime / 1000, streamingTime / 1000);
+    }
+
+    @Test
+    public void testGraphData2Zip() throws Exception {
+        final File zip = new File("..", "graph_data2.zip");
+        assumeTrue(zip.exists());
+
+        final List<String> jsons = new ArrayList<>();
+
+        final ZipFile zipFile = new ZipFile(zip);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith("/overview.json")) {
+                    jsons.add(readToString(zipFile.getInputStream(entry)));
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        assertTrue(jsons.size() > 0);
+
+        for (String json: jsons) {
+            assertChartEquals(ChartInputDataMapper.loadChartDom(json, colorParser),
+                    new ChartInputDataReader(new StringReader(json)).readChart(colorParser));
+        }
+
+        final long domTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (String json: jsons) {
+                        ChartInputDataMapper.loadChartDom(json, colorParser);
+                    }
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        final long streamingTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (String json: jsons) {
+                        new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+                    }
+                } catch (IOException | JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        System.out.printf("graph_data2.zip overviews: dom %d us, streaming %d us%n", domTime / 1000, streamingTime / 1000);
+    }
+
+    private static void assertChartEquals(ChartInputData expected, ChartInputData actual) {
+        assertEquals(expected.linesType, actual.linesType);
+        assertEquals(expected.flags, actual.flags);
+        // load хранит равномерный X без массива (toUniformX) - сравниваем через столбцы
+        final ChartColumns e = expected.getColumns();
+        final ChartColumns a = actual.getColumns();
+        assertEquals(e.getPointsCount(), a.getPointsCount());
+        assertEquals(e.getLinesCount(), a.getLinesCount());
+        for (int i = 0; i < e.getPointsCount(); i++) {
+            assertEquals(e.getX(i), a.getX(i));
+            for (int j = 0; j < e.getLinesCount(); j++) {
+                assertEquals(e.getY(j, i), a.getY(j, i));
+            }
+        }
+        assertArrayEquals(expected.LinesNames, actual.LinesNames);
+        assertArrayEquals(expected.LinesColors, actual.LinesColors);
+    }
+
+    // среднее время выполнения, нс
+    private static long benchmark(Runnable r) {
+        for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+            r.run();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            r.run();
+        }
+        return (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+    }
+
+    private static String readToString(InputStream is) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) > 0) {
+            os.write(buffer, 0, n);
+        }
+        return os.toString("UTF8");
+    }
+}
@@ -2,7 +2,11 @@ package com.github.alunegov.tchart;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class ChartInputDataTest {
     @Test
@@ -19,11 +23,12 @@ public class ChartInputDataTest {
     @Test
     public void testFindYMinMax() {
         ChartInputData data = new ChartInputData(2, 4, ChartInputData.LineType.LINE);
-        ChartInputDataStats dataStats = new ChartInputDataStats(data);
-
         data.LinesValues[0] = new int[] {3, 5, 7, 5};
         data.LinesValues[1] = new int[] {13, 15, 17, 15};
 
+        // индексы мин/макс строятся в конструкторе, поэтому значения задаём до него
+        ChartInputDataStats dataStats = new ChartInputDataStats(data);
+
         int[] minMax = new int[2];
 
         dataStats.findYMinMax(0, 3, false, new int[] {100, 100}, minMax);
@@ -42,15 +47,145 @@ public class ChartInputDataTest {
     @Test
     public void testFindYAbsSwing() {
         ChartInputData data = new ChartInputData(2, 4, ChartInputData.LineType.LINE);
-        ChartInputDataStats dataStats = new ChartInputDataStats(data);
-
         data.LinesValues[0] = new int[] {-3, -5, -7, -5};
         data.LinesValues[1] = new int[] {-13, -15, -17, -15};
 
+        // индексы мин/макс строятся в конструкторе, поэтому значения задаём до него
+        ChartInputDataStats dataStats = new ChartInputDataStats(data);
+
         assertEquals(14, dataStats.findYAbsSwing(0, 3, false, new int[] {100, 100}));
 
         assertEquals(12, dataStats.findYAbsSwing(1, 3, false, new int[] {100, 100}));
 
         assertEquals(10, dataStats.findYAbsSwing(1, 1, false, new int[] {100, 100}));
     }
+
+    @Test
+    public void testToDirect() {
+        ChartInputData data = new ChartInputData(2, 4, ChartInputData.LineType.BAR);
+        for (int i = 0; i < 4; i++) {
+            data.XValues[i] = 1553040000000L + i * 86400000L;
+        }
+        data.LinesValues[0] = new int[] {3, -5, 7, Integer.MAX_VALUE};
+        data.LinesValues[1] = new int[] {13, 15, Integer.MIN_VALUE, 15};
+        data.LinesNames[0] = "y0";
+        data.LinesColors[1] = 0xFF3DC23F;
+
+        ChartInputData direct = data.toDirect();
+
+        assertNull(direct.XValues);
+        assertNull(direct.LinesValues);
+        assertEquals("y0", direct.LinesNames[0]);
+        assertEquals(0xFF3DC23F, direct.LinesColors[1]);
+        assertEquals(ChartInputData.LineType.BAR, direct.linesType);
+
+        ChartColumns columns = direct.getColumns();
+        assertEquals(4, columns.getPointsCount());
+        assertEquals(2, columns.getLinesCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(data.XValues[i], columns.getX(i));
+            assertEquals(data.LinesValues[0][i], columns.getY(0, i));
+            assertEquals(data.LinesValues[1][i], columns.getY(1, i));
+        }
+    }
+
+    @Test
+    public void testFindYMinMax_direct() {
+        ChartInputData data = new ChartInputData(2, 4, ChartInputData.LineType.LINE);
+        data.LinesValues[0] = new int[] {3, 5, 7, 5};
+        data.LinesValues[1] = new int[] {13, 15, 17, 15};
+
+        // статистика по данным вне кучи совпадает со статистикой по массивам
+        ChartInputDataStats dataStats = new ChartInputDataStats(data.toDirect());
+
+        int[] minMax = new int[2];
+
+        dataStats.findYMinMax(1, 3, false, new int[] {100, 100}, minMax);
+        assertEquals(5, minMax[0]);
+        assertEquals(17, minMax[1]);
+
+        dataStats.findYMinMax(0, 2, false, new int[] {100, 0}, minMax);
+        assertEquals(3, minMax[0]);
+        assertEquals(7, minMax[1]);
+    }
+
+    @Test
+    public void testToUniformX() {
+        ChartInputData data = new ChartInputData(2, 4, ChartInputData.LineType.LINE);
+        for (int i = 0; i < 4; i++) {
+            data.XValues[i] = 1553040000000L + i * 86400000L;
+        }
+        data.LinesValues[0] = new int[] {3, -5, 7, 5};
+        data.LinesValues[1] = new int[] {13, 15, 17, 15};
+        data.LinesNames[1] = "y1";
+        data.LinesColors[0] = 0xFF3DC23F;
+
+        ChartInputData uniform = data.toUniformX();
+
+        assertNull(uniform.XValues);
+        assertSame(data.LinesValues, uniform.LinesValues);
+        assertEquals("y1", uniform.LinesNames[1]);
+        assertEquals(0xFF3DC23F, uniform.LinesColors[0]);
+
+        ChartColumns columns = uniform.getColumns();
+        assertTrue(columns instanceof UniformXChartColumns);
+        assertEquals(4, columns.getPointsCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(data.XValues[i], columns.getX(i));
+            assertEquals(data.LinesValues[1][i], columns.getY(1, i));
+        }
+
+        // неравномерный X - без изменений
+        data.XValues[3]++;
+        assertSame(data, data.toUniformX());
+    }
+
+    @Test
+    public void testToCompact() {
+        ChartInputData data = new ChartInputData(3, 4, ChartInputData.LineType.BAR);
+        for (int i = 0; i < 4; i++) {
+            data.XValues[i] = 1553040000000L + i * 86400000L;
+        }
+        data.LinesValues[0] = new int[] {3, -128, 127, 0};
+        data.LinesValues[1] = new int[] {13, Short.MIN_VALUE, Short.MAX_VALUE, 15};
+        data.LinesValues[2] = new int[] {13, 15, Integer.MIN_VALUE, Short.MAX_VALUE + 1};
+        data.LinesNames[0] = "y0";
+        data.LinesColors[2] = 0xFF3DC23F;
+
+        ChartInputData compact = data.toCompact();
+
+        assertNull(compact.XValues);
+        assertNull(compact.LinesValues);
+        assertEquals("y0", compact.LinesNames[0]);
+        assertEquals(0xFF3DC23F, compact.LinesColors[2]);
+
+        CompactChartColumns columns = (CompactChartColumns) compact.getColumns();
+        assertEquals(CompactChartColumns.WIDTH_BYTE, columns.getLineWidth(0));
+        assertEquals(CompactChartColumns.WIDTH_SHORT, columns.getLineWidth(1));
+        assertEquals(CompactChartColumns.WIDTH_INT, columns.getLineWidth(2));
+        // равномерный X не хранится
+        assertEquals(4 * (1 + 2 + 4), columns.getValuesSize());
+        assertValuesEqual(data.getColumns(), columns);
+
+        // неравномерный X
+        data.XValues[3]++;
+        columns = (CompactChartColumns) data.toCompact().getColumns();
+        assertEquals(4 * (8 + 1 + 2 + 4), columns.getValuesSize());
+        assertValuesEqual(data.getColumns(), columns);
+
+        int[] line = new int[5];
+        columns.getLine(1, 1, 3, line, 2);
+        assertArrayEquals(new int[] {0, 0, Short.MIN_VALUE, Short.MAX_VALUE, 15}, line);
+    }
+
+    private static void assertValuesEqual(ChartColumns expected, ChartColumns actual) {
+        assertEquals(expected.getPointsCount(), actual.getPointsCount());
+        assertEquals(expected.getLinesCount(), actual.getLinesCount());
+        for (int i = 0; i < expected.getPointsCount(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i));
+            for (int j = 0; j < expected.getLinesCount(); j++) {
+                assertEquals(expected.getY(j, i), actual.getY(j, i));
+            }
+        }
+    }
 }
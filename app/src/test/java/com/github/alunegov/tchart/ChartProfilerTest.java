@@ -0,0 +1,89 @@
+package com.github.alunegov.tchart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChartProfilerTest {
+    @Test
+    public void testPercentiles() throws Exception {
+        final ChartProfiler profiler = new ChartProfiler("test", null);
+        assertEquals(0, profiler.getPhasePercentile(ChartProfiler.PHASE_DRAW, 0.5f));
+
+        for (int i = 0; i < 10; i++) {
+            final long start = profiler.begin(ChartProfiler.PHASE_DRAW);
+            Thread.sleep(i == 9 ? 20 : 1);
+            profiler.end(ChartProfiler.PHASE_DRAW, start);
+        }
+
+        assertEquals(10, profiler.getPhaseCount(ChartProfiler.PHASE_DRAW));
+        final long p50 = profiler.getPhasePercentile(ChartProfiler.PHASE_DRAW, 0.5f);
+        final long p99 = profiler.getPhasePercentile(ChartProfiler.PHASE_DRAW, 0.99f);
+        assertTrue(p50 >= 1000 * 1000 && p50 < 20 * 1000 * 1000);
+        assertTrue(p99 >= 20 * 1000 * 1000);
+
+        profiler.reset();
+        assertEquals(0, profiler.getPhaseCount(ChartProfiler.PHASE_DRAW));
+    }
+
+    // фазы и счётчики построения кадра геометрии, секции трассировки парные
+    @Test
+    public void testGeometryPhases() {
+        final List<String> sections = new ArrayList<>();
+        final int[] depth = new int[1];
+        final ChartProfiler profiler = new ChartProfiler("bar", new ChartProfiler.Tracer() {
+            @Override
+            public void beginSection(@NotNull String name) {
+                sections.add(name);
+                depth[0]++;
+            }
+
+            @Override
+            public void endSection() {
+                depth[0]--;
+            }
+        });
+
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 3, 1000));
+        final ChartGeometry geometry = new ChartGeometry(data, new ChartInputDataStats(data));
+        final ChartGeometry.AxisTextConverter converter = new ChartGeometry.AxisTextConverter() {
+            @Override
+            public @NotNull String toText(long value) {
+                return Long.toString(value);
+            }
+        };
+        geometry.enableMarksUpdating(6, converter, converter);
+        geometry.setArea(0, 0, 1000, 500);
+        geometry.setProfiler(profiler);
+
+        geometry.setXRange(data.XValues[0], data.XValues[999], true);
+        geometry.updateCursorPaths(10);
+
+        assertEquals(0, depth[0]);
+        assertTrue(sections.contains("bar: stats query"));
+        assertEquals(1, profiler.getPhaseCount(ChartProfiler.PHASE_STATS_QUERY));
+        assertEquals(1, profiler.getPhaseCount(ChartProfiler.PHASE_GEOMETRY));
+        assertEquals(1, profiler.getPhaseCount(ChartProfiler.PHASE_AXIS_MARKS));
+        assertEquals(1, profiler.getPhaseCount(ChartProfiler.PHASE_CURSOR));
+
+        assertEquals(3 * (1000 * 2 + 2), profiler.getCounter(ChartProfiler.COUNTER_POINTS_EMITTED));
+        final int labelsCount = geometry.getXAxisMarks().size() + geometry.getYAxisMarks().size();
+        assertEquals(labelsCount, profiler.getCounter(ChartProfiler.COUNTER_LABELS_FORMATTED));
+
+        final String report = profiler.getReport();
+        assertTrue(report.startsWith("bar\n"));
+        assertTrue(report.contains("geometry"));
+        assertTrue(report.contains("points emitted"));
+
+        // без профилировщика замеры не ведутся
+        geometry.setProfiler(null);
+        geometry.setXRange(data.XValues[1], data.XValues[999], true);
+        assertEquals(1, profiler.getPhaseCount(ChartProfiler.PHASE_GEOMETRY));
+    }
+}
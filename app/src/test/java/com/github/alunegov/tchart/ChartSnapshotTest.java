@@ -0,0 +1,258 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.json.JSONException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+// Проверка записи/чтения снимков и сравнение по времени загрузки снимка с разбором json
+public class ChartSnapshotTest {
+    private static final int BENCHMARK_WARMUP_ITERATIONS = 5;
+    private static final int BENCHMARK_ITERATIONS = 20;
+
+    private static final long SOURCE_VERSION = 1553040000000L;
+
+    private static final ChartInputDataMapper.ColorParser colorParser = new ChartInputDataMapper.ColorParser() {
+        @Override
+        public int parseColor(String color) {
+            return color.hashCode();
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testChartDataJson() throws Exception {
+        final String json = ChartUtils.readFileToString(new File("src/main/assets", "chart_data.json"), "UTF8");
+
+        final List<ChartInputData> charts = ChartInputDataMapper.load(json, colorParser);
+        final List<File> files = roundTrip(charts);
+
+        final long parseTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ChartInputDataMapper.load(json, colorParser);
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        final long mmapTime = benchmarkRead(files);
+        System.out.printf("chart_data.json: parse %d us, mmap %d us%n", parseTime / 1000, mmapTime / 1000);
+    }
+
+    @Test
+    public void testGraphData2Zip() throws Exception {
+        final File zip = new File("..", "graph_data2.zip");
+        assumeTrue(zip.exists());
+
+        final List<String> jsons = new ArrayList<>();
+
+        final ZipFile zipFile = new ZipFile(zip);
+        try {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith("/overview.json")) {
+                    jsons.add(readToString(zipFile.getInputStream(entry)));
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        assertTrue(jsons.size() > 0);
+
+        final List<ChartInputData> charts = new ArrayList<>();
+        for (String json: jsons) {
+            charts.add(new ChartInputDataReader(new StringReader(json)).readChart(colorParser));
+        }
+        final List<File> files = roundTrip(charts);
+
+        final long parseTime = benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (String json: jsons) {
+                        new ChartInputDataReader(new StringReader(json)).readChart(colorParser);
+                    }
+                } catch (IOException | JSONException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        final long mmapTime = benchmarkRead(files);
+        System.out.printf("graph_data2.zip overviews: parse %d us, mmap %d us%n", parseTime / 1000, mmapTime / 1000);
+    }
+
+    // размеры значений линий и равномерный X сохраняются
+    @Test
+    public void testRead_compact() throws Exception {
+        final ChartInputData c = new ChartInputData(3, 4, ChartInputData.LineType.BAR);
+        for (int i = 0; i < 4; i++) {
+            c.XValues[i] = 1000 + 10 * i;
+            c.LinesValues[0][i] = -100 + i;
+            c.LinesValues[1][i] = 30000 * (i % 2);
+            c.LinesValues[2][i] = 1 << (8 * i);
+        }
+        c.LinesNames[0] = "#0";
+        c.LinesNames[1] = "#1";
+        c.LinesNames[2] = "#2";
+
+        final File file = tmpFolder.newFile();
+        ChartSnapshot.write(c, SOURCE_VERSION, file);
+        final ChartInputData actual = ChartSnapshot.read(file, SOURCE_VERSION);
+        assertNotNull(actual);
+        assertChartEquals(c, actual);
+
+        final CompactChartColumns columns = (CompactChartColumns) actual.getColumns();
+        assertEquals(10, columns.getXStep());
+        assertEquals(CompactChartColumns.WIDTH_BYTE, columns.getLineWidth(0));
+        assertEquals(CompactChartColumns.WIDTH_SHORT, columns.getLineWidth(1));
+        assertEquals(CompactChartColumns.WIDTH_INT, columns.getLineWidth(2));
+        // заголовок, полезная нагрузка до столбцов (с выравниванием) и столбцы линий без X
+        assertTrue(file.length() <= 24 + 40 + 3 * 14 + 7 + 4 * (1 + 2 + 4));
+    }
+
+    @Test
+    public void testRead_outdated() throws Exception {
+        final File file = writeSample();
+
+        assertNotNull(ChartSnapshot.read(file, SOURCE_VERSION));
+        assertNull(ChartSnapshot.read(file, SOURCE_VERSION + 1));
+        assertNull(ChartSnapshot.read(new File(tmpFolder.getRoot(), "none"), SOURCE_VERSION));
+    }
+
+    @Test
+    public void testRead_corrupted() throws Exception {
+        final File file = writeSample();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // значение в столбцах
+            raf.seek(raf.length() - 1);
+            final int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0x01);
+        } finally {
+            raf.close();
+        }
+        assertNull(ChartSnapshot.read(file, SOURCE_VERSION));
+
+        // обрезанный файл
+        final RandomAccessFile raf2 = new RandomAccessFile(file, "rw");
+        try {
+            raf2.setLength(raf2.length() / 2);
+        } finally {
+            raf2.close();
+        }
+        assertNull(ChartSnapshot.read(file, SOURCE_VERSION));
+    }
+
+    private File writeSample() throws Exception {
+        final ChartInputData c = new ChartInputData(2, 3, ChartInputData.LineType.AREA);
+        c.XValues[0] = 1;
+        c.XValues[1] = 2;
+        c.XValues[2] = 3;
+        c.LinesValues[0][1] = -5;
+        c.LinesValues[1][2] = 7;
+        c.LinesNames[0] = "Первая";
+        c.LinesNames[1] = "#1";
+        c.flags.set(ChartInputData.FLAG_PERCENTAGE);
+
+        final File file = tmpFolder.newFile();
+        ChartSnapshot.write(c, SOURCE_VERSION, file);
+        assertChartEquals(c, ChartSnapshot.read(file, SOURCE_VERSION));
+        return file;
+    }
+
+    private List<File> roundTrip(List<ChartInputData> charts) throws Exception {
+        assertTrue(charts.size() > 0);
+
+        final List<File> files = new ArrayList<>();
+        for (ChartInputData c: charts) {
+            final File file = tmpFolder.newFile();
+            ChartSnapshot.write(c, SOURCE_VERSION, file);
+
+            final ChartInputData actual = ChartSnapshot.read(file, SOURCE_VERSION);
+            assertNotNull(actual);
+            assertChartEquals(c, actual);
+
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void assertChartEquals(ChartInputData expected, ChartInputData actual) {
+        assertEquals(expected.linesType, actual.linesType);
+        assertEquals(expected.flags, actual.flags);
+        assertArrayEquals(expected.LinesNames, actual.LinesNames);
+        assertArrayEquals(expected.LinesColors, actual.LinesColors);
+
+        final ChartColumns e = expected.getColumns();
+        final ChartColumns a = actual.getColumns();
+        assertEquals(e.getPointsCount(), a.getPointsCount());
+        assertEquals(e.getLinesCount(), a.getLinesCount());
+        for (int i = 0; i < e.getPointsCount(); i++) {
+            assertEquals(e.getX(i), a.getX(i));
+            for (int j = 0; j < e.getLinesCount(); j++) {
+                assertEquals(e.getY(j, i), a.getY(j, i));
+            }
+        }
+    }
+
+    private static long benchmarkRead(final List<File> files) {
+        return benchmark(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (File file: files) {
+                        ChartSnapshot.read(file, SOURCE_VERSION);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    // среднее время выполнения, нс
+    private static long benchmark(Runnable r) {
+        for (int i = 0; i < BENCHMARK_WARMUP_ITERATIONS; i++) {
+            r.run();
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            r.run();
+        }
+        return (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+    }
+
+    private static String readToString(InputStream is) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) > 0) {
+            os.write(buffer, 0, n);
+        }
+        return os.toString("UTF8");
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.alunegov.tchart;
+
+import java.io.StringWriter;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChartTraceRecorderTest {
+    // при переполнении остаются последние интервалы в порядке записи
+    @Test
+    public void testRing() throws Exception {
+        final ChartTraceRecorder recorder = new ChartTraceRecorder(4);
+        final long start = System.nanoTime();
+        final String[] names = new String[] {"a", "b", "c", "d", "e", "f"};
+        for (int i = 0; i < names.length; i++) {
+            recorder.record(names[i], ChartTraceRecorder.CATEGORY_CHART, start + i * 1000, 500);
+        }
+        assertEquals(4, recorder.getSize());
+
+        final JSONArray events = getSpans(export(recorder));
+        assertEquals(4, events.length());
+        for (int i = 0; i < 4; i++) {
+            final JSONObject event = events.getJSONObject(i);
+            assertEquals(names[i + 2], event.getString("name"));
+            assertEquals("X", event.getString("ph"));
+            assertEquals(0.5, event.getDouble("dur"), 1e-9);
+        }
+        assertEquals(1.0, events.getJSONObject(1).getDouble("ts") - events.getJSONObject(0).getDouble("ts"), 1e-9);
+
+        recorder.clear();
+        assertEquals(0, recorder.getSize());
+        assertEquals(0, getSpans(export(recorder)).length());
+    }
+
+    // имена потоков - метаданными, имена интервалов экранируются
+    @Test
+    public void testChromeTraceFormat() throws Exception {
+        final ChartTraceRecorder recorder = new ChartTraceRecorder(16);
+        recorder.recordSince("load \"x\\y\"\n", ChartTraceRecorder.CATEGORY_LOAD, System.nanoTime());
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                recorder.recordSince("other", ChartTraceRecorder.CATEGORY_CHART, System.nanoTime());
+            }
+        }, "tracer-test");
+        thread.start();
+        thread.join();
+
+        final JSONObject trace = new JSONObject(export(recorder));
+        final JSONArray events = trace.getJSONArray("traceEvents");
+
+        int threadNames = 0;
+        boolean gotOtherThread = false;
+        for (int i = 0; i < events.length(); i++) {
+            final JSONObject event = events.getJSONObject(i);
+            if ("M".equals(event.getString("ph"))) {
+                threadNames++;
+                gotOtherThread |= "tracer-test".equals(event.getJSONObject("args").getString("name"));
+            }
+        }
+        assertEquals(2, threadNames);
+        assertTrue(gotOtherThread);
+
+        final JSONArray spans = getSpans(trace.toString());
+        assertEquals("load \"x\\y\"\n", spans.getJSONObject(0).getString("name"));
+        assertEquals(ChartTraceRecorder.CATEGORY_LOAD, spans.getJSONObject(0).getString("cat"));
+        assertTrue(spans.getJSONObject(0).getLong("tid") != spans.getJSONObject(1).getLong("tid"));
+    }
+
+    // фазы профилировщика пишутся интервалами, вложенные - внутри внешних
+    @Test
+    public void testProfilerSpans() throws Exception {
+        final ChartTraceRecorder recorder = new ChartTraceRecorder(1024);
+        final ChartProfiler profiler = new ChartProfiler("line", null, recorder);
+
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 1000));
+        final ChartGeometry geometry = new ChartGeometry(data, new ChartInputDataStats(data));
+        geometry.setArea(0, 0, 1000, 500);
+        geometry.setXRange(data.XValues[0], data.XValues[999], false);
+        geometry.setProfiler(profiler);
+
+        geometry.setXRange(data.XValues[100], data.XValues[900], true);
+
+        final JSONArray spans = getSpans(export(recorder));
+        JSONObject outer = null, inner = null;
+        for (int i = 0; i < spans.length(); i++) {
+            final JSONObject span = spans.getJSONObject(i);
+            if ("line: set x range".equals(span.getString("name"))) {
+                outer = span;
+            } else if ("line: geometry".equals(span.getString("name"))) {
+                inner = span;
+            }
+        }
+        assertTrue(outer != null && inner != null);
+        assertTrue(inner.getDouble("ts") >= outer.getDouble("ts"));
+        assertTrue(inner.getDouble("ts") + inner.getDouble("dur") <= outer.getDouble("ts") + outer.getDouble("dur") + 1e-3);
+    }
+
+    private static @NotNull String export(@NotNull ChartTraceRecorder recorder) throws Exception {
+        final StringWriter writer = new StringWriter();
+        recorder.writeChromeTrace(writer);
+        return writer.toString();
+    }
+
+    // события "X" трассы
+    private static @NotNull JSONArray getSpans(@NotNull String json) throws Exception {
+        final JSONArray events = new JSONObject(json).getJSONArray("traceEvents");
+        final JSONArray res = new JSONArray();
+        for (int i = 0; i < events.length(); i++) {
+            if ("X".equals(events.getJSONObject(i).getString("ph"))) {
+                res.put(events.getJSONObject(i));
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedChartColumnsTest {
+    private static final long START_X = 1553040000000L;
+    private static final long STEP_X = 86400000L;
+
+    @Test
+    public void testRoundTrip() {
+        final Random random = new Random(1);
+        final ChartInputData data = new ChartInputData(3, 1000, ChartInputData.LineType.LINE);
+        long x = START_X;
+        for (int i = 0; i < 1000; i++) {
+            // неравномерный X, в т.ч. с повторами
+            x += random.nextInt(3) * STEP_X;
+            data.XValues[i] = x;
+            data.LinesValues[0][i] = random.nextInt();
+            data.LinesValues[1][i] = random.nextInt(200) - 100;
+            data.LinesValues[2][i] = (i % 2 == 0) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        }
+
+        final CompressedChartColumns compressed = CompressedChartColumns.of(data.getColumns());
+        assertEquals(1000, compressed.getPointsCount());
+        assertEquals(3, compressed.getLinesCount());
+        assertEquals(4, compressed.getBlocksCount());
+        assertColumnsEqual(data.getColumns(), compressed);
+
+        // произвольный порядок доступа (вытеснение блоков из буфера)
+        for (int n = 0; n < 5000; n++) {
+            final int i = random.nextInt(1000);
+            final int j = random.nextInt(3);
+            assertEquals(data.XValues[i], compressed.getX(i));
+            assertEquals(data.LinesValues[j][i], compressed.getY(j, i));
+        }
+    }
+
+    // плавные данные с равномерным X сжимаются на порядок
+    @Test
+    public void testSize() {
+        final ChartInputData data = makeSmoothData(4, 100000, new Random(2));
+
+        final CompressedChartColumns compressed = CompressedChartColumns.of(data.getColumns());
+        assertColumnsEqual(data.getColumns(), compressed);
+
+        final long heapSize = 8L * 100000 + 4L * 4 * 100000;
+        System.out.printf("compressed: %d bytes of %d%n", compressed.getValuesSize(), heapSize);
+        assertTrue(compressed.getValuesSize() * 8 < heapSize);
+    }
+
+    @Test
+    public void testFindMinMax() {
+        final Random random = new Random(3);
+        final ChartInputData data = makeSmoothData(2, 3000, random);
+        final CompressedChartColumns compressed = CompressedChartColumns.of(data.getColumns());
+
+        final int[] minMax = new int[2];
+        for (int n = 0; n < 2000; n++) {
+            final int l = random.nextInt(3000);
+            final int r = l + random.nextInt(3000 - l);
+            final int j = random.nextInt(2);
+
+            int expectedMin = Integer.MAX_VALUE;
+            int expectedMax = Integer.MIN_VALUE;
+            for (int i = l; i <= r; i++) {
+                expectedMin = Math.min(expectedMin, data.LinesValues[j][i]);
+                expectedMax = Math.max(expectedMax, data.LinesValues[j][i]);
+            }
+
+            minMax[0] = Integer.MAX_VALUE;
+            minMax[1] = Integer.MIN_VALUE;
+            compressed.findMinMax(j, l, r, minMax);
+            assertEquals(expectedMin, minMax[0]);
+            assertEquals(expectedMax, minMax[1]);
+        }
+    }
+
+    @Test
+    public void testStats() {
+        final Random random = new Random(4);
+        final ChartInputData data = makeSmoothData(3, 2000, random);
+        final ChartInputData compressed = data.toCompressed();
+
+        final ChartInputDataStats expected = new ChartInputDataStats(data);
+        final ChartInputDataStats stats = new ChartInputDataStats(compressed);
+        final int[] state = new int[] {255, 0, 255};
+
+        final int[] minMax = new int[2];
+        final int[] expectedMinMax = new int[2];
+        for (int n = 0; n < 500; n++) {
+            final int l = random.nextInt(2000);
+            final int r = l + random.nextInt(2000 - l);
+
+            expected.findYMinMax(l, r, false, state, expectedMinMax);
+            stats.findYMinMax(l, r, false, state, minMax);
+            assertEquals(expectedMinMax[0], minMax[0]);
+            assertEquals(expectedMinMax[1], minMax[1]);
+        }
+    }
+
+    @Test
+    public void testXIndexLocator() {
+        final Random random = new Random(5);
+        final ChartInputData data = new ChartInputData(1, 2000, ChartInputData.LineType.LINE);
+        long x = START_X;
+        for (int i = 0; i < 2000; i++) {
+            x += 1 + random.nextInt((int) STEP_X);
+            data.XValues[i] = x;
+        }
+
+        final XIndexLocator expected = new XIndexLocator(data.XValues);
+        final XIndexLocator locator = new XIndexLocator(CompressedChartColumns.of(data.getColumns()));
+        final double xMin = data.XValues[0] - STEP_X;
+        final double xMax = data.XValues[1999] + STEP_X;
+        for (int n = 0; n < 5000; n++) {
+            final double xValue = (n % 10 == 0) ? data.XValues[random.nextInt(2000)] : xMin + random.nextDouble() * (xMax - xMin);
+            final int left = expected.findLeftIndex(xValue);
+            assertEquals(left, locator.findLeftIndex(xValue));
+            assertEquals(expected.findRightIndex(xValue, left), locator.findRightIndex(xValue, left));
+        }
+    }
+
+    // у каждого потока свой буфер декодированных блоков
+    @Test
+    public void testThreads() throws Exception {
+        final ChartInputData data = makeSmoothData(2, 20000, new Random(6));
+        final CompressedChartColumns compressed = CompressedChartColumns.of(data.getColumns());
+
+        final Throwable[] errors = new Throwable[4];
+        final Thread[] threads = new Thread[errors.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int threadIndex = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Random random = new Random(threadIndex);
+                        for (int n = 0; n < 100000; n++) {
+                            final int i = random.nextInt(20000);
+                            assertEquals(data.XValues[i], compressed.getX(i));
+                            assertEquals(data.LinesValues[1][i], compressed.getY(1, i));
+                        }
+                    } catch (Throwable e) {
+                        errors[threadIndex] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable e : errors) {
+            if (e != null) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static void assertColumnsEqual(ChartColumns expected, ChartColumns actual) {
+        for (int i = 0; i < expected.getPointsCount(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i));
+            for (int j = 0; j < expected.getLinesCount(); j++) {
+                assertEquals(expected.getY(j, i), actual.getY(j, i));
+            }
+        }
+    }
+
+    // случайное блуждание с равномерным X
+    private static ChartInputData makeSmoothData(int linesCount, int pointsCount, Random random) {
+        final ChartInputData data = new ChartInputData(linesCount, pointsCount, ChartInputData.LineType.LINE);
+        for (int i = 0; i < pointsCount; i++) {
+            data.XValues[i] = START_X + i * STEP_X;
+            for (int j = 0; j < linesCount; j++) {
+                data.LinesValues[j][i] = (i == 0 ? 1000 : data.LinesValues[j][i - 1]) + random.nextInt(21) - 10;
+            }
+        }
+        return data;
+    }
+}
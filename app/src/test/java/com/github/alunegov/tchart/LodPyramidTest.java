@@ -0,0 +1,99 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LodPyramidTest {
+    private static ChartInputData makeInputData(int pointsCount, long seed) {
+        final ChartInputData inputData = new ChartInputData(2, pointsCount, ChartInputData.LineType.LINE);
+
+        final Random random = new Random(seed);
+        for (int i = 0; i < pointsCount; i++) {
+            inputData.XValues[i] = i * 1000L;
+            inputData.LinesValues[0][i] = random.nextInt(10000) - 5000;
+            inputData.LinesValues[1][i] = (int) (1000 * Math.sin(i / 50.0));
+        }
+
+        return inputData;
+    }
+
+    @Test
+    public void testCollectIndexes() {
+        final int[] pointsCounts = new int[] {2, 3, 17, 1000, 4097};
+
+        for (int pointsCount : pointsCounts) {
+            final ChartInputData inputData = makeInputData(pointsCount, pointsCount);
+            final LodPyramid lod = new LodPyramid(inputData);
+            final int[] indexes = new int[pointsCount];
+
+            final Random random = new Random(pointsCount);
+            for (int level = 1; level <= lod.getMaxLevel(); level++) {
+                for (int t = 0; t < 50; t++) {
+                    int l = random.nextInt(pointsCount);
+                    int r = random.nextInt(pointsCount);
+                    if (l > r) {
+                        final int tmp = l;
+                        l = r;
+                        r = tmp;
+                    }
+                    if (LodPyramid.getMaxPointsCount(level, l, r) > indexes.length) {
+                        continue;
+                    }
+
+                    for (int j = 0; j < inputData.LinesValues.length; j++) {
+                        final int count = lod.collectIndexes(level, j, l, r, indexes);
+                        final int[] values = inputData.LinesValues[j];
+
+                        assertTrue(count <= LodPyramid.getMaxPointsCount(level, l, r));
+                        assertEquals(l, indexes[0]);
+                        assertEquals(r, indexes[count - 1]);
+                        for (int k = 1; k < count; k++) {
+                            assertTrue(indexes[k - 1] < indexes[k]);
+                        }
+
+                        // мин/макс по прореженным точкам совпадают с мин/макс по всем точкам диапазона, кроме
+                        // крайних корзин, которые могут выходить за диапазон
+                        final int innerL = Math.min(((l >> level) + 1) << level, r);
+                        final int innerR = Math.max((r >> level) << level, innerL) - 1;
+                        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+                        for (int i = innerL; i <= innerR; i++) {
+                            min = Math.min(min, values[i]);
+                            max = Math.max(max, values[i]);
+                        }
+                        int lodMin = Integer.MAX_VALUE, lodMax = Integer.MIN_VALUE;
+                        for (int k = 0; k < count; k++) {
+                            lodMin = Math.min(lodMin, values[indexes[k]]);
+                            lodMax = Math.max(lodMax, values[indexes[k]]);
+                        }
+                        if (innerL <= innerR) {
+                            assertTrue(lodMin <= min);
+                            assertTrue(lodMax >= max);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testChooseLevel() {
+        final ChartInputData inputData = makeInputData(100000, 1);
+        final LodPyramid lod = new LodPyramid(inputData);
+        final int[] indexes = new int[inputData.XValues.length];
+
+        // точек меньше, чем пикселей - без прореживания
+        assertEquals(0, lod.chooseLevel(0, 499, 1000, indexes.length));
+        // корзина примерно в пиксель
+        assertEquals(1, lod.chooseLevel(0, 1999, 1000, indexes.length));
+        assertEquals(7, lod.chooseLevel(0, 99999, 1000, indexes.length));
+        assertEquals(0, lod.chooseLevel(0, 99999, 0, indexes.length));
+
+        // кол-во выводимых точек ограничено шириной, а не кол-вом точек в диапазоне
+        final int level = lod.chooseLevel(0, 99999, 1000, indexes.length);
+        final int count = lod.collectIndexes(level, 0, 0, 99999, indexes);
+        assertTrue(count <= 2 * 1000 + 4 * 2);
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LttbSamplerTest {
+    private static final int WIDTH = 500;
+
+    // синусоида с шумом и несколькими выбросами
+    private static ChartInputData makeInputData(int pointsCount) {
+        final ChartInputData inputData = new ChartInputData(1, pointsCount, ChartInputData.LineType.LINE);
+
+        final Random random = new Random(1);
+        for (int i = 0; i < pointsCount; i++) {
+            inputData.XValues[i] = 1523059200000L + i * 60000L;
+            inputData.LinesValues[0][i] = (int) (10000 * Math.sin(i * 8 * Math.PI / pointsCount)) + random.nextInt(200);
+        }
+        inputData.LinesValues[0][pointsCount / 3] = 30000;
+        inputData.LinesValues[0][pointsCount / 2] = -30000;
+
+        return inputData;
+    }
+
+    // Визуальная ошибка: средняя по столбцам пикселей разность огибающих (мин/макс отрисованной в столбце ломаной)
+    // исходной и прореженной линии, отнесённая к размаху значений.
+    private static double calcVisualError(ChartInputData inputData, int[] indexes, int count, int width) {
+        final int n = inputData.XValues.length;
+        final int[] allIndexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            allIndexes[i] = i;
+        }
+
+        final double[][] orig = calcEnvelope(inputData, allIndexes, n, width);
+        final double[][] sampled = calcEnvelope(inputData, indexes, count, width);
+
+        double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+        for (int px = 0; px < width; px++) {
+            min = Math.min(min, orig[0][px]);
+            max = Math.max(max, orig[1][px]);
+        }
+
+        double error = 0;
+        for (int px = 0; px < width; px++) {
+            error += (Math.abs(orig[0][px] - sampled[0][px]) + Math.abs(orig[1][px] - sampled[1][px])) / 2;
+        }
+
+        return error / width / (max - min);
+    }
+
+    // мин/макс ломаной по точкам indexes в каждом из width столбцов
+    private static double[][] calcEnvelope(ChartInputData inputData, int[] indexes, int count, int width) {
+        final long[] x = inputData.XValues;
+        final int[] y = inputData.LinesValues[0];
+        final long x0 = x[indexes[0]];
+        final double columnWidth = (double) (x[indexes[count - 1]] - x0) / width;
+
+        final double[][] envelope = new double[2][width];
+        for (int px = 0; px < width; px++) {
+            envelope[0][px] = Double.MAX_VALUE;
+            envelope[1][px] = -Double.MAX_VALUE;
+        }
+
+        // отрезок покрывает столбцы от начала до конца, на границах столбцов значения интерполируются
+        for (int k = 0; k < count - 1; k++) {
+            final double xa = x[indexes[k]] - x0, xb = x[indexes[k + 1]] - x0;
+            final double ya = y[indexes[k]], yb = y[indexes[k + 1]];
+
+            final int pxa = Math.min((int) (xa / columnWidth), width - 1);
+            final int pxb = Math.min((int) (xb / columnWidth), width - 1);
+            for (int px = pxa; px <= pxb; px++) {
+                final double cl = Math.max(xa, px * columnWidth);
+                final double cr = Math.min(xb, (px + 1) * columnWidth);
+                final double yl = ya + (yb - ya) * (cl - xa) / (xb - xa);
+                final double yr = ya + (yb - ya) * (cr - xa) / (xb - xa);
+
+                envelope[0][px] = Math.min(envelope[0][px], Math.min(yl, yr));
+                envelope[1][px] = Math.max(envelope[1][px], Math.max(yl, yr));
+            }
+        }
+
+        return envelope;
+    }
+
+    @Test
+    public void testSample() {
+        final ChartInputData inputData = makeInputData(100000);
+        final int[] indexes = new int[inputData.XValues.length];
+
+        final LttbSampler sampler = new LttbSampler();
+        final int count = sampler.sample(inputData, 0, 0, inputData.XValues.length - 1, WIDTH, indexes);
+
+        // ~2 точки на пиксель
+        assertEquals(2 * WIDTH, count);
+        assertEquals(0, indexes[0]);
+        assertEquals(inputData.XValues.length - 1, indexes[count - 1]);
+        for (int k = 1; k < count; k++) {
+            assertTrue(indexes[k - 1] < indexes[k]);
+        }
+
+        // выбросы сохраняются
+        boolean hasMax = false, hasMin = false;
+        for (int k = 0; k < count; k++) {
+            hasMax |= inputData.LinesValues[0][indexes[k]] == 30000;
+            hasMin |= inputData.LinesValues[0][indexes[k]] == -30000;
+        }
+        assertTrue(hasMax);
+        assertTrue(hasMin);
+
+        // форма сохраняется
+        final double error = calcVisualError(inputData, indexes, count, WIDTH);
+        System.out.printf("LTTB visual error %.5f%n", error);
+        assertTrue(error < 0.01);
+
+        // и лучше, чем при равномерном прореживании до того же кол-ва точек
+        final int[] uniformIndexes = new int[count];
+        for (int k = 0; k < count; k++) {
+            uniformIndexes[k] = (int) ((long) k * (inputData.XValues.length - 1) / (count - 1));
+        }
+        assertTrue(error <= calcVisualError(inputData, uniformIndexes, count, WIDTH));
+    }
+
+    @Test
+    public void testSample_noSampling() {
+        final ChartInputData inputData = makeInputData(1000);
+        final int[] indexes = new int[inputData.XValues.length];
+
+        final LttbSampler sampler = new LttbSampler();
+        assertEquals(LineSampler.NO_SAMPLING, sampler.sample(inputData, 0, 0, 999, WIDTH, indexes));
+        assertEquals(LineSampler.NO_SAMPLING, sampler.sample(inputData, 0, 100, 200, 1000, indexes));
+        assertEquals(LineSampler.NO_SAMPLING, sampler.sample(inputData, 0, 0, 999, 0, indexes));
+
+        // поддиапазон
+        final int count = sampler.sample(inputData, 0, 100, 899, 100, indexes);
+        assertEquals(200, count);
+        assertEquals(100, indexes[0]);
+        assertEquals(899, indexes[count - 1]);
+    }
+}
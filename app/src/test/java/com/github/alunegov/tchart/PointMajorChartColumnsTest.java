@@ -0,0 +1,73 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// Проверка значений по точкам и накопительных сумм BAR/AREA (сравнение по времени с раскладкой по линиям - в
+// benchmarks, StackedLayoutBenchmark)
+public class PointMajorChartColumnsTest {
+    @Test
+    public void testOf() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 5, 300));
+        final ChartColumns columns = data.toPointMajor().getColumns();
+
+        assertEquals(300, columns.getPointsCount());
+        assertEquals(5, columns.getLinesCount());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(data.XValues[i], columns.getX(i));
+            for (int j = 0; j < 5; j++) {
+                assertEquals(data.LinesValues[j][i], columns.getY(j, i));
+            }
+        }
+    }
+
+    // суммы совпадают с накоплением по линиям в точности
+    @Test
+    public void testStackLines() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 6, 500));
+        final PointMajorChartColumns columns = PointMajorChartColumns.of(data.getColumns());
+
+        final float[] linesK = new float[] {1f, 0f, 77 / 255f, 1f, 0f, 200 / 255f};
+        final float[][] stacked = new float[6][500];
+        columns.stackLines(100, 399, linesK, stacked);
+
+        final float[] expected = new float[500];
+        for (int j = 0; j < 6; j++) {
+            if (linesK[j] == 0) {
+                continue;
+            }
+            for (int i = 100; i <= 399; i++) {
+                expected[i] += data.LinesValues[j][i] * linesK[j];
+                assertEquals(expected[i], stacked[j][i], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testStackedSumIndex() {
+        final Random random = new Random(3);
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.BAR, 4, 1000));
+        final ChartInputData pointMajor = data.toPointMajor();
+
+        final int[] state = new int[] {255, 10, 0, 255};
+        final StackedSumIndex expected = new StackedSumIndex(data, state);
+        final StackedSumIndex index = new StackedSumIndex(pointMajor, state);
+
+        for (int k = 0; k < 20; k++) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(expected.getSum(i), index.getSum(i));
+            }
+
+            state[random.nextInt(4)] = random.nextInt(256);
+            expected.update(state);
+            index.update(state);
+        }
+    }
+
+}
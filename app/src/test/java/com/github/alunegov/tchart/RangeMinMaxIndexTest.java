@@ -0,0 +1,82 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeMinMaxIndexTest {
+    @Test
+    public void testFind() {
+        RangeMinMaxIndex index = new RangeMinMaxIndex(new int[] {3, -5, 7, 5, 0});
+
+        int[] minMax = new int[] {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        index.find(0, 4, minMax);
+        assertEquals(-5, minMax[0]);
+        assertEquals(7, minMax[1]);
+
+        minMax = new int[] {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        index.find(3, 3, minMax);
+        assertEquals(5, minMax[0]);
+        assertEquals(5, minMax[1]);
+
+        // объединение с уже найденными значениями
+        minMax = new int[] {-10, 1};
+        index.find(2, 4, minMax);
+        assertEquals(-10, minMax[0]);
+        assertEquals(7, minMax[1]);
+    }
+
+    @Test
+    public void testFindRandom() {
+        final Random random = new Random(42);
+
+        for (int size = 1; size <= 70; size++) {
+            final int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt(2000) - 1000;
+            }
+
+            final RangeMinMaxIndex index = new RangeMinMaxIndex(values);
+
+            for (int l = 0; l < size; l++) {
+                for (int r = l; r < size; r++) {
+                    assertFindEquals(values, index, l, r);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUpdate() {
+        final int[] values = new int[] {1, 2, 3, 4, 5, 6, 7};
+        final RangeMinMaxIndex index = new RangeMinMaxIndex(values);
+
+        values[3] = 100;
+        index.update(3, 100);
+        values[6] = -100;
+        index.update(6, -100);
+
+        for (int l = 0; l < values.length; l++) {
+            for (int r = l; r < values.length; r++) {
+                assertFindEquals(values, index, l, r);
+            }
+        }
+    }
+
+    private static void assertFindEquals(int[] values, RangeMinMaxIndex index, int l, int r) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = l; i <= r; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        final int[] minMax = new int[] {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        index.find(l, r, minMax);
+
+        assertEquals(min, minMax[0]);
+        assertEquals(max, minMax[1]);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.alunegov.tchart;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangePercentileIndexTest {
+    @Test
+    public void testFindKth() {
+        final Random random = new Random(1);
+        // мало различных значений (повторы) и много различных, в т.ч. отрицательные
+        for (int bound : new int[] {1, 5, Integer.MAX_VALUE}) {
+            final ChartInputData data = ChartDataGenerator.generate(
+                    new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 700));
+            for (int i = 0; i < 700; i++) {
+                data.LinesValues[0][i] = data.LinesValues[0][i] % bound - bound / 2;
+            }
+            final RangePercentileIndex index = new RangePercentileIndex(data.getColumns(), 0);
+
+            for (int n = 0; n < 500; n++) {
+                final int l = random.nextInt(700);
+                final int r = l + random.nextInt(700 - l);
+                final int[] sorted = Arrays.copyOfRange(data.LinesValues[0], l, r + 1);
+                Arrays.sort(sorted);
+
+                final int k = random.nextInt(sorted.length);
+                assertEquals(sorted[k], index.findKth(l, r, k));
+
+                final int value = sorted[random.nextInt(sorted.length)] + random.nextInt(3) - 1;
+                int expected = 0;
+                for (int v : sorted) {
+                    if (v <= value) {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, index.countLessOrEqual(l, r, value));
+            }
+
+            assertEquals(0, index.countLessOrEqual(0, 699, Integer.MIN_VALUE));
+            assertEquals(700, index.countLessOrEqual(0, 699, Integer.MAX_VALUE));
+        }
+    }
+
+    // процентили по нескольким видимым линиям - как по общей отсортированной выборке
+    @Test
+    public void testFindYPercentiles() {
+        final Random random = new Random(2);
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 400));
+        // выброс
+        data.LinesValues[1][200] = 1000000;
+        final ChartInputDataStats stats = new ChartInputDataStats(data);
+
+        final int[] state = new int[] {255, 255, 0};
+        final int[] minMax = new int[2];
+        for (int n = 0; n < 200; n++) {
+            final int l = random.nextInt(400);
+            final int r = l + random.nextInt(400 - l);
+            state[0] = (n % 3 == 0) ? 0 : 255;
+
+            final int[] values = new int[(r - l + 1) * 2];
+            int count = 0;
+            for (int j = 0; j < 2; j++) {
+                if (state[j] == 0) {
+                    continue;
+                }
+                for (int i = l; i <= r; i++) {
+                    values[count++] = data.LinesValues[j][i];
+                }
+            }
+            Arrays.sort(values, 0, count);
+
+            stats.findYPercentiles(l, r, false, state, 0.01f, 0.99f, minMax);
+            assertEquals(values[(int) Math.floor(0.01f * (count - 1))], minMax[0]);
+            assertEquals(values[(int) Math.ceil(0.99f * (count - 1))], minMax[1]);
+
+            // 0 и 1 - мин/макс
+            stats.findYPercentiles(l, r, false, state, 0, 1, minMax);
+            assertEquals(values[0], minMax[0]);
+            assertEquals(values[count - 1], minMax[1]);
+        }
+
+        stats.findYPercentiles(0, 399, false, state, 0.01f, 0.99f, minMax);
+        assertEquals(true, minMax[1] < 1000000);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeSumIndexTest {
+    @Test
+    public void testSum() {
+        final Random random = new Random(1);
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 500));
+        // большие значения - сумма не укладывается в int
+        for (int i = 0; i < 500; i++) {
+            data.LinesValues[2][i] = Integer.MAX_VALUE - random.nextInt(10);
+        }
+        final RangeSumIndex index = new RangeSumIndex(data.getColumns());
+
+        for (int n = 0; n < 1000; n++) {
+            final int l = random.nextInt(500);
+            final int r = l + random.nextInt(500 - l);
+            final int j = random.nextInt(3);
+
+            final long expected = sum(data.getColumns(), j, l, r);
+            assertEquals(expected, index.getSum(j, l, r));
+            assertEquals((double) expected / (r - l + 1), index.getAverage(j, l, r), 1e-9);
+        }
+    }
+
+    @Test
+    public void testCompact() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 300)).toCompact();
+        final RangeSumIndex index = new RangeSumIndex(data.getColumns());
+
+        assertEquals(sum(data.getColumns(), 1, 0, 299), index.getSum(1, 0, 299));
+        assertEquals(sum(data.getColumns(), 0, 17, 17), index.getSum(0, 17, 17));
+    }
+
+    // дописываемые данные: в т.ч. больше ёмкости буфера между запросами
+    @Test
+    public void testRing() {
+        final Random random = new Random(3);
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 10)).toLive(40);
+        final RangeSumIndex index = new RangeSumIndex(live.getColumns());
+
+        long x = live.getColumns().getX(live.getColumns().getPointsCount() - 1);
+        for (int k = 0; k < 50; k++) {
+            final int appendCount = (k % 7 == 0) ? 100 : random.nextInt(5);
+            for (int n = 0; n < appendCount; n++) {
+                x += 1000;
+                live.appendPoint(x, new int[] {random.nextInt(1000), random.nextInt(1000) - 500});
+            }
+
+            final ChartColumns columns = live.getColumns();
+            for (int n = 0; n < 20; n++) {
+                final int l = random.nextInt(columns.getPointsCount());
+                final int r = l + random.nextInt(columns.getPointsCount() - l);
+                final int j = random.nextInt(2);
+                assertEquals(sum(columns, j, l, r), index.getSum(j, l, r));
+            }
+        }
+    }
+
+    @Test
+    public void testVisibleLinesSum() {
+        final Random random = new Random(4);
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 200));
+        data.linesType = ChartInputData.LineType.BAR;
+        final ChartInputDataStats stats = new ChartInputDataStats(data);
+
+        final int[] state = new int[] {255, 0, 100};
+        for (int n = 0; n < 100; n++) {
+            final int l = random.nextInt(200);
+            final int r = l + random.nextInt(200 - l);
+
+            long expected = 0;
+            for (int j = 0; j < 3; j++) {
+                expected += sum(data.getColumns(), j, l, r) * state[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+            }
+            assertEquals(expected, stats.getVisibleLinesSum(l, r, state));
+            assertEquals(sum(data.getColumns(), 2, l, r), stats.getLineSum(2, l, r));
+            assertEquals(r - l + 1, ChartInputDataStats.getPointsCount(l, r));
+        }
+    }
+
+    private static long sum(ChartColumns columns, int lineIndex, int l, int r) {
+        long res = 0;
+        for (int i = l; i <= r; i++) {
+            res += columns.getY(lineIndex, i);
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RingChartColumnsTest {
+    private static final long START_X = 1553040000000L;
+    private static final long STEP_X = 1000L;
+
+    @Test
+    public void testAppend() {
+        final RingChartColumns ring = new RingChartColumns(2, 3);
+        assertEquals(0, ring.getPointsCount());
+
+        for (int i = 0; i < 5; i++) {
+            ring.append(START_X + i * STEP_X, new int[] {i, -i});
+        }
+
+        // хранятся последние 3 точки
+        assertEquals(3, ring.getPointsCount());
+        assertEquals(5, ring.getAppendedCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(START_X + (i + 2) * STEP_X, ring.getX(i));
+            assertEquals(i + 2, ring.getY(0, i));
+            assertEquals(-(i + 2), ring.getY(1, i));
+        }
+        assertEquals(2, ring.getPhysicalIndex(0));
+        assertEquals(0, ring.getPhysicalIndex(1));
+    }
+
+    @Test
+    public void testCopyOf() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 10));
+
+        final RingChartColumns ring = RingChartColumns.copyOf(data.getColumns(), 4);
+        assertEquals(4, ring.getPointsCount());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(data.XValues[6 + i], ring.getX(i));
+            assertEquals(data.LinesValues[1][6 + i], ring.getY(1, i));
+        }
+    }
+
+    @Test
+    public void testIsLive() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 3));
+        assertFalse(data.isLive());
+        assertTrue(data.toLive(5).isLive());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendPoint_notLive() {
+        ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 3)).appendPoint(START_X, new int[] {1});
+    }
+
+    // статистика дописываемых данных совпадает со статистикой, построенной заново по тем же точкам
+    @Test
+    public void testStats_LINE() {
+        assertStatsEqual(ChartInputData.LineType.LINE);
+    }
+
+    @Test
+    public void testStats_BAR() {
+        assertStatsEqual(ChartInputData.LineType.BAR);
+    }
+
+    @Test
+    public void testStackedSum_AREA() {
+        final Random random = new Random(2);
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 20)).toLive(50);
+        live.linesType = ChartInputData.LineType.AREA;
+
+        final int[] state = new int[] {255, 100, 255};
+        final StackedSumIndex index = new StackedSumIndex(live, state);
+
+        for (int k = 0; k < 200; k++) {
+            appendRandomPoint(live, random);
+            if (k % 17 == 0) {
+                state[1] = random.nextInt(256);
+                index.update(state);
+            }
+
+            final StackedSumIndex expected = new StackedSumIndex(toHeap(live), state);
+            for (int i = 0; i < live.getColumns().getPointsCount(); i++) {
+                assertEquals(expected.getSum(i), index.getSum(i));
+            }
+        }
+    }
+
+    @Test
+    public void testXIndexLocator() {
+        final Random random = new Random(3);
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 10)).toLive(30);
+        final XIndexLocator locator = new XIndexLocator(live.getColumns());
+
+        for (int k = 0; k < 100; k++) {
+            appendRandomPoint(live, random);
+
+            final XIndexLocator expected = new XIndexLocator(toHeap(live).XValues);
+            final ChartColumns columns = live.getColumns();
+            for (int n = 0; n < 20; n++) {
+                final double x = columns.getX(0) - STEP_X + random.nextDouble() * (columns.getX(columns.getPointsCount() - 1) - columns.getX(0) + 2 * STEP_X);
+                final int left = expected.findLeftIndex(x);
+                assertEquals(left, locator.findLeftIndex(x));
+                assertEquals(expected.findRightIndex(x, left), locator.findRightIndex(x, left));
+            }
+        }
+    }
+
+    // setXRange учитывает точки, добавленные до него: onPointsAppended после него ничего не перестраивает, после
+    // следующих точек - перестраивает (видимая часть сдвинулась вытеснением)
+    @Test
+    public void testGeometry_setXRangeAppliesAppendedPoints() {
+        final Random random = new Random(5);
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 2, 10)).toLive(10);
+        final ChartGeometry geometry = new ChartGeometry(live, new ChartInputDataStats(live));
+        geometry.setArea(0, 0, 1000, 500);
+        final ChartColumns columns = live.getColumns();
+        geometry.setXRange(columns.getX(0), columns.getX(9), true);
+
+        for (int k = 0; k < 5; k++) {
+            appendRandomPoint(live, random);
+        }
+        geometry.setXRange(columns.getX(0), columns.getX(9), true);
+        assertFalse(geometry.onPointsAppended());
+
+        appendRandomPoint(live, random);
+        assertTrue(geometry.onPointsAppended());
+    }
+
+    // как в предпросмотре: прореживание, диапазон X с запасом справа, начало диапазона уходит левее данных при
+    // вытеснении - к линиям дописываются только отрезки новых точек, продолжающие прежние
+    @Test
+    public void testGeometry_sampledTail() {
+        final ChartInputData data = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 1, 200));
+        // мин/макс не вытесняются - диапазон Y не меняется
+        data.LinesValues[0][100] = -1;
+        data.LinesValues[0][101] = 1000000;
+        final ChartInputData live = data.toLive(200);
+        final ChartGeometry geometry = new ChartGeometry(live, new ChartInputDataStats(live));
+        geometry.setLineSampler(new LttbSampler());
+        geometry.setArea(0, 0, 50, 100);
+        final ChartColumns columns = live.getColumns();
+        geometry.setXRange(columns.getX(0), columns.getX(199) + 20 * ChartDataGenerator.DEFAULT_X_STEP, true);
+        assertFalse(geometry.isLinesTailAppended());
+
+        for (int k = 0; k < 20; k++) {
+            final int prevCount = geometry.getLinesLinesCount()[0];
+
+            live.appendPoint(columns.getX(columns.getPointsCount() - 1) + ChartDataGenerator.DEFAULT_X_STEP,
+                    new int[] {500});
+            assertTrue(geometry.onPointsAppended());
+            assertTrue(geometry.isLinesTailAppended());
+
+            final float[] lines = geometry.getLinesLines()[0];
+            assertEquals(prevCount + 4, geometry.getLinesLinesCount()[0]);
+            assertEquals(lines[prevCount - 2], lines[prevCount], 1e-3);
+            assertEquals(lines[prevCount - 1], lines[prevCount + 1], 1e-3);
+        }
+    }
+
+    private static void assertStatsEqual(ChartInputData.LineType lineType) {
+        final Random random = new Random(4);
+        final ChartInputData live = ChartDataGenerator.generate(
+                new ChartDataGenerator.Params(ChartInputData.LineType.LINE, 3, 20)).toLive(64);
+        live.linesType = lineType;
+
+        final ChartInputDataStats stats = new ChartInputDataStats(live);
+        final int[] state = stats.getLinesVisibilityState();
+        final int[] minMax = new int[2];
+        final int[] expectedMinMax = new int[2];
+
+        for (int k = 0; k < 300; k++) {
+            appendRandomPoint(live, random);
+            if (k % 23 == 0) {
+                stats.updateLineVisibility(random.nextInt(3), false, random.nextInt(256));
+            }
+
+            final ChartInputDataStats expected = new ChartInputDataStats(toHeap(live));
+            expected.setLinesVisibilityState(state);
+
+            final int pointsCount = live.getColumns().getPointsCount();
+            for (int n = 0; n < 10; n++) {
+                final int l = random.nextInt(pointsCount);
+                final int r = l + random.nextInt(pointsCount - l);
+
+                stats.findYMinMax(l, r, false, state, minMax);
+                expected.findYMinMax(l, r, false, state, expectedMinMax);
+                assertEquals(expectedMinMax[0], minMax[0]);
+                assertEquals(expectedMinMax[1], minMax[1]);
+            }
+        }
+    }
+
+    // данные графика в куче с теми же точками
+    private static ChartInputData toHeap(ChartInputData data) {
+        final ChartColumns columns = data.getColumns();
+        final ChartInputData res = new ChartInputData(columns.getLinesCount(), columns.getPointsCount(), data.linesType);
+        for (int i = 0; i < columns.getPointsCount(); i++) {
+            res.XValues[i] = columns.getX(i);
+            for (int j = 0; j < columns.getLinesCount(); j++) {
+                res.LinesValues[j][i] = columns.getY(j, i);
+            }
+        }
+        return res;
+    }
+
+    private static void appendRandomPoint(ChartInputData data, Random random) {
+        final ChartColumns columns = data.getColumns();
+        final int[] values = new int[columns.getLinesCount()];
+        for (int j = 0; j < values.length; j++) {
+            values[j] = random.nextInt(1000);
+        }
+        // X с неравномерным шагом
+        data.appendPoint(columns.getX(columns.getPointsCount() - 1) + 1 + random.nextInt((int) STEP_X), values);
+    }
+}
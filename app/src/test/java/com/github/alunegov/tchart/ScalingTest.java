@@ -0,0 +1,245 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.util.BitSet;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// Масштабирование по размеру данных (ChartDataGenerator): время загрузки, построения статистики и кадра геометрии растёт
+// не быстрее n log n (с запасом на шум замера), выделение памяти на кадр прокрутки не превышает бюджета и не зависит от
+// размера данных. 10M точек - с -Dtchart.benchmark.full=true.
+public class ScalingTest {
+    private static final int[] POINTS_COUNTS = new int[] {10000, 100000, 1000000};
+    private static final int FULL_POINTS_COUNT = 10000000;
+    // загрузка - только до этого размера (overview.json на 10M точек не помещается в кучу тестов)
+    private static final int LOAD_MAX_POINTS_COUNT = 1000000;
+    private static final int LINES_COUNT = 2;
+
+    // допустимое превышение роста времени над n log n между соседними размерами (шум, кэши, JIT)
+    private static final double SLACK = 3;
+    // время меньшего размера ниже этого считается равным ему (разрешение таймера и накладные расходы замера)
+    private static final long MIN_TIME_NS = 200 * 1000;
+    // кол-во замеров после прогрева, берётся минимальное время
+    private static final int RUNS = 5;
+
+    private static final float WIDTH = 1080;
+    private static final float HEIGHT = 800;
+    // кол-во кадров прокрутки при замере выделения памяти
+    private static final int PAN_FRAMES_COUNT = 256;
+    // бюджет выделения памяти на кадр прокрутки (метки осей, их тексты), байт
+    private static final long FRAME_ALLOCATION_BUDGET = 16 * 1024;
+
+    private static final ChartInputDataMapper.ColorParser COLOR_PARSER = new ChartInputDataMapper.ColorParser() {
+        @Override
+        public int parseColor(String color) {
+            return 0;
+        }
+    };
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        final int[] pointsCounts = getPointsCounts(LOAD_MAX_POINTS_COUNT);
+        final long[] times = new long[pointsCounts.length];
+
+        for (int k = 0; k < pointsCounts.length; k++) {
+            final ChartDataGenerator.Params params = new ChartDataGenerator.Params(ChartInputData.LineType.LINE,
+                    LINES_COUNT, pointsCounts[k]);
+            final byte[] json = ChartDataGenerator.toOverviewJson(ChartDataGenerator.generate(params)).getBytes("UTF8");
+
+            times[k] = measure(new Stage() {
+                @Override
+                public void run() throws Exception {
+                    ChartInputDataMapper.loadChart(new ByteArrayInputStream(json), COLOR_PARSER);
+                }
+            });
+        }
+
+        assertScaling("load LINE", pointsCounts, times);
+    }
+
+    // построение статистики (индексы мин/макс, суммы, пирамида прореживания) по уже загруженным значениям
+    @Test
+    public void testStats() throws Exception {
+        final int[] pointsCounts = getPointsCounts(Integer.MAX_VALUE);
+
+        for (ChartInputData.LineType linesType : ChartInputData.LineType.values()) {
+            final long[] times = new long[pointsCounts.length];
+
+            for (int k = 0; k < pointsCounts.length; k++) {
+                final ChartInputData data = generate(linesType, pointsCounts[k]);
+
+                times[k] = measure(new Stage() {
+                    @Override
+                    public void run() {
+                        // новые данные на тех же массивах, чтобы пирамида прореживания строилась каждый раз
+                        new ChartInputDataStats(new ChartInputData(data.XValues, data.LinesValues, data.linesType,
+                                (BitSet) data.flags.clone()));
+                    }
+                });
+            }
+
+            assertScaling("stats " + linesType, pointsCounts, times);
+        }
+    }
+
+    // кадр по всем данным: диапазон Y, линии и метки осей
+    @Test
+    public void testGeometry() throws Exception {
+        final int[] pointsCounts = getPointsCounts(Integer.MAX_VALUE);
+
+        for (ChartInputData.LineType linesType : ChartInputData.LineType.values()) {
+            final long[] times = new long[pointsCounts.length];
+
+            for (int k = 0; k < pointsCounts.length; k++) {
+                final ChartInputData data = generate(linesType, pointsCounts[k]);
+                final ChartGeometry geometry = makeGeometry(data);
+                final double xl = data.XValues[0];
+                final double xr = data.XValues[data.XValues.length - 1];
+
+                times[k] = measure(new Stage() {
+                    private int frame = 0;
+
+                    @Override
+                    public void run() {
+                        // диапазон чуть меняется, чтобы не было повторного построения того же кадра
+                        frame++;
+                        geometry.setXRange(xl + (frame & 1), xr, true);
+                    }
+                });
+            }
+
+            assertScaling("geometry " + linesType, pointsCounts, times);
+        }
+    }
+
+    // прокрутка окна в четверть данных: выделение памяти на кадр. Счётчик выделения потока -
+    // com.sun.management.ThreadMXBean (HotSpot), через отражение: java.lang.management нет в android.jar, без счётчика
+    // тест пропускается.
+    @Test
+    public void testPanAllocation() throws Exception {
+        Object allocBean = null;
+        Method getAllocatedBytes = null;
+        try {
+            allocBean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            final Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(allocBean)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(allocBean)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(allocBean)) {
+                getAllocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (ClassNotFoundException e) {
+            // счётчика нет
+        }
+        assumeTrue(getAllocatedBytes != null);
+
+        final long threadId = Thread.currentThread().getId();
+        final int[] pointsCounts = getPointsCounts(Integer.MAX_VALUE);
+
+        for (ChartInputData.LineType linesType : ChartInputData.LineType.values()) {
+            for (int pointsCount : pointsCounts) {
+                final ChartInputData data = generate(linesType, pointsCount);
+                final ChartGeometry geometry = makeGeometry(data);
+                final double xl = data.XValues[0];
+                final double xr = data.XValues[pointsCount - 1];
+                final double window = (xr - xl) / 4;
+
+                // первый проход - прогрев (ленивые индексы, буферы по ширине окна)
+                long perFrame = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    final long start = (Long) getAllocatedBytes.invoke(allocBean, threadId);
+                    for (int f = 0; f < PAN_FRAMES_COUNT; f++) {
+                        final double l = xl + (xr - xl - window) * f / PAN_FRAMES_COUNT;
+                        geometry.setXRange(l, l + window, true);
+                    }
+                    perFrame = ((Long) getAllocatedBytes.invoke(allocBean, threadId) - start) / PAN_FRAMES_COUNT;
+                }
+
+                System.out.printf("pan allocation %s %d points: %d bytes/frame%n", linesType, pointsCount, perFrame);
+                assertTrue(linesType + " " + pointsCount + ": " + perFrame + " bytes/frame",
+                        perFrame <= FRAME_ALLOCATION_BUDGET);
+            }
+        }
+    }
+
+    // время n2 не больше (n2 log n2) / (n1 log n1) * SLACK времени n1 для соседних размеров
+    private static void assertScaling(@NotNull String name, @NotNull int[] pointsCounts, @NotNull long[] times) {
+        for (int k = 0; k < pointsCounts.length; k++) {
+            System.out.printf("%s %d x %d points: %d us%n", name, LINES_COUNT, pointsCounts[k], times[k] / 1000);
+        }
+
+        for (int k = 1; k < pointsCounts.length; k++) {
+            final double n1 = pointsCounts[k - 1];
+            final double n2 = pointsCounts[k];
+            final double growth = (n2 * Math.log(n2)) / (n1 * Math.log(n1));
+            final double ratio = (double) times[k] / Math.max(times[k - 1], MIN_TIME_NS);
+
+            assertTrue(String.format("%s: %d -> %d points, time x%.1f (limit x%.1f)", name, pointsCounts[k - 1],
+                    pointsCounts[k], ratio, growth * SLACK), ratio <= growth * SLACK);
+        }
+    }
+
+    // минимальное время по RUNS замерам после прогрева, нс
+    private static long measure(@NotNull Stage stage) throws Exception {
+        stage.run();
+
+        long res = Long.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            final long start = System.nanoTime();
+            stage.run();
+            res = Math.min(res, System.nanoTime() - start);
+        }
+        return res;
+    }
+
+    private static @NotNull int[] getPointsCounts(int maxPointsCount) {
+        final boolean full = Boolean.getBoolean("tchart.benchmark.full");
+
+        int count = 0;
+        final int[] res = new int[POINTS_COUNTS.length + 1];
+        for (int pointsCount : POINTS_COUNTS) {
+            if (pointsCount <= maxPointsCount) {
+                res[count++] = pointsCount;
+            }
+        }
+        if (full && FULL_POINTS_COUNT <= maxPointsCount) {
+            res[count++] = FULL_POINTS_COUNT;
+        }
+
+        final int[] trimmed = new int[count];
+        System.arraycopy(res, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static @NotNull ChartInputData generate(@NotNull ChartInputData.LineType linesType, int pointsCount) {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(linesType, LINES_COUNT, pointsCount);
+        params.irregularity = 0.3;
+        params.spikesProbability = 0.001;
+        params.percentage = (linesType == ChartInputData.LineType.AREA);
+        return ChartDataGenerator.generate(params);
+    }
+
+    private static @NotNull ChartGeometry makeGeometry(@NotNull ChartInputData data) {
+        final ChartGeometry.AxisTextConverter converter = new ChartGeometry.AxisTextConverter() {
+            @Override
+            public @NotNull String toText(long value) {
+                return Long.toString(value);
+            }
+        };
+
+        final ChartGeometry geometry = new ChartGeometry(data, new ChartInputDataStats(data));
+        geometry.enableMarksUpdating(6, converter, converter);
+        geometry.enableYRangeEnlarging();
+        geometry.setXRange(data.XValues[0], data.XValues[data.XValues.length - 1], false);
+        geometry.setArea(0, 0, WIDTH, HEIGHT);
+        return geometry;
+    }
+}
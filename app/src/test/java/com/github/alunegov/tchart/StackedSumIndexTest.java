@@ -0,0 +1,108 @@
+package com.github.alunegov.tchart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StackedSumIndexTest {
+    @Test
+    public void testUpdate() {
+        final ChartInputData data = new ChartInputData(3, 4, ChartInputData.LineType.BAR);
+        data.LinesValues[0] = new int[] {1, 2, 3, 4};
+        data.LinesValues[1] = new int[] {10, 20, 30, 40};
+        data.LinesValues[2] = new int[] {101, 201, 301, 401};
+
+        final StackedSumIndex index = new StackedSumIndex(data, new int[] {255, 255, 255});
+        assertArrayEquals(new long[] {112, 223, 334, 445}, index.getSum());
+
+        index.update(new int[] {255, 0, 255});
+        assertArrayEquals(new long[] {102, 203, 304, 405}, index.getSum());
+
+        // промежуточные состояния (анимация) и возврат к исходному
+        final int[] state = new int[] {255, 0, 255};
+        for (int s = 0; s <= 255; s += 15) {
+            state[1] = s;
+            index.update(state);
+            assertArrayEquals(fullSum(data, state), index.getSum());
+        }
+        index.update(new int[] {255, 255, 255});
+        assertArrayEquals(new long[] {112, 223, 334, 445}, index.getSum());
+    }
+
+    @Test
+    public void testFindMinMax() {
+        final ChartInputData data = new ChartInputData(2, 5, ChartInputData.LineType.BAR);
+        data.LinesValues[0] = new int[] {5, 1, 7, 3, 2};
+        data.LinesValues[1] = new int[] {1, 9, 1, 1, 1};
+
+        final StackedSumIndex index = new StackedSumIndex(data, new int[] {255, 255});
+
+        final int[] minMax = new int[2];
+
+        index.findMinMax(0, 4, new int[] {255, 255}, minMax);
+        assertEquals(3, minMax[0]);
+        assertEquals(10, minMax[1]);
+
+        index.findMinMax(0, 4, new int[] {255, 0}, minMax);
+        assertEquals(1, minMax[0]);
+        assertEquals(7, minMax[1]);
+
+        index.findMinMax(3, 4, new int[] {0, 255}, minMax);
+        assertEquals(1, minMax[0]);
+        assertEquals(1, minMax[1]);
+    }
+
+    // сумма больших значений не переполняется, мин/макс ограничиваются диапазоном int
+    @Test
+    public void testOverflow() {
+        final ChartInputData data = new ChartInputData(3, 3, ChartInputData.LineType.BAR);
+        data.LinesValues[0] = new int[] {Integer.MAX_VALUE, 1, 2};
+        data.LinesValues[1] = new int[] {Integer.MAX_VALUE, 3, 4};
+        data.LinesValues[2] = new int[] {5, 6, 7};
+
+        final StackedSumIndex index = new StackedSumIndex(data, new int[] {255, 255, 255});
+        assertArrayEquals(new long[] {2L * Integer.MAX_VALUE + 5, 10, 13}, index.getSum());
+
+        final int[] minMax = new int[2];
+        index.findMinMax(0, 2, new int[] {255, 255, 255}, minMax);
+        assertEquals(10, minMax[0]);
+        assertEquals(Integer.MAX_VALUE, minMax[1]);
+
+        index.findMinMax(0, 2, new int[] {255, 0, 255}, minMax);
+        assertEquals(7, minMax[0]);
+        assertEquals(Integer.MAX_VALUE, minMax[1]);
+    }
+
+    // сумма по компактным столбцам (линии разных типов) совпадает с суммой по массивам
+    @Test
+    public void testCompact() {
+        final ChartInputData data = new ChartInputData(3, 4, ChartInputData.LineType.BAR);
+        data.LinesValues[0] = new int[] {1, -2, 3, 4};
+        data.LinesValues[1] = new int[] {1000, 2000, -3000, 4000};
+        data.LinesValues[2] = new int[] {100000, 200000, 300000, -400000};
+
+        final ChartInputData compact = data.toCompact();
+
+        final StackedSumIndex index = new StackedSumIndex(compact, new int[] {255, 255, 255});
+        assertArrayEquals(fullSum(data, new int[] {255, 255, 255}), index.getSum());
+
+        final int[] state = new int[] {255, 255, 0};
+        for (int s = 0; s <= 255; s += 15) {
+            state[0] = s;
+            index.update(state);
+            assertArrayEquals(fullSum(data, state), index.getSum());
+        }
+    }
+
+    private static long[] fullSum(ChartInputData data, int[] state) {
+        final long[] sum = new long[data.XValues.length];
+        for (int j = 0; j < data.LinesValues.length; j++) {
+            final float lineK = (float) state[j] / ChartInputDataStats.VISIBILITY_STATE_ON;
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += state[j] == ChartInputDataStats.VISIBILITY_STATE_ON ? data.LinesValues[j][i] : (int) (data.LinesValues[j][i] * lineK);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.alunegov.tchart;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class XIndexLocatorTest {
+    private static final long MSEC_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final long START_X = 1542412800000L;
+
+    @Test
+    public void testBoundaries() {
+        final long[] xValues = makeXValues(5);
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        // до первой точки
+        assertEquals(0, locator.findLeftIndex(xValues[0] - MSEC_PER_DAY));
+        assertEquals(0, locator.findRightIndex(xValues[0] - MSEC_PER_DAY, 0));
+        // первая точка
+        assertEquals(0, locator.findLeftIndex(xValues[0]));
+        assertEquals(0, locator.findRightIndex(xValues[0], 0));
+        // между точками
+        assertEquals(1, locator.findLeftIndex(xValues[1] + MSEC_PER_DAY / 2));
+        assertEquals(2, locator.findRightIndex(xValues[1] + MSEC_PER_DAY / 2, 0));
+        // совпадение с точкой
+        assertEquals(3, locator.findLeftIndex(xValues[3]));
+        assertEquals(3, locator.findRightIndex(xValues[3], 0));
+        assertEquals(3, locator.findRightIndex(xValues[3], 3));
+        // startingIndex правее искомой точки
+        assertEquals(4, locator.findRightIndex(xValues[1], 4));
+        // последняя точка
+        assertEquals(4, locator.findLeftIndex(xValues[4]));
+        assertEquals(4, locator.findRightIndex(xValues[4], 0));
+        // после последней точки
+        assertEquals(0, locator.findLeftIndex(xValues[4] + MSEC_PER_DAY));
+        assertEquals(4, locator.findRightIndex(xValues[4] + MSEC_PER_DAY, 0));
+    }
+
+    @Test
+    public void testSinglePoint() {
+        final long[] xValues = makeXValues(1);
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        assertEquals(0, locator.findLeftIndex(xValues[0] - 1000000.0));
+        assertEquals(0, locator.findLeftIndex(xValues[0]));
+        assertEquals(0, locator.findLeftIndex(xValues[0] + 1000000.0));
+        assertEquals(0, locator.findRightIndex(xValues[0] - 1000000.0, 0));
+        assertEquals(0, locator.findRightIndex(xValues[0] + 1000000.0, 0));
+    }
+
+    // случайные запросы - равенство с линейным поиском
+    @Test
+    public void testRandomQueries() {
+        final Random random = new Random(1);
+        final long[] xValues = makeXValues(300);
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        final double xMin = xValues[0] - 3 * MSEC_PER_DAY;
+        final double xSwing = xValues[xValues.length - 1] + 3 * MSEC_PER_DAY - xMin;
+
+        for (int k = 0; k < 10000; k++) {
+            final double x = xMin + random.nextDouble() * xSwing;
+            assertQueriesEqual(xValues, locator, x);
+        }
+    }
+
+    // последовательные запросы с малым шагом (перемещение зоны) - равенство с линейным поиском
+    @Test
+    public void testPanQueries() {
+        final long[] xValues = makeXValues(300);
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        for (double x = xValues[0] - 2 * MSEC_PER_DAY; x < xValues[xValues.length - 1] + 2 * MSEC_PER_DAY; x += MSEC_PER_DAY / 7.0) {
+            assertQueriesEqual(xValues, locator, x);
+        }
+        for (double x = xValues[xValues.length - 1] + 2 * MSEC_PER_DAY; x > xValues[0] - 2 * MSEC_PER_DAY; x -= MSEC_PER_DAY / 3.0) {
+            assertQueriesEqual(xValues, locator, x);
+        }
+        for (long xValue : xValues) {
+            assertQueriesEqual(xValues, locator, xValue);
+        }
+    }
+
+    // почасовые точки (детальные данные) различаются, несмотря на большие значения X
+    @Test
+    public void testHourlyPoints() {
+        final long msecPerHour = 60 * 60 * 1000L;
+        final long[] xValues = new long[168];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = START_X + i * msecPerHour;
+        }
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        for (int i = 0; i < xValues.length; i++) {
+            assertEquals(i, locator.findLeftIndex(xValues[i]));
+            assertEquals(i, locator.findRightIndex(xValues[i], 0));
+        }
+        for (int i = 0; i < xValues.length - 1; i++) {
+            assertEquals(i, locator.findLeftIndex(xValues[i] + 1));
+            assertEquals(i + 1, locator.findRightIndex(xValues[i] + 1, 0));
+        }
+    }
+
+    // равномерный X (арифметический поиск) - равенство с поиском по массиву
+    @Test
+    public void testUniformX() {
+        final Random random = new Random(2);
+        final long[] xValues = makeXValues(300);
+        final XIndexLocator arrayLocator = new XIndexLocator(xValues);
+        final XIndexLocator uniformLocator = new XIndexLocator(new UniformXChartColumns(START_X, MSEC_PER_DAY,
+                new int[][] {new int[xValues.length]}));
+
+        final double xMin = xValues[0] - 3 * MSEC_PER_DAY;
+        final double xSwing = xValues[xValues.length - 1] + 3 * MSEC_PER_DAY - xMin;
+
+        for (int k = 0; k < 10000; k++) {
+            final double x = xMin + random.nextDouble() * xSwing;
+            final int left = arrayLocator.findLeftIndex(x);
+            assertEquals(left, uniformLocator.findLeftIndex(x));
+            assertEquals(arrayLocator.findRightIndex(x, left), uniformLocator.findRightIndex(x, left));
+            assertEquals(arrayLocator.findRightIndex(x, 0), uniformLocator.findRightIndex(x, 0));
+        }
+        for (long xValue : xValues) {
+            for (int d = -1; d <= 1; d++) {
+                assertQueriesEqual(xValues, uniformLocator, xValue + d);
+            }
+        }
+    }
+
+    // неравномерный X (поиск половинным делением) - равенство с линейным поиском
+    @Test
+    public void testIrregularX() {
+        final Random random = new Random(3);
+        final long[] xValues = new long[300];
+        xValues[0] = START_X;
+        for (int i = 1; i < xValues.length; i++) {
+            xValues[i] = xValues[i - 1] + 1 + random.nextInt((int) MSEC_PER_DAY);
+        }
+        final XIndexLocator locator = new XIndexLocator(xValues);
+
+        final double xMin = xValues[0] - 3 * MSEC_PER_DAY;
+        final double xSwing = xValues[xValues.length - 1] + 3 * MSEC_PER_DAY - xMin;
+
+        for (int k = 0; k < 10000; k++) {
+            assertQueriesEqual(xValues, locator, xMin + random.nextDouble() * xSwing);
+        }
+        for (long xValue : xValues) {
+            assertQueriesEqual(xValues, locator, xValue);
+        }
+    }
+
+    private static void assertQueriesEqual(long[] xValues, XIndexLocator locator, double x) {
+        final int left = linearFindLeftIndex(xValues, x);
+        assertEquals(left, locator.findLeftIndex(x));
+        assertEquals(linearFindRightIndex(xValues, x, left), locator.findRightIndex(x, left));
+        assertEquals(linearFindRightIndex(xValues, x, 0), locator.findRightIndex(x, 0));
+    }
+
+    private static long[] makeXValues(int count) {
+        final long[] xValues = new long[count];
+        for (int i = 0; i < count; i++) {
+            xValues[i] = START_X + i * MSEC_PER_DAY;
+        }
+        return xValues;
+    }
+
+    // прежняя реализация ChartDrawData.findXLeftIndex (сравнение в double)
+    private static int linearFindLeftIndex(long[] xValues, double xValue) {
+        for (int i = 0; i < xValues.length; i++) {
+            if (xValues[i] == xValue) {
+                return i;
+            } else if (xValues[i] > xValue) {
+                return i > 0 ? i - 1 : i;
+            }
+        }
+        return 0;
+    }
+
+    // прежняя реализация ChartDrawData.findXRightIndex (сравнение в double)
+    private static int linearFindRightIndex(long[] xValues, double xValue, int startingXIndex) {
+        for (int i = startingXIndex; i < xValues.length; i++) {
+            if (xValues[i] >= xValue) {
+                return i;
+            }
+        }
+        return xValues.length - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.alunegov.tchart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class XTransformTest {
+    private static final long MSEC_PER_HOUR = 60 * 60 * 1000L;
+    // 2018-05-20 00:00 UTC
+    private static final long START_X = 1526774400000L;
+    private static final float AREA_LEFT = 16f;
+    private static final float AREA_WIDTH = 1000f;
+    private static final float EPS = 0.01f;
+
+    // пиксель точки через матрицу (как в ChartDrawData): локальное значение * масштаб + смещение
+    private static float toPixelViaMatrix(XTransform t, long x) {
+        return t.toLocal(x) * (float) t.getScale() + t.getMatrixTranslate();
+    }
+
+    // прежний расчёт: значения X во float
+    private static float toPixelFloat(float xLeftValue, float xRightValue, long x) {
+        final float scaleX = AREA_WIDTH / Math.abs(xRightValue - xLeftValue);
+        final float xToPixelHelper = AREA_LEFT - xLeftValue * scaleX;
+        return (float) x * scaleX + xToPixelHelper;
+    }
+
+    // на масштабе 6 часов на ширину соседние почасовые точки отстоят ровно на ширину/6
+    @Test
+    public void testHourZoom() {
+        final XTransform t = new XTransform();
+        t.setArea(AREA_LEFT, AREA_WIDTH);
+
+        final double xLeft = START_X + 37 * MSEC_PER_HOUR + 0.25 * MSEC_PER_HOUR;
+        final double xRight = xLeft + 6 * MSEC_PER_HOUR;
+        t.setRange(xLeft, xRight);
+
+        for (int h = 0; h <= 6; h++) {
+            final long x = START_X + (38 + h) * MSEC_PER_HOUR;
+            final float expected = AREA_LEFT + (0.75f + h) * AREA_WIDTH / 6;
+
+            assertEquals(expected, t.toPixel(x), EPS);
+            assertEquals(expected, toPixelViaMatrix(t, x), EPS);
+            assertEquals(x, t.toValue(t.toPixel(x)), 1.0);
+        }
+
+        // во float та же точка смещается на десятки пикселей
+        final long x = START_X + 38 * MSEC_PER_HOUR;
+        final float floatError = Math.abs(toPixelFloat((float) xLeft, (float) xRight, x) - t.toPixel(x));
+        assertTrue(floatError > 1);
+    }
+
+    // при перемещении зоны на 1 мин положение точек плавно меняется, без "прыжков"
+    @Test
+    public void testPanStability() {
+        final XTransform t = new XTransform();
+        t.setArea(AREA_LEFT, AREA_WIDTH);
+
+        final long x = START_X + 3 * MSEC_PER_HOUR;
+        final double step = 60 * 1000.0;
+        final float expectedDelta = (float) (step * AREA_WIDTH / (6 * MSEC_PER_HOUR));
+
+        float prevPixel = Float.NaN;
+        for (int k = 0; k < 120; k++) {
+            final double xLeft = START_X + k * step;
+            t.setRange(xLeft, xLeft + 6 * MSEC_PER_HOUR);
+
+            final float pixel = toPixelViaMatrix(t, x);
+            if (!Float.isNaN(prevPixel)) {
+                assertEquals(-expectedDelta, pixel - prevPixel, EPS);
+            }
+            prevPixel = pixel;
+        }
+    }
+
+    @Test
+    public void testOrigin() {
+        final XTransform t = new XTransform();
+        t.setArea(0, AREA_WIDTH);
+        t.setRange(START_X + 0.5, START_X + MSEC_PER_HOUR);
+
+        assertEquals(START_X, t.getOrigin());
+        assertEquals(0f, t.toLocal(START_X), 0f);
+        assertEquals(0f, t.toPixel(START_X + 0.5), EPS);
+        assertEquals(AREA_WIDTH, t.toPixel(START_X + MSEC_PER_HOUR), EPS);
+    }
+}
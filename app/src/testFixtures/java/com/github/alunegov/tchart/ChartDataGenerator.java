@@ -0,0 +1,150 @@
+package com.github.alunegov.tchart;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.jetbrains.annotations.NotNull;
+
+// Синтетические данные графика заданного размера для тестов и бенчмарков. Значения - случайное блуждание с выбросами,
+// шаг X равномерный или с разбросом. Результат определяется параметрами (в т.ч. seed) полностью.
+public final class ChartDataGenerator {
+    public static final long DEFAULT_START_X = 1523059200000L;
+    public static final long DEFAULT_X_STEP = 60 * 60 * 1000L;
+
+    // цвета линий по кругу
+    private static final int[] COLORS = new int[] {0xFF3DC23F, 0xFFF34C44, 0xFF4682B4, 0xFFFFA500, 0xFF9ED448,
+            0xFF5FB641, 0xFFF5BD25, 0xFF3497ED};
+    // во сколько раз значения второй линии больше при yScaled
+    private static final int Y_SCALED_FACTOR = 1000;
+
+    // Параметры генерации
+    public static class Params {
+        public ChartInputData.LineType linesType = ChartInputData.LineType.LINE;
+        public int linesCount = 2;
+        public int pointsCount = 1000;
+        public long startX = DEFAULT_START_X;
+        // средний шаг X
+        public long xStep = DEFAULT_X_STEP;
+        // разброс шага X, доля шага (0..1): шаг равномерно в [xStep * (1 - irregularity), xStep * (1 + irregularity)],
+        // но не меньше 1 (X строго возрастает)
+        public double irregularity = 0;
+        // вероятность выброса в точке (0..1), значение в выбросе умножается на spikesScale. На блуждание не влияет.
+        public double spikesProbability = 0;
+        public int spikesScale = 10;
+        // флаг y_scaled: значения второй линии на три порядка больше, чем у остальных
+        public boolean yScaled = false;
+        // флаг percentage (для AREA)
+        public boolean percentage = false;
+        public long seed = 1;
+
+        public Params() {
+        }
+
+        public Params(@NotNull ChartInputData.LineType linesType, int linesCount, int pointsCount) {
+            this.linesType = linesType;
+            this.linesCount = linesCount;
+            this.pointsCount = pointsCount;
+        }
+    }
+
+    private ChartDataGenerator() {
+    }
+
+    // Данные графика по параметрам. Значения неотрицательные (для накопления BAR/AREA), для BAR/AREA ставится флаг stacked.
+    public static @NotNull ChartInputData generate(@NotNull Params params) {
+        if (BuildConfig.DEBUG && (params.irregularity < 0 || params.irregularity > 1)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (params.spikesProbability < 0 || params.spikesProbability > 1)) throw new AssertionError();
+        if (BuildConfig.DEBUG && (params.yScaled && params.linesCount < 2)) throw new AssertionError();
+
+        final Random random = new Random(params.seed);
+
+        final ChartInputData inputData = new ChartInputData(params.linesCount, params.pointsCount, params.linesType);
+
+        long x = params.startX;
+        for (int i = 0; i < params.pointsCount; i++) {
+            inputData.XValues[i] = x;
+            if (params.irregularity > 0) {
+                final double k = 1 + params.irregularity * (2 * random.nextDouble() - 1);
+                x += Math.max(1, Math.round(params.xStep * k));
+            } else {
+                x += params.xStep;
+            }
+        }
+
+        for (int j = 0; j < params.linesCount; j++) {
+            final int[] values = inputData.LinesValues[j];
+            final int scale = (params.yScaled && j == 1) ? Y_SCALED_FACTOR : 1;
+            int value = 1000 + random.nextInt(1000);
+            for (int i = 0; i < params.pointsCount; i++) {
+                value = Math.max(0, value + random.nextInt(201) - 100);
+                long v = (long) value * scale;
+                if (params.spikesProbability > 0 && random.nextDouble() < params.spikesProbability) {
+                    v *= params.spikesScale;
+                }
+                values[i] = (int) Math.min(v, Integer.MAX_VALUE);
+            }
+            inputData.LinesNames[j] = "#" + j;
+            inputData.LinesColors[j] = COLORS[j % COLORS.length];
+        }
+
+        if (params.linesType != ChartInputData.LineType.LINE) {
+            inputData.flags.set(ChartInputData.FLAG_STACKED);
+        }
+        if (params.percentage) {
+            inputData.flags.set(ChartInputData.FLAG_PERCENTAGE);
+        }
+        if (params.yScaled) {
+            inputData.flags.set(ChartInputData.FLAG_Y_SCALED);
+        }
+
+        return inputData;
+    }
+
+    // Данные в формате overview.json (как в graph_data2.zip), читаются ChartInputDataMapper.loadChart. Линии - "y<j>".
+    public static @NotNull String toOverviewJson(@NotNull ChartInputData inputData) {
+        final ChartColumns columns = inputData.getColumns();
+        final int linesCount = columns.getLinesCount();
+        final int pointsCount = columns.getPointsCount();
+        final String type = inputData.linesType.name().toLowerCase(Locale.ROOT);
+
+        final StringBuilder sb = new StringBuilder(pointsCount * (14 + 8 * linesCount));
+        sb.append("{\"columns\":[[\"x\"");
+        for (int i = 0; i < pointsCount; i++) {
+            sb.append(',').append(columns.getX(i));
+        }
+        sb.append(']');
+        for (int j = 0; j < linesCount; j++) {
+            sb.append(",[\"y").append(j).append('"');
+            for (int i = 0; i < pointsCount; i++) {
+                sb.append(',').append(columns.getY(j, i));
+            }
+            sb.append(']');
+        }
+        sb.append("],\"types\":{\"x\":\"x\"");
+        for (int j = 0; j < linesCount; j++) {
+            sb.append(",\"y").append(j).append("\":\"").append(type).append('"');
+        }
+        sb.append("},\"names\":{");
+        for (int j = 0; j < linesCount; j++) {
+            sb.append(j > 0 ? "," : "").append("\"y").append(j).append("\":\"").append(inputData.LinesNames[j]).append('"');
+        }
+        sb.append("},\"colors\":{");
+        for (int j = 0; j < linesCount; j++) {
+            sb.append(j > 0 ? "," : "").append("\"y").append(j).append("\":\"")
+                    .append(String.format(Locale.ROOT, "#%06X", inputData.LinesColors[j] & 0xFFFFFF)).append('"');
+        }
+        sb.append('}');
+        if (inputData.flags.get(ChartInputData.FLAG_STACKED)) {
+            sb.append(",\"stacked\":true");
+        }
+        if (inputData.flags.get(ChartInputData.FLAG_PERCENTAGE)) {
+            sb.append(",\"percentage\":true");
+        }
+        if (inputData.flags.get(ChartInputData.FLAG_Y_SCALED)) {
+            sb.append(",\"y_scaled\":true");
+        }
+        sb.append('}');
+
+        return sb.toString();
+    }
+}
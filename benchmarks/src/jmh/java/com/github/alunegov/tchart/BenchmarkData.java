@@ -0,0 +1,114 @@
+package com.github.alunegov.tchart;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.NotNull;
+
+// Данные для бенчмарков: синтетические ряды заданного размера и графики из комплекта (graph_data2.zip, chart_data.json)
+final class BenchmarkData {
+    // параметр data бенчмарков: графики из комплекта
+    static final String ASSETS = "assets";
+    // параметр data бенчмарков: синтетический ряд "synthetic:<кол-во линий>x<кол-во точек>"
+    static final String SYNTHETIC_PREFIX = "synthetic:";
+
+    static final ChartInputDataMapper.ColorParser COLOR_PARSER = new ChartInputDataMapper.ColorParser() {
+        @Override
+        public int parseColor(String color) {
+            return 0;
+        }
+    };
+
+    static final ChartGeometry.AxisTextConverter AXIS_TEXT_CONVERTER = new ChartGeometry.AxisTextConverter() {
+        @Override
+        public @NotNull String toText(long value) {
+            return Long.toString(value);
+        }
+    };
+
+    private BenchmarkData() {
+    }
+
+    // корень проекта (задаётся в build.gradle), в нём graph_data2.zip и app/src/main/assets
+    static @NotNull File getRootDir() {
+        return new File(System.getProperty("tchart.root", ".."));
+    }
+
+    // Данные по параметру data: синтетический ряд или первый график типа linesType из graph_data2.zip
+    static @NotNull ChartInputData make(@NotNull String data, @NotNull ChartInputData.LineType linesType) throws IOException {
+        if (data.startsWith(SYNTHETIC_PREFIX)) {
+            final String[] size = data.substring(SYNTHETIC_PREFIX.length()).split("x");
+            return makeSynthetic(linesType, Integer.parseInt(size[0]), Integer.parseInt(size[1]), 1);
+        }
+
+        if (!ASSETS.equals(data)) {
+            throw new IllegalArgumentException(data);
+        }
+
+        for (byte[] json: readZipOverviews()) {
+            final ChartInputData inputData = ChartInputDataMapper.loadChart(new ByteArrayInputStream(json), COLOR_PARSER);
+            if (inputData.linesType == linesType) {
+                return inputData;
+            }
+        }
+        throw new IllegalArgumentException("no " + linesType + " chart in graph_data2.zip");
+    }
+
+    // Случайное блуждание с шагом X в час (ChartDataGenerator), для AREA - с флагом percentage
+    static @NotNull ChartInputData makeSynthetic(@NotNull ChartInputData.LineType linesType, int linesCount, int pointsCount,
+                                                 long seed) {
+        final ChartDataGenerator.Params params = new ChartDataGenerator.Params(linesType, linesCount, pointsCount);
+        params.percentage = (linesType == ChartInputData.LineType.AREA);
+        params.seed = seed;
+        return ChartDataGenerator.generate(params);
+    }
+
+    // Синтетический ряд в формате overview.json (как в graph_data2.zip)
+    static @NotNull byte[] makeSyntheticJson(@NotNull ChartInputData.LineType linesType, int linesCount, int pointsCount,
+                                             long seed) throws UnsupportedEncodingException {
+        return ChartDataGenerator.toOverviewJson(makeSynthetic(linesType, linesCount, pointsCount, seed)).getBytes("UTF8");
+    }
+
+    // overview.json всех графиков graph_data2.zip
+    static @NotNull List<byte[]> readZipOverviews() throws IOException {
+        final List<byte[]> res = new ArrayList<>();
+
+        final ZipFile zipFile = new ZipFile(new File(getRootDir(), "graph_data2.zip"));
+        try {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith("/overview.json")) {
+                    res.add(readFully(zipFile.getInputStream(entry)));
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        return res;
+    }
+
+    // chart_data.json (данные первого этапа) из ресурсов app
+    static @NotNull String readChartDataJson() throws IOException {
+        final File file = new File(getRootDir(), "app" + File.separator + "src" + File.separator + "main"
+                + File.separator + "assets" + File.separator + "chart_data.json");
+        return new String(readFully(new FileInputStream(file)), "UTF8");
+    }
+
+    private static @NotNull byte[] readFully(@NotNull InputStream stream) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            int n;
+            while ((n = stream.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.alunegov.tchart;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Построение геометрии кадра (ChartGeometry, без Android): диапазон Y, линии (updateLines_* по linesType) и метки осей
+// при прокрутке окна в четверть данных и при отображении всех данных, пересчёт курсора
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GeometryBenchmark {
+    // кол-во заранее подготовленных положений окна (степень 2), перебираются по кругу
+    private static final int FRAMES_COUNT = 256;
+    // область отображения - экран телефона, пиксели
+    private static final float AREA_WIDTH = 1080;
+    private static final float AREA_HEIGHT = 800;
+    private static final int AXIS_LINES_COUNT = 6;
+
+    // "synthetic:<кол-во линий>x<кол-во точек>" или "assets" - график типа linesType из graph_data2.zip
+    @Param({"synthetic:2x1000", "synthetic:8x100000", "synthetic:64x10000", "synthetic:2x1000000", BenchmarkData.ASSETS})
+    public String data;
+
+    @Param({"LINE", "BAR", "AREA"})
+    public ChartInputData.LineType linesType;
+
+    private ChartGeometry geometry;
+
+    private final double[] framesLeft = new double[FRAMES_COUNT];
+    private final double[] framesRight = new double[FRAMES_COUNT];
+    private final int[] cursors = new int[FRAMES_COUNT];
+    private int frameIndex;
+
+    private double xFirst, xLast;
+
+    @Setup
+    public void setup() throws IOException {
+        final ChartInputData inputData = BenchmarkData.make(data, linesType);
+        final ChartColumns columns = inputData.getColumns();
+
+        geometry = new ChartGeometry(inputData, new ChartInputDataStats(inputData));
+        geometry.enableMarksUpdating(AXIS_LINES_COUNT, BenchmarkData.AXIS_TEXT_CONVERTER, BenchmarkData.AXIS_TEXT_CONVERTER);
+        geometry.enableYRangeEnlarging();
+
+        xFirst = columns.getX(0);
+        xLast = columns.getX(columns.getPointsCount() - 1);
+        geometry.setXRange(xFirst, xLast, false);
+        geometry.setArea(0, 0, AREA_WIDTH, AREA_HEIGHT);
+
+        // окно в четверть данных, сдвигается на 1/FRAMES_COUNT оставшейся части за кадр
+        final double window = (xLast - xFirst) / 4;
+        final Random random = new Random(1);
+        for (int k = 0; k < FRAMES_COUNT; k++) {
+            framesLeft[k] = xFirst + (xLast - xFirst - window) * k / FRAMES_COUNT;
+            framesRight[k] = framesLeft[k] + window;
+            cursors[k] = random.nextInt(columns.getPointsCount());
+        }
+    }
+
+    @Benchmark
+    public ChartGeometry pan() {
+        final int k = nextFrame();
+        geometry.setXRange(framesLeft[k], framesRight[k], true);
+        return geometry;
+    }
+
+    // все данные; диапазон чуть меняется от кадра к кадру
+    @Benchmark
+    public ChartGeometry fullRange() {
+        final int k = nextFrame();
+        geometry.setXRange(xFirst + (k & 1), xLast, true);
+        return geometry;
+    }
+
+    // курсор в пределах всех данных (диапазон X из setup)
+    @Benchmark
+    public ChartGeometry updateCursor() {
+        geometry.updateCursorPaths(cursors[nextFrame()]);
+        return geometry;
+    }
+
+    private int nextFrame() {
+        frameIndex = (frameIndex + 1) & (FRAMES_COUNT - 1);
+        return frameIndex;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.alunegov.tchart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Загрузка графиков (ChartInputDataMapper): overview.json из graph_data2.zip, chart_data.json первого этапа и большой
+// синтетический overview.json
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoadBenchmark {
+    @Param({"graph_data2.zip", "chart_data.json", "synthetic:8x100000"})
+    public String source;
+
+    // overview.json графиков (graph_data2.zip, синтетический) или null
+    private List<byte[]> overviews;
+    // chart_data.json или null
+    private String chartData;
+
+    @Setup
+    public void setup() throws IOException {
+        if (source.startsWith(BenchmarkData.SYNTHETIC_PREFIX)) {
+            final String[] size = source.substring(BenchmarkData.SYNTHETIC_PREFIX.length()).split("x");
+            overviews = Collections.singletonList(BenchmarkData.makeSyntheticJson(ChartInputData.LineType.LINE,
+                    Integer.parseInt(size[0]), Integer.parseInt(size[1]), 1));
+        } else if ("graph_data2.zip".equals(source)) {
+            overviews = BenchmarkData.readZipOverviews();
+        } else {
+            chartData = BenchmarkData.readChartDataJson();
+        }
+    }
+
+    @Benchmark
+    public void load(Blackhole bh) throws IOException {
+        if (chartData != null) {
+            bh.consume(ChartInputDataMapper.load(chartData, BenchmarkData.COLOR_PARSER));
+            return;
+        }
+
+        for (byte[] json: overviews) {
+            bh.consume(ChartInputDataMapper.loadChart(new ByteArrayInputStream(json), BenchmarkData.COLOR_PARSER));
+        }
+    }
+}
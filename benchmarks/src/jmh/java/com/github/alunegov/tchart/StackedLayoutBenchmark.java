@@ -0,0 +1,96 @@
+package com.github.alunegov.tchart;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Раскладка значений для накопительных сумм BAR/AREA: по линиям (HeapChartColumns) и по точкам (PointMajorChartColumns).
+// Накопление с коэффициентами видимости, как при построении многоугольников, и полный подсчёт суммы линий
+// (StackedSumIndex).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StackedLayoutBenchmark {
+    @Param({"2", "8", "16", "64"})
+    public int linesCount;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int pointsCount;
+
+    private ChartInputData lineMajorData;
+    private ChartInputData pointMajorData;
+    private PointMajorChartColumns pointMajor;
+    // коэффициенты видимости линий: каждая третья - в середине анимации
+    private float[] linesK;
+    private int[] visibilityState;
+
+    private float[] tmpStackedSum;
+    private float[][] linesStackedSum;
+
+    @Setup
+    public void setup() {
+        lineMajorData = BenchmarkData.makeSynthetic(ChartInputData.LineType.BAR, linesCount, pointsCount, 1);
+        pointMajor = PointMajorChartColumns.of(lineMajorData.getColumns());
+        pointMajorData = new ChartInputData(pointMajor, lineMajorData.linesType, lineMajorData.flags);
+
+        linesK = new float[linesCount];
+        visibilityState = new int[linesCount];
+        for (int j = 0; j < linesCount; j++) {
+            linesK[j] = (j % 3 == 2) ? 0.5f : 1f;
+            visibilityState[j] = (j % 3 == 2) ? 128 : ChartInputDataStats.VISIBILITY_STATE_ON;
+        }
+
+        tmpStackedSum = new float[pointsCount];
+        linesStackedSum = new float[linesCount][pointsCount];
+    }
+
+    // как в ChartGeometry.updateLines_BAR_Polygons: накопление по линиям и мин каждой линии
+    @Benchmark
+    public float stackLineMajor() {
+        final int[][] linesValues = lineMajorData.LinesValues;
+        for (int i = 0; i < pointsCount; i++) {
+            tmpStackedSum[i] = 0;
+        }
+
+        float res = 0;
+        for (int j = 0; j < linesValues.length; j++) {
+            final int[] values = linesValues[j];
+            float currMin = Float.MAX_VALUE;
+            for (int i = 0; i < pointsCount; i++) {
+                tmpStackedSum[i] += values[i] * linesK[j];
+                if (tmpStackedSum[i] < currMin) {
+                    currMin = tmpStackedSum[i];
+                }
+            }
+            res += currMin;
+        }
+        return res;
+    }
+
+    @Benchmark
+    public float stackPointMajor() {
+        pointMajor.stackLines(0, pointsCount - 1, linesK, linesStackedSum);
+
+        float res = 0;
+        for (float[] lineStackedSum : linesStackedSum) {
+            float currMin = Float.MAX_VALUE;
+            for (int i = 0; i < pointsCount; i++) {
+                if (lineStackedSum[i] < currMin) {
+                    currMin = lineStackedSum[i];
+                }
+            }
+            res += currMin;
+        }
+        return res;
+    }
+
+    @Benchmark
+    public StackedSumIndex sumLineMajor() {
+        return new StackedSumIndex(lineMajorData, visibilityState);
+    }
+
+    @Benchmark
+    public StackedSumIndex sumPointMajor() {
+        return new StackedSumIndex(pointMajorData, visibilityState);
+    }
+}
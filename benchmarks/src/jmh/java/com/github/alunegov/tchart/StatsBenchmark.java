@@ -0,0 +1,96 @@
+package com.github.alunegov.tchart;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Статистика графика: построение ChartInputDataStats (индексы), findYMinMax по случайным диапазонам, пересчёт суммы
+// линий при смене видимости (StackedSumIndex.update) и поиск индекса X (XIndexLocator)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatsBenchmark {
+    // кол-во заранее подготовленных запросов (степень 2), перебираются по кругу
+    private static final int QUERIES_COUNT = 1024;
+
+    // "synthetic:<кол-во линий>x<кол-во точек>" или "assets" - график типа linesType из graph_data2.zip
+    @Param({"synthetic:2x1000", "synthetic:8x100000", "synthetic:64x10000", "synthetic:2x1000000", BenchmarkData.ASSETS})
+    public String data;
+
+    @Param({"LINE", "BAR", "AREA"})
+    public ChartInputData.LineType linesType;
+
+    private ChartInputData inputData;
+    private ChartInputDataStats inputDataStats;
+    private XIndexLocator xIndexLocator;
+    private StackedSumIndex stackedSumIndex;
+
+    private final int[] queriesL = new int[QUERIES_COUNT];
+    private final int[] queriesR = new int[QUERIES_COUNT];
+    private final double[] queriesX = new double[QUERIES_COUNT];
+    private int queryIndex;
+
+    // состояния видимости: все линии и без одной, чередуются в updateStackedSum
+    private int[][] visibilityStates;
+    private int visibilityStateIndex;
+
+    private final int[] minMax = new int[2];
+
+    @Setup
+    public void setup() throws IOException {
+        inputData = BenchmarkData.make(data, linesType);
+        inputDataStats = new ChartInputDataStats(inputData);
+        xIndexLocator = new XIndexLocator(inputData.getColumns());
+
+        final ChartColumns columns = inputData.getColumns();
+        final int pointsCount = columns.getPointsCount();
+        final Random random = new Random(1);
+        for (int k = 0; k < QUERIES_COUNT; k++) {
+            final int l = random.nextInt(pointsCount);
+            queriesL[k] = l;
+            queriesR[k] = l + random.nextInt(pointsCount - l);
+            queriesX[k] = columns.getX(0) + random.nextDouble() * (columns.getX(pointsCount - 1) - columns.getX(0));
+        }
+
+        final int linesCount = columns.getLinesCount();
+        visibilityStates = new int[2][linesCount];
+        for (int j = 0; j < linesCount; j++) {
+            visibilityStates[0][j] = ChartInputDataStats.VISIBILITY_STATE_ON;
+            visibilityStates[1][j] = (j == 0) ? ChartInputDataStats.VISIBILITY_STATE_OFF : ChartInputDataStats.VISIBILITY_STATE_ON;
+        }
+        stackedSumIndex = new StackedSumIndex(inputData, visibilityStates[0]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ChartInputDataStats buildStats() {
+        return new ChartInputDataStats(inputData);
+    }
+
+    @Benchmark
+    public int findYMinMax() {
+        final int k = nextQuery();
+        inputDataStats.findYMinMax(queriesL[k], queriesR[k], false, visibilityStates[0], minMax);
+        return minMax[1];
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long updateStackedSum() {
+        visibilityStateIndex = 1 - visibilityStateIndex;
+        stackedSumIndex.update(visibilityStates[visibilityStateIndex]);
+        return stackedSumIndex.getSum(0);
+    }
+
+    @Benchmark
+    public int findXIndex() {
+        return xIndexLocator.findLeftIndex(queriesX[nextQuery()]);
+    }
+
+    private int nextQuery() {
+        queryIndex = (queryIndex + 1) & (QUERIES_COUNT - 1);
+        return queryIndex;
+    }
+}
@@ -0,0 +1,6 @@
+package com.github.alunegov.tchart;
+
+// Замена BuildConfig, генерируемого сборкой app: проверки (BuildConfig.DEBUG) в бенчмарках выключены
+public final class BuildConfig {
+    public static final boolean DEBUG = false;
+}